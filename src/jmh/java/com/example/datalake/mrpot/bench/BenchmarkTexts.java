@@ -0,0 +1,133 @@
+package com.example.datalake.mrpot.bench;
+
+import com.example.datalake.mrpot.dao.IntentRulesDao;
+import com.example.datalake.mrpot.dao.KeywordsLexiconDao;
+import com.example.datalake.mrpot.dao.LexiconIndex;
+import com.example.datalake.mrpot.model.KbDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deterministic benchmark corpus: English, Chinese and mixed user text at a requested length, a
+ * small bilingual lexicon / rule set, and portfolio-style KB documents.
+ */
+public final class BenchmarkTexts {
+
+  private static final String[] EN = {
+      "Hi Mr Pot, can you tell me about the Spring Boot projects you built at Goldman?? ",
+      "please write a short summary of your experience with React and Kafka... ",
+      "The answer must be in HTML and should not exceed three paragraphs!! ",
+      "I am planning a trip to Chicago next month and need help with the budget, ",
+      "what is  the  difference between   a tax return and a refund, and when is it due? ",
+      "Check https://example.com/docs?id=42 or email foo.bar@test.co.uk for details. ",
+      "“Vector search” — is it better than BM25 for the blog posts? ",
+      "i like teh new dashboard, but the latency on mobile is still high. "
+  };
+
+  private static final String[] ZH = {
+      "你好，请介绍一下你在高盛做过的 项目经历。。 ",
+      "我想了解 向量检索 和 全文检索 的区别，必须用中文回答！！ ",
+      "下个月去芝加哥旅行，预算大概是多少？？ ",
+      "帮我分析一下个人所得税退税的流程，以表格格式返回。 ",
+      "这个博客里提到的缓存策略，不要太长，简单说明即可， ",
+      "能做什么？你是谁？有哪些技术博客可以推荐？ ",
+      "ＡＢＣ 全角字符和\u200B零宽字符也要处理好。 ",
+      "请比较 Spring Boot 和 Node.js 在高并发场景下的表现。 "
+  };
+
+  private static final String[][] LEXICON = {
+      {"spring boot", "spring", "boot", "springboot"},
+      {"react", "reactjs", "前端"},
+      {"kafka", "消息队列", "message queue"},
+      {"goldman", "goldman sachs", "高盛"},
+      {"chicago", "芝加哥"},
+      {"travel", "trip", "旅行", "旅游"},
+      {"tax", "refund", "退税", "所得税"},
+      {"vector search", "向量检索", "embedding"},
+      {"bm25", "全文检索", "full-text"},
+      {"blog", "博客", "posts"},
+      {"cache", "缓存", "caching"},
+      {"latency", "延迟", "performance"}
+  };
+
+  private static final String[][] RULES = {
+      {"TRAVEL", "travel", "trip", "chicago", "旅行", "芝加哥"},
+      {"TAX", "tax", "refund", "退税", "所得税"},
+      {"CODE", "spring", "react", "kafka", "bm25", "向量检索"},
+      {"JOBS", "goldman", "experience", "高盛", "经历"}
+  };
+
+  private BenchmarkTexts() {}
+
+  /** {@code lang} is {@code en}, {@code zh} or {@code mixed}; the result is exactly {@code length} chars. */
+  public static String text(String lang, int length) {
+    String[] pool = switch (lang) {
+      case "en" -> EN;
+      case "zh" -> ZH;
+      default -> interleave(EN, ZH);
+    };
+    StringBuilder sb = new StringBuilder(length + 128);
+    for (int i = 0; sb.length() < length; i++) {
+      if (i > 0 && i % pool.length == 0) sb.append("\n\n");
+      sb.append(pool[i % pool.length]);
+    }
+    sb.setLength(length);
+    return sb.toString();
+  }
+
+  /** {@code count} KB documents of ~{@code chars} chars each, built from all sentence pools. */
+  public static List<KbDocument> documents(int count, int chars) {
+    String[] pool = interleave(EN, ZH);
+    List<KbDocument> docs = new ArrayList<>(count);
+    for (int d = 0; d < count; d++) {
+      StringBuilder sb = new StringBuilder(chars + 128);
+      for (int i = d; sb.length() < chars; i++) {
+        sb.append(pool[i % pool.length].trim()).append(i % 5 == 4 ? "\n" : " ");
+      }
+      KbDocument doc = new KbDocument();
+      doc.setId((long) d + 1);
+      doc.setDocType(d % 2 == 0 ? "blog" : "project");
+      doc.setContent(sb.toString());
+      doc.setMetadata("{\"title\":\"Doc " + (d + 1) + "\",\"source\":\"bench\"}");
+      docs.add(doc);
+    }
+    return docs;
+  }
+
+  /** In-memory lexicon behind the same suffix-array index the production DAO uses. */
+  public static KeywordsLexiconDao lexiconDao() {
+    List<LexiconIndex.Entry> entries = new ArrayList<>(LEXICON.length);
+    for (String[] row : LEXICON) {
+      entries.add(new LexiconIndex.Entry(row[0], List.of(row).subList(1, row.length), true));
+    }
+    LexiconIndex index = LexiconIndex.build(entries);
+    return index::findCanonicals;
+  }
+
+  /** Rule DAO that returns every rule with at least one term among the tokens, like the SQL query. */
+  public static IntentRulesDao intentRulesDao() {
+    return tokens -> {
+      List<IntentRulesDao.IntentRuleEntry> out = new ArrayList<>();
+      for (String[] rule : RULES) {
+        List<String> synonyms = List.of(rule).subList(1, rule.length);
+        for (String token : tokens) {
+          if (synonyms.contains(token.toLowerCase(Locale.ROOT))) {
+            out.add(new IntentRulesDao.IntentRuleEntry(rule[0], synonyms));
+            break;
+          }
+        }
+      }
+      return out;
+    };
+  }
+
+  private static String[] interleave(String[] a, String[] b) {
+    String[] out = new String[a.length + b.length];
+    for (int i = 0; i < a.length; i++) {
+      out[2 * i] = a[i];
+      out[2 * i + 1] = b[i];
+    }
+    return out;
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.datalake.mrpot.processor;
+
+import com.example.datalake.mrpot.bench.BenchmarkTexts;
+import com.example.datalake.mrpot.model.Intent;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.util.TextTokenizer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU-bound pipeline stages in isolation (DAOs replaced by in-memory stubs). Each invocation gets a
+ * fresh {@link ProcessingContext}, as a request would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorBenchmark {
+
+  @Param({"en", "zh", "mixed"})
+  public String lang;
+
+  @Param({"10", "100", "1000", "8000"})
+  public int length;
+
+  private String text;
+  private List<String> keywords;
+
+  private UnifiedCleanCorrectProcessor clean;
+  private IntentClassifierProcessor intent;
+  private PromptTemplateProcessor template;
+  private CommonResponseProcessor commonResponse;
+
+  @Setup
+  public void setUp() {
+    text = BenchmarkTexts.text(lang, length);
+    clean = new UnifiedCleanCorrectProcessor();
+    intent = new IntentClassifierProcessor(BenchmarkTexts.lexiconDao(), BenchmarkTexts.intentRulesDao());
+    template = new PromptTemplateProcessor();
+    commonResponse = new CommonResponseProcessor();
+    keywords = intent.process(new ProcessingContext().setNormalized(text)).block().getKeywords();
+  }
+
+  @Benchmark
+  public ProcessingContext cleanCorrect() {
+    return clean.process(new ProcessingContext().setRawInput(text)).block();
+  }
+
+  @Benchmark
+  public List<String> tokenize() {
+    return TextTokenizer.tokenize(text);
+  }
+
+  @Benchmark
+  public ProcessingContext intentClassify() {
+    return intent.process(new ProcessingContext().setNormalized(text)).block();
+  }
+
+  @Benchmark
+  public ProcessingContext templateRender() {
+    ProcessingContext ctx = new ProcessingContext()
+        .setNormalized(text)
+        .setIntent(Intent.CODE)
+        .setIndexLanguage("zh".equals(lang) ? "zh" : "en")
+        .setKeywords(keywords);
+    return template.process(ctx).block();
+  }
+
+  @Benchmark
+  public Object detectReply() {
+    return commonResponse.detectReply(new ProcessingContext(), text.trim());
+  }
+}
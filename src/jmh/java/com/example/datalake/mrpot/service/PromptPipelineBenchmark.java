@@ -0,0 +1,97 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.bench.BenchmarkTexts;
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.model.KbDocument;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.processor.CommonResponseProcessor;
+import com.example.datalake.mrpot.processor.IntentClassifierProcessor;
+import com.example.datalake.mrpot.processor.LangChain4jRagProcessor;
+import com.example.datalake.mrpot.processor.PromptTemplateProcessor;
+import com.example.datalake.mrpot.processor.UnifiedCleanCorrectProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.util.KbSnippetUtils;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PromptPipeline#run} end to end on the calling thread, with an instant fake {@link ChatModel}
+ * and KB search over in-memory documents, so only our own CPU work is measured. The prompt-cache
+ * stages are left out: this is the cache-miss path every new question takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptPipelineBenchmark {
+
+  @Param({"en", "zh", "mixed"})
+  public String lang;
+
+  @Param({"10", "100", "1000", "8000"})
+  public int length;
+
+  private String query;
+  private PromptPipeline pipeline;
+
+  @Setup
+  public void setUp() {
+    query = BenchmarkTexts.text(lang, length);
+
+    List<KbDocument> docs = BenchmarkTexts.documents(20, 4000);
+    KbSearchService kbSearch = (q, keywords, maxSnippets, maxTotalChars) ->
+        KbSnippetUtils.toSnippets(docs, KbSnippetUtils.mergeQueryKeywords(q, keywords),
+            maxSnippets, maxTotalChars, doc -> 0.0);
+    LangChain4jRagService ragService = new LangChain4jRagService(
+        new InstantChatModel(),
+        null,
+        kbSearch,
+        new AnswerCacheService(new AnswerCacheProperties(), new Langchain4jOpenAiProperties()));
+
+    pipeline = new PromptPipeline(
+        List.of(
+            new UnifiedCleanCorrectProcessor(),
+            new IntentClassifierProcessor(BenchmarkTexts.lexiconDao(), BenchmarkTexts.intentRulesDao()),
+            new CommonResponseProcessor(),
+            new PromptTemplateProcessor(),
+            new LangChain4jRagProcessor(ragService)),
+        new ValidationService(List.of(new NotBlankInputValidator())),
+        ragService,
+        PipelineSchedulers.immediate());
+  }
+
+  @Benchmark
+  public ProcessingContext run() {
+    return pipeline.run(new PrepareRequest().setQuery(query)).block();
+  }
+
+  private static final class InstantChatModel implements ChatModel {
+    private static final ChatResponse RESPONSE =
+        ChatResponse.builder().aiMessage(AiMessage.from("<p>stub answer</p>")).build();
+
+    @Override
+    public ChatResponse doChat(ChatRequest request) {
+      return RESPONSE;
+    }
+  }
+}
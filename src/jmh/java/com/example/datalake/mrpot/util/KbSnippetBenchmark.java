@@ -0,0 +1,57 @@
+package com.example.datalake.mrpot.util;
+
+import com.example.datalake.mrpot.bench.BenchmarkTexts;
+import com.example.datalake.mrpot.model.KbDocument;
+import com.example.datalake.mrpot.model.KbSnippet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Snippet extraction as done by {@code SupabaseKbSearchService} once the candidate rows are back:
+ * keyword merge plus {@link KbSnippetUtils#toSnippets} over 20 documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KbSnippetBenchmark {
+
+  @Param({"en", "zh", "mixed"})
+  public String lang;
+
+  @Param({"10", "100", "1000"})
+  public int queryLength;
+
+  @Param({"2000", "8000"})
+  public int docChars;
+
+  private String query;
+  private List<String> keywords;
+  private List<KbDocument> docs;
+
+  @Setup
+  public void setUp() {
+    query = BenchmarkTexts.text(lang, queryLength);
+    keywords = List.of("spring boot", "向量检索", "chicago");
+    docs = BenchmarkTexts.documents(20, docChars);
+  }
+
+  @Benchmark
+  public List<KbSnippet> searchSnippets() {
+    List<String> merged = KbSnippetUtils.mergeQueryKeywords(query, keywords);
+    return KbSnippetUtils.toSnippets(docs, merged, 3, 1200, doc -> 0.0);
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.answer-cache.enabled=false
+ * mrpot.answer-cache.ttl=6h
+ * mrpot.answer-cache.max-entries=5000
+ * mrpot.answer-cache.semantic.enabled=false
+ * mrpot.answer-cache.semantic.similarity-threshold=0.92
+ * mrpot.answer-cache.semantic.max-entries=2000
+ * mrpot.answer-cache.semantic.m=16
+ * mrpot.answer-cache.semantic.ef-construction=100
+ * mrpot.answer-cache.semantic.ef-search=64
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.answer-cache")
+public class AnswerCacheProperties {
+
+    /**
+     * When false, every request goes to the LLM (lookups always miss, nothing is stored).
+     */
+    private boolean enabled = false;
+
+    /**
+     * Freshness window: a cached answer is reused for at most this long after it was generated.
+     */
+    private Duration ttl = Duration.ofHours(6);
+
+    /**
+     * Upper bound of cached answers.
+     */
+    private long maxEntries = 5_000L;
+
+    /**
+     * Near-duplicate lookup: embed the normalized question and reuse the answer of a previous,
+     * sufficiently similar question (see SemanticAnswerCache). Shares {@link #ttl} with the exact cache.
+     */
+    private Semantic semantic = new Semantic();
+
+    @Data
+    public static class Semantic {
+
+        /**
+         * Independent of the exact cache; costs one embedding call per LLM-bound request.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum cosine similarity between the new and the cached question for a hit.
+         */
+        private double similarityThreshold = 0.92;
+
+        /**
+         * Upper bound of cached questions (oldest are evicted first).
+         */
+        private int maxEntries = 2_000;
+
+        /**
+         * HNSW graph degree: neighbours kept per node on upper layers (2x on the bottom layer).
+         */
+        private int m = 16;
+
+        /**
+         * HNSW beam width while inserting.
+         */
+        private int efConstruction = 100;
+
+        /**
+         * HNSW beam width while searching.
+         */
+        private int efSearch = 64;
+    }
+}
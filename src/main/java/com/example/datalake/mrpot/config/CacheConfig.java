@@ -0,0 +1,12 @@
+package com.example.datalake.mrpot.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({
+        PromptCacheProperties.class,
+        AnswerCacheProperties.class
+})
+public class CacheConfig {
+}
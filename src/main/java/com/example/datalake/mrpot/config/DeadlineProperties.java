@@ -0,0 +1,39 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.deadline.enabled=true
+ * mrpot.deadline.default-budget=30s
+ * mrpot.deadline.max-budget=120s
+ * mrpot.deadline.min-stage-budget=250ms
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.deadline")
+public class DeadlineProperties {
+
+    /**
+     * Give every request a time budget; when false stages run with their own timeouts only.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Budget of a request that does not send an X-Request-Timeout header.
+     */
+    private Duration defaultBudget = Duration.ofSeconds(30);
+
+    /**
+     * Upper bound for the X-Request-Timeout header.
+     */
+    private Duration maxBudget = Duration.ofSeconds(120);
+
+    /**
+     * A DB-bound stage (lexicon, intent rules, KB search) is skipped when less than this is left.
+     */
+    private Duration minStageBudget = Duration.ofMillis(250);
+}
@@ -0,0 +1,38 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.embedding.enabled=true
+ * mrpot.embedding.provider=openai | local
+ * mrpot.embedding.max-batch-size=32
+ * mrpot.embedding.max-concurrency=0
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.embedding")
+public class EmbeddingProperties {
+
+    /**
+     * Whether the pgvector embedding store / retriever beans are created.
+     */
+    private boolean enabled = true;
+
+    /**
+     * "openai" = OpenAiEmbeddingModel (network call per embedding);
+     * "local"  = in-process quantized bge-small-en (384 dims, the pgvector column must match).
+     */
+    private String provider = "openai";
+
+    /**
+     * Local mode: max segments merged into one ONNX inference call.
+     */
+    private int maxBatchSize = 32;
+
+    /**
+     * Local mode: max concurrent inference calls; 0 = number of CPU cores.
+     */
+    private int maxConcurrency = 0;
+}
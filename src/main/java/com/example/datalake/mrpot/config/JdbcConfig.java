@@ -0,0 +1,32 @@
+package com.example.datalake.mrpot.config;
+
+import com.example.datalake.mrpot.dao.DeadlineAwareJdbcTemplate;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Replaces Boot's JdbcTemplate with {@link DeadlineAwareJdbcTemplate} (the auto-configured
+ * NamedParameterJdbcTemplate wraps it, so the KB search backends are covered too).
+ */
+@Configuration
+@EnableConfigurationProperties(JdbcProperties.class)
+public class JdbcConfig {
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties) {
+        DeadlineAwareJdbcTemplate jdbcTemplate = new DeadlineAwareJdbcTemplate(dataSource);
+        // 与 Boot 的 JdbcTemplateConfiguration 保持一致
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.kb.hybrid.enabled=false
+ * mrpot.kb.hybrid.lexical-timeout=800ms
+ * mrpot.kb.hybrid.vector-timeout=400ms
+ * mrpot.kb.hybrid.rrf-k=60
+ * mrpot.kb.hybrid.threads=8
+ * mrpot.kb.hybrid.queue-capacity=16
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.kb.hybrid")
+public class KbHybridSearchProperties {
+
+    /**
+     * Run lexical + vector retrieval and fuse them; when false only the lexical backend is used.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Budget for the lexical leg (ILIKE / FTS / BM25). On timeout the leg contributes nothing.
+     */
+    private Duration lexicalTimeout = Duration.ofMillis(800);
+
+    /**
+     * Budget for the vector leg (query embedding + pgvector search).
+     */
+    private Duration vectorTimeout = Duration.ofMillis(400);
+
+    /**
+     * Reciprocal-rank-fusion constant: score = sum(1 / (k + rank)).
+     */
+    private int rrfK = 60;
+
+    /**
+     * Threads shared by both legs.
+     */
+    private int threads = 8;
+
+    /**
+     * Legs that may wait for a free thread; when the queue is full the leg is skipped instead of
+     * piling up behind a slow backend.
+     */
+    private int queueCapacity = 16;
+}
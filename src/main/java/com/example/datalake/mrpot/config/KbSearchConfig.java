@@ -0,0 +1,11 @@
+package com.example.datalake.mrpot.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({
+        KbHybridSearchProperties.class
+})
+public class KbSearchConfig {
+}
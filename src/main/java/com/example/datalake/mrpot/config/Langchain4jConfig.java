@@ -1,37 +1,75 @@
 package com.example.datalake.mrpot.config;
 
+import com.example.datalake.mrpot.service.BatchingEmbeddingModel;
+import com.example.datalake.mrpot.util.VirtualThreads;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.jdk.JdkHttpClientBuilder;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.bgesmallenq.BgeSmallEnQuantizedEmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 @EnableConfigurationProperties({
         Langchain4jOpenAiProperties.class,
-        SupabaseProps.class
+        SupabaseProps.class,
+        EmbeddingProperties.class,
+        LlmRateLimitProperties.class
 })
 public class Langchain4jConfig {
 
     @Bean
-    public ChatModel chatModel(Langchain4jOpenAiProperties props) {
+    public ChatModel chatModel(Langchain4jOpenAiProperties props,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         return OpenAiChatModel.builder()
+                .httpClientBuilder(httpClientBuilder(virtualThreads, "openai-chat-"))
+                .apiKey(props.getApiKey())
+                .modelName(props.getChatModel())
+                .temperature(props.getTemperature())
+                .maxTokens(props.getMaxOutputTokens())
+                .timeout(props.getTimeout())
+                .build();
+    }
+
+    /**
+     * 与 chatModel 同配置的流式版本，供 /v1/prompt/stream 逐 token 推送答案。
+     */
+    @Bean
+    public StreamingChatModel streamingChatModel(Langchain4jOpenAiProperties props,
+                                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return OpenAiStreamingChatModel.builder()
+                .httpClientBuilder(httpClientBuilder(virtualThreads, "openai-stream-"))
                 .apiKey(props.getApiKey())
                 .modelName(props.getChatModel())
                 .temperature(props.getTemperature())
                 .maxTokens(props.getMaxOutputTokens())
+                .timeout(props.getTimeout())
                 .build();
     }
 
     @Bean
+    @ConditionalOnProperty(
+            name = "mrpot.embedding.provider",
+            havingValue = "openai",
+            matchIfMissing = true
+    )
     public EmbeddingModel embeddingModel(Langchain4jOpenAiProperties props) {
         return OpenAiEmbeddingModel.builder()
                 .apiKey(props.getApiKey())
@@ -39,6 +77,31 @@ public class Langchain4jConfig {
                 .build();
     }
 
+    /**
+     * 本地模式：进程内量化 bge-small-en（ONNX），不走网络、不按 token 计费。
+     * 并发请求合并成一次推理，推理并发数不超过 CPU 核数。
+     */
+    @Bean
+    @ConditionalOnProperty(
+            name = "mrpot.embedding.provider",
+            havingValue = "local"
+    )
+    public EmbeddingModel localEmbeddingModel(EmbeddingProperties props) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int concurrency = props.getMaxConcurrency() > 0 ? Math.min(props.getMaxConcurrency(), cores) : cores;
+        // 注意：不把线程池注册成 bean，否则会顶掉 Spring Boot 默认的 applicationTaskExecutor
+        ExecutorService onnxExecutor = Executors.newFixedThreadPool(cores, r -> {
+            Thread t = new Thread(r, "onnx-embedding");
+            t.setDaemon(true);
+            return t;
+        });
+        return new BatchingEmbeddingModel(
+                new BgeSmallEnQuantizedEmbeddingModel(onnxExecutor),
+                props.getMaxBatchSize(),
+                concurrency
+        );
+    }
+
     @Bean
     @ConditionalOnProperty(
             name = "mrpot.embedding.enabled",
@@ -77,4 +140,17 @@ public class Langchain4jConfig {
                 .minScore(0.5)
                 .build();
     }
+
+    /**
+     * JDK HttpClient for the OpenAI models. The blocking chat() already runs on the llm scheduler
+     * (virtual in virtual-thread mode); this moves the client's async / streaming callbacks onto virtual
+     * threads as well. The executor is deliberately not a bean (see localEmbeddingModel).
+     */
+    private static JdkHttpClientBuilder httpClientBuilder(boolean virtualThreads, String threadPrefix) {
+        HttpClient.Builder http = HttpClient.newBuilder();
+        if (virtualThreads && VirtualThreads.isSupported()) {
+            http.executor(VirtualThreads.newThreadPerTaskExecutor(threadPrefix));
+        }
+        return JdkHttpClient.builder().httpClientBuilder(http);
+    }
 }
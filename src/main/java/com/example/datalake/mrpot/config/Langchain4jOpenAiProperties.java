@@ -3,6 +3,8 @@ package com.example.datalake.mrpot.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 /**
  * Binds properties:
  *
@@ -10,6 +12,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * langchain4j.openai.chat-model=...
  * langchain4j.openai.embedding-model=...
  * langchain4j.openai.temperature=0.2
+ * langchain4j.openai.timeout=60s
  */
 @Data
 @ConfigurationProperties(prefix = "langchain4j.openai")
@@ -39,4 +42,9 @@ public class Langchain4jOpenAiProperties {
      * Optional upper bound for model output tokens to control cost/latency.
      */
     private Integer maxOutputTokens = 256;
+
+    /**
+     * HTTP timeout of one chat call; the request deadline (mrpot.deadline.*) usually cuts it off earlier.
+     */
+    private Duration timeout = Duration.ofSeconds(60);
 }
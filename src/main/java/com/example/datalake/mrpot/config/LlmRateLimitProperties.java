@@ -0,0 +1,69 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.llm.rate-limit.enabled=true
+ * mrpot.llm.rate-limit.tokens-per-minute=200000
+ * mrpot.llm.rate-limit.chars-per-token=4
+ * mrpot.llm.rate-limit.max-queue-wait=2s
+ * mrpot.llm.rate-limit.initial-concurrency=16
+ * mrpot.llm.rate-limit.min-concurrency=1
+ * mrpot.llm.rate-limit.max-concurrency=64
+ * mrpot.llm.rate-limit.latency-threshold=15s
+ * mrpot.llm.rate-limit.backoff-ratio=0.7
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.llm.rate-limit")
+public class LlmRateLimitProperties {
+
+    /**
+     * When false, chat calls go straight to the model and only OpenAI's own 429s limit us.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Token-bucket size and refill per minute; set to the account's TPM quota for the chat model.
+     */
+    private long tokensPerMinute = 200_000L;
+
+    /**
+     * Prompt tokens are estimated as chars / charsPerToken (plus the max output tokens).
+     */
+    private int charsPerToken = 4;
+
+    /**
+     * Longest a request may wait for tokens or a concurrency slot; beyond that it is shed with 429.
+     */
+    private Duration maxQueueWait = Duration.ofSeconds(2);
+
+    /**
+     * Starting AIMD concurrency limit.
+     */
+    private int initialConcurrency = 16;
+
+    /**
+     * The limit never drops below this, however many 429s we see.
+     */
+    private int minConcurrency = 1;
+
+    /**
+     * The limit never grows beyond this; keep it at or below the llm scheduler's threads.
+     */
+    private int maxConcurrency = 64;
+
+    /**
+     * A successful call slower than this counts as congestion and shrinks the limit.
+     */
+    private Duration latencyThreshold = Duration.ofSeconds(15);
+
+    /**
+     * Multiplicative decrease applied on a 429 or a slow call.
+     */
+    private double backoffRatio = 0.7;
+}
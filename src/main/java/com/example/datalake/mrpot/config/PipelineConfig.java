@@ -0,0 +1,13 @@
+package com.example.datalake.mrpot.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({
+        PipelineSchedulerProperties.class,
+        ResilienceProperties.class,
+        DeadlineProperties.class
+})
+public class PipelineConfig {
+}
@@ -0,0 +1,59 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.pipeline.schedulers.db.threads=16
+ * mrpot.pipeline.schedulers.db.queue-capacity=256
+ * mrpot.pipeline.schedulers.llm.threads=64
+ * mrpot.pipeline.schedulers.llm.queue-capacity=512
+ * mrpot.pipeline.schedulers.llm.virtual-max-in-flight=4096
+ * mrpot.pipeline.schedulers.cpu.threads=#cores
+ * mrpot.pipeline.schedulers.cpu.queue-capacity=1024
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.pipeline.schedulers")
+public class PipelineSchedulerProperties {
+
+    /**
+     * JDBC-bound stages; keep threads at or below the Hikari pool size.
+     */
+    private Pool db = new Pool(16, 256, 0);
+
+    /**
+     * Blocking OpenAI calls; sized for concurrent in-flight completions, not CPU.
+     */
+    private Pool llm = new Pool(64, 512, 4096);
+
+    /**
+     * In-memory stages.
+     */
+    private Pool cpu = new Pool(Math.max(2, Runtime.getRuntime().availableProcessors()), 1024, 0);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+
+        /**
+         * Maximum worker threads.
+         */
+        private int threads;
+
+        /**
+         * Tasks allowed to wait for a worker; beyond this the stage fails fast instead of queueing.
+         */
+        private int queueCapacity;
+
+        /**
+         * In-flight cap when the pool runs on virtual threads (spring.threads.virtual.enabled=true);
+         * 0 = threads + queueCapacity.
+         */
+        private int virtualMaxInFlight;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.prompt-cache.max-weight-chars=8000000
+ * mrpot.prompt-cache.expire-after-write=24h
+ * mrpot.prompt-cache.expire-after-access=6h
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.prompt-cache")
+public class PromptCacheProperties {
+
+    /**
+     * Upper bound of the cache, measured in prompt chars (key + system + user + final prompt).
+     */
+    private long maxWeightChars = 8_000_000L;
+
+    /**
+     * Entries are dropped this long after they were (re)written, regardless of hits.
+     */
+    private Duration expireAfterWrite = Duration.ofHours(24);
+
+    /**
+     * Entries are dropped after being idle (no hit) for this long.
+     */
+    private Duration expireAfterAccess = Duration.ofHours(6);
+}
@@ -0,0 +1,118 @@
+package com.example.datalake.mrpot.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Binds properties:
+ *
+ * mrpot.resilience.enabled=true
+ * mrpot.resilience.llm.window-size=20
+ * mrpot.resilience.llm.minimum-calls=10
+ * mrpot.resilience.llm.failure-rate-threshold=0.5
+ * mrpot.resilience.llm.open-duration=30s
+ * mrpot.resilience.llm.slow-call-duration=30s
+ * mrpot.resilience.kb-search.slow-call-duration=3s   (other kb-search keys as for llm)
+ * mrpot.resilience.kb-hedge.enabled=false
+ * mrpot.resilience.kb-hedge.percentile=0.95
+ * mrpot.resilience.kb-hedge.min-delay=50ms
+ * mrpot.resilience.kb-hedge.min-samples=50
+ * mrpot.resilience.kb-hedge.window-size=200
+ * mrpot.resilience.kb-hedge.threads=4
+ * mrpot.resilience.kb-hedge.queue-capacity=8
+ */
+@Data
+@ConfigurationProperties(prefix = "mrpot.resilience")
+public class ResilienceProperties {
+
+    /**
+     * When false no breaker ever opens and dependency errors propagate as before.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Breaker around the OpenAI chat model (blocking and streaming).
+     */
+    private Breaker llm = new Breaker(20, 10, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(30));
+
+    /**
+     * Breaker around the KB snippet search (Supabase / Postgres backends).
+     */
+    private Breaker kbSearch = new Breaker(20, 10, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(3));
+
+    /**
+     * Second KB query when the first is slower than the observed percentile.
+     */
+    private Hedge kbHedge = new Hedge();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Breaker {
+
+        /**
+         * Number of most recent calls the failure rate is computed over.
+         */
+        private int windowSize;
+
+        /**
+         * Calls needed in the window before the breaker may open.
+         */
+        private int minimumCalls;
+
+        /**
+         * Failure rate (0..1) at which the breaker opens.
+         */
+        private double failureRateThreshold;
+
+        /**
+         * How long an open breaker rejects calls before letting one trial call through.
+         */
+        private Duration openDuration;
+
+        /**
+         * Successful calls slower than this count as failures.
+         */
+        private Duration slowCallDuration;
+    }
+
+    @Data
+    public static class Hedge {
+
+        private boolean enabled = false;
+
+        /**
+         * Latency percentile of recent KB searches after which the hedge query is sent.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Never hedge earlier than this, however fast the backend usually is.
+         */
+        private Duration minDelay = Duration.ofMillis(50);
+
+        /**
+         * Successful searches needed before hedging starts.
+         */
+        private int minSamples = 50;
+
+        /**
+         * Recent searches the percentile is computed over.
+         */
+        private int windowSize = 200;
+
+        /**
+         * Worker threads running hedged searches (each hedged call uses two).
+         */
+        private int threads = 4;
+
+        /**
+         * Attempts that may wait for a worker; when full, searches are not hedged.
+         */
+        private int queueCapacity = 8;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.datalake.mrpot.controller;
 
 import com.example.datalake.mrpot.dao.KbDocumentRepository;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
 import com.example.datalake.mrpot.model.KbDocument;
 import com.example.datalake.mrpot.request.KbDocumentRequest;
 import com.example.datalake.mrpot.response.KbDocumentResponse;
@@ -13,6 +14,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -33,6 +35,7 @@ public class KbDocumentController {
 
     private final KbDocumentRepository repository;
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Operation(summary = "List all knowledge base documents")
     @GetMapping
@@ -55,6 +58,7 @@ public class KbDocumentController {
         KbDocument entity = new KbDocument();
         apply(request, entity);
         KbDocument saved = repository.save(entity);
+        eventPublisher.publishEvent(KbDocumentChangedEvent.created(saved));
         return ResponseEntity.status(HttpStatus.CREATED).body(toResponse(saved));
     }
 
@@ -66,7 +70,9 @@ public class KbDocumentController {
                 .findById(id)
                 .map(existing -> {
                     apply(request, existing);
-                    return ResponseEntity.ok(toResponse(repository.save(existing)));
+                    KbDocument saved = repository.save(existing);
+                    eventPublisher.publishEvent(KbDocumentChangedEvent.updated(saved));
+                    return ResponseEntity.ok(toResponse(saved));
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -78,6 +84,7 @@ public class KbDocumentController {
             return ResponseEntity.notFound().build();
         }
         repository.deleteById(id);
+        eventPublisher.publishEvent(KbDocumentChangedEvent.deleted(id));
         return ResponseEntity.noContent().build();
     }
 
@@ -1,10 +1,15 @@
 package com.example.datalake.mrpot.controller;
 
+import com.example.datalake.mrpot.model.AnswerDelta;
 import com.example.datalake.mrpot.model.Language;
+import com.example.datalake.mrpot.model.PipelineEvent;
 import com.example.datalake.mrpot.model.ProcessingContext;
 import com.example.datalake.mrpot.model.StepEvent;
 import com.example.datalake.mrpot.request.PrepareRequest;
 import com.example.datalake.mrpot.response.PrepareResponse;
+import com.example.datalake.mrpot.service.DeadlineExceededException;
+import com.example.datalake.mrpot.service.DependencyUnavailableException;
+import com.example.datalake.mrpot.service.LlmRateLimitedException;
 import com.example.datalake.mrpot.service.PromptPipeline;
 import com.example.datalake.mrpot.sse.ThinkingStep;
 import com.example.datalake.mrpot.sse.ThinkingStepsMapper;
@@ -15,6 +20,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
@@ -22,11 +30,11 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RestController
@@ -35,6 +43,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 @RequiredArgsConstructor
 public class PromptController {
 
+    // 客户端的时间预算，如 "5s"、"1500ms"，纯数字按毫秒；上限见 mrpot.deadline.max-budget
+    static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
     private final PromptPipeline promptPipeline;
     private final ThinkingStepsMapper thinkingStepsMapper;
 
@@ -45,11 +56,19 @@ public class PromptController {
             summary = "Prepare a session using the processing pipeline",
             description = "Runs the configured text processors on the payload and returns the resulting context."
     )
-    public Mono<ResponseEntity<PrepareResponse>> prepare(@RequestBody PrepareRequest req) {
+    public Mono<ResponseEntity<PrepareResponse>> prepare(@RequestBody PrepareRequest req,
+                                                         @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeout) {
+        req.setTimeout(parseTimeout(timeout));
         return promptPipeline.run(req)
                 .map(ctx -> ResponseEntity.ok(toResponse(ctx)))
                 .onErrorResume(RateLimitException.class, ex ->
-                        Mono.just(ResponseEntity.status(429).body(toRateLimitResponse(ex))))
+                        Mono.just(rateLimited(ex).body(toRateLimitResponse(ex))))
+                .onErrorResume(DependencyUnavailableException.class, ex ->
+                        Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(ex)))
+                                .body(toUnavailableResponse(ex))))
+                .onErrorResume(DeadlineExceededException.class, ex ->
+                        Mono.just(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(toDeadlineResponse(ex))))
                 .onErrorResume(ValidationException.class, ex ->
                         Mono.just(ResponseEntity.badRequest().body(toErrorResponse(ex))))
                 .onErrorResume(ex -> {
@@ -97,6 +116,7 @@ public class PromptController {
                 .tags(ctx.getTags() == null ? List.of() : ctx.getTags().stream().toList())
                 .entities(entities)
                 .steps(ctx.getSteps() == null ? List.of() : List.copyOf(ctx.getSteps()))
+                .totalDurationMs(ctx.getTotalDurationMs())
                 .notices(ctx.getValidationNotices() == null ? List.of() : List.copyOf(ctx.getValidationNotices()))
                 .errors(List.of())
                 .answer(ctx.getLlmAnswer())
@@ -121,7 +141,23 @@ public class PromptController {
                 .build();
     }
 
+    // 本地限流（LlmRateLimiter）知道多久后能重试，带上 Retry-After
+    private ResponseEntity.BodyBuilder rateLimited(RateLimitException ex) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        if (ex instanceof LlmRateLimitedException limited) {
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, limited.getRetryAfter().toSeconds())));
+        }
+        return builder;
+    }
+
     private PrepareResponse toRateLimitResponse(RateLimitException ex) {
+        if (ex instanceof LlmRateLimitedException limited) {
+            return PrepareResponse.builder()
+                    .notices(List.of())
+                    .errors(List.of("Too many questions right now. Please retry in "
+                            + Math.max(1, limited.getRetryAfter().toSeconds()) + "s."))
+                    .build();
+        }
         String detail = ex == null ? null : ex.getMessage();
         String message = (detail == null || detail.isBlank())
                 ? "OpenAI rate limit or quota was exceeded. Please try again later."
@@ -133,6 +169,40 @@ public class PromptController {
                 .build();
     }
 
+    // LLM 熔断打开：缓存没命中的问题暂时答不了，让客户端稍后重试
+    private PrepareResponse toUnavailableResponse(DependencyUnavailableException ex) {
+        return PrepareResponse.builder()
+                .notices(List.of())
+                .errors(List.of("The answer service is temporarily unavailable. Please retry in "
+                        + retryAfterSeconds(ex) + "s."))
+                .build();
+    }
+
+    private static long retryAfterSeconds(DependencyUnavailableException ex) {
+        return Math.max(1, ex.getRetryAfter().toSeconds());
+    }
+
+    private PrepareResponse toDeadlineResponse(DeadlineExceededException ex) {
+        return PrepareResponse.builder()
+                .notices(List.of())
+                .errors(List.of("The answer took longer than the " + ex.getBudget().toMillis()
+                        + "ms time budget. Please retry."))
+                .build();
+    }
+
+    // 格式不对就当没给（用默认预算），不因为一个可选头拒绝请求
+    private static Duration parseTimeout(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return DurationStyle.detectAndParse(header.strip());
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed {} header '{}'", TIMEOUT_HEADER, header);
+            return null;
+        }
+    }
+
     // ==================== 流式：按步骤输出 SSE ====================
 
     @Operation(
@@ -142,64 +212,24 @@ public class PromptController {
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<?>> stream(@RequestParam("q") String query,
                                            @RequestParam(value = "userId", required = false) String userId,
-                                           @RequestParam(value = "sessionId", required = false) String sessionId) {
+                                           @RequestParam(value = "sessionId", required = false) String sessionId,
+                                           @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeout) {
 
         PrepareRequest req = PrepareRequest.builder()
                 .query(query)
                 .userId(userId)
                 .sessionId(sessionId)
+                .timeout(parseTimeout(timeout))
                 .build();
 
-        return promptPipeline.runStreaming(req)
-                .transform(source -> {
-                    // replay: 复用同一个上游流，既用于 step-event，又用于最后一次 ctx → prepare-response
-                    var replayed = source.replay();
-
-                    // 记录“已经发送到第几个 step”
-                    AtomicInteger lastSentSize = new AtomicInteger(0);
-
-                    // 1) 对每个 ProcessingContext，只发送“新增的步骤”
-                    Flux<ServerSentEvent<?>> stepEvents = replayed
-                            .flatMap(ctx -> {
-                                List<ThinkingStep> steps = thinkingStepsMapper.toThinkingSteps(ctx);
-                                if (steps == null || steps.isEmpty()) {
-                                    return Flux.empty();
-                                }
-
-                                int from = lastSentSize.get();
-                                int total = steps.size();
-                                if (from >= total) {
-                                    // 没有新增步骤
-                                    return Flux.empty();
-                                }
-
-                                // 更新“已发送计数”
-                                lastSentSize.set(total);
-
-                                // 只发 [from, total) 这一段增量
-                                return Flux.fromIterable(steps.subList(from, total))
-                                        .map(this::toStepEvent);
-                            });
-
-                    // 2) 整条流结束后，拿最后一个 ctx → prepare-response
-                    Mono<ServerSentEvent<?>> responseEvent = replayed
-                            .last()
-                            .map(ctx -> ServerSentEvent.builder(toResponse(ctx))
-                                    .event("prepare-response")
-                                    .build());
-
-                    // 启动 replay
-                    replayed.connect();
-
-                    // 3) step-event 串起来 + 最后的 prepare-response + done
-                    return stepEvents
-                            .concatWith(responseEvent)
-                            .concatWith(Mono.just(
-                                    ServerSentEvent.builder("done")
-                                            .event("done")
-                                            .build()
-                            ));
-                })
+        // 每个 step 在写入 ctx 时推送一次，直接映射成 step-event；token → answer-delta；最后是 prepare-response
+        return promptPipeline.streamEvents(req)
+                .<ServerSentEvent<?>>map(this::toServerSentEvent)
+                .concatWith(Mono.just(
+                        ServerSentEvent.builder("done")
+                                .event("done")
+                                .build()
+                ))
                 .onErrorResume(RateLimitException.class, ex -> Flux.just(
                         ServerSentEvent.builder(toRateLimitResponse(ex))
                                 .event("error")
@@ -208,6 +238,22 @@ public class PromptController {
                                 .event("done")
                                 .build()
                 ))
+                .onErrorResume(DependencyUnavailableException.class, ex -> Flux.just(
+                        ServerSentEvent.builder(toUnavailableResponse(ex))
+                                .event("error")
+                                .build(),
+                        ServerSentEvent.builder("done")
+                                .event("done")
+                                .build()
+                ))
+                .onErrorResume(DeadlineExceededException.class, ex -> Flux.just(
+                        ServerSentEvent.builder(toDeadlineResponse(ex))
+                                .event("error")
+                                .build(),
+                        ServerSentEvent.builder("done")
+                                .event("done")
+                                .build()
+                ))
                 .onErrorResume(ValidationException.class, ex -> Flux.just(
                         ServerSentEvent.builder(toErrorResponse(ex))
                                 .event("error")
@@ -229,6 +275,30 @@ public class PromptController {
                 });
     }
 
+    private ServerSentEvent<?> toServerSentEvent(PipelineEvent event) {
+        if (event instanceof PipelineEvent.Step step) {
+            return toStepEvent(thinkingStepsMapper.toThinkingStep(step.context(), step.step(), step.index()));
+        }
+        if (event instanceof PipelineEvent.Token token) {
+            return toAnswerDeltaEvent(token.index(), token.text());
+        }
+        PipelineEvent.Completed completed = (PipelineEvent.Completed) event;
+        return ServerSentEvent.builder(toResponse(completed.context()))
+                .event("prepare-response")
+                .build();
+    }
+
+    private ServerSentEvent<AnswerDelta> toAnswerDeltaEvent(int index, String text) {
+        return ServerSentEvent.builder(
+                        AnswerDelta.builder()
+                                .index(index)
+                                .text(text)
+                                .build()
+                )
+                .event("answer-delta")
+                .build();
+    }
+
     // 把一个 ThinkingStep → StepEvent（SSE 数据）
     private ServerSentEvent<StepEvent> toStepEvent(ThinkingStep step) {
         return ServerSentEvent.builder(
@@ -236,6 +306,7 @@ public class PromptController {
                                 .step(step.getProcessor())   // internal name: e.g. "unified-clean-correct"
                                 .title(step.getTitle())      // human-readable title
                                 .note(step.getDetail())      // detail: normalized text / keywords / 搜索参考 等
+                                .durationMs(step.getDurationMs())
                                 .build()
                 )
                 .id(String.valueOf(step.getIndex())) // 用步骤序号当 id，方便前端去重/渲染
@@ -0,0 +1,42 @@
+package com.example.datalake.mrpot.dao;
+
+import com.example.datalake.mrpot.model.Deadline;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JdbcTemplate whose statements time out with the request: the query timeout of every statement is
+ * capped by what is left of {@link Deadline#current()} (JDBC timeouts are whole seconds, so rounded
+ * up). A statement issued after the deadline has passed is not sent at all.
+ *
+ * <p>Outside a pipeline stage there is no current deadline and the template behaves like a plain
+ * {@link JdbcTemplate} (including {@code spring.jdbc.template.query-timeout}).
+ */
+public class DeadlineAwareJdbcTemplate extends JdbcTemplate {
+
+    public DeadlineAwareJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        Deadline deadline = Deadline.current();
+        if (!deadline.isBounded()) {
+            return;
+        }
+        long remainingMs = deadline.remaining().toMillis();
+        if (remainingMs <= 0) {
+            throw new QueryTimeoutException("Request deadline passed before the statement was sent");
+        }
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (remainingMs + 999) / 1000);
+        int configured = stmt.getQueryTimeout();
+        if (configured == 0 || seconds < configured) {
+            stmt.setQueryTimeout(seconds);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.datalake.mrpot.dao;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KeywordsLexiconDao} served from an in-process {@link LexiconIndex}, so intent
+ * classification does not hit Postgres on the request path. The same rows are also compiled into an
+ * {@link IntentRuleIndex}, which makes this the {@link IntentRulesDao} as well.
+ *
+ * <p>The first load runs synchronously while the bean is created, so the web server never serves
+ * requests against an empty lexicon (which would classify everything as UNKNOWN). After that the
+ * index is refreshed in the background: rows with {@code updated_at} at or after the last
+ * seen watermark are merged into the local copy, and a cheap {@code count(*)} detects hard deletes
+ * (which triggers a full reload). Each refresh that changes anything builds new immutable indexes
+ * and publishes them with volatile writes. The published version, index size and refresh
+ * latency are exported as {@code mrpot.lexicon.*} metrics.
+ */
+@Slf4j
+@Primary
+@Repository
+@ConditionalOnProperty(name = "mrpot.lexicon.in-memory.enabled", havingValue = "true", matchIfMissing = true)
+public class InMemoryKeywordsLexiconDao implements KeywordsLexiconDao, IntentRulesDao, MeterBinder {
+
+    private static final String SELECT_COLUMNS = """
+            select canonical, synonyms, is_active, updated_at
+            from public.keywords_lexicon
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // canonical → 行快照（包含 inactive 行，便于和 count(*) 对账）
+    private final Map<String, LexiconIndex.Entry> rows = new LinkedHashMap<>();
+    private Timestamp watermark;
+
+    private volatile LexiconIndex index = LexiconIndex.empty();
+    private volatile IntentRuleIndex rules = IntentRuleIndex.empty();
+    private volatile long version;
+    private volatile MeterRegistry meterRegistry;
+
+    public InMemoryKeywordsLexiconDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Set<String> findCanonicalsByToken(String token) {
+        return index.findCanonicals(token);
+    }
+
+    @Override
+    public Set<String> findCanonicalsByTokens(Collection<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            return Set.of();
+        }
+
+        LexiconIndex current = index;
+        Set<String> results = new LinkedHashSet<>();
+        for (String token : tokens) {
+            results.addAll(current.findCanonicals(token));
+        }
+        return results;
+    }
+
+    @Override
+    public IntentRuleIndex compiledRules() {
+        return rules;
+    }
+
+    // 兼容旧接口：与 JdbcIntentRulesDao 一样按 ilike '%token%' 过滤，但查的是内存里的词典
+    @Override
+    public List<IntentRuleEntry> findActiveRulesByTokens(Iterable<String> tokens) {
+        LexiconIndex current = index;
+        Set<String> matched = new LinkedHashSet<>();
+        tokens.forEach(token -> matched.addAll(current.findCanonicals(token)));
+
+        List<IntentRuleEntry> entries = new ArrayList<>(matched.size());
+        for (LexiconIndex.Entry entry : current.entries()) {
+            if (matched.contains(entry.canonical().toLowerCase(Locale.ROOT))) {
+                entries.add(toRule(entry));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Current immutable snapshot of the index.
+     */
+    public LexiconIndex snapshot() {
+        return index;
+    }
+
+    /**
+     * 启动时同步加载一次；数据库不可用时只打 warn，交给后台刷新重试（watermark 仍为空 → 全量加载）。
+     */
+    @PostConstruct
+    public void load() {
+        refresh();
+    }
+
+    @Scheduled(
+            initialDelayString = "${mrpot.lexicon.initial-delay-ms:${mrpot.lexicon.refresh-interval-ms:30000}}",
+            fixedDelayString = "${mrpot.lexicon.refresh-interval-ms:30000}"
+    )
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        String outcome = "unchanged";
+        try {
+            boolean changed = watermark == null ? reloadAll() : applyDelta();
+            if (changed) {
+                LexiconIndex rebuilt = LexiconIndex.build(rows.values());
+                rules = IntentRuleIndex.build(rebuilt.entries().stream()
+                        .map(InMemoryKeywordsLexiconDao::toRule)
+                        .toList());
+                index = rebuilt;
+                version++;
+                outcome = "rebuilt";
+                log.info("[lexicon-index] Rebuilt keywords lexicon index v{}: {} active of {} rows, {} intent rules over {} terms",
+                        version, index.size(), rows.size(), rules.size(), rules.terms());
+            }
+        } catch (DataAccessException e) {
+            outcome = "failure";
+            log.warn("[lexicon-index] Failed to refresh keywords lexicon – {}", e.getMessage());
+        } finally {
+            recordRefresh(outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Number of index rebuilds published so far (0 = nothing loaded yet).
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("mrpot.lexicon.version", this, InMemoryKeywordsLexiconDao::version)
+                .description("Version of the keywords lexicon index currently served")
+                .register(registry);
+        Gauge.builder("mrpot.lexicon.size", this, dao -> dao.snapshot().size())
+                .description("Active canonicals in the keywords lexicon index")
+                .register(registry);
+        Gauge.builder("mrpot.lexicon.intent-rules", this, dao -> dao.compiledRules().size())
+                .description("Intent rules compiled from the keywords lexicon")
+                .register(registry);
+    }
+
+    private void recordRefresh(String outcome, long nanos) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("mrpot.lexicon.refresh")
+                .description("Time to sync the keywords lexicon from Postgres and rebuild the index")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private boolean reloadAll() {
+        Map<String, LexiconIndex.Entry> loaded = new LinkedHashMap<>();
+        Timestamp[] maxSeen = {null};
+        jdbcTemplate.query(SELECT_COLUMNS + " order by canonical", rs -> {
+            readRow(rs, loaded, maxSeen);
+        });
+
+        rows.clear();
+        rows.putAll(loaded);
+        watermark = maxSeen[0] == null ? new Timestamp(0L) : maxSeen[0];
+        return true;
+    }
+
+    private boolean applyDelta() {
+        Map<String, LexiconIndex.Entry> changed = new LinkedHashMap<>();
+        Timestamp[] maxSeen = {watermark};
+        // >= watermark：同一时间戳上晚提交的行也能被捡到，重复合并是幂等的
+        jdbcTemplate.query(SELECT_COLUMNS + " where updated_at >= ? order by canonical",
+                rs -> {
+                    readRow(rs, changed, maxSeen);
+                },
+                watermark);
+
+        boolean modified = false;
+        for (Map.Entry<String, LexiconIndex.Entry> e : changed.entrySet()) {
+            if (!e.getValue().equals(rows.put(e.getKey(), e.getValue()))) {
+                modified = true;
+            }
+        }
+        watermark = maxSeen[0];
+
+        Integer total = jdbcTemplate.queryForObject("select count(*) from public.keywords_lexicon", Integer.class);
+        if (total != null && total != rows.size()) {
+            log.debug("[lexicon-index] Row count drifted ({} local vs {} in db), reloading", rows.size(), total);
+            return reloadAll();
+        }
+        return modified;
+    }
+
+    private static IntentRuleEntry toRule(LexiconIndex.Entry entry) {
+        return new IntentRuleEntry(entry.canonical().toUpperCase(Locale.ROOT), entry.synonyms());
+    }
+
+    private static void readRow(ResultSet rs, Map<String, LexiconIndex.Entry> target, Timestamp[] maxSeen)
+            throws SQLException {
+        String canonical = rs.getString("canonical");
+        if (canonical == null || canonical.isBlank()) {
+            return;
+        }
+
+        List<String> synonyms = new ArrayList<>();
+        Array array = rs.getArray("synonyms");
+        if (array != null) {
+            Object raw = array.getArray();
+            if (raw instanceof String[] values) {
+                for (String value : values) {
+                    if (value != null && !value.isBlank()) {
+                        synonyms.add(value);
+                    }
+                }
+            }
+        }
+
+        target.put(canonical, new LexiconIndex.Entry(canonical, synonyms, rs.getBoolean("is_active")));
+
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        if (updatedAt != null && (maxSeen[0] == null || updatedAt.after(maxSeen[0]))) {
+            maxSeen[0] = updatedAt;
+        }
+    }
+}
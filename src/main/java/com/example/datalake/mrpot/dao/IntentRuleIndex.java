@@ -0,0 +1,176 @@
+package com.example.datalake.mrpot.dao;
+
+import com.example.datalake.mrpot.model.Intent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Intent rules compiled once into an immutable structure for request-time scoring.
+ *
+ * <p>Every rule is one {@code keywords_lexicon} row: its canonical and synonyms are the rule's
+ * {@code any} terms, each exact token hit scores +1, and the highest-scoring rule wins (ties go to the
+ * earlier rule). Terms are interned into a dictionary of int ids; an inverted list per term id holds
+ * the rules containing it (and how often), so scoring a request only visits rules sharing a token
+ * with it and allocates nothing per rule.
+ */
+public final class IntentRuleIndex {
+
+    private static final IntentRuleIndex EMPTY =
+            new IntentRuleIndex(Map.of(), new int[0][], new int[0][], new Intent[0], new String[0]);
+
+    // 词典：小写 term → term id
+    private final Map<String, Integer> termIds;
+    // term id → 含该 term 的规则 id（升序）及出现次数
+    private final int[][] postingRules;
+    private final int[][] postingWeights;
+    private final Intent[] intents;
+    private final String[] names;
+
+    private IntentRuleIndex(Map<String, Integer> termIds, int[][] postingRules, int[][] postingWeights,
+                            Intent[] intents, String[] names) {
+        this.termIds = termIds;
+        this.postingRules = postingRules;
+        this.postingWeights = postingWeights;
+        this.intents = intents;
+        this.names = names;
+    }
+
+    public static IntentRuleIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compile {@code entries} in order. The first entry of a canonical wins; a canonical that is not
+     * an {@link Intent} still matches but predicts {@link Intent#UNKNOWN}.
+     */
+    public static IntentRuleIndex build(Collection<IntentRulesDao.IntentRuleEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, IntentRulesDao.IntentRuleEntry> byCanonical = new LinkedHashMap<>();
+        for (IntentRulesDao.IntentRuleEntry entry : entries) {
+            if (entry == null || entry.canonical() == null || entry.canonical().isBlank()) {
+                continue;
+            }
+            byCanonical.putIfAbsent(entry.canonical().trim().toUpperCase(Locale.ROOT), entry);
+        }
+        if (byCanonical.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, Integer> termIds = new HashMap<>();
+        // term id → (rule id → 次数)，规则按编译顺序追加，所以天然升序
+        List<Map<Integer, Integer>> postings = new ArrayList<>();
+        Intent[] intents = new Intent[byCanonical.size()];
+        String[] names = new String[byCanonical.size()];
+
+        int rule = 0;
+        for (Map.Entry<String, IntentRulesDao.IntentRuleEntry> e : byCanonical.entrySet()) {
+            String canonical = e.getKey();
+            intents[rule] = intentOf(canonical);
+            names[rule] = canonical.toLowerCase(Locale.ROOT);
+
+            addTerm(termIds, postings, canonical, rule);
+            List<String> synonyms = e.getValue().synonyms();
+            if (synonyms != null) {
+                for (String synonym : synonyms) {
+                    addTerm(termIds, postings, synonym, rule);
+                }
+            }
+            rule++;
+        }
+
+        int[][] postingRules = new int[postings.size()][];
+        int[][] postingWeights = new int[postings.size()][];
+        for (int t = 0; t < postings.size(); t++) {
+            Map<Integer, Integer> posting = postings.get(t);
+            postingRules[t] = new int[posting.size()];
+            postingWeights[t] = new int[posting.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> p : posting.entrySet()) {
+                postingRules[t][i] = p.getKey();
+                postingWeights[t][i] = p.getValue();
+                i++;
+            }
+        }
+
+        return new IntentRuleIndex(Map.copyOf(termIds), postingRules, postingWeights, intents, names);
+    }
+
+    /** Number of compiled rules. */
+    public int size() {
+        return intents.length;
+    }
+
+    /** Distinct terms in the dictionary. */
+    public int terms() {
+        return postingRules.length;
+    }
+
+    /**
+     * Best rule for the given (lower-cased, distinct) tokens, or {@code null} when no rule shares a
+     * token with them.
+     */
+    public Match best(Collection<String> tokens) {
+        if (tokens == null || tokens.isEmpty() || intents.length == 0) {
+            return null;
+        }
+
+        int[] scores = null;
+        int bestRule = -1;
+        int bestScore = 0;
+        for (String token : tokens) {
+            Integer term = termIds.get(token);
+            if (term == null) {
+                continue;
+            }
+            if (scores == null) {
+                scores = new int[intents.length];
+            }
+            int[] rules = postingRules[term];
+            int[] weights = postingWeights[term];
+            for (int i = 0; i < rules.length; i++) {
+                int r = rules[i];
+                int score = scores[r] += weights[i];
+                if (score > bestScore || (score == bestScore && r < bestRule)) {
+                    bestScore = score;
+                    bestRule = r;
+                }
+            }
+        }
+        return bestRule < 0 ? null : new Match(intents[bestRule], names[bestRule], bestScore);
+    }
+
+    private static void addTerm(Map<String, Integer> termIds, List<Map<Integer, Integer>> postings,
+                                String value, int rule) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        Integer term = termIds.computeIfAbsent(value.toLowerCase(Locale.ROOT), k -> {
+            postings.add(new LinkedHashMap<>());
+            return postings.size() - 1;
+        });
+        postings.get(term).merge(rule, 1, Integer::sum);
+    }
+
+    private static Intent intentOf(String canonical) {
+        try {
+            return Intent.valueOf(canonical);
+        } catch (IllegalArgumentException ex) {
+            return Intent.UNKNOWN;
+        }
+    }
+
+    /**
+     * @param rule  debug name of the winning rule (its lower-cased canonical)
+     * @param score number of token hits
+     */
+    public record Match(Intent intent, String rule, int score) {}
+}
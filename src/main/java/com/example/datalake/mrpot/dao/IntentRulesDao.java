@@ -9,5 +9,13 @@ public interface IntentRulesDao {
      */
     List<IntentRuleEntry> findActiveRulesByTokens(Iterable<String> tokens);
 
+    /**
+     * All active rules, precompiled and kept up to date by the DAO, or {@code null} when this DAO can
+     * only answer per-request {@link #findActiveRulesByTokens} queries.
+     */
+    default IntentRuleIndex compiledRules() {
+        return null;
+    }
+
     record IntentRuleEntry(String canonical, List<String> synonyms) {}
 }
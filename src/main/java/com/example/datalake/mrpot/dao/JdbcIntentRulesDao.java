@@ -1,5 +1,8 @@
 package com.example.datalake.mrpot.dao;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
@@ -16,14 +19,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
-public class JdbcIntentRulesDao implements IntentRulesDao {
+public class JdbcIntentRulesDao implements IntentRulesDao, MeterBinder {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private volatile MeterRegistry meterRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
     @Override
     public List<IntentRuleEntry> findActiveRulesByTokens(Iterable<String> tokens) {
         Set<String> uniqueTokens = new HashSet<>();
@@ -55,6 +66,8 @@ public class JdbcIntentRulesDao implements IntentRulesDao {
         }
 
         Map<String, IntentRuleEntry> entries = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        String outcome = "success";
         try {
             jdbcTemplate.query(con -> {
                         Array patternArray = con.createArrayOf("text", patterns.toArray());
@@ -85,9 +98,25 @@ public class JdbcIntentRulesDao implements IntentRulesDao {
                                 new IntentRuleEntry(canonical.toUpperCase(Locale.ROOT), synonyms));
                     });
         } catch (DataAccessException e) {
+            outcome = "error";
             log.warn("[intent-classifier] Failed to query intent rules – {}", e.getMessage());
+        } finally {
+            recordQuery(outcome, System.nanoTime() - start);
         }
 
         return new ArrayList<>(entries.values());
     }
+
+    private void recordQuery(String outcome, long nanos) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("mrpot.dao.query")
+                .description("JDBC round trip of the lexicon / intent-rule DAOs")
+                .tag("dao", "intent-rules")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
 }
@@ -1,5 +1,8 @@
 package com.example.datalake.mrpot.dao;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
@@ -11,14 +14,22 @@ import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
-public class JdbcKeywordsLexiconDao implements KeywordsLexiconDao {
+public class JdbcKeywordsLexiconDao implements KeywordsLexiconDao, MeterBinder {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private volatile MeterRegistry meterRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
     @Override
     public Set<String> findCanonicalsByToken(String token) {
         if (token == null || token.isBlank()) {
@@ -57,6 +68,8 @@ public class JdbcKeywordsLexiconDao implements KeywordsLexiconDao {
                   )
                 """;
 
+        long start = System.nanoTime();
+        String outcome = "success";
         try {
             return new LinkedHashSet<>(jdbcTemplate.query(con -> {
                         Array patternArray = con.createArrayOf("text", patterns.toArray());
@@ -71,8 +84,24 @@ public class JdbcKeywordsLexiconDao implements KeywordsLexiconDao {
                     .map(v -> v.toLowerCase(Locale.ROOT))
                     .toList());
         } catch (DataAccessException e) {
+            outcome = "error";
             log.warn("[intent-classifier] Failed to query keywords lexicon – {}", e.getMessage());
             return Set.of();
+        } finally {
+            recordQuery(outcome, System.nanoTime() - start);
+        }
+    }
+
+    private void recordQuery(String outcome, long nanos) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
         }
+        Timer.builder("mrpot.dao.query")
+                .description("JDBC round trip of the lexicon / intent-rule DAOs")
+                .tag("dao", "keywords-lexicon")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
     }
 }
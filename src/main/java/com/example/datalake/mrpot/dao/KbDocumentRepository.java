@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -28,4 +30,9 @@ public interface KbDocumentRepository extends JpaRepository<KbDocument, Long> {
             @Param("q") String query,
             Pageable pageable
     );
+
+    /**
+     * 增量同步用：updated_at 不早于 watermark 的文档（含 watermark 本身，重复合并是幂等的）。
+     */
+    List<KbDocument> findByUpdatedAtGreaterThanEqual(Instant watermark);
 }
@@ -0,0 +1,222 @@
+package com.example.datalake.mrpot.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable in-process index over active {@code keywords_lexicon} rows.
+ *
+ * <p>Mirrors the SQL lookup {@code canonical ilike '%token%' or synonym ilike '%token%'}: every
+ * canonical/synonym is lower-cased and concatenated into one buffer, and a sorted suffix array over
+ * that buffer answers "which terms contain this token" with two binary searches plus a short scan.
+ * Wildcard characters in the token ({@code %}, {@code _}) are matched literally.
+ */
+public final class LexiconIndex {
+
+    private static final char TERM_SEPARATOR = '\u0000';
+    private static final LexiconIndex EMPTY = new LexiconIndex(List.of(), new char[0], new int[0], new int[0], new int[0]);
+
+    private final List<Entry> entries;
+    // 所有 term（canonical + synonyms）拼接后的字符缓冲区，term 之间以 \0 分隔
+    private final char[] buffer;
+    // 后缀数组：buffer 中每个 term 内位置，按后缀字典序排序
+    private final int[] suffixes;
+    // 每个 term 在 buffer 中的起始位置（升序），用于从后缀位置反查 term
+    private final int[] termStarts;
+    // term 下标 → entry 下标
+    private final int[] termOwners;
+
+    private LexiconIndex(List<Entry> entries, char[] buffer, int[] suffixes, int[] termStarts, int[] termOwners) {
+        this.entries = entries;
+        this.buffer = buffer;
+        this.suffixes = suffixes;
+        this.termStarts = termStarts;
+        this.termOwners = termOwners;
+    }
+
+    public static LexiconIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build an index over the given entries. Inactive entries are skipped; entry order is kept and
+     * drives the iteration order of lookup results.
+     */
+    public static LexiconIndex build(Collection<Entry> source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Entry> entries = new ArrayList<>(source.size());
+        List<String> terms = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        int totalChars = 0;
+
+        for (Entry entry : source) {
+            if (entry == null || !entry.active() || entry.canonical() == null || entry.canonical().isBlank()) {
+                continue;
+            }
+            int owner = entries.size();
+            entries.add(entry);
+
+            Set<String> entryTerms = new LinkedHashSet<>();
+            entryTerms.add(entry.canonical().toLowerCase(Locale.ROOT));
+            for (String synonym : entry.synonyms()) {
+                if (synonym != null && !synonym.isBlank()) {
+                    entryTerms.add(synonym.toLowerCase(Locale.ROOT));
+                }
+            }
+            for (String term : entryTerms) {
+                terms.add(term);
+                owners.add(owner);
+                totalChars += term.length() + 1;
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+
+        char[] buffer = new char[totalChars];
+        int[] termStarts = new int[terms.size()];
+        int[] termOwners = new int[terms.size()];
+        int suffixCount = 0;
+        int pos = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            termStarts[t] = pos;
+            termOwners[t] = owners.get(t);
+            term.getChars(0, term.length(), buffer, pos);
+            pos += term.length();
+            buffer[pos++] = TERM_SEPARATOR;
+            suffixCount += term.length();
+        }
+
+        Integer[] boxed = new Integer[suffixCount];
+        int s = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            if (buffer[i] != TERM_SEPARATOR) {
+                boxed[s++] = i;
+            }
+        }
+        Arrays.sort(boxed, (a, b) -> compareSuffixes(buffer, a, b));
+
+        int[] suffixes = new int[suffixCount];
+        for (int i = 0; i < suffixCount; i++) {
+            suffixes[i] = boxed[i];
+        }
+
+        return new LexiconIndex(List.copyOf(entries), buffer, suffixes, termStarts, termOwners);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Lower-cased canonicals whose canonical term or any synonym contains {@code token}.
+     */
+    public Set<String> findCanonicals(String token) {
+        if (token == null || token.isBlank() || suffixes.length == 0) {
+            return Set.of();
+        }
+
+        String needle = token.toLowerCase(Locale.ROOT);
+        int from = lowerBound(needle);
+        if (from >= suffixes.length || !startsWith(suffixes[from], needle)) {
+            return Set.of();
+        }
+
+        boolean[] matched = new boolean[entries.size()];
+        int matchCount = 0;
+        for (int i = from; i < suffixes.length && startsWith(suffixes[i], needle); i++) {
+            int owner = termOwners[termOf(suffixes[i])];
+            if (!matched[owner]) {
+                matched[owner] = true;
+                matchCount++;
+            }
+        }
+
+        Set<String> out = new LinkedHashSet<>(matchCount * 2);
+        for (int e = 0; e < matched.length; e++) {
+            if (matched[e]) {
+                out.add(entries.get(e).canonical().toLowerCase(Locale.ROOT));
+            }
+        }
+        return Collections.unmodifiableSet(out);
+    }
+
+    // 第一个「后缀 >= needle」的位置（按前缀比较）
+    private int lowerBound(String needle) {
+        int lo = 0;
+        int hi = suffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(suffixes[mid], needle) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int comparePrefix(int pos, String needle) {
+        for (int i = 0; i < needle.length(); i++) {
+            char c = buffer[pos + i];
+            if (c == TERM_SEPARATOR) {
+                return -1;
+            }
+            char n = needle.charAt(i);
+            if (c != n) {
+                return c < n ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private boolean startsWith(int pos, String needle) {
+        return comparePrefix(pos, needle) == 0;
+    }
+
+    private int termOf(int pos) {
+        int idx = Arrays.binarySearch(termStarts, pos);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    private static int compareSuffixes(char[] buffer, int a, int b) {
+        while (true) {
+            char ca = buffer[a];
+            char cb = buffer[b];
+            if (ca != cb) {
+                return Character.compare(ca, cb);
+            }
+            if (ca == TERM_SEPARATOR) {
+                return 0;
+            }
+            a++;
+            b++;
+        }
+    }
+
+    /**
+     * One lexicon row as loaded from {@code public.keywords_lexicon}.
+     */
+    public record Entry(String canonical, List<String> synonyms, boolean active) {
+        public Entry {
+            synonyms = synonyms == null
+                    ? List.of()
+                    : synonyms.stream().filter(s -> s != null && !s.isBlank()).toList();
+        }
+    }
+}
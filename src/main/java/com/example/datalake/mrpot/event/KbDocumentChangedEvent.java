@@ -0,0 +1,32 @@
+package com.example.datalake.mrpot.event;
+
+import com.example.datalake.mrpot.model.KbDocument;
+
+/**
+ * Published by the KB CRUD endpoints after a {@code kb_documents} row was written, so in-process
+ * caches and indexes derived from the knowledge base can refresh themselves.
+ *
+ * @param docId    id of the affected document
+ * @param document saved state, or {@code null} for {@link Type#DELETED}
+ * @param type     kind of change
+ */
+public record KbDocumentChangedEvent(Long docId, KbDocument document, Type type) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static KbDocumentChangedEvent created(KbDocument document) {
+        return new KbDocumentChangedEvent(document.getId(), document, Type.CREATED);
+    }
+
+    public static KbDocumentChangedEvent updated(KbDocument document) {
+        return new KbDocumentChangedEvent(document.getId(), document, Type.UPDATED);
+    }
+
+    public static KbDocumentChangedEvent deleted(Long docId) {
+        return new KbDocumentChangedEvent(docId, null, Type.DELETED);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.datalake.mrpot.model;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+/**
+ * One partial chunk of the LLM answer, sent as the {@code answer-delta} SSE event.
+ * Concatenating {@code text} of all deltas (ordered by {@code index}) yields the full answer.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true, fluent = false)
+public class AnswerDelta {
+  private int index;
+  private String text;
+}
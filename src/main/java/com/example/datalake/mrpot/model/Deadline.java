@@ -0,0 +1,84 @@
+package com.example.datalake.mrpot.model;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Absolute time budget of one request ({@link System#nanoTime()} based), carried on
+ * {@link ProcessingContext}. Stages ask for the {@link #remaining()} budget instead of using their own
+ * fixed timeouts.
+ *
+ * <p>Code that cannot see the context (JDBC statements deep inside a DAO) reads {@link #current()},
+ * which {@link #call(Supplier)} binds to the running thread for the duration of a stage.
+ */
+public final class Deadline {
+
+  /** No budget: never expires. */
+  public static final Deadline NONE = new Deadline(Long.MAX_VALUE, null);
+
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+  private final Duration budget;
+  private final boolean bounded;
+
+  private Deadline(long deadlineNanos, Duration budget) {
+    this.deadlineNanos = deadlineNanos;
+    this.budget = budget;
+    this.bounded = budget != null;
+  }
+
+  public static Deadline after(Duration budget) {
+    Duration positive = budget.isNegative() ? Duration.ZERO : budget;
+    return new Deadline(System.nanoTime() + positive.toNanos(), positive);
+  }
+
+  /** Deadline bound to this thread by {@link #call(Supplier)}, or {@link #NONE}. */
+  public static Deadline current() {
+    Deadline deadline = CURRENT.get();
+    return deadline == null ? NONE : deadline;
+  }
+
+  public boolean isBounded() {
+    return bounded;
+  }
+
+  /** Total budget the deadline was created with; {@link Duration#ZERO} when unbounded. */
+  public Duration budget() {
+    return bounded ? budget : Duration.ZERO;
+  }
+
+  /** Budget left, never negative; unbounded deadlines report a year. */
+  public Duration remaining() {
+    return bounded ? Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())) : Duration.ofDays(365);
+  }
+
+  public boolean isExpired() {
+    return bounded && deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /** Is at least {@code budget} left? Always true for unbounded deadlines. */
+  public boolean hasAtLeast(Duration budget) {
+    return !bounded || deadlineNanos - System.nanoTime() >= budget.toNanos();
+  }
+
+  /** Run {@code body} with this deadline as {@link #current()} on the calling thread. */
+  public <T> T call(Supplier<T> body) {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return body.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return bounded ? "Deadline[remaining=" + remaining().toMillis() + "ms]" : "Deadline[none]";
+  }
+}
@@ -2,6 +2,9 @@ package com.example.datalake.mrpot.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 @Entity
 @Table(name = "kb_documents", schema = "public")
@@ -24,4 +27,12 @@ public class KbDocument {
      */
     @Column(name = "metadata", columnDefinition = "jsonb")
     private String metadata;
+
+    /**
+     * 最后写入时间；进程内索引（Bm25KbSearchService）按它做增量同步。
+     * JPA 写入由 @UpdateTimestamp 维护，直接写 SQL 的由 db/kb_documents_updated_at.sql 的 trigger 维护。
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
 }
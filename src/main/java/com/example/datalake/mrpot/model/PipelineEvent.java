@@ -0,0 +1,18 @@
+package com.example.datalake.mrpot.model;
+
+/**
+ * What {@code PromptPipeline.streamEvents} pushes to the SSE endpoint, in order: every {@link StepLog}
+ * exactly once as it is appended to the context, answer tokens while the LLM streams, and the
+ * finished context last.
+ */
+public sealed interface PipelineEvent {
+
+  /** A step just appended; {@code index} is its 1-based position in {@link ProcessingContext#getSteps()}. */
+  record Step(int index, StepLog step, ProcessingContext context) implements PipelineEvent {}
+
+  /** One partial answer token from the streaming model; {@code index} is 0-based. */
+  record Token(int index, String text) implements PipelineEvent {}
+
+  /** The pipeline finished; always the last event of a successful run. */
+  record Completed(ProcessingContext context) implements PipelineEvent {}
+}
@@ -1,18 +1,29 @@
 package com.example.datalake.mrpot.model;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.ObjIntConsumer;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Accessors(chain = true, fluent = false)
 public class ProcessingContext {
+  // 互不依赖的 stage 会在不同线程上并发读写同一个 context（SSE 也在旁边读），所以集合字段都是线程安全的：
+  // 列表 / tags 用 copy-on-write（遍历拿快照，不会 ConcurrentModificationException），map 用同步包装；
+  // setter 传进来的普通集合也会被复制成同样的实现
   // input
   private String userId;
   private String sessionId;
@@ -22,15 +33,15 @@ public class ProcessingContext {
   private String normalized;
   private Language language = Language.und();
   private Intent intent = Intent.UNKNOWN;
-  private Set<String> tags = new LinkedHashSet<>();
-  private Map<String, List<String>> entities = new LinkedHashMap<>();
+  private Set<String> tags = new CopyOnWriteArraySet<>();
+  private Map<String, List<String>> entities = Collections.synchronizedMap(new LinkedHashMap<>());
 
   private String corrected;
-  private Map<String, List<String>> outline = new LinkedHashMap<>();
+  private Map<String, List<String>> outline = Collections.synchronizedMap(new LinkedHashMap<>());
   private double changeRatio;
 
   // derived features
-  private List<String> keywords = new ArrayList<>();
+  private List<String> keywords = new CopyOnWriteArrayList<>();
 
   // Language
   private String indexText;
@@ -49,9 +60,22 @@ public class ProcessingContext {
   private int charLimit = 8000; // simple guard
   private Instant now = Instant.now();
 
+  // 单调时钟起点，step 的 startMs 以它为 0；totalDurationMs 在 pipeline 结束时写入
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private transient long startNanos = System.nanoTime();
+  private Double totalDurationMs;
+
+  // 请求级时间预算（配置默认值或 X-Request-Timeout 头），各阶段只用剩余部分
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private transient Deadline deadline = Deadline.NONE;
+
   // audit trail
-  private List<StepLog> steps = new ArrayList<>();
-  private List<String> validationNotices = new ArrayList<>();
+  private List<StepLog> steps = new CopyOnWriteArrayList<>();
+  private List<String> validationNotices = new CopyOnWriteArrayList<>();
 
   // caching + short-circuit controls
   private String cacheKey;
@@ -67,10 +91,159 @@ public class ProcessingContext {
     /**
      * Optional: ids of kb_documents used as context, for debugging / UI.
      */
-    private List<Long> llmDocIds = new ArrayList<>();
+    private List<Long> llmDocIds = new CopyOnWriteArrayList<>();
+
+  // 并发阶段写的 step 先暂存在这里，由 PromptPipeline 按阶段顺序提交到 steps
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private transient List<StepLog> heldSteps;
+
+  // SSE 推送：每个 step 进入 steps 时回调一次（step, 0-based 下标）
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private transient ObjIntConsumer<StepLog> stepListener;
+
+  public ProcessingContext setTags(Set<String> tags) {
+    this.tags = tags == null ? null : new CopyOnWriteArraySet<>(tags);
+    return this;
+  }
+
+  public ProcessingContext setEntities(Map<String, List<String>> entities) {
+    this.entities = entities == null ? null : Collections.synchronizedMap(new LinkedHashMap<>(entities));
+    return this;
+  }
+
+  public ProcessingContext setOutline(Map<String, List<String>> outline) {
+    this.outline = outline == null ? null : Collections.synchronizedMap(new LinkedHashMap<>(outline));
+    return this;
+  }
+
+  public ProcessingContext setKeywords(List<String> keywords) {
+    this.keywords = keywords == null ? null : new CopyOnWriteArrayList<>(keywords);
+    return this;
+  }
+
+  public synchronized ProcessingContext setSteps(List<StepLog> steps) {
+    this.steps = steps == null ? null : new CopyOnWriteArrayList<>(steps);
+    return this;
+  }
+
+  public ProcessingContext setValidationNotices(List<String> validationNotices) {
+    this.validationNotices = validationNotices == null ? null : new CopyOnWriteArrayList<>(validationNotices);
+    return this;
+  }
+
+  public ProcessingContext setLlmDocIds(List<Long> llmDocIds) {
+    this.llmDocIds = llmDocIds == null ? null : new CopyOnWriteArrayList<>(llmDocIds);
+    return this;
+  }
 
-  public ProcessingContext addStep(String name, String note) {
-    steps.add(new StepLog().setName(name).setNote(note).setAt(Instant.now()));
+  public synchronized ProcessingContext addStep(String name, String note) {
+    StepLog step = new StepLog().setName(name).setNote(note).setAt(Instant.now());
+    if (heldSteps != null) {
+      heldSteps.add(step);
+    } else {
+      publish(step);
+    }
     return this;
   }
+
+  /**
+   * Push every step to {@code listener} exactly once, in {@link #getSteps()} order, at the moment it
+   * is appended there (held steps when they are committed). Steps already present are replayed first.
+   */
+  public synchronized void onStep(ObjIntConsumer<StepLog> listener) {
+    this.stepListener = listener;
+    for (int i = 0; i < steps.size(); i++) {
+      listener.accept(steps.get(i), i);
+    }
+  }
+
+  /**
+   * From now on new steps are held back until {@link #commitSteps(String)}, so stages running
+   * concurrently cannot interleave their entries in {@link #getSteps()}.
+   */
+  public synchronized void holdSteps() {
+    if (heldSteps == null) {
+      heldSteps = new ArrayList<>();
+    }
+  }
+
+  /** Move the held steps named {@code name} (in the order they were added) to {@link #getSteps()}. */
+  public synchronized void commitSteps(String name) {
+    if (heldSteps == null) {
+      return;
+    }
+    Iterator<StepLog> it = heldSteps.iterator();
+    while (it.hasNext()) {
+      StepLog step = it.next();
+      if (Objects.equals(step.getName(), name)) {
+        publish(step);
+        it.remove();
+      }
+    }
+  }
+
+  /** Note of the most recent step named {@code name} (held or committed), or null. */
+  public synchronized String lastStepNote(String name) {
+    String note = heldSteps == null ? null : lastNote(heldSteps, name);
+    return note != null ? note : lastNote(steps, name);
+  }
+
+  /**
+   * Stamp the not-yet-timed steps named {@code name} with the stage's monotonic start / end
+   * ({@link System#nanoTime()}); the start is stored relative to this context's creation.
+   */
+  public synchronized void timeSteps(String name, long stageStartNanos, long stageEndNanos) {
+    Double startMs = toMillis(stageStartNanos - startNanos);
+    Double durationMs = toMillis(stageEndNanos - stageStartNanos);
+    for (List<StepLog> list : heldSteps == null ? List.of(steps) : List.of(heldSteps, steps)) {
+      for (StepLog step : list) {
+        if (step.getDurationMs() == null && Objects.equals(step.getName(), name)) {
+          step.setStartMs(startMs).setDurationMs(durationMs);
+        }
+      }
+    }
+  }
+
+  /** Record the wall time since this context was created as {@link #getTotalDurationMs()}. */
+  public ProcessingContext finish() {
+    this.totalDurationMs = toMillis(System.nanoTime() - startNanos);
+    return this;
+  }
+
+  /** Append whatever is still held and go back to adding steps directly. */
+  public synchronized void releaseSteps() {
+    if (heldSteps != null) {
+      List<StepLog> remaining = heldSteps;
+      heldSteps = null;
+      remaining.forEach(this::publish);
+    }
+  }
+
+  private void publish(StepLog step) {
+    steps.add(step);
+    if (stepListener != null) {
+      stepListener.accept(step, steps.size() - 1);
+    }
+  }
+
+  // 毫秒，保留 3 位小数（微秒级）
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1_000.0) / 1_000.0;
+  }
+
+  private static String lastNote(List<StepLog> list, String name) {
+    for (int i = list.size() - 1; i >= 0; i--) {
+      StepLog step = list.get(i);
+      if (Objects.equals(step.getName(), name)) {
+        return step.getNote();
+      }
+    }
+    return null;
+  }
 }
@@ -12,4 +12,5 @@ public class StepEvent {
   private String step;
   private String title;
   private String note;
+  private Double durationMs; // null = 未计时
 }
@@ -14,4 +14,12 @@ public class StepLog {
   private String name;
   private String note;
   private Instant at;
+
+  // 阶段耗时（System.nanoTime 测得，毫秒）；startMs 是相对 pipeline 开始的偏移。未计时的 step 为 null
+  private Double startMs;
+  private Double durationMs;
+
+  public StepLog(String name, String note, Instant at) {
+    this(name, note, at, null, null);
+  }
 }
@@ -0,0 +1,86 @@
+package com.example.datalake.mrpot.processor;
+
+import com.example.datalake.mrpot.util.AhoCorasick;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Canned replies loaded from {@code common_replies.json}, with every trigger word/phrase of every
+ * reply compiled into one {@link AhoCorasick} automaton.
+ *
+ * <p>{@link #find} scans the text once and returns, among the replies of the requested language, the
+ * first one (file order) that has a hit.
+ */
+final class CommonReplyTable {
+
+  static final String KIND_GREETING = "greeting";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final List<Reply> replies;
+  private final AhoCorasick<Integer> matcher;
+
+  private CommonReplyTable(List<Reply> replies) {
+    this.replies = replies;
+    AhoCorasick.Builder<Integer> builder = AhoCorasick.<Integer>builder().ignoreCase(true);
+    for (int i = 0; i < replies.size(); i++) {
+      Reply reply = replies.get(i);
+      for (String word : reply.words()) builder.addWord(word, i);
+      for (String phrase : reply.phrases()) builder.add(phrase, i);
+    }
+    this.matcher = builder.build();
+  }
+
+  static CommonReplyTable load(InputStream in) throws IOException {
+    ReplyFile file = MAPPER.readValue(in, ReplyFile.class);
+    List<Reply> replies = file.replies() == null ? List.of() : file.replies().stream()
+        .map(r -> new Reply(r.id(), r.language(), r.kind(), r.message(),
+            r.words() == null ? List.of() : r.words(),
+            r.phrases() == null ? List.of() : r.phrases()))
+        .toList();
+    return new CommonReplyTable(replies);
+  }
+
+  static CommonReplyTable classpathDefault() {
+    try (InputStream in = CommonReplyTable.class.getResourceAsStream("/common_replies.json")) {
+      if (in == null) {
+        throw new IllegalStateException("common_replies.json not found on the classpath");
+      }
+      return load(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  int size() {
+    return replies.size();
+  }
+
+  /**
+   * @param greeting the intent is already known to be a greeting: return the language's greeting
+   *                 reply without looking at the text
+   */
+  Reply find(String text, String language, boolean greeting) {
+    Set<Integer> hits = greeting ? Set.of() : matcher.matchValues(text);
+    for (int i = 0; i < replies.size(); i++) {
+      Reply reply = replies.get(i);
+      if (!language.equals(reply.language())) continue;
+      if (greeting ? KIND_GREETING.equals(reply.kind()) : hits.contains(i)) {
+        return reply;
+      }
+    }
+    return null;
+  }
+
+  record Reply(String id, String language, String kind, String message,
+               List<String> words, List<String> phrases) {}
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  record ReplyFile(List<Reply> replies) {}
+}
@@ -0,0 +1,33 @@
+package com.example.datalake.mrpot.processor;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Groups of {@code ProcessingContext} fields a stage reads or writes; {@code PromptPipeline} derives
+ * the stage dependency graph from these declarations (see {@link TextProcessor#inputs()}).
+ */
+public enum ContextField {
+  /** rawInput, userId, sessionId, charLimit – set from the request, never written by stages. */
+  RAW_INPUT,
+  /** normalized, corrected, outline, changeRatio. */
+  NORMALIZED,
+  /** language, indexLanguage, indexText. */
+  LANGUAGE,
+  INTENT,
+  TAGS,
+  KEYWORDS,
+  TEMPLATE,
+  COMMON_RESPONSE,
+  /** cacheKey, cacheHit, cacheFrequency. */
+  CACHE,
+  SYSTEM_PROMPT,
+  USER_PROMPT,
+  FINAL_PROMPT,
+  /** kbContext, llmDocIds, kbSnippetCount, llmQuestion. */
+  KB_CONTEXT;
+
+  /** Everything; the default for stages that do not declare their fields. */
+  public static final Set<ContextField> ALL = Collections.unmodifiableSet(EnumSet.allOf(ContextField.class));
+}
@@ -3,17 +3,16 @@ package com.example.datalake.mrpot.processor;
 import com.example.datalake.mrpot.model.Intent;
 import com.example.datalake.mrpot.model.ProcessingContext;
 import com.example.datalake.mrpot.model.PromptTemplate;
+import com.example.datalake.mrpot.dao.IntentRuleIndex;
 import com.example.datalake.mrpot.dao.KeywordsLexiconDao;
 import com.example.datalake.mrpot.dao.IntentRulesDao;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.example.datalake.mrpot.util.TextTokenizer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -22,10 +21,6 @@ public class IntentClassifierProcessor implements TextProcessor {
 
     private static final String NAME = "intent-classifier";
 
-    // 英文/数字 token + 连续的汉字串
-    private static final Pattern TOKENIZER =
-            Pattern.compile("([a-z0-9+.#-]+)|([\\p{IsHan}]+)");
-
     // 检测是否包含汉字
     private static final Pattern HAN_CHAR = Pattern.compile("[\\p{IsHan}]");
 
@@ -60,13 +55,21 @@ public class IntentClassifierProcessor implements TextProcessor {
     private final KeywordsLexiconDao keywordsLexiconDao;
     private final IntentRulesDao intentRulesDao;
 
-    // 模板查找器（这里给一个内存版 demo，将来可替换成 ES / DB 查询）
-    private final TemplateFinder templateFinder = new InMemoryTemplateFinder();
+    // 模板查找器：按 意图 + 语言 精确查 PromptTemplateRegistry 当前的快照（支持热加载）
+    private final TemplateFinder templateFinder;
 
+    @Autowired
     public IntentClassifierProcessor(KeywordsLexiconDao keywordsLexiconDao,
-                                     IntentRulesDao intentRulesDao) {
+                                     IntentRulesDao intentRulesDao,
+                                     PromptTemplateRegistry templateRegistry) {
         this.keywordsLexiconDao = keywordsLexiconDao;
         this.intentRulesDao = intentRulesDao;
+        this.templateFinder = (intent, lang) -> templateRegistry.current().find(intent, lang);
+    }
+
+    public IntentClassifierProcessor(KeywordsLexiconDao keywordsLexiconDao,
+                                     IntentRulesDao intentRulesDao) {
+        this(keywordsLexiconDao, intentRulesDao, PromptTemplateRegistry.classpathDefault());
     }
 
     @Override
@@ -74,6 +77,26 @@ public class IntentClassifierProcessor implements TextProcessor {
         return NAME;
     }
 
+    @Override
+    public Set<ContextField> inputs() {
+        return EnumSet.of(ContextField.NORMALIZED, ContextField.LANGUAGE, ContextField.TAGS);
+    }
+
+    @Override
+    public Set<ContextField> outputs() {
+        return EnumSet.of(ContextField.INTENT, ContextField.TAGS, ContextField.KEYWORDS,
+                ContextField.TEMPLATE);
+    }
+
+    // in-memory 词典（@Primary，同时提供词典和编译好的 intent 规则）在时整段分类都是内存计算：放 cpu 池，
+    // deadline 快到时也不会被 skip-deadline 跳过；关掉之后词典 / 规则都走 JDBC，放到 db 线程池
+    @Override
+    public StageResource resource() {
+        return intentRulesDao != null && intentRulesDao.compiledRules() != null
+                ? StageResource.CPU
+                : StageResource.DB;
+    }
+
     @Override
     public Mono<ProcessingContext> process(ProcessingContext ctx) {
         // 这里按你的 pipeline 设计：优先用 indexText（经过清洗 + 翻译后的英文）
@@ -106,47 +129,16 @@ public class IntentClassifierProcessor implements TextProcessor {
         // 3）规则打分，选出最佳意图
         Intent predicted = Intent.UNKNOWN;
         String matchedRule = null;
-        int bestScore = Integer.MIN_VALUE;
 
         // 内置一个 greeting 特例，避免简单问好也走复杂规则
         if (isGreetingText(text)) {
             predicted = Intent.GREETING;
             matchedRule = "builtin:greeting";
-        } else {
-            List<Rule> rules = loadRules(tokenSet);
-            for (Rule r : rules) {
-                int score = 0;
-
-                // any 命中 +1
-                for (String kw : r.any) {
-                    if (hit(kw, tokenSet)) score += 1;
-                }
-
-                // all 全部命中，额外 +2
-                boolean allOk = true;
-                for (String kw : r.all) {
-                    if (!hit(kw, tokenSet)) {
-                        allOk = false;
-                        break;
-                    }
-                }
-                if (allOk && !r.all.isEmpty()) score += 2;
-
-                // none 命中则 -2
-                for (String kw : r.none) {
-                    if (hit(kw, tokenSet)) score -= 2;
-                }
-
-                // tag 命中加分
-                for (String t : r.tagsBoost) {
-                    if (tags.contains(t)) score += 1;
-                }
-
-                if (score > bestScore && score >= r.minScore) {
-                    bestScore = score;
-                    predicted = r.intent;
-                    matchedRule = r.debugName;
-                }
+        } else if (!tokenSet.isEmpty()) {
+            IntentRuleIndex.Match match = compiledRules(tokenSet).best(tokenSet);
+            if (match != null) {
+                predicted = match.intent();
+                matchedRule = match.rule();
             }
         }
 
@@ -155,7 +147,7 @@ public class IntentClassifierProcessor implements TextProcessor {
         tags.add("intent:" + predicted.name().toLowerCase(Locale.ROOT));
         ctx.setTags(tags);
 
-        // 5）可选：按 意图 + 语言 查找 prompt 模板（目前是内存 demo，可替换为 ES）
+        // 5）可选：按 意图 + 语言 查找 prompt 模板（来自 PromptTemplateRegistry）
         Optional<PromptTemplate> tpl = templateFinder.findTopByIntentAndLanguage(
                 predicted.name().toLowerCase(Locale.ROOT),
                 Optional.ofNullable(ctx.getIndexLanguage()).orElse("en")
@@ -173,77 +165,9 @@ public class IntentClassifierProcessor implements TextProcessor {
         return Mono.just(ctx);
     }
 
-    // ----------------------------------------------------
-    // 分词逻辑：英文单词 + 汉字串 + 汉字 uni/bi/tri-gram
-    // ----------------------------------------------------
+    // 分词逻辑见 TextTokenizer（KB 的 BM25 索引复用同一套切分）
     private List<String> tokenize(String raw) {
-        if (raw == null || raw.isBlank()) {
-            return List.of();
-        }
-
-        String text = raw.toLowerCase(Locale.ROOT);
-        Matcher m = TOKENIZER.matcher(text);
-
-        List<String> words = new ArrayList<>();         // 英文/数字 token + 整段汉字串
-        List<String> hanCharNgrams = new ArrayList<>(); // 汉字 uni/bi/tri-gram
-        boolean matched = false;
-
-        while (m.find()) {
-            matched = true;
-            String latin = m.group(1);
-            String han = m.group(2);
-
-            if (latin != null) {
-                words.add(latin);
-            } else if (han != null) {
-                // 整段汉字串作为一个 token
-                words.add(han);
-                // 单字
-                for (int i = 0; i < han.length(); i++) {
-                    hanCharNgrams.add(han.substring(i, i + 1));
-                }
-                // bigram
-                for (int i = 0; i + 1 < han.length(); i++) {
-                    hanCharNgrams.add(han.substring(i, i + 2));
-                }
-                // trigram：例如 "芝加" + "加哥" → "芝加哥"
-                for (int i = 0; i + 2 < han.length(); i++) {
-                    hanCharNgrams.add(han.substring(i, i + 3));
-                }
-            }
-        }
-
-        // 如果完全没有匹配到（例如只有标点），做一个兜底
-        if (!matched) {
-            if (HAN_CHAR.matcher(text).find()) {
-                // 如果包含汉字，退化为「逐字」切分
-                for (int i = 0; i < text.length(); i++) {
-                    char c = text.charAt(i);
-                    String s = String.valueOf(c).trim();
-                    if (!s.isEmpty() && HAN_CHAR.matcher(s).find()) {
-                        words.add(s);
-                    }
-                }
-            } else {
-                // 否则按空格简单拆分英文
-                for (String part : text.split("\\s+")) {
-                    if (!part.isBlank()) {
-                        words.add(part);
-                    }
-                }
-            }
-        }
-
-        // 添加跨词 bigram，例如 "sign in", "credit card" 之类
-        List<String> tokens = new ArrayList<>(words.size() * 2 + hanCharNgrams.size());
-        tokens.addAll(words);
-        for (int i = 1; i < words.size(); i++) {
-            tokens.add(words.get(i - 1) + " " + words.get(i));
-        }
-        // 再加上汉字 uni/bi/tri-gram
-        tokens.addAll(hanCharNgrams);
-
-        return tokens;
+        return TextTokenizer.tokenize(raw);
     }
 
     private void addCanonicalTags(Set<String> tokenSet, Set<String> tags) {
@@ -256,10 +180,6 @@ public class IntentClassifierProcessor implements TextProcessor {
         }
     }
 
-    private boolean hit(String kw, Set<String> tokenSet) {
-        return tokenSet.contains(kw);
-    }
-
     // 判断是否是简单的 greeting 文本
     private boolean isGreetingText(String text) {
         if (text == null) {
@@ -478,162 +398,28 @@ public class IntentClassifierProcessor implements TextProcessor {
     }
 
     // ----------------------------------------------------
-    // 规则 & 词典加载
+    // 规则
     // ----------------------------------------------------
-    private List<Rule> loadRules(Set<String> tokenSet) {
-        if (intentRulesDao == null || tokenSet.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        List<RuleJson> ruleJsons = new ArrayList<>();
-        for (IntentRulesDao.IntentRuleEntry entry : intentRulesDao.findActiveRulesByTokens(tokenSet)) {
-            if (entry == null) {
-                continue;
-            }
-
-            String canonical = Optional.ofNullable(entry.canonical())
-                    .map(s -> s.trim().toUpperCase(Locale.ROOT))
-                    .orElse(null);
-            if (canonical == null || canonical.isBlank()) {
-                continue;
-            }
-
-            List<String> any = new ArrayList<>();
-            addLower(any, canonical);
-            if (entry.synonyms() != null) {
-                for (String s : entry.synonyms()) {
-                    addLower(any, s);
-                }
-            }
-
-            if (any.isEmpty()) {
-                continue;
-            }
-
-            RuleJson rj = new RuleJson();
-            rj.intent = canonical;
-            rj.minScore = 1;
-            rj.any = any;
-            rj.all = List.of();
-            rj.none = List.of();
-            rj.tagsBoost = List.of();
-            rj.name = canonical.toLowerCase(Locale.ROOT);
-            ruleJsons.add(rj);
-        }
-
-        RuleBundle bundle = new RuleBundle();
-        bundle.rules = ruleJsons;
-        return toRules(bundle);
-    }
-
-    private static void addLower(Set<String> set, String s) {
-        if (s != null && !s.isBlank()) {
-            set.add(s.toLowerCase(Locale.ROOT));
-        }
-    }
 
-    private static void addLower(List<String> list, String value) {
-        if (value != null && !value.isBlank()) {
-            list.add(value.toLowerCase(Locale.ROOT));
+    /**
+     * 词典 DAO 维护的预编译规则（词典变化时重建，请求路径上不查库、不建规则对象）；
+     * 只能按 token 查询的 DAO（关掉 in-memory 词典时的 JDBC 实现）退回到按本次 token 查询后现编译。
+     */
+    private IntentRuleIndex compiledRules(Set<String> tokenSet) {
+        if (intentRulesDao == null) {
+            return IntentRuleIndex.empty();
         }
-    }
-
-    private List<Rule> toRules(RuleBundle bundle) {
-        if (bundle == null || bundle.rules == null) return Collections.emptyList();
-        List<Rule> rs = new ArrayList<>(bundle.rules.size());
-        for (RuleJson rj : bundle.rules) {
-            String intentName = (rj.intent == null)
-                    ? "OTHER"
-                    : rj.intent.trim().toUpperCase(Locale.ROOT);
-            Intent intent;
-            try {
-                intent = Intent.valueOf(intentName);
-            } catch (IllegalArgumentException ex) {
-                intent = Intent.UNKNOWN;
-            }
-            rs.add(new Rule(
-                    intent,
-                    (rj.minScore == null ? 1 : rj.minScore),
-                    toLowerList(rj.any),
-                    toLowerList(rj.all),
-                    toLowerList(rj.none),
-                    toLowerList(rj.tagsBoost),
-                    (rj.name != null && !rj.name.isBlank()) ? rj.name : intent.name()
-            ));
+        IntentRuleIndex compiled = intentRulesDao.compiledRules();
+        if (compiled != null) {
+            return compiled;
         }
-        log.info("[{}] Loaded {} intent rules", NAME, rs.size());
-        return rs;
-    }
-
-    private static List<String> toLowerList(List<String> in) {
-        if (in == null) return List.of();
-        List<String> out = new ArrayList<>(in.size());
-        for (String s : in) {
-            if (s != null && !s.isBlank()) {
-                out.add(s.toLowerCase(Locale.ROOT));
-            }
-        }
-        return out;
-    }
-
-    // ---------------- JSON 映射类 ----------------
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    static class RuleBundle {
-        public List<RuleJson> rules;
-    }
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    static class RuleJson {
-        public String name;       // 规则调试名，可选
-        public String intent;     // 例如 "LOGIN"
-        public Integer minScore;  // 默认 1
-        public List<String> any;
-        public List<String> all;
-        public List<String> none;
-        public List<String> tagsBoost;
-    }
-
-    // 内部规则结构（运行时用这个）
-    @Data
-    @AllArgsConstructor
-    private static class Rule {
-        final Intent intent;
-        final int minScore;
-        final List<String> any;
-        final List<String> all;
-        final List<String> none;
-        final List<String> tagsBoost;
-        final String debugName;
+        return IntentRuleIndex.build(intentRulesDao.findActiveRulesByTokens(tokenSet));
     }
 
     // ----------------------------------------------------
-    // 模板查找（这里是 demo，可以将来替换为 ES / DB 实现）
+    // 模板查找
     // ----------------------------------------------------
     interface TemplateFinder {
         Optional<PromptTemplate> findTopByIntentAndLanguage(String intent, String lang);
     }
-
-    /**
-     * 内存版模板查找器：
-     * - 仅做示例：意图 "chatbot" + 语言 "en" 时，返回一个固定模板
-     * - 你以后可以在这里改成：从 Elasticsearch / Postgres 里查 PromptTemplate
-     */
-    static class InMemoryTemplateFinder implements TemplateFinder {
-        private final Map<String, PromptTemplate> mem = new HashMap<>();
-
-        InMemoryTemplateFinder() {
-            PromptTemplate demo = new PromptTemplate();
-            demo.setId("demo-chatbot-en");
-            demo.setLanguage("en");
-            demo.setIntent("chatbot");
-            demo.setSystem("You are an assistant that answers based only on customer dataset.");
-            demo.setUserTemplate("User said: {{input}}");
-            mem.put("chatbot#en", demo);
-        }
-
-        @Override
-        public Optional<PromptTemplate> findTopByIntentAndLanguage(String intent, String lang) {
-            return Optional.ofNullable(mem.get(intent + "#" + lang));
-        }
-    }
 }
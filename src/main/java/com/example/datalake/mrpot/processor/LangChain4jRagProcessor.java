@@ -6,6 +6,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 @Component
 @RequiredArgsConstructor
 public class LangChain4jRagProcessor implements TextProcessor {
@@ -17,6 +20,24 @@ public class LangChain4jRagProcessor implements TextProcessor {
         return "langchain4j-rag";
     }
 
+    // 检索只依赖归一化文本和关键词，不等模板阶段，可与 cache lookup / 模板渲染并行
+    @Override
+    public Set<ContextField> inputs() {
+        return EnumSet.of(ContextField.RAW_INPUT, ContextField.NORMALIZED, ContextField.KEYWORDS,
+                ContextField.COMMON_RESPONSE);
+    }
+
+    @Override
+    public Set<ContextField> outputs() {
+        return EnumSet.of(ContextField.KB_CONTEXT);
+    }
+
+    // KB 片段检索走 JDBC（ILIKE / FTS 后端），放到 db 线程池
+    @Override
+    public StageResource resource() {
+        return StageResource.DB;
+    }
+
     @Override
     public Mono<ProcessingContext> process(ProcessingContext ctx) {
         // 如果已经走了 CommonResponse（例如“你好”“hi” 这种），就不要再调 LLM 了
@@ -24,7 +45,7 @@ public class LangChain4jRagProcessor implements TextProcessor {
             return Mono.just(ctx.addStep(name(), "skip-common-response"));
         }
 
-        // cacheHit 只是在 PromptCacheLookup 那个阶段起作用，LLM 还是要跑一次的
+        // prompt cacheHit 只省掉模板构建；是否跳过 LLM 由 AnswerCacheService 在 completeWithLlm 里决定
         return ragService.prepare(ctx);
     }
 }
@@ -8,7 +8,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @Component
@@ -22,6 +24,18 @@ public class PromptCacheLookupProcessor implements TextProcessor {
     return "prompt-cache-lookup";
   }
 
+  @Override
+  public Set<ContextField> inputs() {
+    return EnumSet.of(ContextField.RAW_INPUT, ContextField.NORMALIZED, ContextField.LANGUAGE,
+        ContextField.COMMON_RESPONSE);
+  }
+
+  @Override
+  public Set<ContextField> outputs() {
+    return EnumSet.of(ContextField.CACHE, ContextField.SYSTEM_PROMPT, ContextField.USER_PROMPT,
+        ContextField.FINAL_PROMPT);
+  }
+
   @Override
   public Mono<ProcessingContext> process(ProcessingContext ctx) {
     if (ctx.isCommonResponse()) {
@@ -9,6 +9,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -21,6 +24,18 @@ public class PromptCacheRecordProcessor implements TextProcessor {
     return "prompt-cache-record";
   }
 
+  @Override
+  public Set<ContextField> inputs() {
+    return EnumSet.of(ContextField.RAW_INPUT, ContextField.NORMALIZED, ContextField.COMMON_RESPONSE,
+        ContextField.CACHE, ContextField.SYSTEM_PROMPT, ContextField.USER_PROMPT, ContextField.FINAL_PROMPT);
+  }
+
+  @Override
+  public Set<ContextField> outputs() {
+    return EnumSet.of(ContextField.CACHE, ContextField.SYSTEM_PROMPT, ContextField.USER_PROMPT,
+        ContextField.FINAL_PROMPT);
+  }
+
   @Override
   public Mono<ProcessingContext> process(ProcessingContext ctx) {
     if (ctx.isCommonResponse()) {
@@ -0,0 +1,249 @@
+package com.example.datalake.mrpot.processor;
+
+import com.example.datalake.mrpot.model.PromptTemplate;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, compiled view of prompt_templates.json: lang → intent → {@link CompiledTemplate}.
+ *
+ * Built once per (re)load by {@link PromptTemplateRegistry}; every template is split into literal
+ * chunks + typed variable accessors, so rendering is a single presized StringBuilder pass with no
+ * regex or reflection. Instances are never mutated after {@link #parse}, which makes them safe to
+ * publish with a single volatile write.
+ */
+public final class PromptTemplateIndex {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+      .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([\\w.-]+)\\s*}}");
+
+  private static final PromptTemplateIndex EMPTY = new PromptTemplateIndex(Map.of(), 0L);
+
+  private final Map<String, Map<String, CompiledTemplate>> idx;
+  private final long version;
+
+  private PromptTemplateIndex(Map<String, Map<String, CompiledTemplate>> idx, long version) {
+    this.idx = idx;
+    this.version = version;
+  }
+
+  public static PromptTemplateIndex empty() { return EMPTY; }
+
+  /** Monotonic version assigned by the registry (0 = nothing loaded). */
+  public long version() { return version; }
+
+  public int languages() { return idx.size(); }
+
+  public int templates() {
+    int n = 0;
+    for (Map<String, CompiledTemplate> m : idx.values()) n += m.size();
+    return n;
+  }
+
+  CompiledTemplate get(String lang, String intent) {
+    Map<String, CompiledTemplate> m = idx.get(lang);
+    return m == null ? null : m.get(intent);
+  }
+
+  /** Exact (intent, language) lookup as a model object; no fallbacks. */
+  public Optional<PromptTemplate> find(String intent, String lang) {
+    if (intent == null || lang == null) return Optional.empty();
+    CompiledTemplate t = get(lang.toLowerCase(Locale.ROOT), intent.toLowerCase(Locale.ROOT));
+    return t == null ? Optional.empty() : Optional.of(t.toModel());
+  }
+
+  /**
+   * Parse and compile the JSON document ({@code {"en": {"general": {"system": "...", "user": "..."}}}}).
+   * Non-object languages/intents and extra fields are ignored.
+   *
+   * @throws IllegalArgumentException if {@code json} is not well-formed JSON
+   */
+  public static PromptTemplateIndex parse(String json, long version) {
+    JsonNode root;
+    try {
+      root = MAPPER.readTree(json);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed prompt templates: " + e.getOriginalMessage(), e);
+    }
+    Map<String, Map<String, CompiledTemplate>> out = new LinkedHashMap<>();
+    if (root == null || !root.isObject()) return new PromptTemplateIndex(Map.of(), version);
+    for (Map.Entry<String, JsonNode> langEntry : root.properties()) {
+      JsonNode langNode = langEntry.getValue();
+      if (!langNode.isObject()) continue;
+      String lang = langEntry.getKey().toLowerCase(Locale.ROOT);
+      Map<String, CompiledTemplate> intents = new LinkedHashMap<>();
+      for (Map.Entry<String, JsonNode> intentEntry : langNode.properties()) {
+        JsonNode it = intentEntry.getValue();
+        if (!it.isObject()) continue;
+        String intent = intentEntry.getKey().toLowerCase(Locale.ROOT);
+        String system = text(it.get("system"));
+        String user   = text(it.get("user"));
+        intents.put(intent, new CompiledTemplate(lang, intent, CompiledText.compile(system), CompiledText.compile(user)));
+      }
+      out.put(lang, Collections.unmodifiableMap(intents));
+    }
+    return new PromptTemplateIndex(Collections.unmodifiableMap(out), version);
+  }
+
+  /** Scalar fields as text; missing, null, object or array values become "". */
+  private static String text(JsonNode node) {
+    return node == null || !node.isValueNode() || node.isNull() ? "" : node.asText();
+  }
+
+  // ---------- Compiled templates ----------
+
+  /**
+   * Per-request values the compiled segments read from. Context fields are read through plain
+   * getters; only the derived values (language, intent, keyword lists) are precomputed.
+   */
+  record RenderVars(ProcessingContext ctx, String language, String intent,
+                    String systemPrompt, String userPrompt,
+                    List<String> keywords, List<String> topKeywords) {}
+
+  /** Typed accessor for every placeholder name the templates may use. */
+  private enum Variable {
+    LANGUAGE("language") {
+      String value(RenderVars v) { return v.language(); }
+    },
+    INTENT("intent") {
+      String value(RenderVars v) { return v.intent(); }
+    },
+    QUERY("query") {
+      String value(RenderVars v) {
+        return firstNonBlank(v.ctx().getIndexText(), v.ctx().getNormalized(), v.ctx().getRawInput());
+      }
+    },
+    ORIGINAL("original") {
+      String value(RenderVars v) { return v.ctx().getRawInput(); }
+    },
+    NORMALIZED("normalized") {
+      String value(RenderVars v) { return v.ctx().getNormalized(); }
+    },
+    INDEX_TEXT("indexText") {
+      String value(RenderVars v) { return v.ctx().getIndexText(); }
+    },
+    SYSTEM_PROMPT("system_prompt") {
+      String value(RenderVars v) { return v.systemPrompt(); }
+    },
+    USER_PROMPT("user_prompt") {
+      String value(RenderVars v) { return v.userPrompt(); }
+    },
+    KEYWORDS("keywords") {
+      String value(RenderVars v) { return joinList(v.keywords()); }
+    },
+    TOP_KEYWORDS("top_keywords") {
+      String value(RenderVars v) { return joinList(v.topKeywords()); }
+    };
+
+    private static final Map<String, Variable> BY_KEY = new HashMap<>();
+    static {
+      for (Variable var : values()) BY_KEY.put(var.key, var);
+    }
+
+    private final String key;
+
+    Variable(String key) { this.key = key; }
+
+    abstract String value(RenderVars v);
+
+    /** null for unknown (or dotted) keys, which always rendered as "". */
+    static Variable of(String key) { return BY_KEY.get(key); }
+  }
+
+  /**
+   * A template split at load time into literal chunks and variable slots:
+   * {@code literals[i]} is followed by {@code vars[i]}, the last literal has no variable.
+   */
+  static final class CompiledText {
+    static final CompiledText EMPTY = new CompiledText("", new String[] {""}, new Variable[0]);
+
+    private final String source;
+    private final String[] literals;
+    private final Variable[] vars;
+    private final int literalLength;
+
+    private CompiledText(String source, String[] literals, Variable[] vars) {
+      this.source = source;
+      this.literals = literals;
+      this.vars = vars;
+      int len = 0;
+      for (String l : literals) len += l.length();
+      this.literalLength = len;
+    }
+
+    static CompiledText compile(String template) {
+      if (template == null || template.isEmpty()) return EMPTY;
+      List<String> literals = new ArrayList<>();
+      List<Variable> vars = new ArrayList<>();
+      StringBuilder pending = new StringBuilder();
+      Matcher m = PLACEHOLDER.matcher(template);
+      int last = 0;
+      while (m.find()) {
+        pending.append(template, last, m.start());
+        last = m.end();
+        Variable var = Variable.of(m.group(1));
+        if (var == null) continue; // unknown placeholder renders empty: fold into the literal
+        literals.add(pending.toString());
+        vars.add(var);
+        pending.setLength(0);
+      }
+      pending.append(template, last, template.length());
+      literals.add(pending.toString());
+      return new CompiledText(template, literals.toArray(new String[0]), vars.toArray(new Variable[0]));
+    }
+
+    String source() { return source; }
+
+    String render(RenderVars v) {
+      if (vars.length == 0) return literals[0].trim();
+      String[] values = new String[vars.length];
+      int capacity = literalLength;
+      for (int i = 0; i < vars.length; i++) {
+        String value = vars[i].value(v);
+        values[i] = value == null ? "" : value;
+        capacity += values[i].length();
+      }
+      StringBuilder out = new StringBuilder(capacity);
+      for (int i = 0; i < vars.length; i++) {
+        out.append(literals[i]).append(values[i]);
+      }
+      out.append(literals[vars.length]);
+      return out.toString().trim();
+    }
+  }
+
+  /** Pair of compiled system/user templates for one (language, intent). */
+  record CompiledTemplate(String language, String intent, CompiledText system, CompiledText user) {
+    static final CompiledTemplate EMPTY = new CompiledTemplate("", "", CompiledText.EMPTY, CompiledText.EMPTY);
+
+    /** Model view (raw template text) for callers outside the render path. */
+    PromptTemplate toModel() {
+      PromptTemplate t = new PromptTemplate();
+      t.setId(language + "/" + intent);
+      t.setLanguage(language);
+      t.setIntent(intent);
+      t.setSystem(system.source());
+      t.setUserTemplate(user.source());
+      return t;
+    }
+  }
+
+  private static String joinList(List<String> values) {
+    return values == null || values.isEmpty() ? "" : String.join(", ", values);
+  }
+
+  private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+  private static String firstNonBlank(String... ss) {
+    for (String s : ss) if (!isBlank(s)) return s;
+    return "";
+  }
+}
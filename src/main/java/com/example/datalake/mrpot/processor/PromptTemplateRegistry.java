@@ -0,0 +1,167 @@
+package com.example.datalake.mrpot.processor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owner of the live {@link PromptTemplateIndex}.
+ *
+ * <p>Templates are read from {@code mrpot.prompt-templates.location} (default: the bundled
+ * {@code classpath:prompt_templates.json}). When the location resolves to a plain file, e.g.
+ * {@code file:/etc/mrpot/prompt_templates.json}, it is polled on the scheduler thread; a changed file
+ * is parsed and compiled into a brand-new index, which is then published with a single volatile
+ * write. Requests grab one snapshot via {@link #current()}, so they never observe a half-built index.
+ * A file that fails to load (or compiles to zero templates) is rejected and the previous index stays.
+ */
+@Slf4j
+@Component
+public class PromptTemplateRegistry implements MeterBinder {
+
+    public static final String DEFAULT_LOCATION = "classpath:prompt_templates.json";
+
+    private final Resource resource;
+    private final boolean watchable;
+
+    // 上次成功加载的内容 / 文件时间戳，用于跳过没变化的轮询（仅在 synchronized reload 中读写）
+    private String loadedContent;
+    private long loadedLastModified = -1L;
+    private long nextVersion = 1L;
+
+    private volatile PromptTemplateIndex current = PromptTemplateIndex.empty();
+    private volatile MeterRegistry meterRegistry;
+
+    @Autowired
+    public PromptTemplateRegistry(ResourceLoader resourceLoader,
+                                  @Value("${mrpot.prompt-templates.location:" + DEFAULT_LOCATION + "}") String location) {
+        this.resource = resourceLoader.getResource(location);
+        this.watchable = isPlainFile(resource);
+        reload();
+    }
+
+    /**
+     * Registry over the bundled classpath templates, for use outside the Spring context (tests).
+     */
+    public static PromptTemplateRegistry classpathDefault() {
+        return new PromptTemplateRegistry(new DefaultResourceLoader(), DEFAULT_LOCATION);
+    }
+
+    /**
+     * Snapshot of the templates; callers should read it once per request.
+     */
+    public PromptTemplateIndex current() {
+        return current;
+    }
+
+    @Scheduled(
+            initialDelayString = "${mrpot.prompt-templates.poll-interval-ms:10000}",
+            fixedDelayString = "${mrpot.prompt-templates.poll-interval-ms:10000}"
+    )
+    public void poll() {
+        if (!watchable) {
+            return;
+        }
+        try {
+            if (resource.lastModified() == loadedLastModified) {
+                return;
+            }
+        } catch (IOException e) {
+            log.debug("[prompt-templates] Cannot stat {} – {}", resource, e.getMessage());
+        }
+        reload();
+    }
+
+    /**
+     * Re-read the template source and swap in a freshly compiled index if its content changed.
+     *
+     * @return true if a new version was published
+     */
+    public synchronized boolean reload() {
+        long start = System.nanoTime();
+        String outcome = "unchanged";
+        try {
+            long lastModified = watchable ? resource.lastModified() : -1L;
+            String json;
+            try (InputStream in = resource.getInputStream()) {
+                json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            loadedLastModified = lastModified;
+            if (json.equals(loadedContent)) {
+                return false;
+            }
+
+            PromptTemplateIndex next;
+            try {
+                next = PromptTemplateIndex.parse(json, nextVersion);
+            } catch (IllegalArgumentException e) {
+                outcome = "rejected";
+                log.warn("[prompt-templates] {} is not valid JSON, keeping v{} – {}", resource, current.version(), e.getMessage());
+                return false;
+            }
+            if (next.templates() == 0) {
+                outcome = "rejected";
+                log.warn("[prompt-templates] {} produced no templates, keeping v{}", resource, current.version());
+                return false;
+            }
+
+            nextVersion++;
+            loadedContent = json;
+            current = next;
+            outcome = "reloaded";
+            log.info("[prompt-templates] Published v{}: {} templates in {} languages from {}",
+                    next.version(), next.templates(), next.languages(), resource);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            outcome = "failure";
+            log.warn("[prompt-templates] Failed to load {}, keeping v{} – {}", resource, current.version(), e.toString());
+            return false;
+        } finally {
+            recordReload(outcome, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("mrpot.prompt.templates.version", this, r -> r.current().version())
+                .description("Version of the prompt template index currently served")
+                .register(registry);
+        Gauge.builder("mrpot.prompt.templates.count", this, r -> r.current().templates())
+                .description("Compiled (language, intent) templates in the current index")
+                .register(registry);
+    }
+
+    private void recordReload(String outcome, long nanos) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("mrpot.prompt.templates.reload")
+                .description("Time to read, parse and compile the prompt templates")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static boolean isPlainFile(Resource resource) {
+        try {
+            return resource.isFile() && resource.getFile().isFile();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
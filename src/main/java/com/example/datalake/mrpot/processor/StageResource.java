@@ -0,0 +1,14 @@
+package com.example.datalake.mrpot.processor;
+
+/**
+ * Resource class a pipeline stage mostly waits on; {@code PromptPipeline} runs the stage on the
+ * scheduler dedicated to that class so one slow dependency cannot exhaust the others' threads.
+ */
+public enum StageResource {
+  /** Blocking JDBC (lexicon / intent rules / KB search). */
+  DB,
+  /** Remote model calls (OpenAI chat). */
+  LLM,
+  /** Pure in-memory work (normalization, templates, caches). */
+  CPU
+}
@@ -3,7 +3,28 @@ package com.example.datalake.mrpot.processor;
 import com.example.datalake.mrpot.model.ProcessingContext;
 import reactor.core.publisher.Mono;
 
+import java.util.Set;
+
 public interface TextProcessor {
   String name();
   Mono<ProcessingContext> process(ProcessingContext ctx);
+
+  /** Scheduler this stage should run on; override for stages that block on JDBC or remote calls. */
+  default StageResource resource() {
+    return StageResource.CPU;
+  }
+
+  /**
+   * Context fields this stage reads. Together with {@link #outputs()} this decides which earlier
+   * stages it must wait for; stages that touch disjoint fields run concurrently. The default (all
+   * fields) makes the stage a barrier, i.e. the old strictly sequential behaviour.
+   */
+  default Set<ContextField> inputs() {
+    return ContextField.ALL;
+  }
+
+  /** Context fields this stage writes (steps excluded – their order is kept by the pipeline). */
+  default Set<ContextField> outputs() {
+    return ContextField.ALL;
+  }
 }
@@ -2,10 +2,10 @@ package com.example.datalake.mrpot.processor;
 
 import com.example.datalake.mrpot.model.ProcessingContext;
 import com.example.datalake.mrpot.util.CodeFenceUtils;
+import com.example.datalake.mrpot.util.TextNormalizer;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.text.Normalizer;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -14,12 +14,29 @@ import java.util.regex.Pattern;
 public class UnifiedCleanCorrectProcessor implements TextProcessor {
   @Override public String name() { return "unified-clean-correct"; }
 
+  @Override
+  public Set<ContextField> inputs() {
+    return EnumSet.of(ContextField.RAW_INPUT);
+  }
+
+  @Override
+  public Set<ContextField> outputs() {
+    return EnumSet.of(ContextField.NORMALIZED);
+  }
+
   // ====== Precompiled patterns (fast path) ======
   private static final Pattern SENT_SPLIT = Pattern.compile("[\\n；;。.!?]+\\s*");
   private static final Pattern CN_EXCESS_SPACES = Pattern.compile("(?<=\\p{IsHan})\\s+(?=\\p{IsHan})");
   private static final Pattern CN_WORD_SPACE = Pattern.compile("(?<=\\p{IsHan})\\s+(?=[A-Za-z0-9])|(?<=[A-Za-z0-9])\\s+(?=\\p{IsHan})");
   private static final Pattern CN_REPEAT_CHAR = Pattern.compile("([\\p{IsHan}！？。；，、])\\1{1,}");
   private static final Pattern SENTENCE_START_I = Pattern.compile("(?m)(^|[\\n\\.!?]\\s*)i\\b");
+  private static final Pattern TASK_SENTENCE = Pattern.compile("^(please|help|write|实现|编写|生成|比较|分析|给我|需要)\\b.*");
+  private static final Pattern CONSTRAINT_SENTENCE = Pattern.compile(".*(must|should|不要|必须|仅|禁止|不可|不能|不允许).*");
+  private static final Pattern OUTPUT_SENTENCE = Pattern.compile(".*(output|格式|schema|返回|字段|以.*格式|结构化).*");
+  private static final Pattern DUP_WORD = Pattern.compile("\\b(\\w{2,})\\s+\\1\\b");
+  private static final Pattern EXCESS_BLANK_LINES = Pattern.compile("\\n{3,}");
+  private static final Pattern PUNCT_CHAR = Pattern.compile(".*[\\p{Punct}，。！？；、：‘’“”`~@#%^&*()\\[\\]{}<>/\\\\].*");
+  private static final Pattern MULTI_SPACE = Pattern.compile("\\s{2,}");
 
   @Override
   public Mono<ProcessingContext> process(ProcessingContext ctx) {
@@ -83,27 +100,9 @@ public class UnifiedCleanCorrectProcessor implements TextProcessor {
 
   // ========= Implementation details =========
 
-  // Normalization: "lossless" / low risk
+  // Normalization: "lossless" / low risk（单趟扫描，见 TextNormalizer）
   private static String normalizeText(String s) {
-    if (s == null || s.isEmpty()) return "";
-    s = Normalizer.normalize(s, Normalizer.Form.NFKC);
-    s = s.replace("\uFEFF","").replace("\u200B","").replace("\u200C","")
-        .replace("\u200D","").replace("\u200E","").replace("\u200F","");
-    s = s.replaceAll("[\\p{Cntrl}&&[^\n\t]]", ""); // keep \n and \t
-    s = s.replaceAll("[“”]", "\"").replaceAll("[‘’]", "'")
-        .replace("—","-").replace("–","-");
-
-    // Collapse repeats (ASCII + CJK)
-    s = s.replaceAll("\\?{2,}", "?")
-        .replaceAll("!{2,}", "!")
-        .replaceAll("。{2,}", "。")
-        .replaceAll("\\.{3,}", ".")
-        .replaceAll("，{2,}", "，")
-        .replaceAll(",{2,}", ",");
-
-    s = s.replace("\r\n","\n").replace('\r','\n');
-    s = s.replaceAll("[ \\t]{2,}", " ").trim();
-    return s;
+    return TextNormalizer.normalize(s);
   }
 
   // Light rules: sentence-start 'i' → 'I', Chinese spacing cleanup
@@ -134,11 +133,11 @@ public class UnifiedCleanCorrectProcessor implements TextProcessor {
       if (s.isEmpty()) continue;
       String lower = s.toLowerCase(Locale.ROOT);
 
-      if (lower.matches("^(please|help|write|实现|编写|生成|比较|分析|给我|需要)\\b.*")) {
+      if (TASK_SENTENCE.matcher(lower).matches()) {
         outline.get("TASKS").add(s);
-      } else if (lower.matches(".*(must|should|不要|必须|仅|禁止|不可|不能|不允许).*")) {
+      } else if (CONSTRAINT_SENTENCE.matcher(lower).matches()) {
         outline.get("CONSTRAINTS").add(s);
-      } else if (lower.matches(".*(output|格式|schema|返回|字段|以.*格式|结构化).*")) {
+      } else if (OUTPUT_SENTENCE.matcher(lower).matches()) {
         outline.get("OUTPUT").add(s);
       } else {
         outline.get("CONTEXT").add(s);
@@ -160,10 +159,10 @@ public class UnifiedCleanCorrectProcessor implements TextProcessor {
       if (seen.contains(key)) continue;
       seen.add(key);
       // De-bounce consecutive duplicated words
-      l = l.replaceAll("\\b(\\w{2,})\\s+\\1\\b", "$1");
+      l = DUP_WORD.matcher(l).replaceAll("$1");
       sb.append(l).append('\n');
     }
-    return sb.toString().replaceAll("\\n{3,}", "\n\n").trim();
+    return EXCESS_BLANK_LINES.matcher(sb).replaceAll("\n\n").trim();
   }
 
   // Post-format short plain text into a single friendly line
@@ -179,10 +178,10 @@ public class UnifiedCleanCorrectProcessor implements TextProcessor {
 
     // If any line has punctuation other than spaces, bail out
     for (String ln : lines) {
-      if (ln.matches(".*[\\p{Punct}，。！？；、：‘’“”`~@#%^&*()\\[\\]{}<>/\\\\].*")) return s;
+      if (PUNCT_CHAR.matcher(ln).matches()) return s;
     }
 
-    String merged = String.join(" ", lines).replaceAll("\\s{2,}", " ").trim();
+    String merged = MULTI_SPACE.matcher(String.join(" ", lines)).replaceAll(" ").trim();
     if (merged.isEmpty()) return s;
 
     char first = merged.charAt(0);
@@ -1,9 +1,12 @@
 package com.example.datalake.mrpot.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 import lombok.experimental.Accessors;
 
+import java.time.Duration;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -14,4 +17,8 @@ public class PrepareRequest {
   private String sessionId;
   @NotBlank
   private String query;
+
+  // 客户端要求的时间预算（X-Request-Timeout 头），null = 用配置的默认值
+  @JsonIgnore
+  private Duration timeout;
 }
@@ -24,6 +24,7 @@ public class PrepareResponse {
   private Map<String, ?> entities;
 
   private List<StepLog> steps;
+  private Double totalDurationMs; // 整条 pipeline（含 LLM）的耗时
   private List<String> notices;
   private List<String> errors;
 }
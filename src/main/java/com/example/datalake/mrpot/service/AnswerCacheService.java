@@ -0,0 +1,123 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Caches final LLM answers so a repeated question can skip the model call.
+ *
+ * <p>Key = sha256(final prompt) + model name + temperature + sorted KB doc ids, i.e. an answer is
+ * only reused when the model would have seen exactly the same input. Freshness is bounded by the
+ * configured TTL, and answers grounded on a document are dropped as soon as that document changes.
+ */
+@Slf4j
+@Service
+public class AnswerCacheService implements MeterBinder {
+
+    static final String CACHE_NAME = "answer-cache";
+
+    private final AnswerCacheProperties props;
+    private final String modelName;
+    private final double temperature;
+    private final Cache<String, CachedAnswer> cache;
+
+    public AnswerCacheService(AnswerCacheProperties props, Langchain4jOpenAiProperties openAiProps) {
+        this.props = props;
+        this.modelName = openAiProps.getChatModel() == null ? "" : openAiProps.getChatModel();
+        this.temperature = openAiProps.getTemperature();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.getMaxEntries())
+                .expireAfterWrite(props.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return props.isEnabled();
+    }
+
+    public Optional<CachedAnswer> lookup(String finalPrompt, List<Long> docIds) {
+        if (!props.isEnabled() || finalPrompt == null || finalPrompt.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(keyFor(finalPrompt, docIds)));
+    }
+
+    public void store(String finalPrompt, List<Long> docIds, String answer) {
+        if (!props.isEnabled() || finalPrompt == null || finalPrompt.isBlank()
+                || answer == null || answer.isBlank()) {
+            return;
+        }
+        List<Long> sortedDocIds = sortedDocIds(docIds);
+        cache.put(keyFor(finalPrompt, sortedDocIds), new CachedAnswer(answer, sortedDocIds, Instant.now()));
+    }
+
+    /**
+     * 文档更新/删除：丢掉引用了该文档的答案；新增文档可能改变任意问题的检索结果，所以整体清空。
+     */
+    @EventListener
+    public void onKbDocumentChanged(KbDocumentChangedEvent event) {
+        if (event.type() == KbDocumentChangedEvent.Type.CREATED || event.docId() == null) {
+            cache.invalidateAll();
+            log.debug("[answer-cache] Cleared after kb document {} was {}", event.docId(), event.type());
+            return;
+        }
+        cache.asMap().values().removeIf(answer -> answer.docIds().contains(event.docId()));
+        log.debug("[answer-cache] Dropped answers grounded on kb document {} ({})", event.docId(), event.type());
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private String keyFor(String finalPrompt, List<Long> docIds) {
+        return modelName
+                + "|" + String.format(Locale.ROOT, "%.3f", temperature)
+                + "|" + sortedDocIds(docIds)
+                + "|" + sha256(finalPrompt);
+    }
+
+    private static List<Long> sortedDocIds(List<Long> docIds) {
+        return docIds == null ? List.of() : docIds.stream().distinct().sorted().toList();
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record CachedAnswer(String answer, List<Long> docIds, Instant createdAt) {
+
+        public Duration age() {
+            return Duration.between(createdAt, Instant.now());
+        }
+    }
+}
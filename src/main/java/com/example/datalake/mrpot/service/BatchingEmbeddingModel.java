@@ -0,0 +1,131 @@
+package com.example.datalake.mrpot.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link EmbeddingModel} decorator that merges concurrent requests into one delegate call and caps
+ * the number of calls in flight.
+ *
+ * <p>Callers enqueue their segments and then try to take one of {@code maxConcurrency} permits; a
+ * holder drains up to {@code maxBatchSize} queued segments (its own and anybody else's) per
+ * {@code embedAll} and keeps going until the queue is empty, re-checking the queue after it returns
+ * the permit. A caller that found every permit busy therefore just blocks on its own future. There
+ * is no batching timer: an idle model serves a lone request immediately, and batches only form while
+ * all permits are busy. A failed batch fails exactly the callers whose segments were in it.
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final Semaphore permits;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, int maxConcurrency) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        if (segments == null || segments.isEmpty()) {
+            return Response.from(List.of());
+        }
+
+        Pending pending = new Pending(segments);
+        queue.add(pending);
+        drain();
+
+        try {
+            return Response.from(pending.future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embeddings", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Embedding failed", cause);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    // 测试用：还在排队的请求数
+    int queued() {
+        return queue.size();
+    }
+
+    /**
+     * 拿到 permit 就一批一批地跑，直到队列为空。释放 permit 之后再看一次队列：拿不到 permit 的调用方
+     * 只等自己的 future，它入队的请求由当时持有 permit 的线程在释放后接手，不会被落下。
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            try {
+                runBatch();
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void runBatch() {
+        List<Pending> batch = new ArrayList<>();
+        List<TextSegment> merged = new ArrayList<>();
+        // 只有 drain 需要互斥（生产者只往队尾 add），保证 peek 和 poll 看到的是同一个元素
+        synchronized (queue) {
+            Pending next;
+            while ((next = queue.peek()) != null) {
+                if (!merged.isEmpty() && merged.size() + next.segments.size() > maxBatchSize) {
+                    break;
+                }
+                queue.poll();
+                batch.add(next);
+                merged.addAll(next.segments);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Embedding> embeddings = delegate.embedAll(merged).content();
+            int offset = 0;
+            for (Pending p : batch) {
+                int n = p.segments.size();
+                p.future.complete(new ArrayList<>(embeddings.subList(offset, offset + n)));
+                offset += n;
+            }
+        } catch (RuntimeException | Error e) {
+            // 失败只交给同一批里的等待者；跑这一批的线程自己的请求可能不在其中，不往外抛
+            for (Pending p : batch) {
+                p.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final List<TextSegment> segments;
+        private final CompletableFuture<List<Embedding>> future = new CompletableFuture<>();
+
+        private Pending(List<TextSegment> segments) {
+            this.segments = segments;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.datalake.mrpot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process BM25 inverted index keyed by {@code kb_documents.id}.
+ *
+ * <p>Every document gets an internal slot; each term keeps a postings list of (slot, tf) in two
+ * growable {@code int[]}s. Updates are "tombstone old slot + append new slot", so writers never
+ * rewrite postings in place; once dead postings outnumber live ones, or tombstoned slots outnumber
+ * live documents, the lists are compacted and the freed slots are reused by later inserts. The slot
+ * range (and so the per-query score array) therefore stays proportional to the live documents.
+ * Reads take a shared lock, writes an exclusive one.
+ */
+public final class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+    // term 下标 → 仍然存活的文档数（idf 用）
+    private int[] liveDf = new int[64];
+
+    private final Map<Long, Integer> slotByDocId = new HashMap<>();
+    private long[] slotDocIds = new long[64];
+    private int[] slotLengths = new int[64];
+    private int[][] slotTerms = new int[64][];
+    private boolean[] slotAlive = new boolean[64];
+    private int slotCount;
+    // tombstone 的 slot：postings 里可能还有引用，compact 之后才能进 freeSlots 复用
+    private int[] deadSlots = new int[16];
+    private int deadSlotCount;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    private int liveDocs;
+    private long liveLength;
+    private long deadPostings;
+    private long totalPostings;
+
+    /**
+     * Add or replace a document. {@code tokens} is the already tokenized content.
+     */
+    public void upsert(long docId, List<String> tokens) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+            if (tokens == null || tokens.isEmpty()) {
+                return;
+            }
+
+            Map<Integer, Integer> tf = new LinkedHashMap<>();
+            for (String token : tokens) {
+                if (token == null || token.isEmpty()) continue;
+                tf.merge(termIdFor(token), 1, Integer::sum);
+            }
+            if (tf.isEmpty()) {
+                return;
+            }
+
+            int slot = newSlot(docId, tokens.size());
+            int[] terms = new int[tf.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> e : tf.entrySet()) {
+                int term = e.getKey();
+                postings.get(term).add(slot, e.getValue());
+                liveDf[term]++;
+                terms[i++] = term;
+            }
+            slotTerms[slot] = terms;
+            totalPostings += terms.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Slots allocated so far (live, tombstoned and free); bounds the per-query score array. */
+    int slotCapacity() {
+        lock.readLock().lock();
+        try {
+            return slotCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top-{@code k} documents by BM25 score; duplicate query tokens are counted once.
+     */
+    public List<Hit> search(Collection<String> queryTokens, int k) {
+        if (queryTokens == null || queryTokens.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return List.of();
+            }
+
+            double avgLength = (double) liveLength / liveDocs;
+            float[] scores = new float[slotCount];
+            int[] touched = new int[Math.min(slotCount, 1024)];
+            int touchedCount = 0;
+
+            for (String token : new LinkedHashSet<>(queryTokens)) {
+                Integer term = termIds.get(token);
+                if (term == null || liveDf[term] == 0) continue;
+
+                double idf = Math.log(1.0 + (liveDocs - liveDf[term] + 0.5) / (liveDf[term] + 0.5));
+                Postings list = postings.get(term);
+                for (int p = 0; p < list.size; p++) {
+                    int slot = list.slots[p];
+                    if (!slotAlive[slot]) continue;
+
+                    int tf = list.tfs[p];
+                    double norm = K1 * (1 - B + B * slotLengths[slot] / avgLength);
+                    float add = (float) (idf * tf * (K1 + 1) / (tf + norm));
+                    if (scores[slot] == 0f) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touched.length * 2);
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += add;
+                }
+            }
+
+            return topK(scores, touched, touchedCount, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 小顶堆选 top-k，只遍历被命中的 slot
+    private List<Hit> topK(float[] scores, int[] touched, int touchedCount, int k) {
+        int heapSize = 0;
+        int[] heap = new int[Math.min(k, touchedCount)];
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++, scores);
+            } else if (better(slot, heap[0], scores)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+
+        Hit[] out = new Hit[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            int slot = heap[0];
+            out[i] = new Hit(slotDocIds[slot], scores[slot]);
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, scores);
+        }
+        return List.of(out);
+    }
+
+    // 分数高者更优；同分时 docId 大（更新）者更优，和 ILIKE 后端的 "id DESC" 一致
+    private boolean better(int a, int b, float[] scores) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        return slotDocIds[a] > slotDocIds[b];
+    }
+
+    private void siftUp(int[] heap, int i, float[] scores) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], heap[i], scores)) break;
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, float[] scores) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(heap[worst], heap[right], scores)) {
+                worst = right;
+            }
+            if (!better(heap[i], heap[worst], scores)) break;
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private void removeInternal(long docId) {
+        Integer slot = slotByDocId.remove(docId);
+        if (slot == null || !slotAlive[slot]) {
+            return;
+        }
+        slotAlive[slot] = false;
+        liveDocs--;
+        liveLength -= slotLengths[slot];
+        for (int term : slotTerms[slot]) {
+            liveDf[term]--;
+        }
+        deadPostings += slotTerms[slot].length;
+        slotTerms[slot] = null;
+        deadSlots = push(deadSlots, deadSlotCount++, slot);
+
+        if ((deadPostings > 1024 && deadPostings * 2 > totalPostings) || deadSlotCount > liveDocs) {
+            compact();
+        }
+    }
+
+    // 把 tombstone 从 postings 中真正删掉；之后没有任何 posting 再指向这些 slot，可以交给 newSlot 复用
+    private void compact() {
+        for (Postings list : postings) {
+            list.retainAlive(slotAlive);
+        }
+        totalPostings -= deadPostings;
+        deadPostings = 0;
+        for (int i = 0; i < deadSlotCount; i++) {
+            freeSlots = push(freeSlots, freeSlotCount++, deadSlots[i]);
+        }
+        deadSlotCount = 0;
+    }
+
+    private static int[] push(int[] stack, int size, int value) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+        }
+        stack[size] = value;
+        return stack;
+    }
+
+    private int termIdFor(String token) {
+        Integer id = termIds.get(token);
+        if (id != null) {
+            return id;
+        }
+        int next = postings.size();
+        termIds.put(token, next);
+        postings.add(new Postings());
+        if (next == liveDf.length) {
+            liveDf = Arrays.copyOf(liveDf, next * 2);
+        }
+        return next;
+    }
+
+    private int newSlot(long docId, int length) {
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : appendSlot();
+        slotDocIds[slot] = docId;
+        slotLengths[slot] = length;
+        slotAlive[slot] = true;
+        slotByDocId.put(docId, slot);
+        liveDocs++;
+        liveLength += length;
+        return slot;
+    }
+
+    private int appendSlot() {
+        if (slotCount == slotDocIds.length) {
+            int cap = slotCount * 2;
+            slotDocIds = Arrays.copyOf(slotDocIds, cap);
+            slotLengths = Arrays.copyOf(slotLengths, cap);
+            slotTerms = Arrays.copyOf(slotTerms, cap);
+            slotAlive = Arrays.copyOf(slotAlive, cap);
+        }
+        return slotCount++;
+    }
+
+    public record Hit(long docId, double score) {
+    }
+
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int[] tfs = new int[4];
+        private int size;
+
+        void add(int slot, int tf) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            slots[size] = slot;
+            tfs[size] = tf;
+            size++;
+        }
+
+        void retainAlive(boolean[] alive) {
+            int w = 0;
+            for (int r = 0; r < size; r++) {
+                if (alive[slots[r]]) {
+                    slots[w] = slots[r];
+                    tfs[w] = tfs[r];
+                    w++;
+                }
+            }
+            size = w;
+            if (slots.length > 16 && size < slots.length / 4) {
+                slots = Arrays.copyOf(slots, Math.max(4, size * 2));
+                tfs = Arrays.copyOf(tfs, Math.max(4, size * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.dao.KbDocumentRepository;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import com.example.datalake.mrpot.model.KbDocument;
+import com.example.datalake.mrpot.model.KbSnippet;
+import com.example.datalake.mrpot.util.KbSnippetUtils;
+import com.example.datalake.mrpot.util.TextTokenizer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内 BM25 检索实现（mrpot.kb.search.backend=bm25）：
+ * - bean 创建时同步把 kb_documents 全量读进 {@link Bm25Index}，服务开始接请求前索引就已就绪，之后检索不再访问数据库
+ * - KbDocumentController 增删改时通过 {@link KbDocumentChangedEvent} 增量更新
+ * - 后台定时对账：按 updated_at watermark 拉增量，再用 count(*) 发现其它副本 / SQL 删除的行（不一致就全量重建），
+ *   需要先执行 db/kb_documents_updated_at.sql
+ * - 全量加载、增量对账和变更事件都在同一把锁里修改同一个 {@link Snapshot}，旧数据不会覆盖新事件
+ * - 分词和意图识别共用 {@link TextTokenizer}，片段提取共用 {@link KbSnippetUtils}
+ */
+@Slf4j
+@Service
+@Qualifier(HybridKbSearchService.LEXICAL)
+@ConditionalOnProperty(name = "mrpot.kb.search.backend", havingValue = "bm25")
+public class Bm25KbSearchService implements KbSearchService {
+
+    // 候选文档最大数量
+    private static final int MAX_DOC_CANDIDATES = 20;
+
+    private final KbDocumentRepository repository;
+
+    // 全量重建时整体替换；增量 / 事件在 synchronized 方法里原地修改
+    private volatile Snapshot snapshot = new Snapshot(new Bm25Index(), new ConcurrentHashMap<>());
+    // 已同步到的最大 updated_at（仅在 synchronized 方法中读写），null = 还没全量加载成功
+    private Instant watermark;
+
+    public Bm25KbSearchService(KbDocumentRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * 启动时同步加载一次；数据库不可用时只打 warn，交给后台对账重试（watermark 仍为空 → 全量加载）。
+     */
+    @PostConstruct
+    public void loadAll() {
+        refresh();
+    }
+
+    @Scheduled(
+            initialDelayString = "${mrpot.kb.bm25.refresh-interval-ms:30000}",
+            fixedDelayString = "${mrpot.kb.bm25.refresh-interval-ms:30000}"
+    )
+    public synchronized void refresh() {
+        long started = System.nanoTime();
+        try {
+            if (watermark == null) {
+                reloadAll();
+                log.info("[kb-bm25] Indexed {} kb_documents in {} ms",
+                        snapshot.index().size(), (System.nanoTime() - started) / 1_000_000);
+            } else {
+                applyDelta();
+            }
+        } catch (DataAccessException e) {
+            log.warn("[kb-bm25] Failed to sync kb_documents – {}", e.getMessage());
+        }
+    }
+
+    @EventListener
+    public synchronized void onKbDocumentChanged(KbDocumentChangedEvent event) {
+        if (event.docId() == null) {
+            return;
+        }
+        Snapshot current = snapshot;
+        if (event.type() == KbDocumentChangedEvent.Type.DELETED || event.document() == null) {
+            current.index().remove(event.docId());
+            current.documents().remove(event.docId());
+        } else {
+            current.put(event.document());
+        }
+    }
+
+    /**
+     * Documents currently held by the index (for metrics / tests).
+     */
+    public int indexedDocuments() {
+        return snapshot.documents().size();
+    }
+
+    @Override
+    public List<KbSnippet> searchSnippets(String query,
+                                          List<String> keywords,
+                                          int maxSnippets,
+                                          int maxTotalChars) {
+        if (query == null || query.isBlank()) {
+            return Collections.emptyList();
+        }
+
+        List<String> normalizedKeywords = KbSnippetUtils.mergeQueryKeywords(query, keywords);
+
+        List<String> queryTokens = new ArrayList<>(TextTokenizer.tokenize(query));
+        for (String kw : normalizedKeywords) {
+            queryTokens.addAll(TextTokenizer.tokenize(kw));
+        }
+
+        int docLimit = Math.min(
+                MAX_DOC_CANDIDATES,
+                Math.max(maxSnippets * 2, maxSnippets)
+        );
+
+        // 没有命中就直接返回空：snippet 只从包含关键词的文档里抽，"最近文档" 兜底在这里没有意义
+        Snapshot current = snapshot;
+        List<Bm25Index.Hit> hits = current.index().search(queryTokens, docLimit);
+        List<KbDocument> docs = new ArrayList<>(hits.size());
+        Map<Long, Double> scores = new HashMap<>();
+        for (Bm25Index.Hit hit : hits) {
+            KbDocument doc = current.documents().get(hit.docId());
+            if (doc != null) {
+                docs.add(doc);
+                scores.put(hit.docId(), hit.score());
+            }
+        }
+
+        return KbSnippetUtils.toSnippets(docs, normalizedKeywords, maxSnippets, maxTotalChars,
+                doc -> scores.getOrDefault(doc.getId(), 0.0));
+    }
+
+    private void reloadAll() {
+        List<KbDocument> all = repository.findAll();
+        Snapshot next = new Snapshot(new Bm25Index(), new ConcurrentHashMap<>());
+        Instant maxSeen = null;
+        for (KbDocument doc : all) {
+            next.put(doc);
+            maxSeen = later(maxSeen, doc.getUpdatedAt());
+        }
+        snapshot = next;
+        watermark = maxSeen == null ? Instant.EPOCH : maxSeen;
+    }
+
+    private void applyDelta() {
+        Snapshot current = snapshot;
+        Instant maxSeen = watermark;
+        int changed = 0;
+        // >= watermark：同一时间戳上晚提交的行也能被捡到；内容没变的行跳过，不会反复 tombstone
+        for (KbDocument doc : repository.findByUpdatedAtGreaterThanEqual(watermark)) {
+            if (doc.getId() != null && !doc.equals(current.documents().get(doc.getId()))) {
+                current.put(doc);
+                changed++;
+            }
+            maxSeen = later(maxSeen, doc.getUpdatedAt());
+        }
+        watermark = maxSeen;
+
+        long total = repository.count();
+        if (total != current.documents().size()) {
+            log.debug("[kb-bm25] Row count drifted ({} local vs {} in db), reloading",
+                    current.documents().size(), total);
+            reloadAll();
+        } else if (changed > 0) {
+            log.debug("[kb-bm25] Merged {} changed kb_documents", changed);
+        }
+    }
+
+    private static Instant later(Instant a, Instant b) {
+        if (b == null) return a;
+        return a == null || b.isAfter(a) ? b : a;
+    }
+
+    /**
+     * 索引和文档正文必须成对发布，检索时一次读出。
+     */
+    private record Snapshot(Bm25Index index, Map<Long, KbDocument> documents) {
+
+        void put(KbDocument doc) {
+            if (doc == null || doc.getId() == null) {
+                return;
+            }
+            documents.put(doc.getId(), doc);
+            index.upsert(doc.getId(), TextTokenizer.tokenize(doc.getContent()));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.datalake.mrpot.service;
+
+import java.time.Duration;
+
+/**
+ * The request's time budget ran out before {@code stage} could finish; mapped to 504.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String stage;
+    private final Duration budget;
+
+    public DeadlineExceededException(String stage, Duration budget) {
+        super("Request deadline exceeded during " + stage + " (budget " + budget.toMillis() + "ms)");
+        this.stage = stage;
+        this.budget = budget;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /** Total budget the request was given. */
+    public Duration getBudget() {
+        return budget;
+    }
+}
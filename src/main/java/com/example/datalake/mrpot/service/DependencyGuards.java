@@ -0,0 +1,140 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.ResilienceProperties;
+import com.example.datalake.mrpot.util.CircuitBreaker;
+import com.example.datalake.mrpot.util.Hedger;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breakers for the pipeline's remote dependencies ({@code llm}, {@code kb-search}) and the
+ * optional KB search hedger.
+ *
+ * <p>Breaker state is reported under {@code /actuator/health} (component {@code dependencyGuards}):
+ * {@code UP} while every breaker is closed, {@code DEGRADED} while one is open or half-open. DEGRADED
+ * is not a failure status, so the aggregate stays UP – the app still answers from caches and without
+ * KB context. Metric: {@code mrpot.breaker.state} (name=llm|kb-search; 0 closed, 1 half-open, 2 open).
+ */
+@Component
+public class DependencyGuards implements HealthIndicator, MeterBinder {
+
+    static final Status DEGRADED = new Status("DEGRADED");
+
+    private final CircuitBreaker llm;
+    private final CircuitBreaker kbSearch;
+    private final Hedger kbHedger;
+    private final ExecutorService hedgeExecutor;
+
+    public DependencyGuards(ResilienceProperties props) {
+        this.llm = breaker("llm", props.isEnabled(), props.getLlm());
+        this.kbSearch = breaker("kb-search", props.isEnabled(), props.getKbSearch());
+
+        ResilienceProperties.Hedge hedge = props.getKbHedge();
+        if (props.isEnabled() && hedge.isEnabled()) {
+            AtomicInteger seq = new AtomicInteger();
+            int threads = Math.max(2, hedge.getThreads());
+            // 排队有上限：满了 Hedger 就不发第二路（主调用则在调用方线程上跑）
+            this.hedgeExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, hedge.getQueueCapacity())), r -> {
+                Thread t = new Thread(r, "kb-hedge-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.kbHedger = new Hedger(hedgeExecutor, hedge.getPercentile(), hedge.getMinDelay(),
+                    hedge.getMinSamples(), hedge.getWindowSize());
+        } else {
+            this.hedgeExecutor = null;
+            this.kbHedger = null;
+        }
+    }
+
+    /** Guards that never open or hedge, for callers wired without Spring. */
+    static DependencyGuards disabled() {
+        ResilienceProperties props = new ResilienceProperties();
+        props.setEnabled(false);
+        return new DependencyGuards(props);
+    }
+
+    public CircuitBreaker llm() {
+        return llm;
+    }
+
+    public CircuitBreaker kbSearch() {
+        return kbSearch;
+    }
+
+    /**
+     * Run one KB search, hedged when hedging is enabled; a hedged search is waited for at most
+     * {@code maxWait} (the request's remaining deadline).
+     */
+    public <T> Hedger.Result<T> hedgeKbSearch(Supplier<T> search, Duration maxWait) {
+        return kbHedger == null ? new Hedger.Result<>(search.get(), false) : kbHedger.call(search, maxWait);
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        boolean degraded = false;
+        for (CircuitBreaker breaker : List.of(llm, kbSearch)) {
+            CircuitBreaker.State state = breaker.state();
+            degraded |= state != CircuitBreaker.State.CLOSED;
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("state", state.name());
+            detail.put("failureRate", breaker.failureRate());
+            if (state == CircuitBreaker.State.OPEN) {
+                detail.put("retryAfterMs", breaker.retryAfter().toMillis());
+            }
+            details.put(breaker.name(), detail);
+        }
+        return Health.status(degraded ? DEGRADED : Status.UP).withDetails(details).build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CircuitBreaker breaker : List.of(llm, kbSearch)) {
+            Gauge.builder("mrpot.breaker.state", breaker, b -> switch (b.state()) {
+                        case CLOSED -> 0;
+                        case HALF_OPEN -> 1;
+                        case OPEN -> 2;
+                    })
+                    .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                    .tag("name", breaker.name())
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    private static CircuitBreaker breaker(String name, boolean enabled, ResilienceProperties.Breaker props) {
+        return CircuitBreaker.builder(name)
+                .enabled(enabled)
+                .windowSize(props.getWindowSize())
+                .minimumCalls(props.getMinimumCalls())
+                .failureRateThreshold(props.getFailureRateThreshold())
+                .openDuration(props.getOpenDuration())
+                .slowCallDuration(props.getSlowCallDuration())
+                .build();
+    }
+}
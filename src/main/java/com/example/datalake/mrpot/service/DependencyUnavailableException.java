@@ -0,0 +1,27 @@
+package com.example.datalake.mrpot.service;
+
+import java.time.Duration;
+
+/**
+ * A call was refused because the circuit breaker of its dependency is open; mapped to 503.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final String dependency;
+    private final Duration retryAfter;
+
+    public DependencyUnavailableException(String dependency, Duration retryAfter) {
+        super(dependency + " is temporarily unavailable (circuit open)");
+        this.dependency = dependency;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Breaker name, e.g. {@code llm}. */
+    public String getDependency() {
+        return dependency;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.datalake.mrpot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process HNSW (hierarchical navigable small world) index for cosine similarity.
+ *
+ * <p>Vectors are L2-normalized on insert, so similarity is a plain dot product. Each node lives on
+ * layers {@code 0..level} (level drawn with probability {@code 1/m} per extra layer) and keeps up to
+ * {@code m} neighbours per upper layer and {@code 2m} on layer 0. Search descends greedily from the
+ * top entry point and runs a best-first beam of width {@code efSearch} on layer 0.
+ *
+ * <p>Removal only tombstones a node: it keeps routing searches but is never returned. Callers that
+ * churn (e.g. a bounded cache) should rebuild once {@link #deleted()} outgrows {@link #size()}.
+ * Reads take a shared lock, writes an exclusive one.
+ */
+public final class HnswIndex {
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<float[]> vectors = new ArrayList<>();
+    // node → 每层的邻居（int[]，长度为 degree 上限，未用位置在 degrees 里截断）
+    private final List<int[][]> neighbours = new ArrayList<>();
+    private final List<int[]> degrees = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimension = -1;
+
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, 42L);
+    }
+
+    HnswIndex(int m, int efConstruction, int efSearch, long seed) {
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Insert a vector and return its node id (dense, starting at 0).
+     *
+     * @throws IllegalArgumentException if the dimension differs from earlier vectors
+     */
+    public int add(float[] vector) {
+        float[] v = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            if (dimension < 0) {
+                dimension = v.length;
+            } else if (v.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + v.length);
+            }
+
+            int node = vectors.size();
+            int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            int[][] links = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[maxDegree(l)];
+            }
+            vectors.add(v);
+            neighbours.add(links);
+            degrees.add(new int[level + 1]);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            // 1) 高于新节点层级的部分：贪心下降
+            int ep = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedyClosest(v, ep, l);
+            }
+
+            // 2) 新节点所在的每一层：beam 搜索候选，连上最近的若干个并双向连边
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Scored> candidates = searchLayer(v, ep, efConstruction, l);
+                int limit = maxDegree(l);
+                for (int i = 0; i < candidates.size() && i < limit; i++) {
+                    int other = candidates.get(i).node();
+                    link(node, other, l);
+                    link(other, node, l);
+                }
+                ep = candidates.get(0).node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code k} live nodes most similar to {@code query}, best first.
+     */
+    public List<Scored> search(float[] query, int k) {
+        float[] q = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0 || q.length != dimension) {
+                return List.of();
+            }
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(q, ep, l);
+            }
+            List<Scored> candidates = searchLayer(q, ep, Math.max(efSearch, k), 0);
+            List<Scored> out = new ArrayList<>(Math.min(k, candidates.size()));
+            for (Scored s : candidates) {
+                if (deleted.get(s.node())) continue;
+                out.add(s);
+                if (out.size() == k) break;
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(int node) {
+        lock.writeLock().lock();
+        try {
+            if (node >= 0 && node < vectors.size() && !deleted.get(node)) {
+                deleted.set(node);
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Live (not removed) nodes. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vectors.size() - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Tombstoned nodes still held in the graph. */
+    public int deleted() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------- graph internals (caller holds the lock) ----------------
+
+    private int maxDegree(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private int greedyClosest(float[] q, int start, int level) {
+        int current = start;
+        double best = dot(q, vectors.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = neighbours.get(current)[level];
+            int degree = degrees.get(current)[level];
+            for (int i = 0; i < degree; i++) {
+                double sim = dot(q, vectors.get(links[i]));
+                if (sim > best) {
+                    best = sim;
+                    current = links[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Best-first search on one layer; returns up to {@code ef} nodes, most similar first. */
+    private List<Scored> searchLayer(float[] q, int entry, int ef, int level) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Comparator.comparingDouble(Scored::similarity).reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(Scored::similarity));
+
+        Scored start = new Scored(entry, dot(q, vectors.get(entry)));
+        visited.set(entry);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[][] links = neighbours.get(current.node());
+            if (level >= links.length) continue;
+            int degree = degrees.get(current.node())[level];
+            for (int i = 0; i < degree; i++) {
+                int next = links[level][i];
+                if (visited.get(next)) continue;
+                visited.set(next);
+                double sim = dot(q, vectors.get(next));
+                if (results.size() < ef || sim > results.peek().similarity()) {
+                    Scored scored = new Scored(next, sim);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        Scored[] sorted = results.toArray(new Scored[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(Scored::similarity).reversed());
+        return Arrays.asList(sorted);
+    }
+
+    // 邻居满了就替换掉其中最远的一个（若新邻居更近）
+    private void link(int from, int to, int level) {
+        int[] links = neighbours.get(from)[level];
+        int[] degree = degrees.get(from);
+        if (degree[level] < links.length) {
+            links[degree[level]++] = to;
+            return;
+        }
+        float[] base = vectors.get(from);
+        int worst = -1;
+        double worstSim = dot(base, vectors.get(to));
+        for (int i = 0; i < links.length; i++) {
+            double sim = dot(base, vectors.get(links[i]));
+            if (sim < worstSim) {
+                worstSim = sim;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            links[worst] = to;
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float x : vector) norm += x * x;
+        norm = Math.sqrt(norm);
+        float[] out = new float[vector.length];
+        if (norm == 0) return out;
+        for (int i = 0; i < vector.length; i++) {
+            out[i] = (float) (vector[i] / norm);
+        }
+        return out;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /** A node and its cosine similarity to the query. */
+    public record Scored(int node, double similarity) {}
+}
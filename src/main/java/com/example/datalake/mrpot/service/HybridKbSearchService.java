@@ -0,0 +1,250 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.KbHybridSearchProperties;
+import com.example.datalake.mrpot.model.Deadline;
+import com.example.datalake.mrpot.model.KbSnippet;
+import com.example.datalake.mrpot.util.KbSnippetUtils;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 混合检索（mrpot.kb.hybrid.enabled=true 时替换默认的 KbSearchService）：
+ * - 词法检索（当前配置的 ILIKE / FTS / BM25 后端）和向量检索（pgvector ContentRetriever）并发执行
+ * - 每一路有独立超时（不超过请求剩余的 deadline），超时或出错只丢掉这一路并中断它，不拖慢整个请求
+ * - 线程池和排队都有上限：后端变慢时新的检索直接跳过这一路，不会无限堆积
+ * - 每一路在 worker 线程上绑定调用方的 {@link Deadline}，JDBC 超时照样生效
+ * - 两路结果按 reciprocal-rank fusion 合并，再按 maxSnippets / maxTotalChars 预算截断
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "mrpot.kb.hybrid.enabled", havingValue = "true")
+public class HybridKbSearchService implements KbSearchService {
+
+    public static final String LEXICAL = "lexical";
+
+    private final KbSearchService lexical;
+    private final ObjectProvider<ContentRetriever> vectorRetriever;
+    private final KbHybridSearchProperties props;
+    private final ThreadPoolExecutor executor;
+
+    public HybridKbSearchService(@Qualifier(LEXICAL) KbSearchService lexical,
+                                 ObjectProvider<ContentRetriever> vectorRetriever,
+                                 KbHybridSearchProperties props) {
+        this.lexical = lexical;
+        this.vectorRetriever = vectorRetriever;
+        this.props = props;
+        AtomicInteger seq = new AtomicInteger();
+        int threads = Math.max(2, props.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, props.getQueueCapacity())), r -> {
+            Thread t = new Thread(r, "kb-hybrid-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public List<KbSnippet> searchSnippets(String query,
+                                          List<String> keywords,
+                                          int maxSnippets,
+                                          int maxTotalChars) {
+        if (query == null || query.isBlank() || maxSnippets <= 0 || maxTotalChars <= 0) {
+            return Collections.emptyList();
+        }
+
+        // 每一路多取一些候选，融合后再按预算截断
+        int legLimit = Math.max(maxSnippets * 2, maxSnippets);
+
+        Deadline deadline = Deadline.current();
+        long start = System.nanoTime();
+        Future<List<KbSnippet>> lexicalLeg = submit("lexical", deadline,
+                () -> lexical.searchSnippets(query, keywords, legLimit, maxTotalChars * 2));
+
+        ContentRetriever retriever = vectorRetriever.getIfAvailable();
+        Future<List<KbSnippet>> vectorLeg = retriever == null
+                ? null
+                : submit("vector", deadline, () -> vectorSearch(retriever, query));
+
+        List<KbSnippet> lexicalHits = await("lexical", lexicalLeg, legDeadline(start, props.getLexicalTimeout(), deadline));
+        List<KbSnippet> vectorHits = await("vector", vectorLeg, legDeadline(start, props.getVectorTimeout(), deadline));
+        List<KbSnippet> fused = fuse(lexicalHits, vectorHits, props.getRrfK());
+        return applyBudget(fused, KbSnippetUtils.mergeQueryKeywords(query, keywords), maxSnippets, maxTotalChars);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交一路检索；没有空闲 worker 且队列已满时返回 {@code null}，这一路直接跳过。
+     */
+    private Future<List<KbSnippet>> submit(String name, Deadline deadline, Supplier<List<KbSnippet>> search) {
+        try {
+            return executor.submit(() -> deadline.call(search));
+        } catch (RejectedExecutionException e) {
+            log.debug("[kb-hybrid] {} leg rejected, no free worker – continuing without it", name);
+            return null;
+        }
+    }
+
+    private static long legDeadline(long startNanos, Duration timeout, Deadline deadline) {
+        return startNanos + Math.min(timeout.toNanos(), deadline.remaining().toNanos());
+    }
+
+    private List<KbSnippet> await(String name, Future<List<KbSnippet>> leg, long deadlineNanos) {
+        if (leg == null) {
+            return List.of();
+        }
+        try {
+            List<KbSnippet> result = leg.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return result == null ? List.of() : result;
+        } catch (TimeoutException e) {
+            cancel(leg);
+            log.debug("[kb-hybrid] {} leg exceeded its budget, cancelled, continuing without it", name);
+            return List.of();
+        } catch (ExecutionException e) {
+            log.warn("[kb-hybrid] {} leg failed, continuing without it – {}", name, e.getCause().toString());
+            return List.of();
+        } catch (InterruptedException e) {
+            cancel(leg);
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    // 中断正在跑的检索；还在排队的任务从队列里清掉，不再占位
+    private void cancel(Future<?> leg) {
+        leg.cancel(true);
+        executor.purge();
+    }
+
+    private static List<KbSnippet> vectorSearch(ContentRetriever retriever, String query) {
+        List<Content> contents = retriever.retrieve(Query.from(query));
+        List<KbSnippet> out = new ArrayList<>(contents.size());
+        for (Content content : contents) {
+            TextSegment segment = content.textSegment();
+            if (segment == null || segment.text() == null || segment.text().isBlank()) continue;
+
+            Long docId = docIdOf(segment.metadata());
+            String docType = docTypeOf(segment.metadata());
+            String type = docType == null || docType.isBlank() ? "vector" : docType;
+            out.add(KbSnippet.builder()
+                    .docId(docId)
+                    .title(type)
+                    .source(docId == null ? type : type + " kb#" + docId)
+                    .snippet(segment.text())
+                    .score(0.0)
+                    .build());
+        }
+        return out;
+    }
+
+    private static Long docIdOf(Metadata metadata) {
+        if (metadata == null) return null;
+        for (String key : List.of("doc_id", "docId", "id")) {
+            try {
+                Long id = metadata.getLong(key);
+                if (id != null) return id;
+            } catch (RuntimeException ignored) {
+                // 非数字的 id，继续尝试下一个 key
+            }
+        }
+        return null;
+    }
+
+    private static String docTypeOf(Metadata metadata) {
+        if (metadata == null) return null;
+        try {
+            return metadata.getString("doc_type");
+        } catch (RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Reciprocal-rank fusion：同一文档在两路都出现时分数相加，保留词法那一路的片段（围绕关键词抽取）。
+     */
+    static List<KbSnippet> fuse(List<KbSnippet> lexicalHits, List<KbSnippet> vectorHits, int k) {
+        Map<String, KbSnippet> byKey = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+
+        addRanked(lexicalHits, "lex", k, byKey, scores);
+        addRanked(vectorHits, "vec", k, byKey, scores);
+
+        List<String> keys = new ArrayList<>(byKey.keySet());
+        // 稳定排序：同分时保持先词法、后向量的插入顺序
+        keys.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+
+        List<KbSnippet> out = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            KbSnippet s = byKey.get(key);
+            out.add(KbSnippet.builder()
+                    .docId(s.getDocId())
+                    .title(s.getTitle())
+                    .source(s.getSource())
+                    .snippet(s.getSnippet())
+                    .score(scores.get(key))
+                    .build());
+        }
+        return out;
+    }
+
+    private static void addRanked(List<KbSnippet> hits, String leg, int k,
+                                  Map<String, KbSnippet> byKey, Map<String, Double> scores) {
+        if (hits == null) return;
+        int rank = 0;
+        for (KbSnippet hit : hits) {
+            if (hit == null) continue;
+            rank++;
+            String key = hit.getDocId() != null ? "doc:" + hit.getDocId() : leg + ":" + rank;
+            byKey.putIfAbsent(key, hit);
+            scores.merge(key, 1.0 / (k + rank), Double::sum);
+        }
+    }
+
+    private static List<KbSnippet> applyBudget(List<KbSnippet> fused, List<String> keywords,
+                                               int maxSnippets, int maxTotalChars) {
+        List<KbSnippet> out = new ArrayList<>(Math.min(maxSnippets, fused.size()));
+        int remaining = maxTotalChars;
+        for (KbSnippet s : fused) {
+            if (out.size() >= maxSnippets || remaining <= 0) break;
+
+            int perDocBudget = Math.min(KbSnippetUtils.MAX_SNIPPET_PER_DOC, remaining);
+            String text = KbSnippetUtils.normalizeWhitespace(s.getSnippet());
+            if (text.length() > perDocBudget) {
+                // 向量命中是整段 chunk，按预算围绕关键词截取
+                text = KbSnippetUtils.extractSnippetOrHead(text, keywords, perDocBudget);
+            }
+            if (text.isBlank()) continue;
+
+            s.setSnippet(text);
+            out.add(s);
+            remaining -= text.length();
+        }
+        return out;
+    }
+}
@@ -1,22 +1,59 @@
 package com.example.datalake.mrpot.service;
 
+import com.example.datalake.mrpot.model.Deadline;
 import com.example.datalake.mrpot.model.KbSnippet;
 import com.example.datalake.mrpot.model.ProcessingContext;
-import com.example.datalake.mrpot.util.PromptRenderUtils;
+import com.example.datalake.mrpot.util.CircuitBreaker;
+import com.example.datalake.mrpot.util.Hedger;
+import com.example.datalake.mrpot.util.SingleFlight;
+import dev.langchain4j.exception.RateLimitException;
 import dev.langchain4j.model.chat.ChatModel;
-import lombok.RequiredArgsConstructor;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
 
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
-
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * KB 检索 + LLM 调用。
+ * Metrics: {@code mrpot.kb.search}（outcome=hit|empty|error）和
+ * {@code mrpot.llm.chat}（mode=blocking|streaming, outcome=success|error|cancelled），只统计真正打到后端的调用。
+ * 调用模型前依次查精确答案缓存（{@link AnswerCacheService}）和近似问题缓存（{@link SemanticAnswerCache}）。
+ * 同时在跑的相同 KB 查询 / 相同 final prompt 的阻塞调用经 {@link SingleFlight} 合并成一次，
+ * 省下的调用数记在 {@code mrpot.singleflight.saved}（call=kb-search|llm）。合并后的模型调用不受任何一个请求的
+ * deadline 约束，每个请求只按自己的剩余预算等待，所有请求都放弃时才取消。
+ * 真正打到模型的调用先过 {@link LlmRateLimiter}（TPM 令牌桶 + AIMD 并发上限），超限直接 429。
+ * KB 检索和 LLM 各有一个熔断器（{@link DependencyGuards}）：KB 熔断时不带 KB 上下文继续回答，
+ * LLM 熔断时缓存未命中的请求直接 503（{@link DependencyUnavailableException}），不再排队等超时。
+ * 请求的 {@link Deadline} 已过时不再调用模型，限流排队也不超过剩余预算。
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class LangChain4jRagService {
+public class LangChain4jRagService implements MeterBinder {
 
     private static final int MAX_SNIPPETS = 2;
     private static final int MAX_KB_CONTEXT_CHARS = 480;
@@ -24,10 +61,71 @@ public class LangChain4jRagService {
     static final String NO_KB_CONTEXT_PLACEHOLDER = "(no relevant knowledge base content found)";
 
     private final ChatModel chatModel;
+    private final StreamingChatModel streamingChatModel;
     private final KbSearchService kbSearchService;
+    private final AnswerCacheService answerCacheService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final LlmRateLimiter rateLimiter;
+    private final DependencyGuards guards;
+
+    // key 不含 userId / sessionId：同样的问题谁问都是同一次后端调用
+    private final SingleFlight<KbQuery, KbSearch> kbSearchFlights = new SingleFlight<>();
+    // 合并后的模型调用跑在自己的线程上，不属于任何一个请求：谁的 deadline 到了只是自己不等了
+    private final ExecutorService llmCalls;
+    private final SingleFlight<String, String> chatFlights;
+
+    private volatile MeterRegistry meterRegistry;
+
+    public LangChain4jRagService(ChatModel chatModel,
+                                 StreamingChatModel streamingChatModel,
+                                 KbSearchService kbSearchService,
+                                 AnswerCacheService answerCacheService) {
+        this(chatModel, streamingChatModel, kbSearchService, answerCacheService,
+                SemanticAnswerCache.disabled(), LlmRateLimiter.unlimited(), DependencyGuards.disabled());
+    }
+
+    @Autowired
+    public LangChain4jRagService(ChatModel chatModel,
+                                 StreamingChatModel streamingChatModel,
+                                 KbSearchService kbSearchService,
+                                 AnswerCacheService answerCacheService,
+                                 SemanticAnswerCache semanticAnswerCache,
+                                 LlmRateLimiter rateLimiter,
+                                 DependencyGuards guards) {
+        this.chatModel = chatModel;
+        this.streamingChatModel = streamingChatModel;
+        this.kbSearchService = kbSearchService;
+        this.answerCacheService = answerCacheService;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.rateLimiter = rateLimiter;
+        this.guards = guards;
+        AtomicInteger seq = new AtomicInteger();
+        // 线程数不会超过同时在等的调用方（llm 调度器的 worker）：没人等了的调用会被取消
+        this.llmCalls = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "llm-call-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.chatFlights = new SingleFlight<>(llmCalls);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        llmCalls.shutdownNow();
+    }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    /**
+     * KB 检索阶段：只写 kbContext / llmDocIds / kbSnippetCount。
+     * 检索用归一化后的用户文本（不等模板渲染出的 userPrompt），所以能和模板阶段并行；
+     * LLM 问题和 system prompt 由 PromptPipeline 在调用模型前补齐。
+     */
     public Mono<ProcessingContext> prepare(ProcessingContext ctx) {
-        String userText = resolveUserText(ctx);
+        String userText = resolveSearchText(ctx);
         if (isBlank(userText)) {
             return Mono.just(ctx.addStep("langchain4j-rag", "skip-empty-text"));
         }
@@ -37,13 +135,23 @@ public class LangChain4jRagService {
             return Mono.just(ctx.addStep("langchain4j-rag", "skip-empty-keywords"));
         }
 
-        // 1) 调用「片段检索」而不是整篇文档
-        List<KbSnippet> snippets = kbSearchService.searchSnippets(
-                userText,
-                keywords,
-                MAX_SNIPPETS,
-                MAX_KB_CONTEXT_CHARS
-        );
+        // 1) 调用「片段检索」而不是整篇文档；合并到别人的检索上时最多等本请求剩余的预算
+        SingleFlight.Result<KbSearch> search;
+        try {
+            search = kbSearchFlights.execute(
+                    new KbQuery(userText, keywords),
+                    ctx.getDeadline().remaining(),
+                    () -> guardedSearch(userText, keywords));
+        } catch (SingleFlight.WaitTimeoutException e) {
+            // 和检索失败一样降级：不带 KB 上下文继续
+            search = new SingleFlight.Result<>(
+                    new KbSearch(List.of(), "kb-search shared call exceeded deadline"), false, 0);
+        }
+        List<KbSnippet> snippets = search.value().snippets();
+        noteCoalesced(ctx, "kb-search", search);
+        if (search.value().note() != null) {
+            ctx.addStep("langchain4j-rag", search.value().note());
+        }
 
         if (snippets.isEmpty()) {
             log.debug("No kb snippets matched for text='{}'", userText);
@@ -60,12 +168,8 @@ public class LangChain4jRagService {
         }
 
         ctx.setKbContext(kbContext);
-        ctx.setLlmQuestion(userText);
         ctx.setKbSnippetCount(snippets.size());
 
-        // 4) 拿系统 prompt（由前面 Processor 链构建）
-        PromptRenderUtils.ensureSystemPrompt(ctx);
-
         return Mono.just(ctx);
     }
 
@@ -75,14 +179,378 @@ public class LangChain4jRagService {
             return Mono.just(ctx.addStep("langchain4j-rag", "skip-empty-final-prompt"));
         }
 
+        final List<Long> docIds = ctx.getLlmDocIds();
+        final long answerStart = System.nanoTime();
+        Optional<AnswerCacheService.CachedAnswer> cached = answerCacheService.lookup(promptForLlm, docIds);
+        final long answerEnd = System.nanoTime();
+        if (cached.isPresent()) {
+            return Mono.just(applyCachedAnswer(ctx, cached.get(), stepInfo, answerStart, answerEnd));
+        }
+
         final ProcessingContext ctxRef = ctx;
         return Mono.fromCallable(() -> {
-            String answer = chatModel.chat(promptForLlm);
+            CacheCheck cache = semanticLookup(ctxRef, docIds, answerStart, answerEnd);
+            if (cache.probe().hit().isPresent()) {
+                return applySemanticHit(ctxRef, cache, stepInfo);
+            }
+
+            Deadline deadline = ctxRef.getDeadline();
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("llm", deadline.budget());
+            }
+            // 共享调用本身只受 HTTP 超时约束；每个调用方（包括 leader）按自己的 deadline 等，
+            // 预算短的请求超时不会中断别人也在等的调用
+            SingleFlight.Result<String> chat;
+            try {
+                chat = chatFlights.execute(promptForLlm, deadline.remaining(), () -> chatTimed(promptForLlm));
+            } catch (SingleFlight.WaitTimeoutException e) {
+                throw new DeadlineExceededException("llm", deadline.budget());
+            }
+            String answer = chat.value();
             ctxRef.setLlmAnswer(answer);
+            noteCoalesced(ctxRef, "llm", chat);
+            // 只有 leader 写缓存，同一答案不必存 N 次
+            if (chat.leader()) {
+                recordAnswer(ctxRef, promptForLlm, docIds, answer, cache);
+            }
             return ctxRef.addStep("langchain4j-rag", stepInfo);
         });
     }
 
+    /**
+     * 经熔断器（和可选的 hedging）做一次 KB 检索。熔断打开或检索失败时返回空片段，
+     * 回答照常走 LLM，只是没有 KB 上下文；熔断关闭（resilience 关掉）时异常照旧抛出。
+     */
+    private KbSearch guardedSearch(String userText, List<String> keywords) {
+        CircuitBreaker breaker = guards.kbSearch();
+        CircuitBreaker.Call call = breaker.tryAcquire();
+        if (call == null) {
+            return new KbSearch(List.of(), "skip-kb-search circuit=open");
+        }
+        long start = System.nanoTime();
+        // hedge 的两次尝试跑在别的线程上，把 deadline 带过去（JDBC 超时要用），等待也不超过剩余预算
+        Deadline deadline = Deadline.current();
+        Hedger.Result<List<KbSnippet>> result;
+        try {
+            result = guards.hedgeKbSearch(() -> deadline.call(() -> searchSnippetsTimed(userText, keywords)),
+                    deadline.remaining());
+        } catch (RuntimeException e) {
+            call.onFailure();
+            if (!breaker.isEnabled()) {
+                throw e;
+            }
+            log.warn("KB search failed, answering without KB context: {}", e.toString());
+            return new KbSearch(List.of(), "kb-search failed, answering without KB context");
+        }
+        call.onSuccess(System.nanoTime() - start);
+        return new KbSearch(result.value(), result.hedged() ? "kb-search hedged" : null);
+    }
+
+    private List<KbSnippet> searchSnippetsTimed(String userText, List<String> keywords) {
+        long searchStart = System.nanoTime();
+        String searchOutcome = "error";
+        try {
+            List<KbSnippet> snippets = kbSearchService.searchSnippets(
+                    userText,
+                    keywords,
+                    MAX_SNIPPETS,
+                    MAX_KB_CONTEXT_CHARS
+            );
+            searchOutcome = snippets.isEmpty() ? "empty" : "hit";
+            return snippets;
+        } finally {
+            record("mrpot.kb.search", "KbSearchService.searchSnippets latency",
+                    System.nanoTime() - searchStart, "outcome", searchOutcome);
+        }
+    }
+
+    private String chatTimed(String promptForLlm) {
+        LlmCall llm = acquireLlm(promptForLlm, Deadline.NONE);
+        long chatStart = System.nanoTime();
+        String answer;
+        try {
+            answer = chatModel.chat(promptForLlm);
+        } catch (RuntimeException e) {
+            if (isCancellation(e)) {
+                // 所有调用方都不等了才会被中断：不是模型的故障，不计入熔断，也不让限流器收缩
+                llm.permit().release(new CancellationException("no caller is waiting any more"));
+                llm.breaker().onIgnored();
+                recordChat("blocking", "cancelled", chatStart);
+            } else {
+                llm.permit().release(e);
+                onLlmError(llm, e);
+                recordChat("blocking", "error", chatStart);
+            }
+            throw e;
+        }
+        llm.permit().release(null);
+        llm.breaker().onSuccess(System.nanoTime() - chatStart);
+        recordChat("blocking", "success", chatStart);
+        return answer;
+    }
+
+    /**
+     * 先看 deadline，再问熔断器，最后排限流队列（最多等剩余预算）：前两者不通过时立即失败，不占用 TPM 预算。
+     */
+    private LlmCall acquireLlm(String promptForLlm, Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("llm", deadline.budget());
+        }
+        CircuitBreaker breaker = guards.llm();
+        CircuitBreaker.Call call = breaker.tryAcquire();
+        if (call == null) {
+            Duration retryAfter = breaker.retryAfter();
+            throw new DependencyUnavailableException("llm",
+                    retryAfter.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : retryAfter);
+        }
+        try {
+            return new LlmCall(call, rateLimiter.acquire(promptForLlm, deadline.remaining()));
+        } catch (RuntimeException e) {
+            call.onIgnored();
+            throw e;
+        }
+    }
+
+    // 上游 429 是配额问题不是故障，交给限流器收缩并发，不计入熔断失败率
+    private static void onLlmError(LlmCall llm, Throwable error) {
+        if (error instanceof RateLimitException) {
+            llm.breaker().onIgnored();
+        } else {
+            llm.breaker().onFailure();
+        }
+    }
+
+    // 中断 / 取消（包括被包装过的 InterruptedException）；SocketTimeoutException 是模型慢，不算
+    private static boolean isCancellation(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException
+                    || (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 合并发生时每个请求各自记一条 step；跟随者（非 leader）各算一次省下的调用。
+     */
+    private void noteCoalesced(ProcessingContext ctx, String call, SingleFlight.Result<?> result) {
+        if (!result.coalesced()) {
+            return;
+        }
+        ctx.addStep("langchain4j-rag", call + " coalesced waiters=" + result.waiters()
+                + (result.leader() ? ", leader" : ", shared"));
+        MeterRegistry registry = meterRegistry;
+        if (!result.leader() && registry != null) {
+            Counter.builder("mrpot.singleflight.saved")
+                    .description("Backend calls avoided by joining an identical in-flight call")
+                    .tag("call", call)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * 流式版本：每个 partial token 交给 {@code onDelta}，完成后把完整答案写回 ctx。
+     * Mono 在模型返回完整响应（或出错）时才结束，所以后续步骤和非流式一致。
+     */
+    public Mono<ProcessingContext> streamWithLlm(ProcessingContext ctx, String stepInfo, Consumer<String> onDelta) {
+        final String promptForLlm = safe(ctx.getFinalPrompt());
+        if (isBlank(promptForLlm)) {
+            return Mono.just(ctx.addStep("langchain4j-rag", "skip-empty-final-prompt"));
+        }
+
+        final List<Long> docIds = ctx.getLlmDocIds();
+        final long answerStart = System.nanoTime();
+        Optional<AnswerCacheService.CachedAnswer> cached = answerCacheService.lookup(promptForLlm, docIds);
+        final long answerEnd = System.nanoTime();
+        if (cached.isPresent()) {
+            // 命中时整段答案作为一个 delta 推出去，前端处理逻辑不用区分
+            if (onDelta != null) {
+                onDelta.accept(cached.get().answer());
+            }
+            return Mono.just(applyCachedAnswer(ctx, cached.get(), stepInfo, answerStart, answerEnd));
+        }
+
+        if (!semanticAnswerCache.isEnabled()) {
+            return streamFromModel(ctx, promptForLlm, docIds, stepInfo, onDelta,
+                    semanticLookup(ctx, docIds, answerStart, answerEnd));
+        }
+        // 近似问题查询要先算 embedding（阻塞调用），放进 fromCallable 跟着 llm 调度器走
+        return Mono.fromCallable(() -> semanticLookup(ctx, docIds, answerStart, answerEnd))
+                .flatMap(cache -> {
+                    if (cache.probe().hit().isEmpty()) {
+                        return streamFromModel(ctx, promptForLlm, docIds, stepInfo, onDelta, cache);
+                    }
+                    if (onDelta != null) {
+                        onDelta.accept(cache.probe().hit().get().answer());
+                    }
+                    return Mono.just(applySemanticHit(ctx, cache, stepInfo));
+                });
+    }
+
+    private Mono<ProcessingContext> streamFromModel(ProcessingContext ctxRef,
+                                                    String promptForLlm,
+                                                    List<Long> docIds,
+                                                    String stepInfo,
+                                                    Consumer<String> onDelta,
+                                                    CacheCheck cache) {
+        return Mono.create(sink -> {
+            // 限流器会在这里阻塞排队（llm 线程池上）；被拒绝时抛出的异常由 Mono.create 转成 error
+            LlmCall llm = acquireLlm(promptForLlm, ctxRef.getDeadline());
+            // 取消、完成、出错只有先到的那个生效：取消之后迟到的回调不再碰 permit 和熔断器
+            AtomicBoolean settled = new AtomicBoolean();
+            // deadline 到了或 SSE 断开时 pipeline 会取消订阅：模型回调可能再也不来，先把 permit 还掉
+            sink.onCancel(() -> {
+                if (settled.compareAndSet(false, true)) {
+                    llm.permit().release(new CancellationException("cancelled by the pipeline"));
+                    llm.breaker().onIgnored();
+                }
+            });
+            try {
+                streamingChatModel.chat(promptForLlm, streamingHandler(ctxRef, promptForLlm, docIds, stepInfo,
+                        onDelta, cache, llm, settled, sink));
+            } catch (RuntimeException e) {
+                if (settled.compareAndSet(false, true)) {
+                    llm.permit().release(e);
+                    onLlmError(llm, e);
+                }
+                throw e;
+            }
+        });
+    }
+
+    private StreamingChatResponseHandler streamingHandler(ProcessingContext ctxRef,
+                                                          String promptForLlm,
+                                                          List<Long> docIds,
+                                                          String stepInfo,
+                                                          Consumer<String> onDelta,
+                                                          CacheCheck cache,
+                                                          LlmCall llm,
+                                                          AtomicBoolean settled,
+                                                          MonoSink<ProcessingContext> sink) {
+        return new StreamingChatResponseHandler() {
+            private final StringBuilder partial = new StringBuilder();
+            private final long chatStart = System.nanoTime();
+
+            @Override
+            public void onPartialResponse(String token) {
+                if (token == null || token.isEmpty()) {
+                    return;
+                }
+                partial.append(token);
+                if (onDelta != null) {
+                    onDelta.accept(token);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse response) {
+                if (!settled.compareAndSet(false, true)) {
+                    return;
+                }
+                llm.permit().release(null);
+                llm.breaker().onSuccess(System.nanoTime() - chatStart);
+                recordChat("streaming", "success", chatStart);
+                String answer = response != null && response.aiMessage() != null
+                        ? response.aiMessage().text()
+                        : null;
+                String fullAnswer = isBlank(answer) ? partial.toString() : answer;
+                ctxRef.setLlmAnswer(fullAnswer);
+                recordAnswer(ctxRef, promptForLlm, docIds, fullAnswer, cache);
+                sink.success(ctxRef.addStep("langchain4j-rag", stepInfo + ", streamed"));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (!settled.compareAndSet(false, true)) {
+                    return;
+                }
+                llm.permit().release(error);
+                onLlmError(llm, error);
+                recordChat("streaming", "error", chatStart);
+                sink.error(error);
+            }
+        };
+    }
+
+    private static ProcessingContext applyCachedAnswer(ProcessingContext ctx,
+                                                       AnswerCacheService.CachedAnswer cached,
+                                                       String stepInfo,
+                                                       long lookupStart,
+                                                       long lookupEnd) {
+        ctx.setLlmAnswer(cached.answer());
+        ctx.addStep("answer-cache", "hit age=" + cached.age().toSeconds() + "s, docs=" + cached.docIds().size());
+        ctx.timeSteps("answer-cache", lookupStart, lookupEnd);
+        return ctx.addStep("langchain4j-rag", stepInfo + ", answer-cache");
+    }
+
+    private CacheCheck semanticLookup(ProcessingContext ctx, List<Long> docIds, long answerStart, long answerEnd) {
+        if (!semanticAnswerCache.isEnabled()) {
+            return new CacheCheck(answerStart, answerEnd, SemanticAnswerCache.Probe.DISABLED, 0L, 0L);
+        }
+        String language = ctx.getLanguage() == null ? null : ctx.getLanguage().getIsoCode();
+        long start = System.nanoTime();
+        SemanticAnswerCache.Probe probe = semanticAnswerCache.lookup(resolveSearchText(ctx), language, docIds);
+        return new CacheCheck(answerStart, answerEnd, probe, start, System.nanoTime());
+    }
+
+    private static ProcessingContext applySemanticHit(ProcessingContext ctx, CacheCheck cache, String stepInfo) {
+        SemanticAnswerCache.Hit hit = cache.probe().hit().orElseThrow();
+        ctx.setLlmAnswer(hit.answer());
+        ctx.addStep("semantic-cache", String.format(Locale.ROOT, "hit similarity=%.3f, age=%ds",
+                hit.similarity(), hit.age().toSeconds()));
+        ctx.timeSteps("semantic-cache", cache.semanticStart(), cache.semanticEnd());
+        return ctx.addStep("langchain4j-rag", stepInfo + ", semantic-cache");
+    }
+
+    private void recordChat(String mode, String outcome, long startNanos) {
+        record("mrpot.llm.chat", "OpenAI chat completion latency (answer-cache hits excluded)",
+                System.nanoTime() - startNanos, "mode", mode, "outcome", outcome);
+    }
+
+    private void record(String name, String description, long nanos, String... tags) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordAnswer(ProcessingContext ctx, String promptForLlm, List<Long> docIds, String answer,
+                              CacheCheck cache) {
+        if (answerCacheService.isEnabled()) {
+            answerCacheService.store(promptForLlm, docIds, answer);
+            ctx.addStep("answer-cache", "miss, stored");
+            ctx.timeSteps("answer-cache", cache.answerStart(), cache.answerEnd());
+        }
+        if (cache.probe().vector() != null) {
+            semanticAnswerCache.store(cache.probe(), answer);
+            ctx.addStep("semantic-cache", "miss, stored");
+            ctx.timeSteps("semantic-cache", cache.semanticStart(), cache.semanticEnd());
+        }
+    }
+
+    private record KbQuery(String text, List<String> keywords) {}
+
+    // 两级缓存的查询结果和各自查询的起止 nanoTime。缓存 step 不属于任何 stage 的 stepName，
+    // observeStage 不会替它们计时，写 step 时按这里的区间盖上 startMs / durationMs（命中、未命中都是查询耗时）
+    private record CacheCheck(long answerStart, long answerEnd,
+                              SemanticAnswerCache.Probe probe, long semanticStart, long semanticEnd) {}
+
+    // 一次放行的模型调用：熔断器的 Call 和限流器的 Permit，两者都要各自报告一次
+    private record LlmCall(CircuitBreaker.Call breaker, LlmRateLimiter.Permit permit) {}
+
+    // note: 需要记进 step 的检索情况（熔断 / 失败降级 / hedged），正常为 null
+    private record KbSearch(List<KbSnippet> snippets, String note) {}
+
     /**
      * 在指定总预算内组装 KB 文本。
      * 这里只做非常轻量的格式化，复杂逻辑（怎么抽 snippet）放在 KbSearchService 里。
@@ -126,8 +594,8 @@ public class LangChain4jRagService {
         return sb.toString();
     }
 
-    private static String resolveUserText(ProcessingContext ctx) {
-        String userText = firstNonBlank(ctx.getUserPrompt(), ctx.getNormalized(), ctx.getRawInput());
+    private static String resolveSearchText(ProcessingContext ctx) {
+        String userText = firstNonBlank(ctx.getNormalized(), ctx.getRawInput());
         return clipForModel(userText, MAX_USER_TEXT_CHARS);
     }
 
@@ -0,0 +1,30 @@
+package com.example.datalake.mrpot.service;
+
+import dev.langchain4j.exception.RateLimitException;
+
+import java.time.Duration;
+
+/**
+ * Thrown by {@link LlmRateLimiter} when a chat call is shed locally, before it reaches OpenAI.
+ * Extends {@link RateLimitException} so callers that already map OpenAI's 429 handle it the same way.
+ */
+public class LlmRateLimitedException extends RateLimitException {
+
+    private final String reason;
+    private final Duration retryAfter;
+
+    public LlmRateLimitedException(String reason, Duration retryAfter) {
+        super("LLM " + reason + " limit reached, retry in " + Math.max(1, retryAfter.toSeconds()) + "s");
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    /** {@code tokens} (per-minute budget) or {@code concurrency} (in-flight limit). */
+    public String getReason() {
+        return reason;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.config.LlmRateLimitProperties;
+import dev.langchain4j.exception.RateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side gate in front of the chat model, so requests that cannot succeed are queued briefly or
+ * rejected before they cost latency and quota.
+ *
+ * <ul>
+ *   <li>Token bucket sized to the TPM quota; each call costs {@code prompt chars / chars-per-token +
+ *       max output tokens}. A call that would have to wait longer than {@code max-queue-wait} for
+ *       tokens is shed immediately.</li>
+ *   <li>AIMD concurrency limit: +1/limit per fast success, ×backoff-ratio on an OpenAI 429 or a call
+ *       slower than {@code latency-threshold}. Callers wait for a free slot until the same deadline.</li>
+ * </ul>
+ * Shed calls throw {@link LlmRateLimitedException}, which the controller maps to 429.
+ *
+ * <p>Metrics: {@code mrpot.llm.limiter.limit}, {@code mrpot.llm.limiter.inflight},
+ * {@code mrpot.llm.limiter.tokens} (gauges), {@code mrpot.llm.limiter.wait} (timer, admitted calls)
+ * and {@code mrpot.llm.limiter.rejected} (reason=tokens|concurrency).
+ */
+@Slf4j
+@Service
+public class LlmRateLimiter implements MeterBinder {
+
+    private final LlmRateLimitProperties props;
+    private final int maxOutputTokens;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    // token bucket（可以暂时为负：已预订、排队中的调用）
+    private double tokens;
+    private long lastRefillNanos;
+    // AIMD
+    private double limit;
+    private int inFlight;
+
+    private volatile MeterRegistry meterRegistry;
+
+    public LlmRateLimiter(LlmRateLimitProperties props, Langchain4jOpenAiProperties openAiProps) {
+        this.props = props;
+        this.maxOutputTokens = openAiProps.getMaxOutputTokens() == null ? 0 : openAiProps.getMaxOutputTokens();
+        this.tokens = capacity();
+        this.lastRefillNanos = System.nanoTime();
+        this.limit = clampLimit(props.getInitialConcurrency());
+    }
+
+    /** Always-admitting instance for callers wired without Spring. */
+    static LlmRateLimiter unlimited() {
+        LlmRateLimitProperties props = new LlmRateLimitProperties();
+        props.setEnabled(false);
+        return new LlmRateLimiter(props, new Langchain4jOpenAiProperties());
+    }
+
+    /**
+     * Wait (at most {@code max-queue-wait}) for budget and a concurrency slot. The returned permit
+     * must be released exactly once with the call's outcome.
+     *
+     * @throws LlmRateLimitedException when the call would have to wait longer than allowed
+     */
+    public Permit acquire(String prompt) {
+        return acquire(prompt, props.getMaxQueueWait());
+    }
+
+    /**
+     * Same as {@link #acquire(String)}, but never waits longer than {@code maxWait} (e.g. what is left
+     * of the request's deadline).
+     */
+    public Permit acquire(String prompt, Duration maxWait) {
+        if (!props.isEnabled()) {
+            return Permit.NOOP;
+        }
+        long start = System.nanoTime();
+        long deadline = start + Math.min(props.getMaxQueueWait().toNanos(), Math.max(0, maxWait.toNanos()));
+        double cost = Math.min(capacity(), estimateTokens(prompt));
+
+        // 1) token bucket：够就直接扣；不够但能在 deadline 内补上就预订并等待，否则立即拒绝
+        long tokenWaitNanos;
+        lock.lock();
+        try {
+            refill(start);
+            tokenWaitNanos = tokens >= cost ? 0 : (long) Math.ceil((cost - tokens) / tokensPerNano());
+            if (start + tokenWaitNanos > deadline) {
+                throw reject("tokens", Duration.ofNanos(tokenWaitNanos));
+            }
+            tokens -= cost;
+        } finally {
+            lock.unlock();
+        }
+        if (tokenWaitNanos > 0) {
+            sleepNanos(tokenWaitNanos, cost);
+        }
+
+        // 2) AIMD 并发上限：排队等空位，直到同一个 deadline
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    tokens += cost;
+                    throw reject("concurrency", Duration.ofSeconds(1));
+                }
+                slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            tokens += cost;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an LLM slot", e);
+        } finally {
+            lock.unlock();
+        }
+
+        long waited = System.nanoTime() - start;
+        recordWait(waited);
+        return new Permit(this, System.nanoTime());
+    }
+
+    /** Current AIMD concurrency limit. */
+    public double limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tokens left in the bucket right now (negative while queued calls hold reservations). */
+    public double availableTokens() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("mrpot.llm.limiter.limit", this, LlmRateLimiter::limit)
+                .description("Adaptive (AIMD) limit of concurrent chat calls")
+                .register(registry);
+        Gauge.builder("mrpot.llm.limiter.inflight", this, LlmRateLimiter::inFlight)
+                .description("Chat calls currently holding a limiter slot")
+                .register(registry);
+        Gauge.builder("mrpot.llm.limiter.tokens", this, LlmRateLimiter::availableTokens)
+                .description("Estimated tokens left in the per-minute budget")
+                .register(registry);
+    }
+
+    private void release(long startNanos, Throwable error) {
+        long latency = System.nanoTime() - startNanos;
+        lock.lock();
+        try {
+            inFlight--;
+            if (error instanceof RateLimitException) {
+                // OpenAI 说额度用完了：桶清空 + 乘性减
+                tokens = Math.min(tokens, 0);
+                limit = clampLimit(limit * props.getBackoffRatio());
+            } else if (error == null) {
+                limit = latency > props.getLatencyThreshold().toNanos()
+                        ? clampLimit(limit * props.getBackoffRatio())
+                        : clampLimit(limit + 1.0 / limit);
+            }
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int estimateTokens(String prompt) {
+        int chars = prompt == null ? 0 : prompt.length();
+        return chars / Math.max(1, props.getCharsPerToken()) + maxOutputTokens;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity(), tokens + (now - lastRefillNanos) * tokensPerNano());
+        lastRefillNanos = now;
+    }
+
+    private double capacity() {
+        return Math.max(1, props.getTokensPerMinute());
+    }
+
+    private double tokensPerNano() {
+        return capacity() / TimeUnit.MINUTES.toNanos(1);
+    }
+
+    private double clampLimit(double value) {
+        int min = Math.max(1, props.getMinConcurrency());
+        int max = Math.max(min, props.getMaxConcurrency());
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void sleepNanos(long nanos, double cost) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            lock.lock();
+            try {
+                tokens += cost;
+            } finally {
+                lock.unlock();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM token budget", e);
+        }
+    }
+
+    private LlmRateLimitedException reject(String reason, Duration retryAfter) {
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            Counter.builder("mrpot.llm.limiter.rejected")
+                    .description("Chat calls shed before reaching the model")
+                    .tag("reason", reason)
+                    .register(registry)
+                    .increment();
+        }
+        log.debug("[llm-limiter] Shed call: reason={}, retryAfter={}", reason, retryAfter);
+        return new LlmRateLimitedException(reason, retryAfter);
+    }
+
+    private void recordWait(long nanos) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("mrpot.llm.limiter.wait")
+                .description("Time admitted chat calls waited for tokens or a slot")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** One admitted chat call; {@link #release} it once the model returned or failed. */
+    public static final class Permit {
+
+        static final Permit NOOP = new Permit(null, 0);
+
+        private final LlmRateLimiter limiter;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LlmRateLimiter limiter, long startNanos) {
+            this.limiter = limiter;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * @param error the call's failure, or {@code null} on success
+         */
+        public void release(Throwable error) {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.release(startNanos, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.PipelineSchedulerProperties;
+import com.example.datalake.mrpot.processor.StageResource;
+import com.example.datalake.mrpot.util.VirtualThreads;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Execution model of {@link PromptPipeline}: one named, bounded scheduler per {@link StageResource}.
+ *
+ * <p>Each scheduler wraps a {@link ThreadPoolExecutor} with a fixed number of workers and a bounded
+ * queue; when both are full the stage fails with {@link RejectedExecutionException} instead of
+ * piling up work. Because blocking JDBC / OpenAI calls only ever run on these pools, a slow model
+ * cannot exhaust the servlet threads that serve {@code /health} or the CRUD endpoints.
+ *
+ * <p>With {@code spring.threads.virtual.enabled=true} on Java 21+ the db and llm schedulers run each
+ * stage on its own virtual thread instead; admission is still bounded ({@code virtual-max-in-flight})
+ * so overload keeps failing fast. The cpu pool stays on platform threads.
+ *
+ * <p>Metrics: the standard {@code executor.*} meters (tag {@code name=mrpot-db|llm|cpu}) plus
+ * {@code mrpot.pipeline.scheduler.saturation} (busy+queued over capacity) and
+ * {@code mrpot.pipeline.scheduler.rejected}.
+ */
+@Slf4j
+@Component
+public class PipelineSchedulers implements MeterBinder {
+
+    private final Map<StageResource, Pool> pools = new EnumMap<>(StageResource.class);
+    private final boolean virtual;
+
+    public PipelineSchedulers(PipelineSchedulerProperties props) {
+        this(props, false);
+    }
+
+    @Autowired
+    public PipelineSchedulers(PipelineSchedulerProperties props,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtual = virtualThreads && VirtualThreads.isSupported();
+        if (virtualThreads && !virtual) {
+            log.warn("[pipeline] spring.threads.virtual.enabled=true but running on Java {}; using platform pools",
+                    Runtime.version().feature());
+        }
+        pools.put(StageResource.DB, newBlockingPool(StageResource.DB, props.getDb()));
+        pools.put(StageResource.LLM, newBlockingPool(StageResource.LLM, props.getLlm()));
+        pools.put(StageResource.CPU, newPool(StageResource.CPU, props.getCpu()));
+    }
+
+    private PipelineSchedulers() {
+        this.virtual = false;
+    }
+
+    /**
+     * Runs every stage on the subscribing thread (no pools); for tests and standalone use.
+     */
+    public static PipelineSchedulers immediate() {
+        return new PipelineSchedulers();
+    }
+
+    public Scheduler forResource(StageResource resource) {
+        Pool pool = pools.get(resource == null ? StageResource.CPU : resource);
+        return pool == null ? Schedulers.immediate() : pool.scheduler();
+    }
+
+    public Scheduler db() {
+        return forResource(StageResource.DB);
+    }
+
+    public Scheduler llm() {
+        return forResource(StageResource.LLM);
+    }
+
+    public Scheduler cpu() {
+        return forResource(StageResource.CPU);
+    }
+
+    /**
+     * True when the db / llm schedulers run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Pool pool : pools.values()) {
+            Tags tags = Tags.of("resource", pool.label());
+            if (pool.executor() instanceof ThreadPoolExecutor) {
+                new ExecutorServiceMetrics(pool.executor(), pool.name(), tags).bindTo(registry);
+            }
+            Gauge.builder("mrpot.pipeline.scheduler.saturation", pool, Pool::saturation)
+                    .description("In-flight stage executions (running + queued) over admission capacity")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("mrpot.pipeline.scheduler.rejected", pool.rejected(), AtomicLong::get)
+                    .description("Stage executions rejected because the pool and its queue were full")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Pool pool : pools.values()) {
+            pool.scheduler().dispose();
+        }
+    }
+
+    // db / llm：虚拟线程模式下每个 stage 一个虚拟线程，否则是有界平台线程池
+    private Pool newBlockingPool(StageResource resource, PipelineSchedulerProperties.Pool cfg) {
+        return virtual ? newVirtualPool(resource, cfg) : newPool(resource, cfg);
+    }
+
+    private static Pool newPool(StageResource resource, PipelineSchedulerProperties.Pool cfg) {
+        String label = resource.name().toLowerCase(Locale.ROOT);
+        String name = "mrpot-" + label;
+        int threads = Math.max(1, cfg.getThreads());
+        int capacity = Math.max(1, cfg.getQueueCapacity());
+        AtomicInteger seq = new AtomicInteger();
+        AtomicLong rejected = new AtomicLong();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                r -> {
+                    Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (task, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException(name + " saturated: " + threads
+                            + " busy, " + capacity + " queued");
+                });
+        // 空闲时回收线程，突发流量再按需创建
+        executor.allowCoreThreadTimeOut(true);
+
+        log.info("[pipeline] Scheduler {}: threads={}, queueCapacity={}", name, threads, capacity);
+        return new Pool(label, name, executor, Schedulers.fromExecutorService(executor, name), threads + capacity,
+                () -> executor.getActiveCount() + executor.getQueue().size(), rejected);
+    }
+
+    private static Pool newVirtualPool(StageResource resource, PipelineSchedulerProperties.Pool cfg) {
+        String label = resource.name().toLowerCase(Locale.ROOT);
+        String name = "mrpot-" + label;
+        int maxInFlight = cfg.getVirtualMaxInFlight() > 0
+                ? cfg.getVirtualMaxInFlight()
+                : Math.max(1, cfg.getThreads()) + Math.max(1, cfg.getQueueCapacity());
+        AtomicLong rejected = new AtomicLong();
+
+        AdmissionLimitedExecutor executor = new AdmissionLimitedExecutor(
+                VirtualThreads.newThreadPerTaskExecutor(name + "-v-"), maxInFlight, name, rejected);
+
+        log.info("[pipeline] Scheduler {}: virtual threads, maxInFlight={}", name, maxInFlight);
+        return new Pool(label, name, executor, Schedulers.fromExecutorService(executor, name), maxInFlight,
+                executor::inFlight, rejected);
+    }
+
+    private record Pool(String label, String name, ExecutorService executor, Scheduler scheduler,
+                        int capacity, IntSupplier busy, AtomicLong rejected) {
+
+        double saturation() {
+            return busy.getAsInt() / (double) capacity;
+        }
+    }
+
+    /**
+     * Thread-per-task executor with a hard cap on in-flight tasks; beyond the cap tasks are rejected,
+     * mirroring the bounded queue of the platform pools.
+     */
+    private static final class AdmissionLimitedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final int maxInFlight;
+        private final String name;
+        private final AtomicLong rejected;
+
+        AdmissionLimitedExecutor(ExecutorService delegate, int maxInFlight, String name, AtomicLong rejected) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxInFlight);
+            this.maxInFlight = maxInFlight;
+            this.name = name;
+            this.rejected = rejected;
+        }
+
+        int inFlight() {
+            return maxInFlight - permits.availablePermits();
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire()) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException(name + " saturated: " + maxInFlight + " in flight");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
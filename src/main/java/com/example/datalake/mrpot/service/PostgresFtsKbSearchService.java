@@ -0,0 +1,188 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.model.KbDocument;
+import com.example.datalake.mrpot.model.KbSnippet;
+import com.example.datalake.mrpot.util.KbSnippetUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * 基于 Postgres 全文检索的 KB 检索实现（mrpot.kb.search.backend=fts）：
+ * - kb_documents.content_tsv 是 generated tsvector 列 + GIN 索引（见 db/kb_documents_fts.sql）
+ * - 英文走 websearch_to_tsquery('english')，中文按 Han bigram（单字段落按单字）走 to_tsquery('simple')，两者 OR
+ * - ts_rank_cd 排序，索引命中后只读 top-N 行，不再全表扫描
+ * - 片段提取和 ILIKE 后端共用 {@link KbSnippetUtils}
+ */
+@Slf4j
+@Service
+@Qualifier(HybridKbSearchService.LEXICAL)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "mrpot.kb.search.backend", havingValue = "fts")
+public class PostgresFtsKbSearchService implements KbSearchService {
+
+    // 候选文档最大数量
+    private static final int MAX_DOC_CANDIDATES = 20;
+    // 参与 tsquery 的词数上限，避免超长问题生成巨大的查询
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<KbSnippet> searchSnippets(String query,
+                                          List<String> keywords,
+                                          int maxSnippets,
+                                          int maxTotalChars) {
+        if (query == null || query.isBlank()) {
+            return Collections.emptyList();
+        }
+        log.debug("PostgresFtsKbSearchService.searchSnippets query='{}', keywords={}, maxSnippets={}, maxTotalChars={}",
+                query, keywords, maxSnippets, maxTotalChars);
+
+        List<String> normalizedKeywords = KbSnippetUtils.mergeQueryKeywords(query, keywords);
+
+        int docLimit = Math.min(
+                MAX_DOC_CANDIDATES,
+                Math.max(maxSnippets * 2, maxSnippets)
+        );
+
+        Map<Long, Double> ranks = new HashMap<>();
+        List<KbDocument> docs = searchCandidates(normalizedKeywords, docLimit, ranks);
+
+        if (docs.isEmpty()) {
+            log.debug("No kb_documents matched full-text query, fallback by latest docs");
+            docs = fetchLatestDocuments(docLimit);
+        }
+
+        return KbSnippetUtils.toSnippets(docs, normalizedKeywords, maxSnippets, maxTotalChars,
+                doc -> ranks.getOrDefault(doc.getId(), 0.0));
+    }
+
+    private List<KbDocument> searchCandidates(List<String> terms, int limit, Map<Long, Double> ranks) {
+        String latin = buildWebsearchQuery(terms);
+        String han = buildHanNgramQuery(terms);
+
+        List<String> parts = new ArrayList<>(2);
+        Map<String, Object> params = new HashMap<>();
+        if (!latin.isEmpty()) {
+            parts.add("websearch_to_tsquery('english', :latin)");
+            params.put("latin", latin);
+        }
+        if (!han.isEmpty()) {
+            parts.add("to_tsquery('simple', :han)");
+            params.put("han", han);
+        }
+        if (parts.isEmpty()) {
+            return List.of();
+        }
+        params.put("limit", limit);
+
+        String sql = """
+                WITH q AS (SELECT %s AS tsq)
+                SELECT d.id, d.doc_type, d.content, d.metadata, ts_rank_cd(d.content_tsv, q.tsq) AS rank
+                FROM public.kb_documents d, q
+                WHERE d.content_tsv @@ q.tsq
+                ORDER BY rank DESC, d.id DESC
+                LIMIT :limit
+                """.formatted(String.join(" || ", parts));
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            KbDocument d = mapDocument(rs);
+            ranks.put(d.getId(), rs.getDouble("rank"));
+            return d;
+        });
+    }
+
+    /**
+     * fallback：查最近的几篇文档。
+     */
+    private List<KbDocument> fetchLatestDocuments(int limit) {
+        String sql = """
+                SELECT id, doc_type, content, metadata
+                FROM public.kb_documents
+                ORDER BY id DESC
+                LIMIT :limit
+                """;
+        return jdbcTemplate.query(sql, Map.of("limit", limit), (rs, rowNum) -> mapDocument(rs));
+    }
+
+    private static KbDocument mapDocument(ResultSet rs) throws SQLException {
+        KbDocument d = new KbDocument();
+        d.setId(rs.getLong("id"));
+        d.setDocType(rs.getString("doc_type"));
+        d.setContent(rs.getString("content"));
+        d.setMetadata(rs.getString("metadata"));
+        return d;
+    }
+
+    /**
+     * 非中文部分拼成 websearch 语法的 OR 查询："spring boot or java"。
+     * 引号 / 减号 / or 关键字会改变 websearch 语义，先去掉。
+     */
+    static String buildWebsearchQuery(List<String> terms) {
+        LinkedHashSet<String> cleaned = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (cleaned.size() >= MAX_QUERY_TERMS) break;
+            String latin = stripHan(term)
+                    .replaceAll("[\"\\-]", " ")
+                    .replaceAll("(?i)\\bor\\b", " ")
+                    .replaceAll("\\s+", " ")
+                    .trim()
+                    .toLowerCase(Locale.ROOT);
+            if (latin.length() >= 2) {
+                cleaned.add(latin);
+            }
+        }
+        return String.join(" or ", cleaned);
+    }
+
+    /**
+     * 中文部分：每段连续汉字切成重叠 bigram；只有一个字的段落（"猫"）直接用单字。
+     * 库里 mrpot_han_ngrams() 同时索引了单字和 bigram，两种都能命中。用 | 连接。
+     */
+    static String buildHanNgramQuery(List<String> terms) {
+        LinkedHashSet<String> grams = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (term == null) continue;
+            int runStart = -1;
+            for (int i = 0; i <= term.length(); i++) {
+                boolean han = i < term.length() && isHan(term.charAt(i));
+                if (han && runStart < 0) {
+                    runStart = i;
+                } else if (!han && runStart >= 0) {
+                    if (i - runStart == 1 && grams.size() < MAX_QUERY_TERMS) {
+                        grams.add(term.substring(runStart, i));
+                    }
+                    for (int j = runStart; j + 2 <= i && grams.size() < MAX_QUERY_TERMS; j++) {
+                        grams.add(term.substring(j, j + 2));
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        return String.join(" | ", grams);
+    }
+
+    private static String stripHan(String term) {
+        if (term == null) return "";
+        StringBuilder sb = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            sb.append(isHan(c) ? ' ' : c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHan(char c) {
+        return (c >= '\u3400' && c <= '\u4DBF')
+                || (c >= '\u4E00' && c <= '\u9FFF')
+                || (c >= '\uF900' && c <= '\uFAFF');
+    }
+}
@@ -1,24 +1,52 @@
 package com.example.datalake.mrpot.service;
 
+import com.example.datalake.mrpot.config.PromptCacheProperties;
 import com.example.datalake.mrpot.util.CacheKeyUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Bounded prompt cache: W-TinyLFU admission/eviction (Caffeine), weighted by prompt chars,
+ * with write and idle expiry. Hit/miss/eviction stats are published as {@code cache.*} meters
+ * tagged {@code cache=prompt-cache}.
+ */
 @Service
-public class PromptCacheService {
+public class PromptCacheService implements MeterBinder {
 
-  private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  static final String CACHE_NAME = "prompt-cache";
+
+  private final Cache<String, CacheEntry> cache;
+
+  public PromptCacheService(PromptCacheProperties props) {
+    this.cache = Caffeine.newBuilder()
+        .maximumWeight(props.getMaxWeightChars())
+        .weigher((String key, CacheEntry entry) -> entry.weight())
+        .expireAfterWrite(props.getExpireAfterWrite())
+        .expireAfterAccess(props.getExpireAfterAccess())
+        .recordStats()
+        .build();
+  }
 
   public Optional<CacheEntry> hitIfPresent(String key) {
     String normalizedKey = CacheKeyUtils.normalizeKey(key);
     if (normalizedKey == null) {
       return Optional.empty();
     }
-    return Optional.ofNullable(cache.computeIfPresent(normalizedKey, (k, entry) -> entry.hit()));
+    CacheEntry entry = cache.getIfPresent(normalizedKey);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    entry.hit();
+    return Optional.of(entry);
   }
 
   public Optional<CacheEntry> store(String key, String systemPrompt, String userPrompt, String finalPrompt) {
@@ -26,31 +54,97 @@ public class PromptCacheService {
     if (normalizedKey == null) {
       return Optional.empty();
     }
-    Instant now = Instant.now();
-    CacheEntry entry = cache.compute(normalizedKey, (k, existing) -> {
-      if (existing == null) {
-        return new CacheEntry(k, systemPrompt, userPrompt, finalPrompt, 1, now, now);
-      }
-      return existing.update(systemPrompt, userPrompt, finalPrompt);
-    });
+    // 新建 entry（而不是原地改 prompt），这样 Caffeine 会按新内容重新计算权重
+    CacheEntry entry = cache.asMap().compute(normalizedKey, (k, existing) -> existing == null
+        ? new CacheEntry(k, systemPrompt, userPrompt, finalPrompt, 1, Instant.now())
+        : new CacheEntry(k, systemPrompt, userPrompt, finalPrompt, existing.frequency() + 1, existing.firstSeen()));
     return Optional.ofNullable(entry);
   }
 
-  public record CacheEntry(
-      String key,
-      String systemPrompt,
-      String userPrompt,
-      String finalPrompt,
-      int frequency,
-      Instant firstSeen,
-      Instant lastSeen
-  ) {
-    private CacheEntry hit() {
-      return new CacheEntry(key, systemPrompt, userPrompt, finalPrompt, frequency + 1, firstSeen, Instant.now());
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Run pending maintenance (evictions/expiry) now instead of on the next access.
+   */
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Cached prompts plus usage counters. Prompts are immutable; {@code frequency} and
+   * {@code lastSeen} are bumped in place on every hit, so lookups do not allocate.
+   */
+  public static final class CacheEntry {
+    private final String key;
+    private final String systemPrompt;
+    private final String userPrompt;
+    private final String finalPrompt;
+    private final AtomicInteger frequency;
+    private final Instant firstSeen;
+    private volatile long lastSeenMillis;
+
+    CacheEntry(String key, String systemPrompt, String userPrompt, String finalPrompt,
+               int frequency, Instant firstSeen) {
+      this.key = key;
+      this.systemPrompt = systemPrompt;
+      this.userPrompt = userPrompt;
+      this.finalPrompt = finalPrompt;
+      this.frequency = new AtomicInteger(frequency);
+      this.firstSeen = firstSeen;
+      this.lastSeenMillis = System.currentTimeMillis();
+    }
+
+    public String key() {
+      return key;
+    }
+
+    public String systemPrompt() {
+      return systemPrompt;
+    }
+
+    public String userPrompt() {
+      return userPrompt;
+    }
+
+    public String finalPrompt() {
+      return finalPrompt;
+    }
+
+    public int frequency() {
+      return frequency.get();
+    }
+
+    public Instant firstSeen() {
+      return firstSeen;
+    }
+
+    public Instant lastSeen() {
+      return Instant.ofEpochMilli(lastSeenMillis);
+    }
+
+    private void hit() {
+      frequency.incrementAndGet();
+      lastSeenMillis = System.currentTimeMillis();
+    }
+
+    private int weight() {
+      long chars = (long) length(key) + length(systemPrompt) + length(userPrompt) + length(finalPrompt);
+      return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, chars));
     }
 
-    private CacheEntry update(String systemPrompt, String userPrompt, String finalPrompt) {
-      return new CacheEntry(key, systemPrompt, userPrompt, finalPrompt, frequency + 1, firstSeen, Instant.now());
+    private static int length(String s) {
+      return s == null ? 0 : s.length();
     }
   }
 }
@@ -1,32 +1,65 @@
 // src/main/java/com/example/datalake/mrpot/service/PromptPipeline.java
 package com.example.datalake.mrpot.service;
 
+import com.example.datalake.mrpot.config.DeadlineProperties;
+import com.example.datalake.mrpot.model.Deadline;
+import com.example.datalake.mrpot.model.PipelineEvent;
 import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.model.StepLog;
 import com.example.datalake.mrpot.processor.*;
 import com.example.datalake.mrpot.request.PrepareRequest;
 import com.example.datalake.mrpot.validation.ValidationContext;
 import com.example.datalake.mrpot.validation.ValidationException;
 import com.example.datalake.mrpot.validation.ValidationService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.reactivestreams.Publisher;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import com.example.datalake.mrpot.util.PromptRenderUtils;
 import com.example.datalake.mrpot.processor.PromptTemplateProcessor;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Runs the {@link TextProcessor} stages and the final LLM call for one request.
+ *
+ * <p>Every request is a {@code mrpot.pipeline} observation and every stage (plus the LLM call,
+ * {@code stage=llm}) a child {@code mrpot.pipeline.stage} observation tagged {@code stage},
+ * {@code resource} and {@code outcome} (hit, miss, skip, bypass-cache, ok, error). With the
+ * actuator these become timers of the same name; with {@code -Potel} they are also exported as spans.
+ *
+ * <p>Each request gets a {@link Deadline} ({@code mrpot.deadline.*}, or the client's
+ * {@code X-Request-Timeout}). DB-bound stages are skipped ({@code skip-deadline}) once less than
+ * {@code min-stage-budget} is left and run with the deadline bound to their thread, so JDBC statements
+ * time out with the request; the LLM call is cut off at the deadline with a
+ * {@link DeadlineExceededException}.
+ */
 @Service
 public class PromptPipeline {
 
-  // Explicit, deterministic order for the first three processors
+  static final String PIPELINE_OBSERVATION = "mrpot.pipeline";
+  static final String STAGE_OBSERVATION = "mrpot.pipeline.stage";
+  private static final String LLM_STAGE = "llm";
+
+  // Chain order: StageGraph derives the stage dependencies from it, and steps are committed in it.
+  // Processors not listed here follow in registration order.
   private static final List<Class<? extends TextProcessor>> DEFAULT_ORDER = List.of(
           UnifiedCleanCorrectProcessor.class,
           IntentClassifierProcessor.class,
@@ -41,8 +74,31 @@ public class PromptPipeline {
   private final Map<Class<? extends TextProcessor>, TextProcessor> processorsByType;
   private final ValidationService validationService;
   private final LangChain4jRagService ragService;
+  private final PipelineSchedulers schedulers;
+  private final StageGraph graph;
+  private final ObservationRegistry observationRegistry;
+  private final DeadlineProperties deadlines;
 
+  /** Runs every stage on the subscribing thread; for tests and standalone use. */
   public PromptPipeline(List<TextProcessor> processors, ValidationService validationService, LangChain4jRagService ragService) {
+    this(processors, validationService, ragService, PipelineSchedulers.immediate());
+  }
+
+  public PromptPipeline(List<TextProcessor> processors, ValidationService validationService,
+                        LangChain4jRagService ragService, PipelineSchedulers schedulers) {
+    this(processors, validationService, ragService, schedulers, ObservationRegistry.NOOP);
+  }
+
+  public PromptPipeline(List<TextProcessor> processors, ValidationService validationService,
+                        LangChain4jRagService ragService, PipelineSchedulers schedulers,
+                        ObservationRegistry observationRegistry) {
+    this(processors, validationService, ragService, schedulers, observationRegistry, new DeadlineProperties());
+  }
+
+  @Autowired
+  public PromptPipeline(List<TextProcessor> processors, ValidationService validationService,
+                        LangChain4jRagService ragService, PipelineSchedulers schedulers,
+                        ObservationRegistry observationRegistry, DeadlineProperties deadlines) {
     // Use AopUtils.getTargetClass to handle Spring proxies (CGLIB/JDK)
     this.processorsByType = processors.stream()
         .collect(Collectors.toMap(
@@ -53,6 +109,10 @@ public class PromptPipeline {
         ));
     this.validationService = validationService;
     this.ragService = ragService;
+    this.schedulers = schedulers;
+    this.graph = StageGraph.of(buildOrderedChain());
+    this.observationRegistry = observationRegistry;
+    this.deadlines = deadlines;
   }
 
   public Mono<ProcessingContext> run(PrepareRequest request) {
@@ -63,17 +123,8 @@ public class PromptPipeline {
       return Mono.error(ex);
     }
 
-    Mono<ProcessingContext> pipeline = Mono.just(ctx);
-    for (TextProcessor processor : buildOrderedChain()) {
-      final TextProcessor stage = processor;
-      pipeline = pipeline.flatMap(current -> {
-        if (current.isCacheHit() && shouldBypassAfterCache(stage)) {
-          return Mono.just(current.addStep(stage.name(), "bypass-cache"));
-        }
-        return stage.process(current);
-      });
-    }
-    return pipeline.flatMap(this::finalizePromptAndCallLlm);
+    return observePipeline("blocking", parent -> runAll(ctx, null, parent))
+        .last();
   }
 
   /**
@@ -81,6 +132,15 @@ public class PromptPipeline {
    * This is used by the SSE endpoint to provide real-time progress updates.
    */
   public Flux<ProcessingContext> runStreaming(PrepareRequest request) {
+    return runStreaming(request, null);
+  }
+
+  /**
+   * Same as {@link #runStreaming(PrepareRequest)}, but the LLM answer is generated with the streaming
+   * model and every partial token is handed to {@code onAnswerDelta} as soon as it arrives. The last
+   * emitted context still carries the full answer.
+   */
+  public Flux<ProcessingContext> runStreaming(PrepareRequest request, Consumer<String> onAnswerDelta) {
     ProcessingContext ctx;
     try {
       ctx = initializeContext(request);
@@ -88,29 +148,58 @@ public class PromptPipeline {
       return Flux.error(ex);
     }
 
-    // Build a sequential chain while emitting the updated context after *each* processor
-    // completes. This ensures SSE consumers receive real-time step updates.
-    Mono<ProcessingContext> chain = Mono.just(ctx);
-    Flux<ProcessingContext> emissions = Flux.empty();
+    // Emit the updated context after *each* processor completes (in chain order); every stage
+    // runs exactly once.
+    return observePipeline("streaming", parent -> runAll(ctx, onAnswerDelta, parent));
+  }
 
-    for (TextProcessor processor : buildOrderedChain()) {
-      final TextProcessor stage = processor;
-      chain = chain.flatMap(current -> {
-        if (current.isCacheHit() && shouldBypassAfterCache(stage)) {
-          return Mono.just(current.addStep(stage.name(), "bypass-cache"));
-        }
-        return stage.process(current);
-      });
+  /**
+   * Push-based stream for the SSE endpoint: each {@link StepLog} is emitted exactly once, at the
+   * moment it is appended to the context, followed by answer tokens as the model streams them and
+   * finally {@link PipelineEvent.Completed}. Unlike {@link #runStreaming(PrepareRequest, Consumer)}
+   * consumers never have to diff step lists.
+   */
+  public Flux<PipelineEvent> streamEvents(PrepareRequest request) {
+    return Flux.create(sink -> {
+      ProcessingContext ctx;
+      try {
+        ctx = initializeContext(request);
+      } catch (ValidationException ex) {
+        sink.error(ex);
+        return;
+      }
 
-      // Emit the context produced by this stage before moving to the next one
-      emissions = emissions.concatWith(chain);
-    }
+      // FluxSink 是串行化的：step（pipeline 线程）和 token（模型回调线程）可以从不同线程推
+      ctx.onStep((step, index) -> sink.next(new PipelineEvent.Step(index + 1, step, ctx)));
+      AtomicInteger tokenIndex = new AtomicInteger();
+      Consumer<String> onToken = text -> sink.next(new PipelineEvent.Token(tokenIndex.getAndIncrement(), text));
+
+      Disposable run = observePipeline("streaming", parent -> runAll(ctx, onToken, parent))
+          .last()
+          .subscribe(
+              done -> sink.next(new PipelineEvent.Completed(done)),
+              sink::error,
+              sink::complete);
+      sink.onDispose(run);
+    });
+  }
 
-    Mono<ProcessingContext> finalChain = chain.flatMap(this::finalizePromptAndCallLlm);
-    return emissions.concatWith(finalChain);
+  /**
+   * Stage graph, then the LLM call. Steps stay held until the very end so the LLM step is published
+   * with its duration already set; the last emission is the finished context.
+   */
+  private Flux<ProcessingContext> runAll(ProcessingContext ctx, Consumer<String> onAnswerDelta, Observation parent) {
+    return runGraph(ctx, parent)
+        .concatWith(Mono.defer(() -> finalizePromptAndCallLlm(ctx, onAnswerDelta, parent))
+            .map(done -> {
+              done.releaseSteps();
+              return done.finish();
+            }))
+        .doOnError(e -> ctx.releaseSteps());
   }
 
-  private Mono<ProcessingContext> finalizePromptAndCallLlm(ProcessingContext ctx) {
+  private Mono<ProcessingContext> finalizePromptAndCallLlm(ProcessingContext ctx, Consumer<String> onAnswerDelta,
+                                                          Observation parent) {
     if (ctx.isCommonResponse()) {
       return Mono.just(ctx);
     }
@@ -144,7 +233,124 @@ public class PromptPipeline {
         + ", kbChars=" + kbContext.length()
         + (isBlank(existingFinal) ? "" : ", prompt=ctx");
 
-    return ragService.completeWithLlm(ctx, stepInfo);
+    // 阻塞的 chatModel.chat 只在 llm 线程池上跑；返回后切回 cpu 池，尽快释放 llm worker
+    Mono<ProcessingContext> llm = observeStage(LLM_STAGE, "langchain4j-rag", StageResource.LLM, parent,
+        () -> onAnswerDelta == null
+            ? ragService.completeWithLlm(ctx, stepInfo)
+            : ragService.streamWithLlm(ctx, stepInfo, onAnswerDelta))
+        .subscribeOn(schedulers.llm());
+
+    // 超时取消会中断 llm worker 上的等待；合并的阻塞调用在没人等时才被取消，流式调用由 sink.onCancel 收尾
+    Deadline deadline = ctx.getDeadline();
+    if (deadline.isBounded()) {
+      llm = llm.timeout(deadline.remaining(),
+          Mono.error(() -> new DeadlineExceededException(LLM_STAGE, deadline.budget())));
+    }
+    return llm.publishOn(schedulers.cpu());
+  }
+
+  /**
+   * Execute the stage DAG: every stage is subscribed up front but starts only once the earlier
+   * stages it depends on ({@link StageGraph}) have finished, so independent stages – e.g. KB
+   * retrieval vs. cache lookup and templating – overlap on their own schedulers.
+   *
+   * <p>Steps are held while stages run and committed per stage in chain order right before that
+   * stage's emission, which keeps {@link ProcessingContext#getSteps()} identical to a sequential
+   * run no matter which stage finishes first.
+   */
+  private Flux<ProcessingContext> runGraph(ProcessingContext ctx, Observation parent) {
+    return Flux.defer(() -> {
+      ctx.holdSteps();
+      List<Mono<ProcessingContext>> stages = new ArrayList<>(graph.size());
+      List<Mono<String>> completions = new ArrayList<>(graph.size());
+      for (int i = 0; i < graph.size(); i++) {
+        TextProcessor stage = graph.stages().get(i);
+        List<Mono<ProcessingContext>> upstream = new ArrayList<>();
+        for (int dep : graph.dependencies(i)) {
+          upstream.add(stages.get(dep));
+        }
+        Mono<ProcessingContext> node = Mono.when(upstream)
+            .then(Mono.defer(() -> runStage(stage, ctx, parent)))
+            .cache();
+        stages.add(node);
+        completions.add(node.thenReturn(stage.name()));
+      }
+      // mergeSequential 按链顺序向下游发出，提交 step 必须放在它之后
+      return Flux.mergeSequential(completions, Math.max(1, completions.size()), 1)
+          .map(name -> {
+            ctx.commitSteps(name);
+            return ctx;
+          });
+    });
+  }
+
+  /**
+   * Run one stage on the scheduler of its {@link StageResource}. {@code process} is deferred because
+   * most processors do their (possibly blocking) work eagerly before returning a Mono.
+   */
+  private Mono<ProcessingContext> runStage(TextProcessor stage, ProcessingContext current, Observation parent) {
+    if (current.isCacheHit() && shouldBypassAfterCache(stage)) {
+      return observeStage(stage.name(), stage.name(), stage.resource(), parent,
+          () -> Mono.just(current.addStep(stage.name(), "bypass-cache")));
+    }
+    Deadline deadline = current.getDeadline();
+    if (stage.resource() != StageResource.CPU && !deadline.hasAtLeast(deadlines.getMinStageBudget())) {
+      return observeStage(stage.name(), stage.name(), stage.resource(), parent,
+          () -> Mono.just(current.addStep(stage.name(),
+              "skip-deadline remaining=" + deadline.remaining().toMillis() + "ms")));
+    }
+    // process 在 stage 自己的线程上同步做阻塞调用，期间 Deadline.current() 可见（JDBC 超时用）
+    return observeStage(stage.name(), stage.name(), stage.resource(), parent,
+        () -> deadline.call(() -> stage.process(current)))
+        .subscribeOn(schedulers.forResource(stage.resource()));
+  }
+
+  private <T> Flux<T> observePipeline(String mode, Function<Observation, Publisher<T>> body) {
+    return Flux.defer(() -> {
+      Observation observation = Observation.createNotStarted(PIPELINE_OBSERVATION, observationRegistry)
+          .lowCardinalityKeyValue("mode", mode)
+          .start();
+      return Flux.from(body.apply(observation))
+          .doOnError(observation::error)
+          .doFinally(signal -> observation.stop());
+    });
+  }
+
+  /**
+   * Time one stage from subscription (i.e. on its own scheduler, queueing excluded) to completion.
+   * The outcome comes from the last step the stage wrote under {@code stepName}, and those steps get
+   * the stage's start offset / duration.
+   */
+  private Mono<ProcessingContext> observeStage(String stage, String stepName, StageResource resource,
+                                               Observation parent,
+                                               Supplier<? extends Mono<ProcessingContext>> body) {
+    return Mono.defer(() -> {
+      Observation observation = Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+          .contextualName(stage)
+          .parentObservation(parent)
+          .lowCardinalityKeyValue("stage", stage)
+          .lowCardinalityKeyValue("resource", resource.name().toLowerCase(Locale.ROOT))
+          .lowCardinalityKeyValue("outcome", "cancelled")
+          .start();
+      long startNanos = System.nanoTime();
+      return Mono.defer(body)
+          .doOnNext(ctx -> {
+            ctx.timeSteps(stepName, startNanos, System.nanoTime());
+            observation.lowCardinalityKeyValue("outcome", outcomeOf(ctx.lastStepNote(stepName)));
+          })
+          .doOnError(e -> observation.lowCardinalityKeyValue("outcome", "error").error(e))
+          .doFinally(signal -> observation.stop());
+    });
+  }
+
+  // 从 step note 归类出 outcome 标签（低基数）
+  static String outcomeOf(String note) {
+    if (note == null || note.isBlank()) return "ok";
+    if (note.startsWith("bypass-cache")) return "bypass-cache";
+    if (note.startsWith("hit") || note.endsWith(", answer-cache")) return "hit";
+    if (note.startsWith("miss")) return "miss";
+    if (note.startsWith("skip") || note.equals("no-key")) return "skip";
+    return "ok";
   }
 
   private ProcessingContext initializeContext(PrepareRequest request) throws ValidationException {
@@ -155,7 +361,8 @@ public class PromptPipeline {
         .setSessionId(request.getSessionId())
         .setRawInput(validationContext.getProcessedInput())
         .setSystemPrompt(validationContext.getSystemPrompt())
-        .setValidationNotices(new ArrayList<>(validationContext.getNotices()));
+        .setValidationNotices(new ArrayList<>(validationContext.getNotices()))
+        .setDeadline(resolveDeadline(request.getTimeout()));
 
     if (ctx.getEntities() == null) ctx.setEntities(new LinkedHashMap<>());
     if (ctx.getOutline() == null) ctx.setOutline(new LinkedHashMap<>());
@@ -163,6 +370,20 @@ public class PromptPipeline {
     return ctx;
   }
 
+  // 客户端给的预算不超过 max-budget；没给就用 default-budget
+  private Deadline resolveDeadline(Duration requested) {
+    if (!deadlines.isEnabled()) {
+      return Deadline.NONE;
+    }
+    Duration budget = requested == null || requested.isNegative() || requested.isZero()
+        ? deadlines.getDefaultBudget()
+        : requested;
+    if (budget.compareTo(deadlines.getMaxBudget()) > 0) {
+      budget = deadlines.getMaxBudget();
+    }
+    return Deadline.after(budget);
+  }
+
   private List<TextProcessor> buildOrderedChain() {
     Set<TextProcessor> seen = new LinkedHashSet<>();
     List<TextProcessor> ordered = new ArrayList<>();
@@ -0,0 +1,321 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Reuses answers across near-duplicate questions ("who is yuqi?" vs "who's Yuqi").
+ *
+ * <p>The normalized question is embedded and looked up in an in-memory {@link HnswIndex} of earlier
+ * questions. A cached answer is reused when the cosine similarity reaches the configured threshold
+ * and it was generated by the same model/temperature, for the same language and from the same KB
+ * documents. Memory is bounded by {@code max-entries} (oldest first) and the shared TTL; answers
+ * grounded on a changed document are dropped like in {@link AnswerCacheService}.
+ *
+ * <p>Metrics: {@code mrpot.answer.semantic.lookups} (outcome=hit|miss|error),
+ * {@code mrpot.answer.semantic.similarity} (best similarity per lookup, outcome=hit|miss),
+ * {@code mrpot.answer.semantic.threshold} and {@code mrpot.answer.semantic.size}.
+ */
+@Slf4j
+@Service
+public class SemanticAnswerCache implements MeterBinder {
+
+    // 取前几个近邻：最近的那个可能 docIds 不一致或已过期
+    private static final int CANDIDATES = 4;
+
+    private final AnswerCacheProperties props;
+    private final ObjectProvider<EmbeddingModel> embeddingModels;
+    private final String modelKey;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // partition (model|temperature|language) → 索引 + 节点上的条目
+    private final Map<String, Partition> partitions = new HashMap<>();
+    // 全局写入顺序，用于按条数淘汰和 TTL 过期
+    private final Deque<Entry> insertionOrder = new ArrayDeque<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    public SemanticAnswerCache(AnswerCacheProperties props,
+                               Langchain4jOpenAiProperties openAiProps,
+                               ObjectProvider<EmbeddingModel> embeddingModels) {
+        this.props = props;
+        this.embeddingModels = embeddingModels;
+        this.modelKey = (openAiProps.getChatModel() == null ? "" : openAiProps.getChatModel())
+                + "|" + String.format(Locale.ROOT, "%.3f", openAiProps.getTemperature());
+    }
+
+    /** Always-off instance for callers wired without Spring (lookups never embed). */
+    static SemanticAnswerCache disabled() {
+        return new SemanticAnswerCache(new AnswerCacheProperties(), new Langchain4jOpenAiProperties(), null);
+    }
+
+    public boolean isEnabled() {
+        return props.getSemantic().isEnabled();
+    }
+
+    /**
+     * Embed {@code question} and look for a near-duplicate. The returned probe carries the embedding
+     * so a later {@link #store} doesn't embed the question a second time.
+     */
+    public Probe lookup(String question, String language, List<Long> docIds) {
+        if (!isEnabled() || question == null || question.isBlank()) {
+            return Probe.DISABLED;
+        }
+        EmbeddingModel model = embeddingModels.getIfAvailable();
+        if (model == null) {
+            return Probe.DISABLED;
+        }
+
+        String partition = modelKey + "|" + (language == null ? "und" : language.toLowerCase(Locale.ROOT));
+        List<Long> sortedDocIds = sortedDocIds(docIds);
+        float[] vector;
+        try {
+            vector = model.embed(question).content().vector();
+        } catch (RuntimeException e) {
+            log.warn("[semantic-cache] Embedding failed, treating as miss: {}", e.toString());
+            count("error");
+            return Probe.DISABLED;
+        }
+
+        double threshold = props.getSemantic().getSimilarityThreshold();
+        Instant oldest = Instant.now().minus(props.getTtl());
+        double best = Double.NaN;
+        Hit hit = null;
+
+        lock.readLock().lock();
+        try {
+            Partition p = partitions.get(partition);
+            if (p != null) {
+                for (HnswIndex.Scored scored : p.index.search(vector, CANDIDATES)) {
+                    Entry entry = p.entries.get(scored.node());
+                    if (entry == null || entry.createdAt.isBefore(oldest)) continue;
+                    if (Double.isNaN(best)) best = scored.similarity();
+                    if (scored.similarity() < threshold) break;
+                    if (entry.docIds.equals(sortedDocIds)) {
+                        hit = new Hit(entry.answer, entry.question, scored.similarity(), entry.createdAt);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        String outcome = hit != null ? "hit" : "miss";
+        count(outcome);
+        if (!Double.isNaN(best)) {
+            recordSimilarity(outcome, hit != null ? hit.similarity() : best);
+        }
+        return new Probe(partition, question, vector, sortedDocIds, hit);
+    }
+
+    /** Remember {@code answer} for the probed question (no-op for disabled probes and hits). */
+    public void store(Probe probe, String answer) {
+        if (probe == null || probe.vector() == null || probe.hit().isPresent()
+                || answer == null || answer.isBlank()) {
+            return;
+        }
+        Instant now = Instant.now();
+        lock.writeLock().lock();
+        try {
+            Partition p = partitions.computeIfAbsent(probe.partition(), k -> newPartition());
+            Entry entry = new Entry(probe.partition(), probe.question(), probe.vector(),
+                    answer, probe.docIds(), now);
+            entry.node = p.index.add(entry.vector);
+            p.entries.put(entry.node, entry);
+            insertionOrder.addLast(entry);
+            evict(now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 与 {@link AnswerCacheService#onKbDocumentChanged} 一致：新增文档整体清空，更新/删除只丢引用了该文档的答案。
+     */
+    @EventListener
+    public void onKbDocumentChanged(KbDocumentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.type() == KbDocumentChangedEvent.Type.CREATED || event.docId() == null) {
+                partitions.clear();
+                insertionOrder.clear();
+            } else {
+                removeIf(entry -> entry.docIds.contains(event.docId()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("[semantic-cache] Invalidated after kb document {} was {}", event.docId(), event.type());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return insertionOrder.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("mrpot.answer.semantic.threshold", props, p -> p.getSemantic().getSimilarityThreshold())
+                .description("Cosine similarity required for a semantic answer-cache hit")
+                .register(registry);
+        Gauge.builder("mrpot.answer.semantic.size", this, SemanticAnswerCache::size)
+                .description("Questions held in the semantic answer cache")
+                .register(registry);
+    }
+
+    // ---------------- internals (caller holds the write lock) ----------------
+
+    private void evict(Instant now) {
+        Instant oldest = now.minus(props.getTtl());
+        int max = Math.max(1, props.getSemantic().getMaxEntries());
+        while (!insertionOrder.isEmpty()
+                && (insertionOrder.size() > max || insertionOrder.peekFirst().createdAt.isBefore(oldest))) {
+            Entry entry = insertionOrder.pollFirst();
+            Partition p = partitions.get(entry.partition);
+            if (p != null) {
+                p.entries.remove(entry.node);
+                p.index.remove(entry.node);
+            }
+        }
+        compact();
+    }
+
+    private void removeIf(Predicate<Entry> predicate) {
+        insertionOrder.removeIf(entry -> {
+            if (!predicate.test(entry)) return false;
+            Partition p = partitions.get(entry.partition);
+            if (p != null) {
+                p.entries.remove(entry.node);
+                p.index.remove(entry.node);
+            }
+            return true;
+        });
+        compact();
+    }
+
+    // 墓碑比存活节点多时重建索引，图的大小始终与 max-entries 同一量级
+    private void compact() {
+        partitions.entrySet().removeIf(e -> e.getValue().entries.isEmpty());
+        for (Map.Entry<String, Partition> e : partitions.entrySet()) {
+            Partition old = e.getValue();
+            if (old.index.deleted() <= old.index.size()) continue;
+            Partition rebuilt = newPartition();
+            List<Entry> live = new ArrayList<>(old.entries.values());
+            live.sort((a, b) -> Integer.compare(a.node, b.node));
+            for (Entry entry : live) {
+                entry.node = rebuilt.index.add(entry.vector);
+                rebuilt.entries.put(entry.node, entry);
+            }
+            e.setValue(rebuilt);
+        }
+    }
+
+    private Partition newPartition() {
+        AnswerCacheProperties.Semantic s = props.getSemantic();
+        return new Partition(new HnswIndex(s.getM(), s.getEfConstruction(), s.getEfSearch()), new HashMap<>());
+    }
+
+    private void count(String outcome) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Counter.builder("mrpot.answer.semantic.lookups")
+                .description("Semantic answer-cache lookups")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    private void recordSimilarity(String outcome, double similarity) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        DistributionSummary.builder("mrpot.answer.semantic.similarity")
+                .description("Best cosine similarity found per semantic answer-cache lookup")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(similarity);
+    }
+
+    private static List<Long> sortedDocIds(List<Long> docIds) {
+        return docIds == null ? List.of() : docIds.stream().distinct().sorted().toList();
+    }
+
+    private record Partition(HnswIndex index, Map<Integer, Entry> entries) {}
+
+    private static final class Entry {
+        final String partition;
+        final String question;
+        final float[] vector;
+        final String answer;
+        final List<Long> docIds;
+        final Instant createdAt;
+        int node;
+
+        Entry(String partition, String question, float[] vector,
+              String answer, List<Long> docIds, Instant createdAt) {
+            this.partition = partition;
+            this.question = question;
+            this.vector = vector;
+            this.answer = answer;
+            this.docIds = docIds;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Result of one lookup. {@link #vector} is {@code null} when the cache is disabled or embedding
+     * failed, in which case {@link #store} ignores it.
+     */
+    public record Probe(String partition, String question, float[] vector, List<Long> docIds, Hit cachedHit) {
+
+        static final Probe DISABLED = new Probe(null, null, null, List.of(), null);
+
+        public Optional<Hit> hit() {
+            return Optional.ofNullable(cachedHit);
+        }
+    }
+
+    /**
+     * @param question   the earlier question whose answer is reused
+     * @param similarity cosine similarity between that question and the new one
+     */
+    public record Hit(String answer, String question, double similarity, Instant createdAt) {
+
+        public Duration age() {
+            return Duration.between(createdAt, Instant.now());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.datalake.mrpot.service;
+
+import com.example.datalake.mrpot.processor.ContextField;
+import com.example.datalake.mrpot.processor.TextProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dependency graph of an ordered stage chain, derived from {@link TextProcessor#inputs()} /
+ * {@link TextProcessor#outputs()}.
+ *
+ * <p>A stage depends on every earlier stage it conflicts with: the earlier one writes a field it
+ * reads (read-after-write), both write the same field (write-after-write), or it overwrites a field
+ * the earlier one reads (write-after-read). Any schedule that respects these edges leaves the
+ * context exactly as the sequential chain would.
+ */
+final class StageGraph {
+
+  private final List<TextProcessor> stages;
+  private final int[][] dependencies;
+
+  private StageGraph(List<TextProcessor> stages, int[][] dependencies) {
+    this.stages = stages;
+    this.dependencies = dependencies;
+  }
+
+  static StageGraph of(List<TextProcessor> chain) {
+    List<TextProcessor> stages = List.copyOf(chain);
+    int n = stages.size();
+    List<Set<ContextField>> inputs = new ArrayList<>(n);
+    List<Set<ContextField>> outputs = new ArrayList<>(n);
+    for (TextProcessor stage : stages) {
+      inputs.add(stage.inputs());
+      outputs.add(stage.outputs());
+    }
+
+    int[][] deps = new int[n][];
+    for (int j = 0; j < n; j++) {
+      List<Integer> upstream = new ArrayList<>();
+      for (int i = 0; i < j; i++) {
+        if (overlaps(outputs.get(i), inputs.get(j))
+            || overlaps(outputs.get(i), outputs.get(j))
+            || overlaps(inputs.get(i), outputs.get(j))) {
+          upstream.add(i);
+        }
+      }
+      deps[j] = upstream.stream().mapToInt(Integer::intValue).toArray();
+    }
+    return new StageGraph(stages, deps);
+  }
+
+  List<TextProcessor> stages() {
+    return stages;
+  }
+
+  int size() {
+    return stages.size();
+  }
+
+  /** Indexes (into {@link #stages()}) of the earlier stages stage {@code index} must wait for. */
+  int[] dependencies(int index) {
+    return dependencies[index].clone();
+  }
+
+  private static boolean overlaps(Set<ContextField> a, Set<ContextField> b) {
+    return a != null && b != null && !Collections.disjoint(a, b);
+  }
+}
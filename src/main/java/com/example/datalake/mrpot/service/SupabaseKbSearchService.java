@@ -2,8 +2,11 @@ package com.example.datalake.mrpot.service;
 
 import com.example.datalake.mrpot.model.KbDocument;
 import com.example.datalake.mrpot.model.KbSnippet;
+import com.example.datalake.mrpot.util.KbSnippetUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
@@ -13,25 +16,20 @@ import java.util.*;
  * 基于 kb_documents 表的 KB 检索实现：
  * - 先用 query + keywords 在 content 上做 ILIKE 搜索
  * - 如果没有命中，则 fallback 拿最近几篇文档
- * - 在 Java 侧做「片段提取」+ 全局字符预算控制
+ * - 在 Java 侧做「片段提取」+ 全局字符预算控制（见 {@link KbSnippetUtils}）
+ *
+ * 默认后端（mrpot.kb.search.backend=ilike）。
  */
 @Slf4j
 @Service
+@Qualifier(HybridKbSearchService.LEXICAL)
+@ConditionalOnProperty(name = "mrpot.kb.search.backend", havingValue = "ilike", matchIfMissing = true)
 @RequiredArgsConstructor
 public class SupabaseKbSearchService implements KbSearchService {
 
     // 候选文档最大数量
     private static final int MAX_DOC_CANDIDATES = 20;
 
-    // 每篇文档最多给多少字符的 snippet（局部预算）
-    // 改小一点，让 [DOC n] 更精简
-    private static final int MAX_SNIPPET_PER_DOC = 160;
-    private static final int MIN_SNIPPET_WINDOW = 80;
-    private static final int KEYWORD_WINDOW_PADDING = 45;
-    private static final int MAX_WINDOW_PER_SENTENCE = 140;
-    private static final int MIN_KEYWORD_LEN = 2;
-    private static final int MAX_SENTENCES_PER_SNIPPET = 3;
-
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
     @Override
@@ -45,7 +43,7 @@ public class SupabaseKbSearchService implements KbSearchService {
         log.debug("SupabaseKbSearchService.searchSnippets query='{}', keywords={}, maxSnippets={}, maxTotalChars={}",
                 query, keywords, maxSnippets, maxTotalChars);
 
-        List<String> normalizedKeywords = normalizeKeywords(query, keywords);
+        List<String> normalizedKeywords = KbSnippetUtils.mergeQueryKeywords(query, keywords);
 
         int docLimit = Math.min(
                 MAX_DOC_CANDIDATES,
@@ -66,59 +64,7 @@ public class SupabaseKbSearchService implements KbSearchService {
         }
 
         // 3) 在「总预算」内从这些文档中抽片段
-        int remaining = maxTotalChars;
-        List<KbSnippet> result = new ArrayList<>();
-
-        for (KbDocument doc : docs) {
-            if (doc == null) continue;
-            if (remaining <= 0) break;
-            if (result.size() >= maxSnippets) break;
-
-            String content = safe(doc.getContent());
-            if (content.isBlank()) continue;
-
-            int perDocBudget = Math.min(MAX_SNIPPET_PER_DOC, remaining);
-            if (perDocBudget <= 0) break;
-
-            String snippetText = extractSnippetFromContent(content, normalizedKeywords, perDocBudget);
-            snippetText = normalizeWhitespace(snippetText);
-            if (snippetText.isBlank()) continue; // 如果没有关键词命中，直接跳过
-
-            KbSnippet snippet = KbSnippet.builder()
-                    .docId(doc.getId())
-                    .title(shortTitle(doc))
-                    .source(shortSource(doc))
-                    .snippet(snippetText)
-                    .score(0.0)
-                    .build();
-
-            result.add(snippet);
-            remaining -= snippetText.length();
-        }
-
-        return result;
-    }
-
-    private List<String> normalizeKeywords(String query, List<String> keywords) {
-        LinkedHashSet<String> unique = new LinkedHashSet<>();
-        if (keywords != null) {
-            for (String kw : keywords) {
-                if (kw == null) continue;
-                String trimmed = kw.trim();
-                if (!trimmed.isEmpty()) {
-                    unique.add(trimmed);
-                }
-            }
-        }
-
-        if (query != null && !query.isBlank()) {
-            for (String token : query.trim().split("\\s+")) {
-                if (token.length() < 2) continue; // 太短的词命中效果差，忽略
-                unique.add(token);
-            }
-        }
-
-        return new ArrayList<>(unique);
+        return KbSnippetUtils.toSnippets(docs, normalizedKeywords, maxSnippets, maxTotalChars, doc -> 0.0);
     }
 
     /**
@@ -194,308 +140,4 @@ public class SupabaseKbSearchService implements KbSearchService {
         });
     }
 
-    /**
-     * 从整篇 content 中抽一个 snippet：
-     * - 仅当至少有一个关键词在 content 中命中时才返回片段；
-     * - 句子级切分 + 评分，优先保留覆盖关键词的短句，最多取少量句子；
-     * - 超预算时再按句子边界柔和截断。
-     */
-    private String extractSnippetFromContent(String content,
-                                             List<String> keywords,
-                                             int maxChars) {
-        if (content == null) return "";
-        String text = content.strip();
-        if (text.isEmpty()) return "";
-        if (maxChars <= 0) return "";
-
-        List<String> normalizedKeywords = normalizeKeywordsForMatching(keywords);
-        if (normalizedKeywords.isEmpty()) {
-            // 要求：如果没有 keywords，直接不返回 snippet
-            return "";
-        }
-
-        List<SentenceSpan> sentences = splitSentences(text);
-        if (sentences.isEmpty()) {
-            return "";
-        }
-
-        List<ScoredSentence> scored = new ArrayList<>();
-        for (SentenceSpan s : sentences) {
-            ScoredSentence scoredSentence = scoreSentence(s, normalizedKeywords);
-            if (scoredSentence != null) {
-                scored.add(scoredSentence);
-            }
-        }
-
-        if (scored.isEmpty()) {
-            // 没有关键词命中的句子，直接放弃
-            return "";
-        }
-
-        // 高分句优先，分数一致时按原文位置排序
-        scored.sort((a, b) -> {
-            int cmp = Integer.compare(b.score, a.score);
-            if (cmp != 0) return cmp;
-            return Integer.compare(a.span.start, b.span.start);
-        });
-
-        StringBuilder snippet = new StringBuilder();
-        Set<String> coveredKeywords = new HashSet<>();
-        List<SentenceSpan> picked = new ArrayList<>(MAX_SENTENCES_PER_SNIPPET);
-
-        for (ScoredSentence candidate : scored) {
-            if (picked.size() >= MAX_SENTENCES_PER_SNIPPET) break;
-
-            boolean improvesCoverage = !coveredKeywords.containsAll(candidate.matchedKeywords);
-            boolean isTopSentence = picked.isEmpty();
-
-            if (isTopSentence || improvesCoverage) {
-                picked.add(candidate.span);
-                coveredKeywords.addAll(candidate.matchedKeywords);
-            }
-        }
-
-        if (picked.isEmpty()) {
-            return "";
-        }
-
-        // 保持原始顺序，便于阅读
-        picked.sort(Comparator.comparingInt(span -> span.start));
-
-        for (SentenceSpan span : picked) {
-            int remainingChars = maxChars - snippet.length();
-            if (remainingChars <= 0) {
-                break;
-            }
-
-            String clipped = extractKeywordWindow(span.text, normalizedKeywords, remainingChars);
-            if (clipped.isBlank()) {
-                continue;
-            }
-
-            if (snippet.length() > 0) {
-                snippet.append(' ');
-            }
-            snippet.append(clipped);
-
-            if (snippet.length() >= maxChars) {
-                break;
-            }
-        }
-
-        return clipToSentenceBoundary(snippet.toString(), maxChars);
-    }
-
-    private static String extractKeywordWindow(String sentence, List<String> keywords, int budget) {
-        if (budget <= 0) return "";
-        String text = normalizeWhitespace(sentence);
-        if (text.isEmpty()) return "";
-
-        int effectiveMin = Math.min(MIN_SNIPPET_WINDOW, budget);
-        int maxLen = Math.min(budget, MAX_WINDOW_PER_SENTENCE);
-        String lower = text.toLowerCase(Locale.ROOT);
-
-        int bestStart = -1;
-        int bestEnd = -1;
-
-        for (String kw : keywords) {
-            if (kw == null || kw.isBlank()) continue;
-
-            int idx = lower.indexOf(kw);
-            if (idx < 0) continue;
-
-            int start = Math.max(0, idx - KEYWORD_WINDOW_PADDING);
-            int end = Math.min(text.length(), idx + kw.length() + KEYWORD_WINDOW_PADDING);
-
-            int desiredLen = Math.max(effectiveMin, end - start);
-            desiredLen = Math.min(desiredLen, maxLen);
-
-            if (end - start < desiredLen) {
-                int deficit = desiredLen - (end - start);
-                int leftExtra = Math.min(start, deficit / 2);
-                start -= leftExtra;
-                int rightExtra = Math.min(text.length() - end, deficit - leftExtra);
-                end += rightExtra;
-
-                int remainingGap = desiredLen - (end - start);
-                if (remainingGap > 0 && start > 0) {
-                    int shiftLeft = Math.min(start, remainingGap);
-                    start -= shiftLeft;
-                }
-                if (end - start < desiredLen && end < text.length()) {
-                    end = Math.min(text.length(), start + desiredLen);
-                }
-            }
-
-            if (end - start > maxLen) {
-                int center = start + (end - start) / 2;
-                start = Math.max(0, center - maxLen / 2);
-                end = Math.min(text.length(), start + maxLen);
-            }
-
-            if (bestStart == -1 || start < bestStart) {
-                bestStart = start;
-                bestEnd = end;
-            }
-        }
-
-        if (bestStart == -1) {
-            int end = Math.min(text.length(), Math.max(effectiveMin, Math.min(maxLen, text.length())));
-            return clipWithEllipsis(text, 0, end, text.length());
-        }
-
-        return clipWithEllipsis(text, bestStart, bestEnd, text.length());
-    }
-
-    /**
-     * 将 snippet 截到最近的句子边界内，避免过长。
-     */
-    private static String clipToSentenceBoundary(String snippet, int maxChars) {
-        if (snippet == null) return "";
-        String s = snippet.strip();
-        if (s.length() <= maxChars) return s;
-
-        String sub = s.substring(0, maxChars);
-        int cut = lastSentenceBoundary(sub);
-        if (cut > 40) { // 避免截得太短
-            sub = sub.substring(0, cut);
-        }
-        return sub.strip() + "...";
-    }
-
-    private static String clipWithEllipsis(String text, int start, int end, int totalLength) {
-        if (start < 0) start = 0;
-        if (end > totalLength) end = totalLength;
-        if (start >= end) return "";
-
-        boolean clippedLeft = start > 0;
-        boolean clippedRight = end < totalLength;
-
-        String window = text.substring(start, end).strip();
-        if (window.isEmpty()) {
-            return "";
-        }
-
-        if (clippedLeft) {
-            window = "..." + window;
-        }
-        if (clippedRight) {
-            window = window + "...";
-        }
-        return window;
-    }
-
-    /**
-     * 寻找最后一个句子结束符号的位置。
-     */
-    private static int lastSentenceBoundary(String text) {
-        if (text == null || text.isEmpty()) return -1;
-        int last = -1;
-        char[] marks = {'.', '?', '!', '。', '？', '！', '\n'};
-        for (char m : marks) {
-            int idx = text.lastIndexOf(m);
-            if (idx > last) last = idx;
-        }
-        return (last == -1) ? -1 : last + 1;
-    }
-
-    private static String normalizeWhitespace(String s) {
-        if (s == null) return "";
-        return s.replaceAll("[\\s\\u00A0]+", " ").trim();
-    }
-
-    private static List<String> normalizeKeywordsForMatching(List<String> keywords) {
-        if (keywords == null || keywords.isEmpty()) {
-            return List.of();
-        }
-
-        LinkedHashSet<String> unique = new LinkedHashSet<>();
-        for (String kw : keywords) {
-            if (kw == null) continue;
-            String trimmed = kw.trim().toLowerCase(Locale.ROOT);
-            if (trimmed.length() < MIN_KEYWORD_LEN) continue;
-            unique.add(trimmed);
-        }
-        return new ArrayList<>(unique);
-    }
-
-    private static List<SentenceSpan> splitSentences(String text) {
-        if (text == null || text.isBlank()) {
-            return List.of();
-        }
-
-        List<SentenceSpan> spans = new ArrayList<>();
-        int start = 0;
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            if (c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？' || c == '\n') {
-                int end = i + 1;
-                addSentenceSpan(text, spans, start, end);
-                start = end;
-            }
-        }
-        addSentenceSpan(text, spans, start, text.length());
-        return spans;
-    }
-
-    private static void addSentenceSpan(String text, List<SentenceSpan> spans, int start, int end) {
-        if (start >= end) {
-            return;
-        }
-        String piece = text.substring(start, end).trim();
-        if (piece.isEmpty()) {
-            return;
-        }
-        spans.add(new SentenceSpan(piece, start));
-    }
-
-    private static ScoredSentence scoreSentence(SentenceSpan span, List<String> keywords) {
-        String lower = span.text.toLowerCase(Locale.ROOT);
-        int hitCount = 0;
-        Set<String> matched = new HashSet<>();
-
-        for (String kw : keywords) {
-            if (kw.isEmpty()) continue;
-            int idx = lower.indexOf(kw);
-            if (idx >= 0) {
-                matched.add(kw);
-                // 统计命中次数，避免过度循环，这里简单计一次
-                hitCount += 1;
-            }
-        }
-
-        if (matched.isEmpty()) {
-            return null;
-        }
-
-        // 短句 + 关键词覆盖度越高，得分越高
-        int lengthPenalty = Math.max(0, (span.text.length() - 120) / 40);
-        int score = matched.size() * 6 + hitCount * 2 - lengthPenalty;
-        return new ScoredSentence(span, score, matched);
-    }
-
-    private record SentenceSpan(String text, int start) {
-    }
-
-    private record ScoredSentence(SentenceSpan span, int score, Set<String> matchedKeywords) {
-    }
-
-    private static String shortTitle(KbDocument doc) {
-        String type = safe(doc.getDocType());
-        if (!type.isBlank()) {
-            return type.length() > 24 ? type.substring(0, 24) : type;
-        }
-        return "doc";
-    }
-
-    private static String shortSource(KbDocument doc) {
-        Long id = doc.getId();
-        String ref = (id == null) ? "kb" : "kb#" + id;
-        String type = safe(doc.getDocType());
-        return type.isBlank() ? ref : type + " " + ref;
-    }
-
-    private static String safe(String s) {
-        return s == null ? "" : s;
-    }
 }
@@ -28,4 +28,8 @@ public class ThinkingStep {
 
   // timestamp from StepLog.at
   private Instant at;
+
+  // stage timing from StepLog (ms; null when the step was not timed)
+  private Double startMs;
+  private Double durationMs;
 }
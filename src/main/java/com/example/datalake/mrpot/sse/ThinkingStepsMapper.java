@@ -22,20 +22,31 @@ public class ThinkingStepsMapper {
 
     int i = 1;
     for (StepLog log : logs) {
-      ThinkingStep step = new ThinkingStep();
-      step.setIndex(i++);
-      step.setProcessor(log.getName());
-      step.setTitle(humanTitleFor(log.getName()));
-
-      // This is where we inject normalized text / keywords, etc.
-      step.setDetail(buildDetail(log, ctx));
-
-      step.setAt(log.getAt());
-      out.add(step);
+      out.add(toThinkingStep(ctx, log, i++));
     }
     return out;
   }
 
+  /**
+   * Map a single step; used by the SSE endpoint, which receives each step once as it is appended.
+   *
+   * @param index 1-based position of {@code log} in {@code ctx.getSteps()}
+   */
+  public ThinkingStep toThinkingStep(ProcessingContext ctx, StepLog log, int index) {
+    ThinkingStep step = new ThinkingStep();
+    step.setIndex(index);
+    step.setProcessor(log.getName());
+    step.setTitle(humanTitleFor(log.getName()));
+
+    // This is where we inject normalized text / keywords, etc.
+    step.setDetail(buildDetail(log, ctx));
+
+    step.setAt(log.getAt());
+    step.setStartMs(log.getStartMs());
+    step.setDurationMs(log.getDurationMs());
+    return step;
+  }
+
   private String humanTitleFor(String name) {
     if (name == null) return "Processing";
     return switch (name) {
@@ -45,6 +56,7 @@ public class ThinkingStepsMapper {
       case "common-response" -> "Match common greeting / FAQ";
       case "prompt-template" -> "Build system + user prompt";
       case "prompt-cache-lookup" -> "Check prompt cache";
+      case "answer-cache" -> "Check answer cache";
       case "langchain4j-rag" -> "Thinking";
       case "prompt-cache-record" -> "Record answer into cache";
       default -> "Processor: " + name;
@@ -0,0 +1,213 @@
+package com.example.datalake.mrpot.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho–Corasick automaton over a fixed phrase table: one left-to-right pass over the text
+ * reports every phrase it contains, however many phrases there are.
+ *
+ * <p>Each phrase carries a value (e.g. the category it belongs to). Phrases added with
+ * {@link Builder#addWord} only match on word boundaries, like {@code \bword\b} (a word char is a
+ * letter, digit or {@code _}); plain {@link Builder#add} phrases match anywhere, like
+ * {@link String#contains}. With {@link Builder#ignoreCase} the text is folded char by char, so callers
+ * don't need to lower-case it first.
+ */
+public final class AhoCorasick<T> {
+
+  private static final int[] NONE = new int[0];
+
+  // 每个状态的出边：keys 升序，targets 对应目标状态
+  private final char[][] keys;
+  private final int[][] targets;
+  private final int[] fail;
+  // 每个状态命中的 pattern 下标（已沿 fail 链合并）
+  private final int[][] outputs;
+
+  private final int[] lengths;
+  private final boolean[] wholeWord;
+  private final List<T> values;
+  private final boolean ignoreCase;
+
+  private AhoCorasick(char[][] keys, int[][] targets, int[] fail, int[][] outputs,
+                      int[] lengths, boolean[] wholeWord, List<T> values, boolean ignoreCase) {
+    this.keys = keys;
+    this.targets = targets;
+    this.fail = fail;
+    this.outputs = outputs;
+    this.lengths = lengths;
+    this.wholeWord = wholeWord;
+    this.values = values;
+    this.ignoreCase = ignoreCase;
+  }
+
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  /** Values of every phrase found in {@code text}, in order of first occurrence, without duplicates. */
+  public Set<T> matchValues(CharSequence text) {
+    Set<T> found = new LinkedHashSet<>();
+    if (text == null || values.isEmpty()) return found;
+
+    int state = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = ignoreCase ? Character.toLowerCase(text.charAt(i)) : text.charAt(i);
+      int next;
+      while ((next = step(state, c)) < 0 && state != 0) {
+        state = fail[state];
+      }
+      state = Math.max(next, 0);
+
+      for (int p : outputs[state]) {
+        if (!wholeWord[p] || isWholeWord(text, i + 1 - lengths[p], i + 1)) {
+          found.add(values.get(p));
+        }
+      }
+    }
+    return found;
+  }
+
+  private int step(int state, char c) {
+    char[] k = keys[state];
+    if (k.length == 0) return -1;
+    int idx = Arrays.binarySearch(k, c);
+    return idx < 0 ? -1 : targets[state][idx];
+  }
+
+  private static boolean isWholeWord(CharSequence text, int start, int end) {
+    return (start == 0 || !isWordChar(text.charAt(start - 1)))
+        && (end == text.length() || !isWordChar(text.charAt(end)));
+  }
+
+  private static boolean isWordChar(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+
+  public static final class Builder<T> {
+    private final List<String> patterns = new ArrayList<>();
+    private final List<Boolean> words = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
+    private boolean ignoreCase;
+
+    private Builder() {}
+
+    /** Match {@code phrase} anywhere in the text. Blank phrases are ignored. */
+    public Builder<T> add(String phrase, T value) {
+      return put(phrase, value, false);
+    }
+
+    /** Match {@code word} only when it is not glued to other letters/digits. */
+    public Builder<T> addWord(String word, T value) {
+      return put(word, value, true);
+    }
+
+    public Builder<T> ignoreCase(boolean ignoreCase) {
+      this.ignoreCase = ignoreCase;
+      return this;
+    }
+
+    private Builder<T> put(String phrase, T value, boolean wholeWord) {
+      if (phrase != null && !phrase.isEmpty()) {
+        patterns.add(phrase);
+        words.add(wholeWord);
+        values.add(value);
+      }
+      return this;
+    }
+
+    public AhoCorasick<T> build() {
+      // 1) trie
+      List<TreeMap<Character, Integer>> children = new ArrayList<>();
+      List<List<Integer>> hits = new ArrayList<>();
+      children.add(new TreeMap<>());
+      hits.add(new ArrayList<>());
+
+      int n = patterns.size();
+      int[] lengths = new int[n];
+      boolean[] wholeWord = new boolean[n];
+      for (int p = 0; p < n; p++) {
+        String pattern = ignoreCase ? patterns.get(p).toLowerCase(Locale.ROOT) : patterns.get(p);
+        lengths[p] = pattern.length();
+        wholeWord[p] = words.get(p);
+        int state = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+          Integer next = children.get(state).get(pattern.charAt(i));
+          if (next == null) {
+            next = children.size();
+            children.get(state).put(pattern.charAt(i), next);
+            children.add(new TreeMap<>());
+            hits.add(new ArrayList<>());
+          }
+          state = next;
+        }
+        hits.get(state).add(p);
+      }
+
+      // 2) BFS 计算 fail 链，并把 fail 状态的输出并入当前状态
+      int states = children.size();
+      int[] fail = new int[states];
+      int[][] outputs = new int[states][];
+      outputs[0] = NONE;
+      Deque<Integer> queue = new ArrayDeque<>();
+      for (int child : children.get(0).values()) {
+        fail[child] = 0;
+        outputs[child] = toArray(hits.get(child), NONE);
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        int state = queue.poll();
+        for (var edge : children.get(state).entrySet()) {
+          char c = edge.getKey();
+          int child = edge.getValue();
+          int f = fail[state];
+          while (f != 0 && !children.get(f).containsKey(c)) {
+            f = fail[f];
+          }
+          Integer target = children.get(f).get(c);
+          fail[child] = (target == null || target == child) ? 0 : target;
+          outputs[child] = toArray(hits.get(child), outputs[fail[child]]);
+          queue.add(child);
+        }
+      }
+
+      // 3) 压成数组，匹配时只做二分查找
+      char[][] keys = new char[states][];
+      int[][] targets = new int[states][];
+      for (int s = 0; s < states; s++) {
+        TreeMap<Character, Integer> edges = children.get(s);
+        keys[s] = new char[edges.size()];
+        targets[s] = new int[edges.size()];
+        int i = 0;
+        for (var edge : edges.entrySet()) {
+          keys[s][i] = edge.getKey();
+          targets[s][i] = edge.getValue();
+          i++;
+        }
+      }
+      return new AhoCorasick<>(keys, targets, fail, outputs, lengths, wholeWord, List.copyOf(values), ignoreCase);
+    }
+
+    // 自身的 pattern（更长、起点更早）排在继承自 fail 链的前面
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+      if (own.isEmpty()) return inherited;
+      int[] out = new int[own.size() + inherited.length];
+      for (int i = 0; i < own.size(); i++) {
+        out[i] = own.get(i);
+      }
+      System.arraycopy(inherited, 0, out, own.size(), inherited.length);
+      return out;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package com.example.datalake.mrpot.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker for one remote dependency.
+ *
+ * <p>The outcomes of the last {@code windowSize} calls are kept in a ring; once at least
+ * {@code minimumCalls} were recorded and the failure rate reaches the threshold the breaker opens and
+ * {@link #tryAcquire()} refuses calls for {@code openDuration}. After that a single trial call is let
+ * through (half-open): success closes the breaker with a fresh window, failure opens it again. A
+ * successful call slower than {@code slowCallDuration} counts as a failure, since a dependency that
+ * answers at socket-timeout speed is as bad as one that errors; a trial that has not reported after
+ * {@code slowCallDuration} is treated the same way, so a lost trial cannot hold the slot forever.
+ *
+ * <p>{@link #tryAcquire()} hands out a {@link Call}; callers must report it exactly once:
+ * {@link Call#onSuccess}, {@link Call#onFailure} or {@link Call#onIgnored} (the call never reached the
+ * dependency, e.g. it was shed locally or cancelled). Outcomes only count in the state the call was
+ * admitted in – late results of calls admitted before the breaker last changed state are dropped, and
+ * only the trial call itself decides a half-open breaker.
+ */
+public final class CircuitBreaker {
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private final String name;
+  private final boolean enabled;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long openNanos;
+  private final long slowCallNanos;
+  private final LongSupplier clock;
+
+  // 最近 windowSize 次调用的结果（true = 失败）
+  private final boolean[] window;
+  private int recorded;
+  private int next;
+  private int failures;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private boolean trialInFlight;
+  private long trialStartedAt;
+  // 每次状态切换加一；Call 记下自己被放行时的 generation，过期的结果不再计入
+  private long generation;
+
+  private CircuitBreaker(Builder builder) {
+    this.name = builder.name;
+    this.enabled = builder.enabled;
+    this.window = new boolean[Math.max(1, builder.windowSize)];
+    this.minimumCalls = Math.max(1, Math.min(builder.minimumCalls, window.length));
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.openNanos = builder.openDuration.toNanos();
+    this.slowCallNanos = builder.slowCallDuration.toNanos();
+    this.clock = builder.clock;
+  }
+
+  public static Builder builder(String name) {
+    return new Builder(name);
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Admit a call to the dependency, or return {@code null} when the breaker refuses it. In half-open
+   * state only one trial call is admitted.
+   */
+  public synchronized Call tryAcquire() {
+    if (!enabled) {
+      return new Call(this, 0, false);
+    }
+    long now = clock.getAsLong();
+    if (state == State.OPEN) {
+      if (now - openedAt < openNanos) {
+        return null;
+      }
+      state = State.HALF_OPEN;
+      generation++;
+      trialInFlight = false;
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialInFlight) {
+        if (now - trialStartedAt < slowCallNanos) {
+          return null;
+        }
+        // 试探调用迟迟不报结果：按慢调用算失败，重新打开
+        open();
+        return null;
+      }
+      trialInFlight = true;
+      trialStartedAt = now;
+      return new Call(this, generation, true);
+    }
+    return new Call(this, generation, false);
+  }
+
+  public synchronized State state() {
+    if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /** Failure rate over the current window (0 when nothing was recorded yet). */
+  public synchronized double failureRate() {
+    return recorded == 0 ? 0.0 : (double) failures / recorded;
+  }
+
+  /** Time until an open breaker admits its trial call; zero otherwise. */
+  public synchronized Duration retryAfter() {
+    if (state != State.OPEN) {
+      return Duration.ZERO;
+    }
+    return Duration.ofNanos(Math.max(0, openNanos - (clock.getAsLong() - openedAt)));
+  }
+
+  private synchronized void record(Call call, boolean failed) {
+    if (!enabled || call.generation != generation) {
+      return;
+    }
+    switch (state) {
+      case HALF_OPEN -> {
+        if (!call.trial) {
+          return;
+        }
+        if (failed) {
+          open();
+        } else {
+          reset();
+          state = State.CLOSED;
+          generation++;
+        }
+      }
+      case CLOSED -> {
+        if (recorded == window.length) {
+          if (window[next]) failures--;
+        } else {
+          recorded++;
+        }
+        window[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % window.length;
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+          open();
+        }
+      }
+      // 打开之前发出的调用陆续返回：generation 已经变了，走不到这里
+      case OPEN -> { }
+    }
+  }
+
+  private synchronized void ignore(Call call) {
+    if (state == State.HALF_OPEN && call.trial && call.generation == generation) {
+      trialInFlight = false;
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = clock.getAsLong();
+    trialInFlight = false;
+    generation++;
+    reset();
+  }
+
+  private void reset() {
+    recorded = 0;
+    next = 0;
+    failures = 0;
+  }
+
+  /** One admitted call; report its outcome exactly once (later reports are ignored). */
+  public static final class Call {
+    private final CircuitBreaker breaker;
+    private final long generation;
+    private final boolean trial;
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    private Call(CircuitBreaker breaker, long generation, boolean trial) {
+      this.breaker = breaker;
+      this.generation = generation;
+      this.trial = trial;
+    }
+
+    /** This call is the single half-open trial. */
+    public boolean isTrial() {
+      return trial;
+    }
+
+    public void onSuccess(long durationNanos) {
+      if (reported.compareAndSet(false, true)) {
+        breaker.record(this, durationNanos > breaker.slowCallNanos);
+      }
+    }
+
+    public void onFailure() {
+      if (reported.compareAndSet(false, true)) {
+        breaker.record(this, true);
+      }
+    }
+
+    /** The call did not reach the dependency (or was cancelled); frees the half-open trial slot. */
+    public void onIgnored() {
+      if (reported.compareAndSet(false, true)) {
+        breaker.ignore(this);
+      }
+    }
+  }
+
+  public static final class Builder {
+    private final String name;
+    private boolean enabled = true;
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private Duration openDuration = Duration.ofSeconds(30);
+    private Duration slowCallDuration = Duration.ofSeconds(60);
+    private LongSupplier clock = System::nanoTime;
+
+    private Builder(String name) {
+      this.name = name;
+    }
+
+    /** A disabled breaker admits every call and never opens. */
+    public Builder enabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder windowSize(int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    public Builder minimumCalls(int minimumCalls) {
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    public Builder failureRateThreshold(double failureRateThreshold) {
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    public Builder openDuration(Duration openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    public Builder slowCallDuration(Duration slowCallDuration) {
+      this.slowCallDuration = slowCallDuration;
+      return this;
+    }
+
+    /** Monotonic nanosecond clock; tests pass a fake one. */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public CircuitBreaker build() {
+      return new CircuitBreaker(this);
+    }
+  }
+}
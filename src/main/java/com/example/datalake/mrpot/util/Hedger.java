@@ -0,0 +1,188 @@
+package com.example.datalake.mrpot.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for an idempotent blocking call: if the first attempt has not returned after the
+ * observed latency percentile (e.g. p95), a second identical attempt is started and whichever
+ * succeeds first wins; the other one is cancelled (interrupted).
+ *
+ * <p>The delay comes from the latencies of the last {@code windowSize} successful attempts (never
+ * below {@code minDelay}); until {@code minSamples} were seen the call runs inline without hedging.
+ * At most one extra attempt per call, so the extra load is bounded by the tail fraction (~5% at p95).
+ * Attempts run on {@code executor}, which should be bounded: when it rejects the primary attempt the
+ * call runs inline, when it rejects the hedge the call simply is not hedged. The caller never waits
+ * longer than its {@code maxWait}.
+ */
+public final class Hedger {
+
+  private final Executor executor;
+  private final double percentile;
+  private final long minDelayNanos;
+  private final int minSamples;
+
+  // 最近成功调用的耗时（ring buffer）
+  private final long[] samples;
+  private int count;
+  private int next;
+
+  public Hedger(Executor executor, double percentile, Duration minDelay, int minSamples, int windowSize) {
+    this.executor = executor;
+    this.percentile = Math.min(1.0, Math.max(0.0, percentile));
+    this.minDelayNanos = minDelay.toNanos();
+    this.samples = new long[Math.max(1, windowSize)];
+    this.minSamples = Math.max(1, Math.min(minSamples, samples.length));
+  }
+
+  /**
+   * Run {@code attempt}, hedging it once if it is slower than the current delay, and wait at most
+   * {@code maxWait} for it (the inline, not yet hedged path is bounded by the attempt itself).
+   *
+   * @throws WaitTimeoutException no attempt succeeded within {@code maxWait}; both were cancelled
+   * @throws RuntimeException     the failure of the last attempt when no attempt succeeded
+   */
+  public <T> Result<T> call(Supplier<T> attempt, Duration maxWait) {
+    long delay = delayNanos();
+    if (delay < 0) {
+      return new Result<>(timed(attempt).get(), false);
+    }
+
+    long deadline = System.nanoTime() + Math.max(0, maxWait.toNanos());
+    BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<>();
+    Future<T> primary = submit(attempt, completed);
+    if (primary == null) {
+      // 没有空闲 worker：就在调用方线程上跑，不 hedge
+      return new Result<>(timed(attempt).get(), false);
+    }
+    Future<T> hedge = null;
+    try {
+      Future<T> first = completed.poll(Math.min(delay, remaining(deadline)), TimeUnit.NANOSECONDS);
+      if (first != null) {
+        return new Result<>(valueOf(first), false);
+      }
+      if (remaining(deadline) > 0) {
+        hedge = submit(attempt, completed);
+      }
+
+      int pending = hedge == null ? 1 : 2;
+      Throwable lastError = null;
+      while (pending > 0) {
+        Future<T> finished = completed.poll(remaining(deadline), TimeUnit.NANOSECONDS);
+        if (finished == null) {
+          throw new WaitTimeoutException(maxWait);
+        }
+        pending--;
+        try {
+          return new Result<>(finished.get(), hedge != null);
+        } catch (ExecutionException e) {
+          // 两路都失败才算失败（取后失败的那个异常）
+          lastError = e.getCause();
+        }
+      }
+      throw rethrow(lastError);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a hedged call", e);
+    } finally {
+      // 赢家已经完成，cancel 对它无效；输家（或超时的两路）被中断
+      primary.cancel(true);
+      if (hedge != null) {
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  /** Current hedge delay, or {@code null} while there are too few samples to hedge. */
+  public Duration delay() {
+    long nanos = delayNanos();
+    return nanos < 0 ? null : Duration.ofNanos(nanos);
+  }
+
+  private synchronized long delayNanos() {
+    if (count < minSamples) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile * count) - 1;
+    return Math.max(minDelayNanos, sorted[Math.max(0, Math.min(count - 1, index))]);
+  }
+
+  private synchronized void record(long nanos) {
+    samples[next] = nanos;
+    next = (next + 1) % samples.length;
+    if (count < samples.length) count++;
+  }
+
+  private <T> Supplier<T> timed(Supplier<T> attempt) {
+    return () -> {
+      long start = System.nanoTime();
+      T value = attempt.get();
+      record(System.nanoTime() - start);
+      return value;
+    };
+  }
+
+  // 提交一次尝试，完成（含失败 / 取消）时放进 completed；executor 拒绝时返回 null
+  private <T> Future<T> submit(Supplier<T> attempt, BlockingQueue<Future<T>> completed) {
+    Supplier<T> timedAttempt = timed(attempt);
+    FutureTask<T> task = new FutureTask<>(timedAttempt::get) {
+      @Override
+      protected void done() {
+        completed.add(this);
+      }
+    };
+    try {
+      executor.execute(task);
+      return task;
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+  }
+
+  private static long remaining(long deadlineNanos) {
+    return Math.max(0, deadlineNanos - System.nanoTime());
+  }
+
+  private static <T> T valueOf(Future<T> finished) throws InterruptedException {
+    try {
+      return finished.get();
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable cause) {
+    // attempt 自己抛出的 CompletionException 也拆开，调用方看到的是原始异常
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof RuntimeException re) return re;
+    if (cause instanceof Error err) throw err;
+    return new IllegalStateException(cause);
+  }
+
+  /**
+   * @param hedged a second attempt was started (the value may still come from the first one)
+   */
+  public record Result<T>(T value, boolean hedged) {}
+
+  /** No attempt succeeded within the caller's {@code maxWait}. */
+  public static final class WaitTimeoutException extends RuntimeException {
+
+    public WaitTimeoutException(Duration maxWait) {
+      super("Hedged call did not finish within " + maxWait.toMillis() + "ms");
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.example.datalake.mrpot.util;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one execution (Go's {@code singleflight}).
+ *
+ * <p>The first caller of a key (the leader) starts the supplier; callers arriving while it runs wait
+ * – each for at most its own {@code maxWait} – until it finishes and receive the same value or
+ * exception. Nothing is cached: once the execution completes, the next call for that key starts a new
+ * one. Intended for blocking calls that already run on a worker pool (KB search, LLM completion), so
+ * the value must be safe to share between callers.
+ *
+ * <p>Without an executor the leader runs the supplier on its own thread, so the execution lives and
+ * dies with the leader. With an executor the execution belongs to no caller: the leader waits like
+ * everybody else, a caller that gives up (timeout, interrupt) only stops its own wait, and the
+ * execution is cancelled (interrupted) once no caller is waiting for it any more.
+ */
+public final class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, Call<V>> inFlight = new ConcurrentHashMap<>();
+  private final Executor executor;
+
+  /** Leader runs the work on its own thread. */
+  public SingleFlight() {
+    this(null);
+  }
+
+  /** Work runs on {@code executor}, detached from every caller's wait. */
+  public SingleFlight(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Run {@code work} for {@code key}, or join the execution already in flight, and wait at most
+   * {@code maxWait} for it. Without an executor the leader is not bounded here; {@code work} has to
+   * time out on its own.
+   *
+   * @throws WaitTimeoutException this caller gave up after {@code maxWait}; the shared execution
+   *                              keeps running for the others
+   * @throws RuntimeException     whatever the shared execution threw (unchecked exceptions are
+   *                              rethrown as is)
+   */
+  public Result<V> execute(K key, Duration maxWait, Supplier<? extends V> work) {
+    while (true) {
+      Call<V> mine = new Call<>(executor != null);
+      Call<V> existing = inFlight.putIfAbsent(key, mine);
+      if (existing == null) {
+        return executor == null ? lead(key, mine, work) : start(key, mine, work, maxWait);
+      }
+      if (existing.join()) {
+        return await(existing, maxWait, false);
+      }
+      // 执行刚好结束、key 已移除：相当于晚到了一步，重新来一次
+    }
+  }
+
+  /** Keys currently executing. */
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  // 测试用：key 当前执行上挂着的等待者
+  int waiters(K key) {
+    Call<V> call = inFlight.get(key);
+    return call == null ? 0 : call.waiters();
+  }
+
+  private Result<V> lead(K key, Call<V> mine, Supplier<? extends V> work) {
+    V value;
+    try {
+      value = work.get();
+    } catch (RuntimeException | Error e) {
+      mine.close(inFlight, key);
+      mine.future.completeExceptionally(e);
+      throw e;
+    }
+    // 关闭之后不会再有人加入，此时的 waiters 和跟随者拿到的是同一个数
+    int waiters = mine.close(inFlight, key);
+    mine.future.complete(value);
+    return new Result<>(value, true, waiters);
+  }
+
+  private Result<V> start(K key, Call<V> mine, Supplier<? extends V> work, Duration maxWait) {
+    FutureTask<V> task = new FutureTask<>(work::get) {
+      @Override
+      protected void done() {
+        mine.close(inFlight, key);
+        try {
+          mine.future.complete(get());
+        } catch (ExecutionException e) {
+          mine.future.completeExceptionally(e.getCause());
+        } catch (CancellationException | InterruptedException e) {
+          mine.future.completeExceptionally(new CancellationException("No caller is waiting any more"));
+        }
+      }
+    };
+    mine.start(task);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // 任务没跑起来，done 不会回调：这里收尾，已加入的跟随者拿到同一个异常
+      mine.close(inFlight, key);
+      mine.future.completeExceptionally(e);
+      throw e;
+    }
+    return await(mine, maxWait, true);
+  }
+
+  private static <V> Result<V> await(Call<V> call, Duration maxWait, boolean leader) {
+    try {
+      V value = call.future.get(Math.max(0, maxWait.toNanos()), TimeUnit.NANOSECONDS);
+      return new Result<>(value, leader, call.waiters());
+    } catch (TimeoutException e) {
+      call.leave(leader);
+      throw new WaitTimeoutException(maxWait);
+    } catch (InterruptedException e) {
+      call.leave(leader);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a coalesced call", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException re) throw re;
+      if (cause instanceof Error err) throw err;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  // 加入 / 离开 / 关闭都在同一把锁下，leader 读到的 waiters 不会漏掉正在加入的跟随者
+  private static final class Call<V> {
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    // waiters：加入的跟随者；active：还在等结果的调用方（有 executor 时包括 leader）
+    private int waiters;
+    private int active;
+    private boolean closed;
+    private FutureTask<V> task;
+
+    Call(boolean leaderWaits) {
+      this.active = leaderWaits ? 1 : 0;
+    }
+
+    synchronized void start(FutureTask<V> task) {
+      this.task = task;
+    }
+
+    synchronized boolean join() {
+      if (closed) {
+        return false;
+      }
+      waiters++;
+      active++;
+      return true;
+    }
+
+    // 放弃等待的跟随者不再算在共享者里；最后一个等待者离开时取消执行（cancel 会同步回调 close）
+    synchronized void leave(boolean leader) {
+      if (closed) {
+        return;
+      }
+      if (!leader) {
+        waiters--;
+      }
+      if (--active == 0 && task != null) {
+        task.cancel(true);
+      }
+    }
+
+    synchronized <K> int close(ConcurrentHashMap<K, Call<V>> inFlight, K key) {
+      inFlight.remove(key, this);
+      closed = true;
+      return waiters;
+    }
+
+    synchronized int waiters() {
+      return waiters;
+    }
+  }
+
+  /**
+   * @param leader  this caller started the execution; otherwise it received another caller's result
+   * @param waiters callers that shared the leader's execution (0 = nobody else asked)
+   */
+  public record Result<V>(V value, boolean leader, int waiters) {
+
+    public boolean coalesced() {
+      return waiters > 0;
+    }
+  }
+
+  /** A caller stopped waiting for the shared execution after its {@code maxWait}. */
+  public static final class WaitTimeoutException extends RuntimeException {
+
+    public WaitTimeoutException(Duration maxWait) {
+      super("Gave up waiting for a coalesced call after " + maxWait.toMillis() + "ms");
+    }
+  }
+}
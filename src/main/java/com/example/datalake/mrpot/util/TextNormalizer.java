@@ -0,0 +1,114 @@
+package com.example.datalake.mrpot.util;
+
+import java.text.Normalizer;
+
+/**
+ * Single-pass, low-risk text normalization used before any rule-based correction.
+ *
+ * <p>In one scan over the (NFKC-normalized) input it:
+ * <ul>
+ *   <li>drops zero-width chars (U+FEFF, U+200B..U+200F) and ASCII control chars except {@code \n} /
+ *       {@code \t} ({@code \r} included, so CRLF becomes LF);</li>
+ *   <li>folds curly quotes to {@code "} / {@code '} and em/en dashes to {@code -};</li>
+ *   <li>collapses runs of {@code ? ! 。 ， ,} to one char, and runs of three or more {@code .} to one;</li>
+ *   <li>collapses runs of two or more spaces/tabs to a single space, then trims.</li>
+ * </ul>
+ * Runs are judged after dropping, so {@code "?<U+200B>?"} collapses like {@code "??"}.
+ *
+ * <p>NFKC is skipped when the input is pure ASCII or already NFKC-normalized.
+ */
+public final class TextNormalizer {
+
+  public static String normalize(String s) {
+    if (s == null || s.isEmpty()) return "";
+    if (!isAscii(s) && !Normalizer.isNormalized(s, Normalizer.Form.NFKC)) {
+      s = Normalizer.normalize(s, Normalizer.Form.NFKC);
+    }
+
+    int n = s.length();
+    StringBuilder out = new StringBuilder(n);
+    int dots = 0;       // 尚未输出的连续 '.'
+    int blanks = 0;     // 尚未输出的连续空格/制表符
+    char firstBlank = ' ';
+
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (isDropped(c)) continue;
+      c = fold(c);
+
+      if (c == '.') {
+        flushBlanks(out, blanks, firstBlank);
+        blanks = 0;
+        dots++;
+        continue;
+      }
+      if (c == ' ' || c == '\t') {
+        flushDots(out, dots);
+        dots = 0;
+        if (blanks++ == 0) firstBlank = c;
+        continue;
+      }
+
+      flushDots(out, dots);
+      dots = 0;
+      flushBlanks(out, blanks, firstBlank);
+      blanks = 0;
+
+      if (isCollapsible(c) && out.length() > 0 && out.charAt(out.length() - 1) == c) continue;
+      out.append(c);
+    }
+    flushDots(out, dots);
+    flushBlanks(out, blanks, firstBlank);
+
+    // 与 String.trim() 相同的边界（此时 <= ' ' 的只剩 \n、\t 和空格）
+    int start = 0;
+    int end = out.length();
+    while (start < end && out.charAt(start) <= ' ') start++;
+    while (end > start && out.charAt(end - 1) <= ' ') end--;
+    return out.substring(start, end);
+  }
+
+  private static boolean isAscii(String s) {
+    for (int i = 0, n = s.length(); i < n; i++) {
+      if (s.charAt(i) >= 0x80) return false;
+    }
+    return true;
+  }
+
+  private static boolean isDropped(char c) {
+    if (c < 0x20) return c != '\n' && c != '\t';
+    return c == 0x7F || c == '\uFEFF' || (c >= '\u200B' && c <= '\u200F');
+  }
+
+  private static char fold(char c) {
+    switch (c) {
+      case '\u201C': case '\u201D': return '"';   // “ ”
+      case '\u2018': case '\u2019': return '\'';  // ‘ ’
+      case '\u2014': case '\u2013': return '-';   // — –
+      default: return c;
+    }
+  }
+
+  private static boolean isCollapsible(char c) {
+    return c == '?' || c == '!' || c == '\u3002' || c == '\uFF0C' || c == ',';  // 。 ，
+  }
+
+  // "..." 及更长折叠为 "."，".." 原样保留
+  private static void flushDots(StringBuilder out, int dots) {
+    if (dots >= 3) {
+      out.append('.');
+    } else {
+      for (int k = 0; k < dots; k++) out.append('.');
+    }
+  }
+
+  private static void flushBlanks(StringBuilder out, int blanks, char firstBlank) {
+    if (blanks >= 2) {
+      out.append(' ');
+    } else if (blanks == 1) {
+      out.append(firstBlank);
+    }
+  }
+
+  private TextNormalizer() {}
+}
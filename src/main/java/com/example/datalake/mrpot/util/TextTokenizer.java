@@ -0,0 +1,93 @@
+package com.example.datalake.mrpot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 中英文混合分词：英文/数字单词 + 整段汉字串 + 相邻词 bigram + 汉字 uni/bi/tri-gram。
+ * 意图识别和 KB 的 BM25 索引共用，保证查询端和索引端切分一致。
+ */
+public final class TextTokenizer {
+
+  // 英文/数字 token + 连续的汉字串
+  private static final Pattern TOKENIZER =
+      Pattern.compile("([a-z0-9+.#-]+)|([\\p{IsHan}]+)");
+
+  // 检测是否包含汉字
+  private static final Pattern HAN_CHAR = Pattern.compile("[\\p{IsHan}]");
+
+  private TextTokenizer() {}
+
+  public static List<String> tokenize(String raw) {
+    if (raw == null || raw.isBlank()) {
+      return List.of();
+    }
+
+    String text = raw.toLowerCase(Locale.ROOT);
+    Matcher m = TOKENIZER.matcher(text);
+
+    List<String> words = new ArrayList<>();         // 英文/数字 token + 整段汉字串
+    List<String> hanCharNgrams = new ArrayList<>(); // 汉字 uni/bi/tri-gram
+    boolean matched = false;
+
+    while (m.find()) {
+      matched = true;
+      String latin = m.group(1);
+      String han = m.group(2);
+
+      if (latin != null) {
+        words.add(latin);
+      } else if (han != null) {
+        // 整段汉字串作为一个 token
+        words.add(han);
+        // 单字
+        for (int i = 0; i < han.length(); i++) {
+          hanCharNgrams.add(han.substring(i, i + 1));
+        }
+        // bigram
+        for (int i = 0; i + 1 < han.length(); i++) {
+          hanCharNgrams.add(han.substring(i, i + 2));
+        }
+        // trigram：例如 "芝加" + "加哥" → "芝加哥"
+        for (int i = 0; i + 2 < han.length(); i++) {
+          hanCharNgrams.add(han.substring(i, i + 3));
+        }
+      }
+    }
+
+    // 如果完全没有匹配到（例如只有标点），做一个兜底
+    if (!matched) {
+      if (HAN_CHAR.matcher(text).find()) {
+        // 如果包含汉字，退化为「逐字」切分
+        for (int i = 0; i < text.length(); i++) {
+          char c = text.charAt(i);
+          String s = String.valueOf(c).trim();
+          if (!s.isEmpty() && HAN_CHAR.matcher(s).find()) {
+            words.add(s);
+          }
+        }
+      } else {
+        // 否则按空格简单拆分英文
+        for (String part : text.split("\\s+")) {
+          if (!part.isBlank()) {
+            words.add(part);
+          }
+        }
+      }
+    }
+
+    // 添加跨词 bigram，例如 "sign in", "credit card" 之类
+    List<String> tokens = new ArrayList<>(words.size() * 2 + hanCharNgrams.size());
+    tokens.addAll(words);
+    for (int i = 1; i < words.size(); i++) {
+      tokens.add(words.get(i - 1) + " " + words.get(i));
+    }
+    // 再加上汉字 uni/bi/tri-gram
+    tokens.addAll(hanCharNgrams);
+
+    return tokens;
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.datalake.mrpot.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Java 21 虚拟线程的反射入口：源码仍按 Java 17 编译，运行在 21+ 上时才真正启用。
+ * 用于 PipelineSchedulers 的 db / llm 池和 OpenAI HTTP client（spring.threads.virtual.enabled=true）。
+ */
+public final class VirtualThreads {
+
+  // 19/20 上 ofVirtual 是 preview API，不算支持
+  private static final Method OF_VIRTUAL =
+      Runtime.version().feature() >= 21 ? lookup(Thread.class, "ofVirtual") : null;
+
+  private VirtualThreads() {}
+
+  /** True when the running JVM has {@code Thread.ofVirtual()} (Java 21+). */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Thread factory producing virtual threads named {@code prefix + n}.
+   *
+   * @throws IllegalStateException when the JVM has no virtual threads
+   */
+  public static ThreadFactory factory(String prefix) {
+    if (OF_VIRTUAL == null) {
+      throw new IllegalStateException("Virtual threads require Java 21+, running " + Runtime.version());
+    }
+    try {
+      Object builder = OF_VIRTUAL.invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create virtual thread factory", e);
+    }
+  }
+
+  /**
+   * One new virtual thread per task ({@code Executors.newThreadPerTaskExecutor}).
+   *
+   * @throws IllegalStateException when the JVM has no virtual threads
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+    ThreadFactory factory = factory(prefix);
+    try {
+      Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) m.invoke(null, factory);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create virtual thread executor", e);
+    }
+  }
+
+  private static Method lookup(Class<?> type, String name) {
+    try {
+      return type.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+-- Full-text search support for kb_documents, used by PostgresFtsKbSearchService
+-- (mrpot.kb.search.backend=fts). Idempotent: safe to run more than once.
+--
+-- Latin text goes through the 'english' configuration (stemming + stop words).
+-- Han text has no word boundaries, so every run of Han characters is additionally
+-- indexed as single characters plus overlapping bigrams ("知识库" -> "知 知识 识 识库 库")
+-- under the 'simple' configuration; the service queries bigrams for longer runs and the
+-- character itself for one-character runs ("猫").
+
+CREATE OR REPLACE FUNCTION public.mrpot_han_ngrams(src text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE
+AS $$
+SELECT coalesce(string_agg(gram.g, ' '), '')
+FROM regexp_matches(coalesce(src, ''), '([\u3400-\u4dbf\u4e00-\u9fff\uf900-\ufaff]+)', 'g') AS run(m),
+     generate_series(1, char_length(run.m[1])) AS i,
+     LATERAL (VALUES (substr(run.m[1], i, 1)),
+                     (CASE WHEN i < char_length(run.m[1]) THEN substr(run.m[1], i, 2) END)) AS gram(g)
+$$;
+
+-- Earlier versions indexed bigrams only (mrpot_han_bigrams); a generated column cannot be
+-- altered in place, so drop it and let the statements below rebuild it with unigrams.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM information_schema.columns
+               WHERE table_schema = 'public'
+                 AND table_name = 'kb_documents'
+                 AND column_name = 'content_tsv'
+                 AND generation_expression NOT LIKE '%mrpot_han_ngrams%') THEN
+        ALTER TABLE public.kb_documents DROP COLUMN content_tsv;
+    END IF;
+END
+$$;
+
+DROP FUNCTION IF EXISTS public.mrpot_han_bigrams(text);
+
+ALTER TABLE public.kb_documents
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('english', coalesce(content, '')), 'A')
+                || setweight(to_tsvector('simple', public.mrpot_han_ngrams(content)), 'B')
+        ) STORED;
+
+CREATE INDEX IF NOT EXISTS kb_documents_content_tsv_idx
+    ON public.kb_documents USING gin (content_tsv);
@@ -0,0 +1,33 @@
+-- Change tracking for kb_documents, used by Bm25KbSearchService
+-- (mrpot.kb.search.backend=bm25) to resync its in-memory index. Idempotent: safe to run more than once.
+--
+-- JPA writes already stamp updated_at (@UpdateTimestamp); the default and the trigger cover rows
+-- inserted or updated by plain SQL, migrations or other services.
+
+ALTER TABLE public.kb_documents
+    ADD COLUMN IF NOT EXISTS updated_at timestamptz;
+
+UPDATE public.kb_documents SET updated_at = now() WHERE updated_at IS NULL;
+
+ALTER TABLE public.kb_documents
+    ALTER COLUMN updated_at SET DEFAULT now(),
+    ALTER COLUMN updated_at SET NOT NULL;
+
+CREATE OR REPLACE FUNCTION public.mrpot_touch_updated_at()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    NEW.updated_at := now();
+    RETURN NEW;
+END
+$$;
+
+DROP TRIGGER IF EXISTS kb_documents_touch_updated_at ON public.kb_documents;
+CREATE TRIGGER kb_documents_touch_updated_at
+    BEFORE UPDATE ON public.kb_documents
+    FOR EACH ROW
+EXECUTE FUNCTION public.mrpot_touch_updated_at();
+
+CREATE INDEX IF NOT EXISTS kb_documents_updated_at_idx
+    ON public.kb_documents (updated_at);
@@ -1,24 +1,32 @@
 package com.example.datalake.mrpot.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.example.datalake.mrpot.model.AnswerDelta;
+import com.example.datalake.mrpot.model.PipelineEvent;
 import com.example.datalake.mrpot.model.ProcessingContext;
 import com.example.datalake.mrpot.model.StepEvent;
 import com.example.datalake.mrpot.model.StepLog;
 import com.example.datalake.mrpot.request.PrepareRequest;
 import com.example.datalake.mrpot.response.PrepareResponse;
+import com.example.datalake.mrpot.service.DeadlineExceededException;
+import com.example.datalake.mrpot.service.DependencyUnavailableException;
+import com.example.datalake.mrpot.service.LlmRateLimitedException;
 import com.example.datalake.mrpot.service.PromptPipeline;
 import com.example.datalake.mrpot.sse.ThinkingStepsMapper;
 import com.example.datalake.mrpot.validation.ValidationException;
 import dev.langchain4j.exception.RateLimitException;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,7 +44,7 @@ class PromptControllerTest {
 
     PromptController controller = new PromptController(pipeline, thinkingStepsMapper);
 
-    ResponseEntity<PrepareResponse> response = controller.prepare(request).block();
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, null).block();
 
     assertThat(response).isNotNull();
     assertThat(response.getStatusCodeValue()).isEqualTo(400);
@@ -56,7 +64,7 @@ class PromptControllerTest {
 
     PromptController controller = new PromptController(pipeline, thinkingStepsMapper);
 
-    ResponseEntity<PrepareResponse> response = controller.prepare(request).block();
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, null).block();
 
     assertThat(response).isNotNull();
     assertThat(response.getStatusCodeValue()).isEqualTo(500);
@@ -77,7 +85,7 @@ class PromptControllerTest {
 
     PromptController controller = new PromptController(pipeline, thinkingStepsMapper);
 
-    ResponseEntity<PrepareResponse> response = controller.prepare(request).block();
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, null).block();
 
     assertThat(response).isNotNull();
     assertThat(response.getStatusCodeValue()).isEqualTo(429);
@@ -87,6 +95,73 @@ class PromptControllerTest {
     assertThat(response.getBody().getNotices()).isEmpty();
   }
 
+  @Test
+  void prepareReturnsRetryAfterWhenShedLocally() {
+    PromptPipeline pipeline = mock(PromptPipeline.class);
+    PrepareRequest request = new PrepareRequest().setQuery("question");
+    when(pipeline.run(request))
+        .thenReturn(Mono.error(new LlmRateLimitedException("tokens", Duration.ofMillis(2_500))));
+
+    PromptController controller = new PromptController(pipeline, new ThinkingStepsMapper());
+
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, null).block();
+
+    assertThat(response).isNotNull();
+    assertThat(response.getStatusCodeValue()).isEqualTo(429);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+    assertThat(response.getBody().getErrors()).containsExactly("Too many questions right now. Please retry in 2s.");
+  }
+
+  @Test
+  void prepareReturnsServiceUnavailableWhenLlmCircuitIsOpen() {
+    PromptPipeline pipeline = mock(PromptPipeline.class);
+    PrepareRequest request = new PrepareRequest().setQuery("question");
+    when(pipeline.run(request))
+        .thenReturn(Mono.error(new DependencyUnavailableException("llm", Duration.ofSeconds(12))));
+
+    PromptController controller = new PromptController(pipeline, new ThinkingStepsMapper());
+
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, null).block();
+
+    assertThat(response).isNotNull();
+    assertThat(response.getStatusCodeValue()).isEqualTo(503);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("12");
+    assertThat(response.getBody().getErrors())
+        .containsExactly("The answer service is temporarily unavailable. Please retry in 12s.");
+  }
+
+  @Test
+  void prepareReturnsGatewayTimeoutWhenDeadlineExceeded() {
+    PromptPipeline pipeline = mock(PromptPipeline.class);
+    PrepareRequest request = new PrepareRequest().setQuery("question");
+    when(pipeline.run(request))
+        .thenReturn(Mono.error(new DeadlineExceededException("llm", Duration.ofMillis(1_500))));
+
+    PromptController controller = new PromptController(pipeline, new ThinkingStepsMapper());
+
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, "1500ms").block();
+
+    assertThat(request.getTimeout()).isEqualTo(Duration.ofMillis(1_500));
+    assertThat(response).isNotNull();
+    assertThat(response.getStatusCodeValue()).isEqualTo(504);
+    assertThat(response.getBody().getErrors())
+        .containsExactly("The answer took longer than the 1500ms time budget. Please retry.");
+  }
+
+  @Test
+  void malformedTimeoutHeaderFallsBackToDefaultBudget() {
+    PromptPipeline pipeline = mock(PromptPipeline.class);
+    PrepareRequest request = new PrepareRequest().setQuery("question");
+    when(pipeline.run(request)).thenReturn(Mono.just(new ProcessingContext().setRawInput("question").setSystemPrompt("sys")));
+
+    PromptController controller = new PromptController(pipeline, new ThinkingStepsMapper());
+
+    ResponseEntity<PrepareResponse> response = controller.prepare(request, "soon").block();
+
+    assertThat(request.getTimeout()).isNull();
+    assertThat(response.getStatusCodeValue()).isEqualTo(200);
+  }
+
   @Test
   void streamEmitsStepEventsAndFinalResponse() {
     PromptPipeline pipeline = mock(PromptPipeline.class);
@@ -99,26 +174,21 @@ class PromptControllerTest {
         .sessionId("s1")
         .build();
 
-    ProcessingContext first = new ProcessingContext()
+    StepLog normalized = new StepLog("unified-clean-correct", "normalized", Instant.EPOCH);
+    StepLog intent = new StepLog("intent-classifier", "intent detected", Instant.EPOCH.plusSeconds(1))
+        .setDurationMs(12.5);
+    ProcessingContext ctx = new ProcessingContext()
         .setRawInput("hello")
         .setSessionId("s1")
         .setSystemPrompt("sys")
-        .setSteps(new ArrayList<>(List.of(
-            new StepLog("unified-clean-correct", "normalized", Instant.EPOCH)
-        )));
+        .setSteps(new ArrayList<>(List.of(normalized, intent)));
 
-    ProcessingContext second = new ProcessingContext()
-        .setRawInput("hello")
-        .setSessionId("s1")
-        .setSystemPrompt("sys")
-        .setSteps(new ArrayList<>(List.of(
-            new StepLog("unified-clean-correct", "normalized", Instant.EPOCH),
-            new StepLog("intent-classifier", "intent detected", Instant.EPOCH.plusSeconds(1))
-        )));
-
-    when(pipeline.runStreaming(expectedRequest)).thenReturn(Flux.just(first, second));
+    when(pipeline.streamEvents(eq(expectedRequest))).thenReturn(Flux.just(
+        new PipelineEvent.Step(1, normalized, ctx),
+        new PipelineEvent.Step(2, intent, ctx),
+        new PipelineEvent.Completed(ctx)));
 
-    List<ServerSentEvent<?>> events = controller.stream("hello", "u1", "s1").collectList().block();
+    List<ServerSentEvent<?>> events = controller.stream("hello", "u1", "s1", null).collectList().block();
 
     assertThat(events).isNotNull();
     assertThat(events).hasSize(4);
@@ -133,7 +203,9 @@ class PromptControllerTest {
     assertThat(((StepEvent) stepOne.data()).getStep()).isEqualTo("unified-clean-correct");
 
     assertThat(stepTwo.event()).isEqualTo("step-event");
+    assertThat(stepTwo.id()).isEqualTo("2");
     assertThat(((StepEvent) stepTwo.data()).getStep()).isEqualTo("intent-classifier");
+    assertThat(((StepEvent) stepTwo.data()).getDurationMs()).isEqualTo(12.5);
 
     assertThat(finalResponse.event()).isEqualTo("prepare-response");
     assertThat(finalResponse.data()).isInstanceOf(PrepareResponse.class);
@@ -145,6 +217,46 @@ class PromptControllerTest {
     assertThat(done.data()).isEqualTo("done");
   }
 
+  @Test
+  void streamEmitsAnswerDeltasBeforeFinalResponse() {
+    PromptPipeline pipeline = mock(PromptPipeline.class);
+    ThinkingStepsMapper thinkingStepsMapper = new ThinkingStepsMapper();
+    PromptController controller = new PromptController(pipeline, thinkingStepsMapper);
+
+    PrepareRequest expectedRequest = PrepareRequest.builder()
+        .query("hello")
+        .build();
+
+    StepLog rag = new StepLog("langchain4j-rag", "streamed", Instant.EPOCH);
+    ProcessingContext answered = new ProcessingContext()
+        .setRawInput("hello")
+        .setSystemPrompt("sys")
+        .setLlmAnswer("Hi there")
+        .setSteps(new ArrayList<>(List.of(rag)));
+
+    when(pipeline.streamEvents(eq(expectedRequest))).thenReturn(Flux.just(
+        new PipelineEvent.Token(0, "Hi"),
+        new PipelineEvent.Token(1, " there"),
+        new PipelineEvent.Step(1, rag, answered),
+        new PipelineEvent.Completed(answered)));
+
+    List<ServerSentEvent<?>> events = controller.stream("hello", null, null, null).collectList().block();
+
+    assertThat(events).isNotNull();
+    assertThat(events).extracting(ServerSentEvent::event)
+        .containsExactlyInAnyOrder("answer-delta", "answer-delta", "step-event", "prepare-response", "done");
+
+    List<AnswerDelta> deltas = events.stream()
+        .filter(e -> "answer-delta".equals(e.event()))
+        .map(e -> (AnswerDelta) e.data())
+        .toList();
+    assertThat(deltas).extracting(AnswerDelta::getText).containsExactly("Hi", " there");
+    assertThat(deltas).extracting(AnswerDelta::getIndex).containsExactly(0, 1);
+
+    assertThat(events.get(3).event()).isEqualTo("prepare-response");
+    assertThat(((PrepareResponse) events.get(3).data()).getAnswer()).isEqualTo("Hi there");
+  }
+
   @Test
   void streamReturnsRateLimitErrorsAndDone() {
     PromptPipeline pipeline = mock(PromptPipeline.class);
@@ -157,10 +269,10 @@ class PromptControllerTest {
         .sessionId("s1")
         .build();
 
-    when(pipeline.runStreaming(expectedRequest))
+    when(pipeline.streamEvents(eq(expectedRequest)))
         .thenReturn(Flux.error(new RateLimitException("quota exceeded")));
 
-    List<ServerSentEvent<?>> events = controller.stream("hello", "u1", "s1").collectList().block();
+    List<ServerSentEvent<?>> events = controller.stream("hello", "u1", "s1", null).collectList().block();
 
     assertThat(events).isNotNull();
     assertThat(events).hasSize(2);
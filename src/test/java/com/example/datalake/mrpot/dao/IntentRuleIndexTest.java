@@ -0,0 +1,76 @@
+package com.example.datalake.mrpot.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.model.Intent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class IntentRuleIndexTest {
+
+  private final IntentRuleIndex index = IntentRuleIndex.build(List.of(
+      new IntentRulesDao.IntentRuleEntry("TAX", Arrays.asList("irs", "Refund", null, " ")),
+      new IntentRulesDao.IntentRuleEntry("travel", List.of("zion", "national park", "hike")),
+      new IntentRulesDao.IntentRuleEntry("code", List.of("java", "spring")),
+      new IntentRulesDao.IntentRuleEntry("finance", List.of("refund", "java")),
+      new IntentRulesDao.IntentRuleEntry("pets", List.of("dog"))));
+
+  @Test
+  void internsEveryTermOnce() {
+    assertThat(index.size()).isEqualTo(5);
+    // tax, irs, refund, travel, zion, national park, hike, code, java, spring, finance, pets, dog
+    assertThat(index.terms()).isEqualTo(13);
+  }
+
+  @Test
+  void highestScoringRuleWins() {
+    IntentRuleIndex.Match match = index.best(Set.of("zion", "national park", "java"));
+
+    assertThat(match.intent()).isEqualTo(Intent.TRAVEL);
+    assertThat(match.rule()).isEqualTo("travel");
+    assertThat(match.score()).isEqualTo(2);
+  }
+
+  @Test
+  void tiesGoToTheEarlierRule() {
+    assertThat(index.best(Set.of("refund")).intent()).isEqualTo(Intent.TAX);
+    assertThat(index.best(Set.of("java")).intent()).isEqualTo(Intent.CODE);
+    assertThat(index.best(Set.of("java", "refund")).intent()).isEqualTo(Intent.FINANCE);
+  }
+
+  @Test
+  void canonicalIsATermAndMatchingIsExactAndCaseFolded() {
+    assertThat(index.best(Set.of("tax")).rule()).isEqualTo("tax");
+    assertThat(index.best(Set.of("taxes"))).isNull();
+    assertThat(index.best(Set.of("national"))).isNull();
+  }
+
+  @Test
+  void unknownCanonicalPredictsUnknown() {
+    IntentRuleIndex.Match match = index.best(Set.of("dog"));
+
+    assertThat(match.intent()).isEqualTo(Intent.UNKNOWN);
+    assertThat(match.rule()).isEqualTo("pets");
+  }
+
+  @Test
+  void duplicateTermsCountOncePerOccurrenceAndFirstCanonicalWins() {
+    IntentRuleIndex dupes = IntentRuleIndex.build(List.of(
+        new IntentRulesDao.IntentRuleEntry("code", List.of("java", "JAVA")),
+        new IntentRulesDao.IntentRuleEntry("CODE", List.of("kotlin")),
+        new IntentRulesDao.IntentRuleEntry("travel", List.of("java", "island"))));
+
+    assertThat(dupes.size()).isEqualTo(2);
+    assertThat(dupes.best(Set.of("java", "island")).intent()).isEqualTo(Intent.CODE);
+    assertThat(dupes.best(Set.of("kotlin"))).isNull();
+  }
+
+  @Test
+  void emptyIndexMatchesNothing() {
+    assertThat(IntentRuleIndex.build(List.of()).best(Set.of("tax"))).isNull();
+    assertThat(IntentRuleIndex.empty().size()).isZero();
+    assertThat(index.best(Set.of())).isNull();
+  }
+}
@@ -0,0 +1,44 @@
+package com.example.datalake.mrpot.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LexiconIndexTest {
+
+  private final LexiconIndex index = LexiconIndex.build(List.of(
+      new LexiconIndex.Entry("TAX", Arrays.asList("irs", "Tax Deduction", null), true),
+      new LexiconIndex.Entry("travel", List.of("芝加哥", "national park"), true),
+      new LexiconIndex.Entry("code", List.of("spring boot", "java"), true),
+      new LexiconIndex.Entry("retired", List.of("irs"), false)));
+
+  @Test
+  void matchesSubstringsOfCanonicalsAndSynonymsCaseInsensitively() {
+    assertThat(index.findCanonicals("TAX")).containsExactly("tax");
+    assertThat(index.findCanonicals("deduct")).containsExactly("tax");
+    assertThat(index.findCanonicals("加哥")).containsExactly("travel");
+    assertThat(index.findCanonicals("boot")).containsExactly("code");
+  }
+
+  @Test
+  void returnsEveryOwningCanonicalInEntryOrder() {
+    assertThat(index.findCanonicals("a")).containsExactly("tax", "travel", "code");
+  }
+
+  @Test
+  void skipsInactiveEntriesAndUnknownTokens() {
+    assertThat(index.findCanonicals("irs")).containsExactly("tax");
+    assertThat(index.findCanonicals("retired")).isEmpty();
+    assertThat(index.findCanonicals("kubernetes")).isEmpty();
+    assertThat(index.findCanonicals(" ")).isEmpty();
+  }
+
+  @Test
+  void doesNotMatchAcrossTermBoundaries() {
+    // "irs" + "tax deduction" must not be treated as one string
+    assertThat(index.findCanonicals("irstax")).isEmpty();
+    assertThat(LexiconIndex.empty().findCanonicals("tax")).isEmpty();
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.datalake.mrpot.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class ProcessingContextTest {
+
+  @Test
+  void collectionsCanBeReadWhileAnotherStageWrites() throws Exception {
+    ProcessingContext ctx = new ProcessingContext();
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          ctx.addStep("writer", "n=" + i);
+          ctx.getTags().add("tag" + i);
+          ctx.getKeywords().add("kw" + i);
+        }
+      }, pool);
+      // 读方遍历集合（toString 会遍历所有字段），不能撞上 ConcurrentModificationException
+      CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+        int seen = 0;
+        while (!writer.isDone()) {
+          for (StepLog step : ctx.getSteps()) {
+            seen += step.getName().length() > 0 ? 1 : 0;
+          }
+          seen += ctx.toString().isEmpty() ? 0 : 1;
+        }
+        return seen;
+      }, pool);
+
+      writer.get();
+      assertThat(reader.get()).isPositive();
+      assertThat(ctx.getSteps()).hasSize(2_000);
+      assertThat(ctx.getTags()).hasSize(2_000);
+      assertThat(ctx.getKeywords()).hasSize(2_000);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void settersCopyIntoThreadSafeCollectionsAndKeepOrder() {
+    List<String> keywords = new ArrayList<>(List.of("b", "a"));
+    ProcessingContext ctx = new ProcessingContext()
+        .setKeywords(keywords)
+        .setTags(new LinkedHashSet<>(List.of("z", "y")));
+
+    keywords.add("c");
+
+    assertThat(ctx.getKeywords()).containsExactly("b", "a");
+    assertThat(ctx.getTags()).containsExactly("z", "y");
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.datalake.mrpot.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.model.Intent;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class CommonResponseProcessorTest {
+
+  private final CommonResponseProcessor processor = new CommonResponseProcessor();
+
+  @Test
+  void englishCategoriesAreDetectedInOnePass() {
+    assertThat(reply("Hello, anyone there?")).isEqualTo("en-greeting");
+    assertThat(reply("Good Morning team")).isEqualTo("en-greeting");
+    assertThat(reply("this is a test")).isNull(); // "hi" 必须是独立单词
+    assertThat(reply("So who are you exactly")).isEqualTo("en-intro");
+    assertThat(reply("Where can I find the blog")).isEqualTo("en-navigation");
+    assertThat(reply("tell me about kafka")).isNull();
+  }
+
+  @Test
+  void greetingWinsOverLaterRepliesOfTheSameLanguage() {
+    assertThat(reply("hey, what can you do? I need help")).isEqualTo("en-greeting");
+    assertThat(reply("what can you do? I need help")).isEqualTo("en-intro");
+  }
+
+  @Test
+  void chineseTextUsesChineseReplies() {
+    assertThat(reply("你好呀")).isEqualTo("zh-greeting");
+    assertThat(reply("请做个自我介绍")).isEqualTo("zh-intro");
+    assertThat(reply("项目在哪里")).isEqualTo("zh-navigation");
+    assertThat(reply("hello 在哪")).isEqualTo("zh-navigation"); // 含汉字即按中文匹配
+  }
+
+  @Test
+  void greetingIntentShortCircuitsToTheGreetingReply() {
+    ProcessingContext ctx = new ProcessingContext().setIntent(Intent.GREETING);
+    assertThat(processor.detectReply(ctx, "yo").id()).isEqualTo("en-greeting");
+  }
+
+  @Test
+  void processWritesTheReplyIntoThePrompts() {
+    ProcessingContext ctx = processor.process(new ProcessingContext().setNormalized("hi there")).block();
+
+    assertThat(ctx.isCommonResponse()).isTrue();
+    assertThat(ctx.getUserPrompt()).startsWith("Hi there! I'm Mr Pot");
+    assertThat(ctx.getSteps().get(0).getNote()).isEqualTo("matched en");
+  }
+
+  @Test
+  void tablesCanComeFromData() throws Exception {
+    String json = """
+        {"replies": [
+          {"id": "en-thanks", "language": "en", "kind": "thanks", "words": ["thanks", "thx"], "message": "You're welcome!"}
+        ]}
+        """;
+    CommonReplyTable table = CommonReplyTable.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(table.find("THX a lot", "en", false).message()).isEqualTo("You're welcome!");
+    assertThat(table.find("thanksgiving", "en", false)).isNull();
+  }
+
+  private String reply(String text) {
+    CommonReplyTable.Reply reply = processor.detectReply(new ProcessingContext(), text);
+    return reply == null ? null : reply.id();
+  }
+}
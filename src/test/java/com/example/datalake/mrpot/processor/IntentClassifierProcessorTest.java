@@ -1,5 +1,6 @@
 package com.example.datalake.mrpot.processor;
 
+import com.example.datalake.mrpot.dao.IntentRuleIndex;
 import com.example.datalake.mrpot.dao.IntentRulesDao;
 import com.example.datalake.mrpot.dao.KeywordsLexiconDao;
 import com.example.datalake.mrpot.model.Intent;
@@ -120,6 +121,52 @@ class IntentClassifierProcessorTest {
     assertTrue(out.getTags().contains("intent:greeting"));
   }
 
+  @Test
+  void resource_isCpuOnlyWithCompiledRules() {
+    IntentRulesDao precompiled = new IntentRulesDao() {
+      @Override
+      public List<IntentRuleEntry> findActiveRulesByTokens(Iterable<String> tokens) {
+        return List.of();
+      }
+
+      @Override
+      public IntentRuleIndex compiledRules() {
+        return IntentRuleIndex.empty();
+      }
+    };
+
+    assertEquals(StageResource.DB, new IntentClassifierProcessor(emptyLexiconDao, emptyRulesDao).resource());
+    assertEquals(StageResource.CPU, new IntentClassifierProcessor(emptyLexiconDao, precompiled).resource());
+  }
+
+  @Test
+  void compiledRules_areUsedWithoutQueryingPerRequest() {
+    IntentRuleIndex compiled = IntentRuleIndex.build(List.of(
+            new IntentRulesDao.IntentRuleEntry("TAX", List.of("deduction", "refund")),
+            new IntentRulesDao.IntentRuleEntry("TRAVEL", List.of("zion", "itinerary"))));
+    IntentRulesDao precompiled = new IntentRulesDao() {
+      @Override
+      public List<IntentRuleEntry> findActiveRulesByTokens(Iterable<String> tokens) {
+        throw new AssertionError("compiled rules must not be queried per request");
+      }
+
+      @Override
+      public IntentRuleIndex compiledRules() {
+        return compiled;
+      }
+    };
+    IntentClassifierProcessor p = new IntentClassifierProcessor(emptyLexiconDao, precompiled);
+    ProcessingContext ctx = new ProcessingContext();
+    ctx.setIndexLanguage("en");
+    ctx.setIndexText("Plan a Zion itinerary around my refund and deduction");
+
+    ProcessingContext out = p.process(ctx).block();
+    assertNotNull(out);
+    // tax: deduction + refund = 2, travel: zion + itinerary = 2 → tie goes to the earlier rule
+    assertEquals(Intent.TAX, out.getIntent());
+    assertTrue(out.getSteps().get(0).getNote().contains("rule=tax"));
+  }
+
   private IntentRulesDao rules(String canonical, List<String> synonyms) {
     IntentRulesDao.IntentRuleEntry entry = new IntentRulesDao.IntentRuleEntry(
             canonical.toUpperCase(Locale.ROOT),
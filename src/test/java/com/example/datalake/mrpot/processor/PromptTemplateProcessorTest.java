@@ -1,5 +1,6 @@
 package com.example.datalake.mrpot.processor;
 
+import com.example.datalake.mrpot.model.Language;
 import com.example.datalake.mrpot.model.ProcessingContext;
 import org.junit.jupiter.api.Test;
 
@@ -133,4 +134,38 @@ public class PromptTemplateProcessorTest {
     int commas = kwBlock.split(",").length - 1; // commas ~= count-1
     assertTrue(commas < 9, "top keywords should be capped at <= 8");
   }
+
+  @Test
+  void renderKeepsReplacementCharactersLiteral_andFallsBackToGeneralForUnknownIntent() {
+    PromptTemplateProcessor proc = new PromptTemplateProcessor();
+    ProcessingContext ctx = new ProcessingContext();
+
+    setProp(ctx, "indexLanguage", "en");
+    setProp(ctx, "intent", "unknown");
+    setProp(ctx, "indexText", "cost is $1 \\ $2");
+
+    proc.process(ctx).block();
+
+    String sys = (String) getProp(ctx, "systemPrompt");
+    String user = (String) getProp(ctx, "userPrompt");
+    assertEquals("Language=en, Intent=unknown.", sys);
+    assertTrue(user.startsWith("Task: cost is $1 \\ $2"), user);
+  }
+
+  @Test
+  void blankIndexLanguage_fallsBackToDetectedLanguage() {
+    PromptTemplateProcessor proc = new PromptTemplateProcessor();
+    ProcessingContext ctx = new ProcessingContext();
+
+    setProp(ctx, "indexLanguage", " ");
+    setProp(ctx, "language", new Language("zh", "Chinese", 0.9, "Hans"));
+    setProp(ctx, "intent", "general");
+    setProp(ctx, "indexText", "介绍一下你的项目");
+
+    proc.process(ctx).block();
+
+    String user = (String) getProp(ctx, "userPrompt");
+    assertNotNull(user);
+    assertTrue(user.startsWith("需求："), "blank indexLanguage should fall back to ctx.language");
+  }
 }
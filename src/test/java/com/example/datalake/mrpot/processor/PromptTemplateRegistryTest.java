@@ -0,0 +1,115 @@
+package com.example.datalake.mrpot.processor;
+
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.model.PromptTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PromptTemplateRegistryTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void classpathDefaultCompilesBundledTemplates() {
+    PromptTemplateIndex index = PromptTemplateRegistry.classpathDefault().current();
+
+    assertThat(index.version()).isEqualTo(1L);
+    assertThat(index.languages()).isEqualTo(2);
+    Optional<PromptTemplate> tpl = index.find("QA", "EN");
+    assertThat(tpl).isPresent();
+    assertThat(tpl.get().getId()).isEqualTo("en/qa");
+    assertThat(tpl.get().getUserTemplate()).contains("{{query}}");
+    assertThat(index.find("coding", "zh")).isEmpty();
+  }
+
+  @Test
+  void reloadPublishesNewVersionAndKeepsOldSnapshotIntact() throws IOException {
+    Path file = write("{\"en\": {\"general\": {\"system\": \"v1 {{language}}\", \"user\": \"{{query}}\"}}}");
+    PromptTemplateRegistry registry = new PromptTemplateRegistry(new DefaultResourceLoader(), file.toUri().toString());
+    PromptTemplateIndex before = registry.current();
+
+    assertThat(registry.reload()).isFalse(); // same content → no new version
+
+    write("{\"en\": {\"general\": {\"system\": \"v2 {{intent}}\", \"user\": \"{{query}}\"}}}");
+    assertThat(registry.reload()).isTrue();
+
+    PromptTemplateIndex after = registry.current();
+    assertThat(before.version()).isEqualTo(1L);
+    assertThat(after.version()).isEqualTo(2L);
+    assertThat(before.find("general", "en").orElseThrow().getSystem()).isEqualTo("v1 {{language}}");
+    assertThat(after.find("general", "en").orElseThrow().getSystem()).isEqualTo("v2 {{intent}}");
+
+    ProcessingContext ctx = new ProcessingContext().setIndexText("hello");
+    new PromptTemplateProcessor(registry).process(ctx).block();
+    assertThat(ctx.getSystemPrompt()).isEqualTo("v2 unknown");
+  }
+
+  @Test
+  void brokenFileIsRejectedAndMetricsTrackVersionAndLatency() throws IOException {
+    Path file = write("{\"en\": {\"qa\": {\"system\": \"s\", \"user\": \"u\"}}}");
+    PromptTemplateRegistry registry = new PromptTemplateRegistry(new DefaultResourceLoader(), file.toUri().toString());
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    registry.bindTo(meters);
+
+    write("not json at all");
+    assertThat(registry.reload()).isFalse();
+    assertThat(registry.current().version()).isEqualTo(1L);
+    assertThat(registry.current().find("qa", "en")).isPresent();
+
+    write("{\"en\": {\"qa\": {\"system\": \"s2\", \"user\": \"u\"}}}");
+    assertThat(registry.reload()).isTrue();
+
+    assertThat(meters.get("mrpot.prompt.templates.version").gauge().value()).isEqualTo(2.0);
+    assertThat(meters.get("mrpot.prompt.templates.reload").tag("outcome", "rejected").timer().count()).isEqualTo(1);
+    assertThat(meters.get("mrpot.prompt.templates.reload").tag("outcome", "reloaded").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void malformedFileIsRejectedWithoutHangingAndOldTemplatesStay() throws IOException {
+    Path file = write("{\"en\": {\"qa\": {\"system\": \"s\", \"user\": \"u\"}}}");
+    PromptTemplateRegistry registry = new PromptTemplateRegistry(new DefaultResourceLoader(), file.toUri().toString());
+
+    write("{\"en\": {\"qa\": {\"system\": \"s2\", \"user\": \"u\"");
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThat(registry.reload()).isFalse());
+    write("{\"en\": {\"qa\": {\"system\": \"s3\", \"user\": \"u\"}},, ]");
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThat(registry.reload()).isFalse());
+
+    assertThat(registry.current().version()).isEqualTo(1L);
+    assertThat(registry.current().find("qa", "en").orElseThrow().getSystem()).isEqualTo("s");
+  }
+
+  @Test
+  void nonStringValuesAreIgnoredInsteadOfStallingTheParser() throws IOException {
+    Path file = write("{\"en\": {\"qa\": {\"system\": \"s\", \"user\": \"u\"}}}");
+    PromptTemplateRegistry registry = new PromptTemplateRegistry(new DefaultResourceLoader(), file.toUri().toString());
+
+    write("{\"en\": {\"general\": {\"system\": \"x\", \"priority\": 1, \"tags\": [\"a\", true], \"user\": \"{{query}}\"},"
+        + " \"draft\": false}}");
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThat(registry.reload()).isTrue());
+
+    PromptTemplateIndex index = registry.current();
+    assertThat(index.version()).isEqualTo(2L);
+    assertThat(index.templates()).isEqualTo(1);
+    assertThat(index.find("general", "en").orElseThrow().getSystem()).isEqualTo("x");
+    assertThat(index.find("general", "en").orElseThrow().getUserTemplate()).isEqualTo("{{query}}");
+  }
+
+  private Path write(String json) throws IOException {
+    Path file = dir.resolve("prompt_templates.json");
+    Files.writeString(file, json, StandardCharsets.UTF_8);
+    return file;
+  }
+}
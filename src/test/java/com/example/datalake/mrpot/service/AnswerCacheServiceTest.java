@@ -0,0 +1,59 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import com.example.datalake.mrpot.model.KbDocument;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AnswerCacheServiceTest {
+
+  private AnswerCacheService newService(boolean enabled, String model) {
+    AnswerCacheProperties props = new AnswerCacheProperties();
+    props.setEnabled(enabled);
+    Langchain4jOpenAiProperties openAi = new Langchain4jOpenAiProperties();
+    openAi.setChatModel(model);
+    return new AnswerCacheService(props, openAi);
+  }
+
+  @Test
+  void hitsOnlyForSamePromptAndDocs() {
+    AnswerCacheService service = newService(true, "gpt-4o-mini");
+    service.store("prompt", List.of(2L, 1L), "answer");
+
+    assertThat(service.lookup("prompt", List.of(1L, 2L)))
+        .map(AnswerCacheService.CachedAnswer::answer)
+        .contains("answer");
+    assertThat(service.lookup("prompt", List.of(1L))).isEmpty();
+    assertThat(service.lookup("prompt ", List.of(1L, 2L))).isEmpty();
+  }
+
+  @Test
+  void disabledCacheNeverHits() {
+    AnswerCacheService service = newService(false, "gpt-4o-mini");
+    service.store("prompt", List.of(), "answer");
+
+    assertThat(service.lookup("prompt", List.of())).isEmpty();
+  }
+
+  @Test
+  void documentChangesInvalidateGroundedAnswers() {
+    AnswerCacheService service = newService(true, "gpt-4o-mini");
+    service.store("a", List.of(1L), "answer-a");
+    service.store("b", List.of(2L), "answer-b");
+
+    service.onKbDocumentChanged(KbDocumentChangedEvent.deleted(1L));
+
+    assertThat(service.lookup("a", List.of(1L))).isEmpty();
+    assertThat(service.lookup("b", List.of(2L))).isPresent();
+
+    KbDocument created = new KbDocument();
+    created.setId(3L);
+    service.onKbDocumentChanged(KbDocumentChangedEvent.created(created));
+
+    assertThat(service.lookup("b", List.of(2L))).isEmpty();
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BatchingEmbeddingModelTest {
+
+  /** Embeds each segment as a 1-dim vector holding its text length; records call shape. */
+  private static final class SlowLengthModel implements EmbeddingModel {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+      calls.incrementAndGet();
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      List<Embedding> out = new ArrayList<>();
+      for (TextSegment s : segments) {
+        out.add(Embedding.from(new float[] {s.text().length()}));
+      }
+      return Response.from(out);
+    }
+  }
+
+  @Test
+  void mergesConcurrentRequestsAndBoundsConcurrency() {
+    SlowLengthModel delegate = new SlowLengthModel();
+    BatchingEmbeddingModel model = new BatchingEmbeddingModel(delegate, 32, 2);
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    try {
+      List<CompletableFuture<Float>> results = new ArrayList<>();
+      for (int i = 1; i <= 32; i++) {
+        String text = "x".repeat(i);
+        results.add(CompletableFuture.supplyAsync(() -> model.embed(text).content().vector()[0], pool));
+      }
+
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).join()).isEqualTo((float) (i + 1));
+      }
+      assertThat(delegate.maxInFlight.get()).isLessThanOrEqualTo(2);
+      assertThat(delegate.calls.get()).isLessThan(32);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void singleRequestIsServedDirectly() {
+    SlowLengthModel delegate = new SlowLengthModel();
+    BatchingEmbeddingModel model = new BatchingEmbeddingModel(delegate, 32, 4);
+
+    List<Embedding> embeddings = model.embedAll(List.of(TextSegment.from("ab"), TextSegment.from("abc"))).content();
+
+    assertThat(embeddings).extracting(e -> e.vector()[0]).containsExactly(2f, 3f);
+    assertThat(delegate.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  void failedBatchOnlyFailsItsOwnCallers() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    EmbeddingModel delegate = new EmbeddingModel() {
+      @Override
+      public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        if (segments.get(0).text().equals("boom")) {
+          throw new IllegalStateException("boom");
+        }
+        entered.countDown();
+        try {
+          proceed.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return Response.from(List.of(Embedding.from(new float[] {1f})));
+      }
+    };
+    BatchingEmbeddingModel model = new BatchingEmbeddingModel(delegate, 1, 1);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      // ok 拿着唯一的 permit；boom 排在队列里，由 ok 的线程在释放前接着跑
+      CompletableFuture<float[]> ok = CompletableFuture.supplyAsync(() -> model.embed("ok").content().vector(), pool);
+      entered.await();
+      CompletableFuture<float[]> boom = CompletableFuture.supplyAsync(() -> model.embed("boom").content().vector(), pool);
+      while (model.queued() == 0 && !boom.isDone()) {
+        Thread.onSpinWait();
+      }
+      proceed.countDown();
+
+      assertThat(ok.get()).containsExactly(1f);
+      assertThatThrownBy(boom::join).hasRootCauseInstanceOf(IllegalStateException.class).hasRootCauseMessage("boom");
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.util.TextTokenizer;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class Bm25IndexTest {
+
+  @Test
+  void ranksDocumentsByBm25() {
+    Bm25Index index = new Bm25Index();
+    index.upsert(1L, TextTokenizer.tokenize("Spring Boot service with SSE streaming"));
+    index.upsert(2L, TextTokenizer.tokenize("Travel notes from Zion national park"));
+    index.upsert(3L, TextTokenizer.tokenize("SSE and Spring, more Spring, lots of Spring"));
+
+    List<Bm25Index.Hit> hits = index.search(TextTokenizer.tokenize("spring sse"), 10);
+
+    assertThat(hits).extracting(Bm25Index.Hit::docId).containsExactly(3L, 1L);
+    assertThat(hits.get(0).score()).isGreaterThan(hits.get(1).score());
+  }
+
+  @Test
+  void matchesHanNgrams() {
+    Bm25Index index = new Bm25Index();
+    index.upsert(1L, TextTokenizer.tokenize("我在芝加哥读研究生"));
+    index.upsert(2L, TextTokenizer.tokenize("周末去国家公园徒步"));
+
+    assertThat(index.search(TextTokenizer.tokenize("芝加哥"), 5))
+        .extracting(Bm25Index.Hit::docId)
+        .containsExactly(1L);
+  }
+
+  @Test
+  void updatesAndDeletesAreVisibleImmediately() {
+    Bm25Index index = new Bm25Index();
+    index.upsert(1L, List.of("alpha", "beta"));
+    index.upsert(2L, List.of("beta"));
+
+    index.upsert(1L, List.of("gamma"));
+    index.remove(2L);
+
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.search(List.of("beta"), 5)).isEmpty();
+    assertThat(index.search(List.of("gamma"), 5)).extracting(Bm25Index.Hit::docId).containsExactly(1L);
+  }
+
+  @Test
+  void repeatedUpdatesReuseSlots() {
+    Bm25Index index = new Bm25Index();
+    for (long id = 1; id <= 10; id++) {
+      index.upsert(id, List.of("doc" + id, "common"));
+    }
+
+    for (int round = 0; round < 1_000; round++) {
+      index.upsert(1L + round % 10, List.of("round" + round, "common"));
+    }
+
+    assertThat(index.size()).isEqualTo(10);
+    assertThat(index.slotCapacity()).isLessThanOrEqualTo(2 * 10 + 1);
+    assertThat(index.search(List.of("common"), 20)).hasSize(10);
+    assertThat(index.search(List.of("round999"), 5)).extracting(Bm25Index.Hit::docId).containsExactly(10L);
+    assertThat(index.search(List.of("round989"), 5)).isEmpty();
+  }
+}
@@ -0,0 +1,138 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.dao.KbDocumentRepository;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import com.example.datalake.mrpot.model.KbDocument;
+import com.example.datalake.mrpot.model.KbSnippet;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+class Bm25KbSearchServiceTest {
+
+  private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+  private static KbDocument doc(long id, String content, Instant updatedAt) {
+    KbDocument d = new KbDocument();
+    d.setId(id);
+    d.setDocType("note");
+    d.setContent(content);
+    d.setUpdatedAt(updatedAt);
+    return d;
+  }
+
+  private static List<Long> hits(Bm25KbSearchService service, String query) {
+    return service.searchSnippets(query, List.of(), 5, 2_000).stream().map(KbSnippet::getDocId).toList();
+  }
+
+  @Test
+  void indexIsBuiltBeforeTheFirstSearch() {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    when(repository.findAll()).thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+    service.loadAll();
+
+    assertThat(hits(service, "kafka")).containsExactly(1L);
+  }
+
+  @Test
+  void failedStartupLoadIsRetriedByTheScheduledRefresh() {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    when(repository.findAll())
+        .thenThrow(new DataAccessResourceFailureException("db down"))
+        .thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+    service.loadAll();
+    assertThat(service.indexedDocuments()).isZero();
+
+    service.refresh();
+    assertThat(hits(service, "kafka")).containsExactly(1L);
+  }
+
+  @Test
+  void refreshPicksUpRowsWrittenOutsideTheController() {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    when(repository.findAll()).thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+    service.loadAll();
+
+    Instant t1 = T0.plusSeconds(5);
+    when(repository.findByUpdatedAtGreaterThanEqual(T0)).thenReturn(List.of(
+        doc(1L, "redis streams", t1),
+        doc(2L, "kafka rebalancing", t1)));
+    when(repository.count()).thenReturn(2L);
+    service.refresh();
+
+    assertThat(hits(service, "kafka")).containsExactly(2L);
+    assertThat(hits(service, "redis")).containsExactly(1L);
+  }
+
+  @Test
+  void rowCountDriftTriggersFullReloadThatDropsDeletedRows() {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    when(repository.findAll()).thenReturn(List.of(
+        doc(1L, "kafka consumer groups", T0),
+        doc(2L, "kafka rebalancing", T0)));
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+    service.loadAll();
+
+    // row 2 deleted by SQL: no change event, nothing newer than the watermark
+    when(repository.findByUpdatedAtGreaterThanEqual(T0)).thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+    when(repository.count()).thenReturn(1L);
+    when(repository.findAll()).thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+    service.refresh();
+
+    assertThat(service.indexedDocuments()).isEqualTo(1);
+    assertThat(hits(service, "kafka")).containsExactly(1L);
+  }
+
+  @Test
+  void changeEventDuringReloadIsAppliedAfterItInsteadOfBeingOverwritten() throws Exception {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(repository.findAll()).thenAnswer(inv -> {
+      reading.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return List.of(doc(1L, "old kafka text", T0));
+    });
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+
+    Thread loader = new Thread(service::loadAll);
+    loader.start();
+    assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+    Thread writer = new Thread(() ->
+        service.onKbDocumentChanged(KbDocumentChangedEvent.updated(doc(1L, "new redis text", T0.plusSeconds(1)))));
+    writer.start();
+    Thread.sleep(50);
+    release.countDown();
+    loader.join(5_000);
+    writer.join(5_000);
+
+    assertThat(hits(service, "redis")).containsExactly(1L);
+    assertThat(hits(service, "kafka")).isEmpty();
+  }
+
+  @Test
+  void deleteEventRemovesTheDocument() {
+    KbDocumentRepository repository = mock(KbDocumentRepository.class);
+    when(repository.findAll()).thenReturn(List.of(doc(1L, "kafka consumer groups", T0)));
+    Bm25KbSearchService service = new Bm25KbSearchService(repository);
+    service.loadAll();
+
+    service.onKbDocumentChanged(KbDocumentChangedEvent.deleted(1L));
+
+    assertThat(hits(service, "kafka")).isEmpty();
+    assertThat(service.indexedDocuments()).isZero();
+  }
+}
@@ -0,0 +1,96 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class HnswIndexTest {
+
+  @Test
+  void findsTheExactVectorFirst() {
+    HnswIndex index = new HnswIndex(8, 50, 32);
+    int a = index.add(new float[] {1, 0, 0});
+    int b = index.add(new float[] {0, 2, 0});
+    index.add(new float[] {0, 0, 3});
+
+    List<HnswIndex.Scored> hits = index.search(new float[] {0.1f, 5, 0}, 2);
+
+    assertThat(hits).extracting(HnswIndex.Scored::node).containsExactly(b, a);
+    assertThat(hits.get(0).similarity()).isCloseTo(0.9998, within(0.0001));
+  }
+
+  @Test
+  void recallAgainstBruteForceIsHigh() {
+    Random random = new Random(42);
+    int dim = 32;
+    List<float[]> data = new ArrayList<>();
+    HnswIndex index = new HnswIndex(16, 100, 64, 7L);
+    for (int i = 0; i < 2_000; i++) {
+      float[] v = randomVector(random, dim);
+      data.add(v);
+      index.add(v);
+    }
+
+    int k = 10;
+    int found = 0;
+    for (int q = 0; q < 100; q++) {
+      float[] query = randomVector(random, dim);
+      List<Integer> exact = IntStream.range(0, data.size()).boxed()
+          .sorted(Comparator.comparingDouble((Integer i) -> -cosine(query, data.get(i))))
+          .limit(k)
+          .toList();
+      List<Integer> approx = index.search(query, k).stream().map(HnswIndex.Scored::node).toList();
+      found += (int) approx.stream().filter(exact::contains).count();
+    }
+
+    assertThat(found / (100.0 * k)).isGreaterThan(0.9);
+  }
+
+  @Test
+  void removedNodesAreNeverReturned() {
+    HnswIndex index = new HnswIndex(4, 20, 16);
+    int a = index.add(new float[] {1, 0});
+    int b = index.add(new float[] {0.9f, 0.1f});
+
+    index.remove(a);
+    index.remove(a);
+
+    assertThat(index.search(new float[] {1, 0}, 5)).extracting(HnswIndex.Scored::node).containsExactly(b);
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.deleted()).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsMixedDimensions() {
+    HnswIndex index = new HnswIndex(4, 20, 16);
+    index.add(new float[] {1, 0});
+
+    assertThatThrownBy(() -> index.add(new float[] {1, 0, 0})).isInstanceOf(IllegalArgumentException.class);
+    assertThat(index.search(new float[] {1, 0, 0}, 3)).isEmpty();
+  }
+
+  private static float[] randomVector(Random random, int dim) {
+    float[] v = new float[dim];
+    for (int i = 0; i < dim; i++) {
+      v[i] = (float) random.nextGaussian();
+    }
+    return v;
+  }
+
+  private static double cosine(float[] a, float[] b) {
+    double dot = 0, na = 0, nb = 0;
+    for (int i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+      na += a[i] * a[i];
+      nb += b[i] * b[i];
+    }
+    return dot / Math.sqrt(na * nb);
+  }
+}
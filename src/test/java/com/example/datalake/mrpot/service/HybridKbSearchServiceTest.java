@@ -0,0 +1,99 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.KbHybridSearchProperties;
+import com.example.datalake.mrpot.model.Deadline;
+import com.example.datalake.mrpot.model.KbSnippet;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+class HybridKbSearchServiceTest {
+
+  private static KbSnippet snippet(Long docId, String text) {
+    return KbSnippet.builder().docId(docId).title("t").source("s").snippet(text).build();
+  }
+
+  @Test
+  void fusesByReciprocalRank() {
+    List<KbSnippet> lexical = List.of(snippet(1L, "lex one"), snippet(2L, "lex two"));
+    List<KbSnippet> vector = List.of(snippet(2L, "vec two"), snippet(3L, "vec three"));
+
+    List<KbSnippet> fused = HybridKbSearchService.fuse(lexical, vector, 60);
+
+    assertThat(fused).extracting(KbSnippet::getDocId).containsExactly(2L, 1L, 3L);
+    // doc 2 keeps the keyword-centred lexical snippet
+    assertThat(fused.get(0).getSnippet()).isEqualTo("lex two");
+    assertThat(fused.get(0).getScore()).isEqualTo(1.0 / 62 + 1.0 / 61);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void slowLexicalLegDegradesToEmptyInsteadOfStalling() {
+    KbHybridSearchProperties props = new KbHybridSearchProperties();
+    props.setLexicalTimeout(Duration.ofMillis(50));
+    KbSearchService slow = (query, keywords, maxSnippets, maxTotalChars) -> {
+      try {
+        Thread.sleep(2_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return List.of(snippet(1L, "too late"));
+    };
+    ObjectProvider<ContentRetriever> noVector = mock(ObjectProvider.class);
+    when(noVector.getIfAvailable()).thenReturn(null);
+
+    HybridKbSearchService service = new HybridKbSearchService(slow, noVector, props);
+    try {
+      long started = System.nanoTime();
+      List<KbSnippet> result = service.searchSnippets("question", List.of("question"), 2, 480);
+
+      assertThat(result).isEmpty();
+      assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void legRunsUnderCallersDeadlineAndIsInterruptedOnTimeout() throws InterruptedException {
+    KbHybridSearchProperties props = new KbHybridSearchProperties();
+    props.setLexicalTimeout(Duration.ofSeconds(5));
+    AtomicReference<Deadline> seen = new AtomicReference<>();
+    CountDownLatch interrupted = new CountDownLatch(1);
+    KbSearchService slow = (query, keywords, maxSnippets, maxTotalChars) -> {
+      seen.set(Deadline.current());
+      try {
+        Thread.sleep(5_000);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return List.of(snippet(1L, "too late"));
+    };
+    ObjectProvider<ContentRetriever> noVector = mock(ObjectProvider.class);
+    when(noVector.getIfAvailable()).thenReturn(null);
+
+    HybridKbSearchService service = new HybridKbSearchService(slow, noVector, props);
+    try {
+      // 请求剩余预算（100ms）比 lexical-timeout 短：按 deadline 截断
+      Deadline deadline = Deadline.after(Duration.ofMillis(100));
+      List<KbSnippet> result = deadline.call(
+          () -> service.searchSnippets("question", List.of("question"), 2, 480));
+
+      assertThat(result).isEmpty();
+      assertThat(seen.get()).isSameAs(deadline);
+      assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      service.shutdown();
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.config.LlmRateLimitProperties;
+import com.example.datalake.mrpot.config.ResilienceProperties;
+import com.example.datalake.mrpot.model.Deadline;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.model.StepLog;
+import com.example.datalake.mrpot.util.CircuitBreaker;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+class LangChain4jRagServiceTest {
+
+  @Test
+  void cancelledStreamReleasesItsPermitAndIgnoresLateCallbacks() {
+    AtomicReference<StreamingChatResponseHandler> handler = new AtomicReference<>();
+    StreamingChatModel streamingModel = mock(StreamingChatModel.class);
+    doAnswer(invocation -> {
+      handler.set(invocation.getArgument(1));
+      return null;
+    }).when(streamingModel).chat(anyString(), any(StreamingChatResponseHandler.class));
+
+    LlmRateLimiter limiter = newLimiter();
+    DependencyGuards guards = newGuards();
+    LangChain4jRagService service = newService(mock(ChatModel.class), streamingModel, limiter, guards);
+
+    Disposable stream = service.streamWithLlm(contextFor("prompt"), "step", token -> { }).subscribe();
+    assertThat(handler.get()).isNotNull();
+    assertThat(limiter.inFlight()).isEqualTo(1);
+
+    // SSE 断开：pipeline 取消订阅，模型的回调还没来
+    stream.dispose();
+    assertThat(limiter.inFlight()).isZero();
+
+    handler.get().onError(new IllegalStateException("connection reset after cancel"));
+    assertThat(limiter.inFlight()).isZero();
+    assertThat(guards.llm().failureRate()).isZero();
+    assertThat(guards.llm().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void shortDeadlineLeaderDoesNotCancelTheCallForALongDeadlineFollower() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    ChatModel chatModel = mock(ChatModel.class);
+    when(chatModel.chat(anyString())).thenAnswer(invocation -> {
+      calls.incrementAndGet();
+      started.countDown();
+      release.await();
+      return "answer";
+    });
+    LlmRateLimiter limiter = newLimiter();
+    DependencyGuards guards = newGuards();
+    LangChain4jRagService service = newService(chatModel, mock(StreamingChatModel.class), limiter, guards);
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      ProcessingContext leaderCtx = contextFor("prompt").setDeadline(Deadline.after(Duration.ofMillis(300)));
+      ProcessingContext followerCtx = contextFor("prompt").setDeadline(Deadline.after(Duration.ofSeconds(10)));
+
+      Future<ProcessingContext> leader = callers.submit(() -> service.completeWithLlm(leaderCtx, "step").block());
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      Future<ProcessingContext> follower = callers.submit(() -> service.completeWithLlm(followerCtx, "step").block());
+
+      // leader 的预算先用完：只有它自己超时，共享调用继续跑
+      assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+          .hasCauseInstanceOf(DeadlineExceededException.class);
+      release.countDown();
+
+      ProcessingContext out = follower.get(5, TimeUnit.SECONDS);
+      assertThat(out.getLlmAnswer()).isEqualTo("answer");
+      assertThat(out.getSteps()).extracting(StepLog::getNote).contains("llm coalesced waiters=1, shared");
+      assertThat(calls).hasValue(1);
+      assertThat(limiter.inFlight()).isZero();
+      assertThat(guards.llm().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    } finally {
+      release.countDown();
+      callers.shutdownNow();
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void abandonedBlockingCallIsCancelledWithoutCountingAFailure() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    ChatModel chatModel = mock(ChatModel.class);
+    when(chatModel.chat(anyString())).thenAnswer(invocation -> {
+      try {
+        Thread.sleep(10_000);
+        return "late";
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+        throw new RuntimeException("request aborted", e);
+      }
+    });
+    LlmRateLimiter limiter = newLimiter();
+    DependencyGuards guards = newGuards();
+    LangChain4jRagService service = newService(chatModel, mock(StreamingChatModel.class), limiter, guards);
+    try {
+      ProcessingContext ctx = contextFor("prompt").setDeadline(Deadline.after(Duration.ofMillis(100)));
+
+      assertThatThrownBy(() -> service.completeWithLlm(ctx, "step").block())
+          .isInstanceOf(DeadlineExceededException.class);
+
+      // 没人等了：共享调用被中断，permit 还回去，熔断器不记失败
+      assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+      long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (limiter.inFlight() > 0 && System.nanoTime() < until) {
+        Thread.sleep(5);
+      }
+      assertThat(limiter.inFlight()).isZero();
+      assertThat(guards.llm().failureRate()).isZero();
+      assertThat(guards.llm().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void answerCacheStepsAreTimedOnMissAndHit() {
+    ChatModel chatModel = mock(ChatModel.class);
+    when(chatModel.chat(anyString())).thenReturn("answer");
+    AnswerCacheProperties cacheProps = new AnswerCacheProperties();
+    cacheProps.setEnabled(true);
+    AnswerCacheService answerCache = new AnswerCacheService(cacheProps, new Langchain4jOpenAiProperties());
+    LangChain4jRagService service = newService(chatModel, mock(StreamingChatModel.class), newLimiter(), newGuards(),
+        answerCache);
+    try {
+      ProcessingContext miss = service.completeWithLlm(contextFor("prompt"), "step").block();
+      ProcessingContext hit = service.completeWithLlm(contextFor("prompt"), "step").block();
+
+      for (ProcessingContext ctx : List.of(miss, hit)) {
+        StepLog step = ctx.getSteps().stream()
+            .filter(s -> "answer-cache".equals(s.getName()))
+            .findFirst()
+            .orElseThrow();
+        assertThat(step.getDurationMs()).isNotNull().isGreaterThanOrEqualTo(0.0);
+        assertThat(step.getStartMs()).isNotNull();
+      }
+      assertThat(hit.getLlmAnswer()).isEqualTo("answer");
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  static ProcessingContext contextFor(String prompt) {
+    return new ProcessingContext().setFinalPrompt(prompt);
+  }
+
+  static LangChain4jRagService newService(ChatModel chatModel, StreamingChatModel streamingModel,
+                                          LlmRateLimiter limiter, DependencyGuards guards) {
+    AnswerCacheProperties cacheProps = new AnswerCacheProperties();
+    cacheProps.setEnabled(false);
+    return newService(chatModel, streamingModel, limiter, guards,
+        new AnswerCacheService(cacheProps, new Langchain4jOpenAiProperties()));
+  }
+
+  static LangChain4jRagService newService(ChatModel chatModel, StreamingChatModel streamingModel,
+                                          LlmRateLimiter limiter, DependencyGuards guards,
+                                          AnswerCacheService answerCache) {
+    return new LangChain4jRagService(chatModel, streamingModel, mock(KbSearchService.class), answerCache,
+        SemanticAnswerCache.disabled(), limiter, guards);
+  }
+
+  static LlmRateLimiter newLimiter() {
+    LlmRateLimitProperties props = new LlmRateLimitProperties();
+    props.setMaxQueueWait(Duration.ZERO);
+    Langchain4jOpenAiProperties openAi = new Langchain4jOpenAiProperties();
+    openAi.setMaxOutputTokens(0);
+    return new LlmRateLimiter(props, openAi);
+  }
+
+  // 一次失败就会打开 llm 熔断器，方便断言"没有记成失败"
+  static DependencyGuards newGuards() {
+    ResilienceProperties props = new ResilienceProperties();
+    props.setLlm(new ResilienceProperties.Breaker(20, 1, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(30)));
+    return new DependencyGuards(props);
+  }
+}
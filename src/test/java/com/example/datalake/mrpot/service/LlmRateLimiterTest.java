@@ -0,0 +1,90 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.config.LlmRateLimitProperties;
+import dev.langchain4j.exception.RateLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class LlmRateLimiterTest {
+
+  private static LlmRateLimiter newLimiter(long tokensPerMinute, int initialConcurrency, Duration maxQueueWait) {
+    LlmRateLimitProperties props = new LlmRateLimitProperties();
+    props.setTokensPerMinute(tokensPerMinute);
+    props.setCharsPerToken(1);
+    props.setInitialConcurrency(initialConcurrency);
+    props.setMinConcurrency(1);
+    props.setMaxConcurrency(8);
+    props.setMaxQueueWait(maxQueueWait);
+    Langchain4jOpenAiProperties openAi = new Langchain4jOpenAiProperties();
+    openAi.setMaxOutputTokens(0);
+    return new LlmRateLimiter(props, openAi);
+  }
+
+  @Test
+  void shedsWhenTheTokenBudgetIsSpent() {
+    LlmRateLimiter limiter = newLimiter(100, 8, Duration.ZERO);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    limiter.bindTo(registry);
+
+    limiter.acquire("x".repeat(80)).release(null);
+
+    assertThatThrownBy(() -> limiter.acquire("x".repeat(80)))
+        .isInstanceOf(LlmRateLimitedException.class)
+        .isInstanceOf(RateLimitException.class)
+        .satisfies(e -> {
+          LlmRateLimitedException limited = (LlmRateLimitedException) e;
+          assertThat(limited.getReason()).isEqualTo("tokens");
+          // 还差 60 token，按 100/min 需要约 36s
+          assertThat(limited.getRetryAfter()).isBetween(Duration.ofSeconds(30), Duration.ofSeconds(40));
+        });
+    assertThat(registry.get("mrpot.llm.limiter.rejected").tag("reason", "tokens").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void queuesForTokensWithinTheDeadline() {
+    // 60_000/min = 1 token/ms
+    LlmRateLimiter limiter = newLimiter(60_000, 8, Duration.ofSeconds(2));
+    limiter.acquire("x".repeat(60_000)).release(null);
+
+    long start = System.nanoTime();
+    limiter.acquire("x".repeat(50)).release(null);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+  }
+
+  @Test
+  void concurrencyLimitIsAdditiveIncreaseMultiplicativeDecrease() {
+    LlmRateLimiter limiter = newLimiter(1_000_000, 2, Duration.ZERO);
+
+    LlmRateLimiter.Permit a = limiter.acquire("q");
+    LlmRateLimiter.Permit b = limiter.acquire("q");
+    assertThatThrownBy(() -> limiter.acquire("q"))
+        .isInstanceOfSatisfying(LlmRateLimitedException.class, e -> assertThat(e.getReason()).isEqualTo("concurrency"));
+
+    a.release(null);
+    a.release(null); // 重复 release 无效
+    assertThat(limiter.limit()).isEqualTo(2.5);
+    assertThat(limiter.inFlight()).isEqualTo(1);
+
+    b.release(new RateLimitException("429 from upstream"));
+    assertThat(limiter.limit()).isEqualTo(2.5 * 0.7);
+    assertThat(limiter.availableTokens()).isLessThan(1_000);
+
+    limiter.acquire("").release(new IllegalStateException("not a congestion signal"));
+    assertThat(limiter.limit()).isEqualTo(2.5 * 0.7);
+  }
+
+  @Test
+  void disabledLimiterAlwaysAdmits() {
+    LlmRateLimiter limiter = LlmRateLimiter.unlimited();
+    for (int i = 0; i < 1_000; i++) {
+      limiter.acquire("x".repeat(10_000));
+    }
+    assertThat(limiter.inFlight()).isZero();
+  }
+}
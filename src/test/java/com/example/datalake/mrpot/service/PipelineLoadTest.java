@@ -0,0 +1,168 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.config.PipelineSchedulerProperties;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.util.VirtualThreads;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Platform-thread vs virtual-thread execution of {@link PromptPipeline} under a burst of concurrent
+ * requests, with the OpenAI call replaced by a fake that sleeps like a real completion.
+ *
+ * <p>Both modes use the default {@link PipelineSchedulerProperties}, so what differs is the admission
+ * cap, not the cost of a thread: platform mode runs at most {@code llm.threads} (64) blocking calls
+ * and queues {@code llm.queue-capacity} (512) more, virtual mode admits up to
+ * {@code llm.virtual-max-in-flight} (4096). The test checks that each mode stays within its cap and
+ * that the higher cap virtual threads make affordable actually gets used; it does not measure
+ * per-thread memory.
+ *
+ * <p>Off by default; run with a fixed heap via {@code mvn -Pjava21,loadtest test}. On Java 17 only
+ * the platform-thread mode runs. Numbers are published as JUnit report entries.
+ */
+@EnabledIfSystemProperty(named = "mrpot.loadtest", matches = "true")
+class PipelineLoadTest {
+
+  private static final int REQUESTS = 4000;
+  // 接近 gpt-4o-mini 短回答的延迟：均值 ~1.2s，抖动 ±0.4s
+  private static final long LLM_MEAN_MS = 1200;
+  private static final long LLM_JITTER_MS = 400;
+
+  @Test
+  void virtualModeUsesItsHigherAdmissionCap(TestReporter reporter) throws Exception {
+    PipelineSchedulerProperties props = new PipelineSchedulerProperties();
+
+    Result platform = run(props, false);
+    reporter.publishEntry(platform.mode(), platform.toString());
+    assertThat(platform.peakInFlight()).isLessThanOrEqualTo(props.getLlm().getThreads());
+
+    if (!VirtualThreads.isSupported()) {
+      reporter.publishEntry("virtual", "skipped on Java " + Runtime.version().feature());
+      return;
+    }
+
+    Result virtual = run(props, true);
+    reporter.publishEntry(virtual.mode(), virtual.toString());
+    assertThat(virtual.peakInFlight()).isLessThanOrEqualTo(props.getLlm().getVirtualMaxInFlight());
+
+    // 差异来自 admission 上限（64 线程 vs 4096 in-flight），不是线程本身的开销
+    assertThat(virtual.peakInFlight()).isGreaterThan(platform.peakInFlight());
+    assertThat(virtual.completed()).isGreaterThanOrEqualTo(platform.completed());
+  }
+
+  private Result run(PipelineSchedulerProperties props, boolean virtualThreads) throws InterruptedException {
+    PipelineSchedulers schedulers = new PipelineSchedulers(props, virtualThreads);
+    FakeChatModel llm = new FakeChatModel();
+    LangChain4jRagService ragService = new LangChain4jRagService(
+        llm,
+        null,
+        (query, keywords, maxSnippets, maxTotalChars) -> List.of(),
+        new AnswerCacheService(new AnswerCacheProperties(), new Langchain4jOpenAiProperties()));
+    PromptPipeline pipeline = new PromptPipeline(List.of(),
+        new ValidationService(List.of(new NotBlankInputValidator())), ragService, schedulers);
+
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    System.gc();
+    long heapBefore = memory.getHeapMemoryUsage().getUsed();
+    AtomicLong peakHeap = new AtomicLong(heapBefore);
+
+    CountDownLatch done = new CountDownLatch(REQUESTS);
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    List<Long> latencies = Collections.synchronizedList(new ArrayList<>(REQUESTS));
+
+    Thread sampler = new Thread(() -> {
+      while (done.getCount() > 0) {
+        peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+    sampler.setDaemon(true);
+    sampler.start();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      long t0 = System.nanoTime();
+      pipeline.run(new PrepareRequest().setQuery("How do I renew a passport? #" + i))
+          .subscribe(
+              ctx -> {
+                completed.incrementAndGet();
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+              },
+              error -> {
+                rejected.incrementAndGet();
+                done.countDown();
+              },
+              done::countDown);
+    }
+    done.await(5, TimeUnit.MINUTES);
+    long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    sampler.interrupt();
+    schedulers.shutdown();
+
+    List<Long> sorted = new ArrayList<>(latencies);
+    Collections.sort(sorted);
+    return new Result(virtualThreads ? "virtual" : "platform", completed.get(), rejected.get(),
+        llm.peakInFlight.get(), percentile(sorted, 0.50), percentile(sorted, 0.99), wallMs,
+        (peakHeap.get() - heapBefore) / (1024 * 1024));
+  }
+
+  private static long percentile(List<Long> sorted, double p) {
+    if (sorted.isEmpty()) return 0;
+    return sorted.get(Math.min(sorted.size() - 1, (int) Math.floor(p * sorted.size())));
+  }
+
+  record Result(String mode, int completed, int rejected, int peakInFlight,
+                long p50Ms, long p99Ms, long wallMs, long heapGrowthMb) {
+    @Override
+    public String toString() {
+      return String.format("%-8s completed=%d rejected=%d peakInFlight=%d p50=%dms p99=%dms wall=%dms heap+%dMB",
+          mode, completed, rejected, peakInFlight, p50Ms, p99Ms, wallMs, heapGrowthMb);
+    }
+  }
+
+  /** Blocking fake of the OpenAI chat call; sleeps for a realistic completion latency. */
+  private static final class FakeChatModel implements ChatModel {
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @Override
+    public ChatResponse doChat(ChatRequest request) {
+      peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        long jitter = ThreadLocalRandom.current().nextLong(-LLM_JITTER_MS, LLM_JITTER_MS + 1);
+        Thread.sleep(LLM_MEAN_MS + jitter);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      return ChatResponse.builder().aiMessage(AiMessage.from("<p>stub answer</p>")).build();
+    }
+  }
+}
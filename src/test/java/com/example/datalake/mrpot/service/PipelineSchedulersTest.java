@@ -0,0 +1,108 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.PipelineSchedulerProperties;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.processor.StageResource;
+import com.example.datalake.mrpot.processor.TextProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class PipelineSchedulersTest {
+
+  private final PipelineSchedulers schedulers = new PipelineSchedulers(props());
+
+  @AfterEach
+  void tearDown() {
+    schedulers.shutdown();
+  }
+
+  @Test
+  void stagesRunOnTheSchedulerOfTheirResource() {
+    TextProcessor dbStage = new TextProcessor() {
+      @Override public String name() { return "db-stage"; }
+      @Override public StageResource resource() { return StageResource.DB; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        return Mono.just(ctx.addStep(name(), Thread.currentThread().getName()));
+      }
+    };
+    TextProcessor cpuStage = new TextProcessor() {
+      @Override public String name() { return "cpu-stage"; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        return Mono.just(ctx.addStep(name(), Thread.currentThread().getName()));
+      }
+    };
+
+    LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+    when(ragService.completeWithLlm(any(), anyString())).thenAnswer(invocation -> {
+      ProcessingContext ctx = invocation.getArgument(0);
+      return Mono.just(ctx.addStep("llm", Thread.currentThread().getName()));
+    });
+
+    PromptPipeline pipeline = new PromptPipeline(List.of(dbStage, cpuStage),
+        new ValidationService(List.of(new NotBlankInputValidator())), ragService, schedulers);
+
+    ProcessingContext out = pipeline.run(new PrepareRequest().setQuery("hello world")).block();
+
+    assertThat(out.getSteps()).extracting(s -> s.getName() + "@" + s.getNote())
+        .anySatisfy(s -> assertThat(s).startsWith("db-stage@mrpot-db-"))
+        .anySatisfy(s -> assertThat(s).startsWith("cpu-stage@mrpot-cpu-"))
+        .anySatisfy(s -> assertThat(s).startsWith("llm@mrpot-llm-"));
+  }
+
+  @Test
+  void saturatedPoolRejectsInsteadOfQueueingAndReportsMetrics() throws Exception {
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    schedulers.bindTo(meters);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    Mono<String> blocker = Mono.fromCallable(() -> {
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return "done";
+    });
+
+    // 1 worker busy + 1 queued fills the db pool (threads=1, queue=1)
+    blocker.subscribeOn(schedulers.db()).subscribe();
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    blocker.subscribeOn(schedulers.db()).subscribe();
+
+    assertThat(meters.get("mrpot.pipeline.scheduler.saturation").tag("resource", "db").gauge().value())
+        .isEqualTo(1.0);
+
+    assertThatThrownBy(() -> Mono.just("x").subscribeOn(schedulers.db()).block())
+        .isInstanceOf(RejectedExecutionException.class);
+    assertThat(meters.get("mrpot.pipeline.scheduler.rejected").tag("resource", "db").functionCounter().count())
+        .isEqualTo(1.0);
+
+    // other resource classes are unaffected by the saturated db pool
+    assertThat(Mono.fromCallable(() -> Thread.currentThread().getName())
+        .subscribeOn(schedulers.llm()).block()).startsWith("mrpot-llm-");
+
+    release.countDown();
+  }
+
+  private static PipelineSchedulerProperties props() {
+    PipelineSchedulerProperties props = new PipelineSchedulerProperties();
+    props.setDb(new PipelineSchedulerProperties.Pool(1, 1, 0));
+    props.setLlm(new PipelineSchedulerProperties.Pool(2, 4, 0));
+    props.setCpu(new PipelineSchedulerProperties.Pool(2, 4, 0));
+    return props;
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PostgresFtsKbSearchServiceTest {
+
+  @Test
+  void websearchQueryOrsLatinTermsAndDropsOperators() {
+    String query = PostgresFtsKbSearchService.buildWebsearchQuery(
+        List.of("Spring-Boot", "\"java\"", "or", "x", "知识库 search"));
+
+    assertThat(query).isEqualTo("spring boot or java or search");
+  }
+
+  @Test
+  void hanTermsBecomeOverlappingBigrams() {
+    String query = PostgresFtsKbSearchService.buildHanNgramQuery(
+        List.of("知识库", "ok 项目a经历"));
+
+    assertThat(query).isEqualTo("知识 | 识库 | 项目 | 经历");
+  }
+
+  @Test
+  void singleHanCharacterRunsAreQueriedAsUnigrams() {
+    assertThat(PostgresFtsKbSearchService.buildHanNgramQuery(List.of("猫"))).isEqualTo("猫");
+    assertThat(PostgresFtsKbSearchService.buildHanNgramQuery(List.of("知识库", "a猫b", "库")))
+        .isEqualTo("知识 | 识库 | 猫 | 库");
+  }
+
+  @Test
+  void emptyWhenNothingUsable() {
+    assertThat(PostgresFtsKbSearchService.buildWebsearchQuery(List.of("a", "-"))).isEmpty();
+    assertThat(PostgresFtsKbSearchService.buildHanNgramQuery(List.of("hello", "  "))).isEmpty();
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.datalake.mrpot.config.PromptCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class PromptCacheServiceTest {
+
+  @Test
+  void hitsAreCountedInPlace() {
+    PromptCacheService service = new PromptCacheService(new PromptCacheProperties());
+    service.store("en::anon::hello", "sys", "user", "final");
+
+    PromptCacheService.CacheEntry first = service.hitIfPresent("en::anon::hello").orElseThrow();
+    PromptCacheService.CacheEntry second = service.hitIfPresent(" en::anon::hello ").orElseThrow();
+
+    assertThat(second).isSameAs(first);
+    assertThat(second.frequency()).isEqualTo(3);
+    assertThat(service.hitIfPresent("en::anon::missing")).isEmpty();
+    assertThat(service.stats().hitCount()).isEqualTo(2);
+    assertThat(service.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void storeReplacesPromptsAndKeepsFrequency() {
+    PromptCacheService service = new PromptCacheService(new PromptCacheProperties());
+    service.store("k", "sys", "user", "v1");
+
+    PromptCacheService.CacheEntry updated = service.store("k", "sys", "user", "v2").orElseThrow();
+
+    assertThat(updated.finalPrompt()).isEqualTo("v2");
+    assertThat(updated.frequency()).isEqualTo(2);
+    assertThat(service.store("   ", "sys", "user", "v")).isEmpty();
+  }
+
+  @Test
+  void evictsOnceWeightBudgetIsExceeded() {
+    PromptCacheProperties props = new PromptCacheProperties();
+    props.setMaxWeightChars(1_000);
+    PromptCacheService service = new PromptCacheService(props);
+
+    String prompt = "x".repeat(100);
+    for (int i = 0; i < 50; i++) {
+      service.store("key-" + i, prompt, prompt, prompt);
+    }
+    service.cleanUp();
+
+    assertThat(service.estimatedSize()).isLessThanOrEqualTo(3);
+    assertThat(service.stats().evictionCount()).isPositive();
+  }
+
+  @Test
+  void exposesCaffeineMetrics() {
+    PromptCacheService service = new PromptCacheService(new PromptCacheProperties());
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    service.bindTo(registry);
+
+    service.hitIfPresent("missing");
+
+    assertThat(registry.find("cache.gets").tag("cache", "prompt-cache").tag("result", "miss")
+        .functionCounter().count()).isEqualTo(1.0);
+  }
+}
@@ -0,0 +1,128 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.DeadlineProperties;
+import com.example.datalake.mrpot.model.Deadline;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.processor.StageResource;
+import com.example.datalake.mrpot.processor.TextProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import io.micrometer.observation.ObservationRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class PromptPipelineDeadlineTest {
+
+  private final AtomicInteger dbCalls = new AtomicInteger();
+
+  private final TextProcessor dbStage = new TextProcessor() {
+    @Override public String name() { return "db-stage"; }
+    @Override public StageResource resource() { return StageResource.DB; }
+    @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+      dbCalls.incrementAndGet();
+      return Mono.just(ctx.addStep(name(), "bound=" + (Deadline.current() == ctx.getDeadline())));
+    }
+  };
+
+  private final TextProcessor cpuStage = new TextProcessor() {
+    @Override public String name() { return "cpu-stage"; }
+    @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+      return Mono.just(ctx.addStep(name(), "ran"));
+    }
+  };
+
+  @Test
+  void dbStageSeesTheRequestDeadline() {
+    ProcessingContext out = pipeline(props(), answering())
+        .run(new PrepareRequest().setQuery("hello world").setTimeout(Duration.ofSeconds(5)))
+        .block();
+
+    assertThat(out.getDeadline().budget()).isEqualTo(Duration.ofSeconds(5));
+    assertThat(out.lastStepNote("db-stage")).isEqualTo("bound=true");
+    assertThat(Deadline.current()).isSameAs(Deadline.NONE);
+  }
+
+  @Test
+  void requestedBudgetIsCappedAndDefaulted() {
+    PromptPipeline pipeline = pipeline(props(), answering());
+
+    ProcessingContext capped = pipeline.run(new PrepareRequest().setQuery("hello world")
+        .setTimeout(Duration.ofMinutes(10))).block();
+    ProcessingContext defaulted = pipeline.run(new PrepareRequest().setQuery("hello world")).block();
+
+    assertThat(capped.getDeadline().budget()).isEqualTo(Duration.ofSeconds(60));
+    assertThat(defaulted.getDeadline().budget()).isEqualTo(Duration.ofSeconds(20));
+  }
+
+  @Test
+  void dbStageIsSkippedWhenTooLittleBudgetIsLeft() {
+    ProcessingContext out = pipeline(props(), answering())
+        .run(new PrepareRequest().setQuery("hello world").setTimeout(Duration.ofMillis(100)))
+        .block();
+
+    assertThat(dbCalls).hasValue(0);
+    assertThat(out.lastStepNote("db-stage")).startsWith("skip-deadline remaining=");
+    assertThat(out.lastStepNote("cpu-stage")).isEqualTo("ran");
+    assertThat(PromptPipeline.outcomeOf(out.lastStepNote("db-stage"))).isEqualTo("skip");
+  }
+
+  @Test
+  void disabledDeadlineLeavesRequestsUnbounded() {
+    DeadlineProperties props = props();
+    props.setEnabled(false);
+
+    ProcessingContext out = pipeline(props, answering())
+        .run(new PrepareRequest().setQuery("hello world").setTimeout(Duration.ofMillis(1)))
+        .block();
+
+    assertThat(out.getDeadline().isBounded()).isFalse();
+    assertThat(dbCalls).hasValue(1);
+  }
+
+  @Test
+  void llmCallIsCutOffAtTheDeadline() {
+    LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+    when(ragService.completeWithLlm(any(), anyString())).thenReturn(Mono.never());
+
+    PromptPipeline pipeline = pipeline(props(), ragService);
+
+    assertThatThrownBy(() -> pipeline.run(new PrepareRequest().setQuery("hello world")
+        .setTimeout(Duration.ofMillis(1_500))).block(Duration.ofSeconds(5)))
+        .isInstanceOf(DeadlineExceededException.class)
+        .hasMessageContaining("llm");
+  }
+
+  private PromptPipeline pipeline(DeadlineProperties props, LangChain4jRagService ragService) {
+    return new PromptPipeline(List.of(dbStage, cpuStage),
+        new ValidationService(List.of(new NotBlankInputValidator())), ragService,
+        PipelineSchedulers.immediate(), ObservationRegistry.NOOP, props);
+  }
+
+  private static LangChain4jRagService answering() {
+    LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+    when(ragService.completeWithLlm(any(), anyString())).thenAnswer(invocation -> {
+      ProcessingContext ctx = invocation.getArgument(0);
+      return Mono.just(ctx.setLlmAnswer("answer"));
+    });
+    return ragService;
+  }
+
+  private static DeadlineProperties props() {
+    DeadlineProperties props = new DeadlineProperties();
+    props.setDefaultBudget(Duration.ofSeconds(20));
+    props.setMaxBudget(Duration.ofSeconds(60));
+    props.setMinStageBudget(Duration.ofMillis(500));
+    return props;
+  }
+}
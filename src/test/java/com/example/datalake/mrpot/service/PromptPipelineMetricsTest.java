@@ -0,0 +1,121 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.model.StepLog;
+import com.example.datalake.mrpot.processor.TextProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class PromptPipelineMetricsTest {
+
+  private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+  private final ObservationRegistry observations = ObservationRegistry.create();
+
+  PromptPipelineMetricsTest() {
+    observations.observationConfig().observationHandler(new DefaultMeterObservationHandler(meters));
+  }
+
+  @Test
+  void everyStageAndTheLlmCallAreTimedWithTheirOutcome() {
+    PromptPipeline pipeline = newPipeline(List.of(stage("lookup", "hit freq=2"), stage("record", "skip-hit freq=2")));
+
+    pipeline.run(new PrepareRequest().setQuery("hello world")).block();
+
+    assertThat(stageTimerCount("lookup", "hit")).isEqualTo(1);
+    assertThat(stageTimerCount("record", "skip")).isEqualTo(1);
+    assertThat(stageTimerCount("llm", "ok")).isEqualTo(1);
+    assertThat(meters.get(PromptPipeline.PIPELINE_OBSERVATION).tag("mode", "blocking").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void failingStageIsRecordedAsError() {
+    TextProcessor broken = new TextProcessor() {
+      @Override public String name() { return "broken"; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        throw new IllegalStateException("boom");
+      }
+    };
+    PromptPipeline pipeline = newPipeline(List.of(broken));
+
+    assertThatThrownBy(() -> pipeline.run(new PrepareRequest().setQuery("hello world")).block())
+        .isInstanceOf(IllegalStateException.class);
+
+    assertThat(stageTimerCount("broken", "error")).isEqualTo(1);
+  }
+
+  @Test
+  void stepsCarryStageDurationAndContextCarriesTotal() {
+    TextProcessor slow = new TextProcessor() {
+      @Override public String name() { return "slow"; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        try {
+          Thread.sleep(30);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return Mono.just(ctx.addStep(name(), "done"));
+      }
+    };
+    PromptPipeline pipeline = newPipeline(List.of(stage("fast", "ok"), slow));
+
+    ProcessingContext out = pipeline.run(new PrepareRequest().setQuery("hello world")).block();
+
+    StepLog fast = out.getSteps().get(0);
+    StepLog timed = out.getSteps().get(1);
+    assertThat(fast.getDurationMs()).isNotNull().isLessThan(timed.getDurationMs());
+    assertThat(timed.getName()).isEqualTo("slow");
+    assertThat(timed.getDurationMs()).isGreaterThanOrEqualTo(30.0);
+    assertThat(timed.getStartMs()).isGreaterThanOrEqualTo(fast.getStartMs());
+    assertThat(out.getSteps().get(2).getDurationMs()).isNotNull(); // llm
+    assertThat(out.getTotalDurationMs()).isGreaterThanOrEqualTo(timed.getDurationMs());
+  }
+
+  @Test
+  void outcomeIsDerivedFromTheStepNote() {
+    assertThat(PromptPipeline.outcomeOf(null)).isEqualTo("ok");
+    assertThat(PromptPipeline.outcomeOf("miss")).isEqualTo("miss");
+    assertThat(PromptPipeline.outcomeOf("no-key")).isEqualTo("skip");
+    assertThat(PromptPipeline.outcomeOf("bypass-cache")).isEqualTo("bypass-cache");
+    assertThat(PromptPipeline.outcomeOf("Thinking — snippets=1, docs=1, kbChars=10, answer-cache")).isEqualTo("hit");
+    assertThat(PromptPipeline.outcomeOf("intent=QA")).isEqualTo("ok");
+  }
+
+  private long stageTimerCount(String stage, String outcome) {
+    return meters.get(PromptPipeline.STAGE_OBSERVATION)
+        .tag("stage", stage)
+        .tag("outcome", outcome)
+        .timer()
+        .count();
+  }
+
+  private PromptPipeline newPipeline(List<TextProcessor> stages) {
+    LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+    when(ragService.completeWithLlm(any(), anyString())).thenAnswer(invocation ->
+        Mono.just(((ProcessingContext) invocation.getArgument(0)).addStep("langchain4j-rag", "Thinking")));
+    return new PromptPipeline(stages, new ValidationService(List.of(new NotBlankInputValidator())), ragService,
+        PipelineSchedulers.immediate(), observations);
+  }
+
+  private static TextProcessor stage(String name, String note) {
+    return new TextProcessor() {
+      @Override public String name() { return name; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        return Mono.just(ctx.addStep(name, note));
+      }
+    };
+  }
+}
@@ -0,0 +1,80 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.model.PipelineEvent;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.processor.TextProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class PromptPipelineStreamEventsTest {
+
+  @Test
+  void everyStepIsPushedOnceAndEveryStageRunsOnce() {
+    AtomicInteger firstRuns = new AtomicInteger();
+    AtomicInteger secondRuns = new AtomicInteger();
+
+    LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+    when(ragService.streamWithLlm(any(), anyString(), any())).thenAnswer(invocation -> {
+      ProcessingContext ctx = invocation.getArgument(0);
+      Consumer<String> onDelta = invocation.getArgument(2);
+      onDelta.accept("Hi");
+      onDelta.accept(" there");
+      return Mono.just(ctx.setLlmAnswer("Hi there").addStep("langchain4j-rag", "streamed"));
+    });
+
+    PromptPipeline pipeline = new PromptPipeline(
+        List.of(stage("first", firstRuns, 2), stage("second", secondRuns, 1)),
+        new ValidationService(List.of(new NotBlankInputValidator())), ragService);
+
+    List<PipelineEvent> events = pipeline.streamEvents(new PrepareRequest().setQuery("hello world"))
+        .collectList()
+        .block();
+
+    assertThat(firstRuns).hasValue(1);
+    assertThat(secondRuns).hasValue(1);
+
+    List<PipelineEvent.Step> steps = events.stream()
+        .filter(PipelineEvent.Step.class::isInstance)
+        .map(PipelineEvent.Step.class::cast)
+        .toList();
+    assertThat(steps).extracting(PipelineEvent.Step::index).containsExactly(1, 2, 3, 4);
+    assertThat(steps).extracting(s -> s.step().getName())
+        .containsExactly("first", "first", "second", "langchain4j-rag");
+
+    assertThat(events).filteredOn(PipelineEvent.Token.class::isInstance)
+        .extracting(e -> ((PipelineEvent.Token) e).text())
+        .containsExactly("Hi", " there");
+
+    PipelineEvent last = events.get(events.size() - 1);
+    assertThat(last).isInstanceOf(PipelineEvent.Completed.class);
+    ProcessingContext ctx = ((PipelineEvent.Completed) last).context();
+    assertThat(ctx.getSteps()).hasSize(4);
+    assertThat(ctx.getLlmAnswer()).isEqualTo("Hi there");
+    assertThat(steps.get(3).step().getDurationMs()).isNotNull();
+  }
+
+  private static TextProcessor stage(String name, AtomicInteger runs, int steps) {
+    return new TextProcessor() {
+      @Override public String name() { return name; }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        runs.incrementAndGet();
+        for (int i = 0; i < steps; i++) {
+          ctx.addStep(name, "step " + i);
+        }
+        return Mono.just(ctx);
+      }
+    };
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.AnswerCacheProperties;
+import com.example.datalake.mrpot.config.Langchain4jOpenAiProperties;
+import com.example.datalake.mrpot.event.KbDocumentChangedEvent;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+class SemanticAnswerCacheTest {
+
+  /** Fixed vectors per question, so the test controls the similarities. */
+  private static final class TableEmbeddingModel implements EmbeddingModel {
+    final AtomicInteger calls = new AtomicInteger();
+    final Map<String, float[]> vectors = Map.of(
+        "who is yuqi", new float[] {1, 0, 0},
+        "who's yuqi", new float[] {0.98f, 0.2f, 0},   // cos ≈ 0.98
+        "what does yuqi do", new float[] {0.8f, 0.6f, 0}, // cos = 0.8
+        "kafka tuning", new float[] {0, 0, 1});
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+      calls.incrementAndGet();
+      return Response.from(segments.stream()
+          .map(s -> {
+            float[] v = vectors.get(s.text());
+            if (v == null) throw new IllegalStateException("no vector for " + s.text());
+            return Embedding.from(v);
+          })
+          .toList());
+    }
+  }
+
+  private final TableEmbeddingModel model = new TableEmbeddingModel();
+
+  @SuppressWarnings("unchecked")
+  private SemanticAnswerCache newCache(int maxEntries) {
+    AnswerCacheProperties props = new AnswerCacheProperties();
+    props.getSemantic().setEnabled(true);
+    props.getSemantic().setSimilarityThreshold(0.92);
+    props.getSemantic().setMaxEntries(maxEntries);
+    ObjectProvider<EmbeddingModel> provider = mock(ObjectProvider.class);
+    when(provider.getIfAvailable()).thenReturn(model);
+    return new SemanticAnswerCache(props, new Langchain4jOpenAiProperties(), provider);
+  }
+
+  @Test
+  void nearDuplicateQuestionsReuseTheAnswer() {
+    SemanticAnswerCache cache = newCache(100);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+
+    SemanticAnswerCache.Probe first = cache.lookup("who is yuqi", "en", List.of(1L));
+    assertThat(first.hit()).isEmpty();
+    cache.store(first, "Yuqi is a data engineer.");
+
+    SemanticAnswerCache.Probe second = cache.lookup("who's yuqi", "en", List.of(1L));
+    assertThat(second.hit()).hasValueSatisfying(hit -> {
+      assertThat(hit.answer()).isEqualTo("Yuqi is a data engineer.");
+      assertThat(hit.question()).isEqualTo("who is yuqi");
+      assertThat(hit.similarity()).isGreaterThan(0.97);
+    });
+
+    assertThat(cache.lookup("what does yuqi do", "en", List.of(1L)).hit()).isEmpty();
+    assertThat(model.calls).hasValue(3);
+
+    assertThat(registry.get("mrpot.answer.semantic.lookups").tag("outcome", "hit").counter().count()).isEqualTo(1);
+    assertThat(registry.get("mrpot.answer.semantic.lookups").tag("outcome", "miss").counter().count()).isEqualTo(2);
+    assertThat(registry.get("mrpot.answer.semantic.similarity").tag("outcome", "miss").summary().max())
+        .isCloseTo(0.8, within(1e-3));
+    assertThat(registry.get("mrpot.answer.semantic.threshold").gauge().value()).isEqualTo(0.92);
+    assertThat(registry.get("mrpot.answer.semantic.size").gauge().value()).isEqualTo(1);
+  }
+
+  @Test
+  void hitsRequireSameLanguageAndDocs() {
+    SemanticAnswerCache cache = newCache(100);
+    cache.store(cache.lookup("who is yuqi", "en", List.of(2L, 1L)), "answer");
+
+    assertThat(cache.lookup("who's yuqi", "en", List.of(1L, 2L)).hit()).isPresent();
+    assertThat(cache.lookup("who's yuqi", "en", List.of(1L)).hit()).isEmpty();
+    assertThat(cache.lookup("who's yuqi", "zh", List.of(1L, 2L)).hit()).isEmpty();
+  }
+
+  @Test
+  void sizeIsBoundedByMaxEntries() {
+    SemanticAnswerCache cache = newCache(1);
+    cache.store(cache.lookup("who is yuqi", "en", List.of()), "a");
+    cache.store(cache.lookup("kafka tuning", "en", List.of()), "b");
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.lookup("who's yuqi", "en", List.of()).hit()).isEmpty();
+    assertThat(cache.lookup("kafka tuning", "en", List.of()).hit()).map(SemanticAnswerCache.Hit::answer).contains("b");
+  }
+
+  @Test
+  void documentChangesInvalidateGroundedAnswers() {
+    SemanticAnswerCache cache = newCache(100);
+    cache.store(cache.lookup("who is yuqi", "en", List.of(1L)), "a");
+    cache.store(cache.lookup("kafka tuning", "en", List.of(2L)), "b");
+
+    cache.onKbDocumentChanged(KbDocumentChangedEvent.deleted(1L));
+
+    assertThat(cache.lookup("who is yuqi", "en", List.of(1L)).hit()).isEmpty();
+    assertThat(cache.lookup("kafka tuning", "en", List.of(2L)).hit()).isPresent();
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void disabledOrFailingEmbeddingIsAMiss() {
+    assertThat(SemanticAnswerCache.disabled().lookup("who is yuqi", "en", List.of()).vector()).isNull();
+
+    SemanticAnswerCache cache = newCache(100);
+    SemanticAnswerCache.Probe probe = cache.lookup("unknown question", "en", List.of());
+    assertThat(probe.hit()).isEmpty();
+    cache.store(probe, "answer");
+    assertThat(cache.size()).isZero();
+  }
+}
@@ -0,0 +1,135 @@
+package com.example.datalake.mrpot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.datalake.mrpot.config.PipelineSchedulerProperties;
+import com.example.datalake.mrpot.dao.IntentRulesDao;
+import com.example.datalake.mrpot.dao.KeywordsLexiconDao;
+import com.example.datalake.mrpot.model.ProcessingContext;
+import com.example.datalake.mrpot.model.StepLog;
+import com.example.datalake.mrpot.processor.CommonResponseProcessor;
+import com.example.datalake.mrpot.processor.ContextField;
+import com.example.datalake.mrpot.processor.IntentClassifierProcessor;
+import com.example.datalake.mrpot.processor.LangChain4jRagProcessor;
+import com.example.datalake.mrpot.processor.PromptCacheLookupProcessor;
+import com.example.datalake.mrpot.processor.PromptCacheRecordProcessor;
+import com.example.datalake.mrpot.processor.PromptTemplateProcessor;
+import com.example.datalake.mrpot.processor.StageResource;
+import com.example.datalake.mrpot.processor.TextProcessor;
+import com.example.datalake.mrpot.processor.UnifiedCleanCorrectProcessor;
+import com.example.datalake.mrpot.request.PrepareRequest;
+import com.example.datalake.mrpot.validation.NotBlankInputValidator;
+import com.example.datalake.mrpot.validation.ValidationService;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class StageGraphTest {
+
+  @Test
+  void retrievalOnlyWaitsForCleanIntentAndCommonResponse() {
+    StageGraph graph = StageGraph.of(List.of(
+        new UnifiedCleanCorrectProcessor(),                                            // 0
+        new IntentClassifierProcessor(mock(KeywordsLexiconDao.class), mock(IntentRulesDao.class)), // 1
+        new CommonResponseProcessor(),                                                 // 2
+        new PromptCacheLookupProcessor(mock(PromptCacheService.class)),                // 3
+        new PromptTemplateProcessor(),                                                 // 4
+        new LangChain4jRagProcessor(mock(LangChain4jRagService.class)),                // 5
+        new PromptCacheRecordProcessor(mock(PromptCacheService.class))));              // 6
+
+    assertThat(graph.dependencies(1)).containsExactly(0);
+    assertThat(graph.dependencies(3)).containsExactly(0, 2);
+    assertThat(graph.dependencies(4)).containsExactly(0, 1, 2, 3);
+    assertThat(graph.dependencies(5)).containsExactly(0, 1, 2);
+    assertThat(graph.dependencies(6)).containsExactly(0, 2, 3, 4);
+  }
+
+  @Test
+  void undeclaredStagesStayStrictlySequential() {
+    TextProcessor a = stage("a", StageResource.CPU, null);
+    TextProcessor b = stage("b", StageResource.CPU, null);
+    TextProcessor c = stage("c", StageResource.CPU, null);
+
+    StageGraph graph = StageGraph.of(List.of(a, b, c));
+
+    assertThat(graph.dependencies(0)).isEmpty();
+    assertThat(graph.dependencies(1)).containsExactly(0);
+    assertThat(graph.dependencies(2)).containsExactly(0, 1);
+  }
+
+  @Test
+  void independentStagesOverlapButStepsKeepChainOrder() {
+    PipelineSchedulers schedulers = new PipelineSchedulers(props());
+    try {
+      // "slow" 要等 "fast" 跑完才返回：只有两者并发执行时才不会超时
+      CountDownLatch fastDone = new CountDownLatch(1);
+      TextProcessor slow = new TextProcessor() {
+        @Override public String name() { return "slow"; }
+        @Override public StageResource resource() { return StageResource.DB; }
+        @Override public Set<ContextField> inputs() { return EnumSet.of(ContextField.NORMALIZED); }
+        @Override public Set<ContextField> outputs() { return EnumSet.of(ContextField.KB_CONTEXT); }
+        @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+          try {
+            boolean overlapped = fastDone.await(5, TimeUnit.SECONDS);
+            return Mono.just(ctx.addStep(name(), "overlapped=" + overlapped));
+          } catch (InterruptedException e) {
+            return Mono.error(e);
+          }
+        }
+      };
+      TextProcessor fast = stage("fast", StageResource.CPU, fastDone);
+      TextProcessor last = stage("last", StageResource.CPU, null);
+
+      LangChain4jRagService ragService = mock(LangChain4jRagService.class);
+      when(ragService.completeWithLlm(any(), anyString())).thenAnswer(invocation ->
+          Mono.just(((ProcessingContext) invocation.getArgument(0)).addStep("llm", "done")));
+
+      PromptPipeline pipeline = new PromptPipeline(List.of(slow, fast, last),
+          new ValidationService(List.of(new NotBlankInputValidator())), ragService, schedulers);
+
+      ProcessingContext out = pipeline.run(new PrepareRequest().setQuery("hello world")).block();
+
+      assertThat(out.getSteps()).extracting(StepLog::getName).containsExactly("slow", "fast", "last", "llm");
+      assertThat(out.getSteps().get(0).getNote()).isEqualTo("overlapped=true");
+    } finally {
+      schedulers.shutdown();
+    }
+  }
+
+  // 只声明 TEMPLATE 的 stage：与上面的 "slow" 无冲突；done == null 时用默认声明（全部字段）
+  private static TextProcessor stage(String name, StageResource resource, CountDownLatch done) {
+    return new TextProcessor() {
+      @Override public String name() { return name; }
+      @Override public StageResource resource() { return resource; }
+      @Override public Set<ContextField> inputs() {
+        return done == null ? ContextField.ALL : EnumSet.of(ContextField.NORMALIZED);
+      }
+      @Override public Set<ContextField> outputs() {
+        return done == null ? ContextField.ALL : EnumSet.of(ContextField.TEMPLATE);
+      }
+      @Override public Mono<ProcessingContext> process(ProcessingContext ctx) {
+        ctx.addStep(name, resource.name());
+        if (done != null) {
+          done.countDown();
+        }
+        return Mono.just(ctx);
+      }
+    };
+  }
+
+  private static PipelineSchedulerProperties props() {
+    PipelineSchedulerProperties props = new PipelineSchedulerProperties();
+    props.setDb(new PipelineSchedulerProperties.Pool(2, 4, 0));
+    props.setLlm(new PipelineSchedulerProperties.Pool(2, 4, 0));
+    props.setCpu(new PipelineSchedulerProperties.Pool(2, 4, 0));
+    return props;
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+
+  @Test
+  void reportsEveryPhraseIncludingOverlapsAndSuffixes() {
+    AhoCorasick<String> ac = AhoCorasick.<String>builder()
+        .add("he", "he")
+        .add("she", "she")
+        .add("his", "his")
+        .add("hers", "hers")
+        .build();
+
+    assertThat(ac.matchValues("ushers")).containsExactly("she", "he", "hers");
+    assertThat(ac.matchValues("xyz")).isEmpty();
+    assertThat(ac.matchValues(null)).isEmpty();
+  }
+
+  @Test
+  void wholeWordsRespectBoundaries() {
+    AhoCorasick<String> ac = AhoCorasick.<String>builder()
+        .addWord("hi", "greeting")
+        .add("where", "nav")
+        .ignoreCase(true)
+        .build();
+
+    assertThat(ac.matchValues("Hi!")).containsExactly("greeting");
+    assertThat(ac.matchValues("this is it")).isEmpty();
+    assertThat(ac.matchValues("hi你好")).isEmpty();
+    assertThat(ac.matchValues("say hi_there")).isEmpty();
+    assertThat(ac.matchValues("nowhere, HI")).containsExactly("nav", "greeting");
+  }
+
+  @Test
+  void agreesWithContainsAndWordRegexOnRandomText() {
+    List<String> phrases = List.of("ab", "abc", "bca", "c", "aab", "你好", "好a");
+    List<String> words = List.of("ab", "ca", "你");
+    AhoCorasick.Builder<String> builder = AhoCorasick.<String>builder().ignoreCase(true);
+    phrases.forEach(p -> builder.add(p, "p:" + p));
+    words.forEach(w -> builder.addWord(w, "w:" + w));
+    AhoCorasick<String> ac = builder.build();
+
+    String alphabet = "abcAB 你好_,";
+    Random random = new Random(7);
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int len = random.nextInt(16);
+      for (int k = 0; k < len; k++) {
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String text = sb.toString();
+      String lower = text.toLowerCase(Locale.ROOT);
+
+      Set<String> expected = new LinkedHashSet<>();
+      phrases.stream().filter(lower::contains).forEach(p -> expected.add("p:" + p));
+      // 单词边界按 letter/digit/_ 判定（与 JDK 版本无关的 \b）
+      words.stream().filter(w -> Pattern.compile("(?<![\\p{L}\\p{Nd}_])" + w + "(?![\\p{L}\\p{Nd}_])")
+              .matcher(lower).find())
+          .forEach(w -> expected.add("w:" + w));
+
+      assertThat(ac.matchValues(text)).as("text=%s", text).containsExactlyInAnyOrderElementsOf(expected);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private CircuitBreaker breaker() {
+    return CircuitBreaker.builder("test")
+        .windowSize(10)
+        .minimumCalls(4)
+        .failureRateThreshold(0.5)
+        .openDuration(Duration.ofSeconds(30))
+        .slowCallDuration(Duration.ofSeconds(5))
+        .clock(now::get)
+        .build();
+  }
+
+  @Test
+  void opensOnceFailureRateReachesThreshold() {
+    CircuitBreaker breaker = breaker();
+
+    breaker.tryAcquire().onSuccess(0);
+    breaker.tryAcquire().onFailure();
+    breaker.tryAcquire().onSuccess(0);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+    breaker.tryAcquire().onFailure();
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.tryAcquire()).isNull();
+    assertThat(breaker.retryAfter()).isEqualTo(Duration.ofSeconds(30));
+  }
+
+  @Test
+  void staysClosedBelowMinimumCalls() {
+    CircuitBreaker breaker = breaker();
+
+    breaker.tryAcquire().onFailure();
+    breaker.tryAcquire().onFailure();
+    breaker.tryAcquire().onFailure();
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(breaker.failureRate()).isEqualTo(1.0);
+    assertThat(breaker.tryAcquire()).isNotNull();
+  }
+
+  @Test
+  void slowSuccessCountsAsFailure() {
+    CircuitBreaker breaker = breaker();
+    long slow = Duration.ofSeconds(6).toNanos();
+
+    for (int i = 0; i < 4; i++) {
+      breaker.tryAcquire().onSuccess(slow);
+    }
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void halfOpenAdmitsOneTrialAndClosesOnSuccess() {
+    CircuitBreaker breaker = opened();
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    CircuitBreaker.Call trial = breaker.tryAcquire();
+    assertThat(trial).isNotNull();
+    assertThat(trial.isTrial()).isTrue();
+    assertThat(breaker.tryAcquire()).isNull();
+
+    trial.onSuccess(0);
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(breaker.failureRate()).isZero();
+    assertThat(breaker.tryAcquire()).isNotNull();
+  }
+
+  @Test
+  void failedTrialReopens() {
+    CircuitBreaker breaker = opened();
+    now.addAndGet(Duration.ofSeconds(31).toNanos());
+    CircuitBreaker.Call trial = breaker.tryAcquire();
+    assertThat(trial).isNotNull();
+
+    trial.onFailure();
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.tryAcquire()).isNull();
+  }
+
+  @Test
+  void ignoredTrialFreesTheSlot() {
+    CircuitBreaker breaker = opened();
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    CircuitBreaker.Call trial = breaker.tryAcquire();
+    assertThat(trial).isNotNull();
+
+    trial.onIgnored();
+
+    assertThat(breaker.tryAcquire()).isNotNull();
+  }
+
+  @Test
+  void onlyTheTrialDecidesHalfOpen() {
+    CircuitBreaker breaker = breaker();
+    // 打开之前放行的调用，等到半开时才返回
+    CircuitBreaker.Call stale = breaker.tryAcquire();
+    for (int i = 0; i < 4; i++) {
+      breaker.tryAcquire().onFailure();
+    }
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    CircuitBreaker.Call trial = breaker.tryAcquire();
+
+    stale.onSuccess(0);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+    trial.onFailure();
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void eachCallIsCountedOnce() {
+    CircuitBreaker breaker = breaker();
+    CircuitBreaker.Call call = breaker.tryAcquire();
+
+    call.onFailure();
+    call.onFailure();
+    call.onSuccess(0);
+
+    assertThat(breaker.failureRate()).isEqualTo(1.0);
+    breaker.tryAcquire().onSuccess(0);
+    assertThat(breaker.failureRate()).isEqualTo(0.5);
+  }
+
+  @Test
+  void unreportedTrialExpiresAfterSlowCallDuration() {
+    CircuitBreaker breaker = opened();
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    CircuitBreaker.Call lost = breaker.tryAcquire();
+    assertThat(lost).isNotNull();
+
+    now.addAndGet(Duration.ofSeconds(5).toNanos());
+    // 试探调用超过 slowCallDuration 还没报结果：按失败重新打开，之后照常半开
+    assertThat(breaker.tryAcquire()).isNull();
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+    lost.onSuccess(0);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    assertThat(breaker.tryAcquire()).isNotNull();
+  }
+
+  @Test
+  void disabledBreakerNeverOpens() {
+    CircuitBreaker breaker = CircuitBreaker.builder("off").enabled(false).minimumCalls(1).build();
+
+    for (int i = 0; i < 20; i++) {
+      breaker.tryAcquire().onFailure();
+    }
+
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(breaker.tryAcquire()).isNotNull();
+  }
+
+  private CircuitBreaker opened() {
+    CircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      breaker.tryAcquire().onFailure();
+    }
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    return breaker;
+  }
+}
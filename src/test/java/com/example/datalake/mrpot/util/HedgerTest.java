@@ -0,0 +1,179 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HedgerTest {
+
+  private static final Duration WAIT = Duration.ofSeconds(5);
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void runsInlineUntilEnoughSamples() {
+    Hedger hedger = new Hedger(pool, 0.95, Duration.ofMillis(1), 3, 10);
+    Thread caller = Thread.currentThread();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(hedger.delay()).isNull();
+      Hedger.Result<Thread> result = hedger.call(Thread::currentThread, WAIT);
+      assertThat(result.value()).isSameAs(caller);
+      assertThat(result.hedged()).isFalse();
+    }
+
+    assertThat(hedger.delay()).isNotNull();
+  }
+
+  @Test
+  void fastCallIsNotHedged() {
+    Hedger hedger = warmed(Duration.ofMillis(200));
+    AtomicInteger attempts = new AtomicInteger();
+
+    Hedger.Result<String> result = hedger.call(() -> {
+      attempts.incrementAndGet();
+      return "ok";
+    }, WAIT);
+
+    assertThat(result.value()).isEqualTo("ok");
+    assertThat(result.hedged()).isFalse();
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void slowPrimaryIsHedgedAndFasterAttemptWins() {
+    Hedger hedger = warmed(Duration.ofMillis(20));
+    AtomicInteger attempts = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    Hedger.Result<String> result = hedger.call(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        await(release);
+        return "primary";
+      }
+      return "hedge";
+    }, WAIT);
+    release.countDown();
+
+    assertThat(result.value()).isEqualTo("hedge");
+    assertThat(result.hedged()).isTrue();
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  void failsOnlyWhenBothAttemptsFail() {
+    Hedger hedger = warmed(Duration.ofMillis(20));
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThatThrownBy(() -> hedger.call(() -> {
+      int n = attempts.incrementAndGet();
+      sleep(n == 1 ? 100 : 0);
+      throw new IllegalStateException("attempt " + n);
+    }, WAIT)).isInstanceOf(IllegalStateException.class).hasMessage("attempt 1");
+  }
+
+  @Test
+  void losingAttemptIsInterrupted() throws Exception {
+    Hedger hedger = warmed(Duration.ofMillis(20));
+    AtomicInteger attempts = new AtomicInteger();
+    CountDownLatch loserInterrupted = new CountDownLatch(1);
+
+    Hedger.Result<String> result = hedger.call(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(5_000);
+        } catch (InterruptedException e) {
+          loserInterrupted.countDown();
+        }
+        return "primary";
+      }
+      return "hedge";
+    }, WAIT);
+
+    assertThat(result.value()).isEqualTo("hedge");
+    assertThat(loserInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void waitIsBoundedByMaxWaitAndCancelsBothAttempts() throws Exception {
+    Hedger hedger = warmed(Duration.ofMillis(20));
+    CountDownLatch interrupted = new CountDownLatch(2);
+
+    long start = System.nanoTime();
+    assertThatThrownBy(() -> hedger.call(() -> {
+      try {
+        Thread.sleep(5_000);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return "late";
+    }, Duration.ofMillis(100))).isInstanceOf(Hedger.WaitTimeoutException.class);
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void hedgeIsSkippedWhenTheExecutorIsFull() {
+    ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(1));
+    try {
+      Hedger hedger = new Hedger(single, 0.95, Duration.ofMillis(20), 1, 10);
+      hedger.call(() -> "warm", WAIT);
+      AtomicInteger attempts = new AtomicInteger();
+
+      Hedger.Result<String> result = hedger.call(() -> {
+        attempts.incrementAndGet();
+        // 主调用占着唯一的 worker，再把唯一的队列位置占掉：第二路提交会被拒绝
+        single.execute(() -> { });
+        sleep(100);
+        return "primary";
+      }, WAIT);
+
+      assertThat(result.value()).isEqualTo("primary");
+      assertThat(result.hedged()).isFalse();
+      assertThat(attempts).hasValue(1);
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  private Hedger warmed(Duration minDelay) {
+    Hedger hedger = new Hedger(pool, 0.95, minDelay, 5, 10);
+    for (int i = 0; i < 5; i++) {
+      hedger.call(() -> "warm", WAIT);
+    }
+    return hedger;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class KbSnippetUtilsTest {
+
+  @Test
+  void singleHanCharacterQueryIsKeptAsKeyword() {
+    assertThat(KbSnippetUtils.mergeQueryKeywords("猫 a go", List.of())).containsExactly("猫", "go");
+  }
+
+  @Test
+  void singleHanCharacterKeywordSelectsSnippet() {
+    String content = "Yuqi 的项目经历很多。家里养了一只猫。周末喜欢爬山。";
+
+    assertThat(KbSnippetUtils.extractSnippet(content, List.of("猫"), 160)).contains("猫");
+    assertThat(KbSnippetUtils.extractSnippet(content, List.of("x"), 160)).isEmpty();
+  }
+}
@@ -0,0 +1,183 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private static final Duration WAIT = Duration.ofSeconds(5);
+
+  @Test
+  void concurrentCallersShareOneExecution() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    int callers = 8;
+
+    ExecutorService pool = Executors.newFixedThreadPool(callers);
+    try {
+      List<Future<SingleFlight.Result<String>>> results = new ArrayList<>();
+      results.add(pool.submit(() -> flight.execute("q", WAIT, () -> {
+        executions.incrementAndGet();
+        started.countDown();
+        await(release);
+        return "answer";
+      })));
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      for (int i = 1; i < callers; i++) {
+        results.add(pool.submit(() -> flight.execute("q", WAIT, () -> {
+          executions.incrementAndGet();
+          return "other";
+        })));
+      }
+      // 等所有跟随者都挂到同一个 call 上再放行 leader
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (flight.waiters("q") < callers - 1 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      int leaders = 0;
+      for (Future<SingleFlight.Result<String>> f : results) {
+        SingleFlight.Result<String> r = f.get(5, TimeUnit.SECONDS);
+        assertThat(r.value()).isEqualTo("answer");
+        assertThat(r.waiters()).isEqualTo(callers - 1);
+        if (r.leader()) leaders++;
+      }
+      assertThat(leaders).isEqualTo(1);
+      assertThat(executions).hasValue(1);
+      assertThat(flight.inFlight()).isZero();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void sequentialCallsAreNotCached() {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    AtomicInteger executions = new AtomicInteger();
+
+    SingleFlight.Result<Integer> first = flight.execute("k", WAIT, executions::incrementAndGet);
+    SingleFlight.Result<Integer> second = flight.execute("k", WAIT, executions::incrementAndGet);
+
+    assertThat(first.value()).isEqualTo(1);
+    assertThat(second.value()).isEqualTo(2);
+    assertThat(first.coalesced()).isFalse();
+    assertThat(second.leader()).isTrue();
+  }
+
+  @Test
+  void failuresPropagateAndClearTheKey() {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+
+    assertThatThrownBy(() -> flight.execute("k", WAIT, () -> {
+      throw new IllegalStateException("boom");
+    })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+    assertThat(flight.inFlight()).isZero();
+    assertThat(flight.execute("k", WAIT, () -> "ok").value()).isEqualTo("ok");
+  }
+
+  @Test
+  void followerGivesUpAfterItsOwnWaitWhileTheLeaderFinishes() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<SingleFlight.Result<String>> leader = pool.submit(() -> flight.execute("q", WAIT, () -> {
+        started.countDown();
+        await(release);
+        return "answer";
+      }));
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+      assertThatThrownBy(() -> flight.execute("q", Duration.ofMillis(50), () -> "other"))
+          .isInstanceOf(SingleFlight.WaitTimeoutException.class);
+      assertThat(flight.waiters("q")).isZero();
+
+      release.countDown();
+      SingleFlight.Result<String> result = leader.get(5, TimeUnit.SECONDS);
+      assertThat(result.value()).isEqualTo("answer");
+      assertThat(result.coalesced()).isFalse();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void detachedExecutionOutlivesAnImpatientLeader() throws Exception {
+    ExecutorService calls = Executors.newCachedThreadPool();
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      SingleFlight<String, String> flight = new SingleFlight<>(calls);
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+
+      Future<SingleFlight.Result<String>> leader = callers.submit(() -> flight.execute("q",
+          Duration.ofMillis(200), () -> {
+            started.countDown();
+            await(release);
+            return "answer";
+          }));
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      Future<SingleFlight.Result<String>> follower = callers.submit(() -> flight.execute("q", WAIT, () -> "other"));
+
+      assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+          .hasCauseInstanceOf(SingleFlight.WaitTimeoutException.class);
+      release.countDown();
+
+      SingleFlight.Result<String> shared = follower.get(5, TimeUnit.SECONDS);
+      assertThat(shared.value()).isEqualTo("answer");
+      assertThat(shared.leader()).isFalse();
+      assertThat(shared.waiters()).isEqualTo(1);
+    } finally {
+      callers.shutdownNow();
+      calls.shutdownNow();
+    }
+  }
+
+  @Test
+  void detachedExecutionIsCancelledWhenNobodyWaits() throws Exception {
+    ExecutorService calls = Executors.newCachedThreadPool();
+    try {
+      SingleFlight<String, String> flight = new SingleFlight<>(calls);
+      CountDownLatch interrupted = new CountDownLatch(1);
+
+      assertThatThrownBy(() -> flight.execute("q", Duration.ofMillis(50), () -> {
+        try {
+          Thread.sleep(5_000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+        return "late";
+      })).isInstanceOf(SingleFlight.WaitTimeoutException.class);
+
+      assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(flight.inFlight()).isZero();
+    } finally {
+      calls.shutdownNow();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
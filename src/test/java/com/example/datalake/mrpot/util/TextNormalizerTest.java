@@ -0,0 +1,64 @@
+package com.example.datalake.mrpot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.text.Normalizer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTest {
+
+  @Test
+  void foldsQuotesDashesAndCollapsesRuns() {
+    assertThat(TextNormalizer.normalize("  “Hi”—‘there’ ??  !!!  wait... ok.. ，， 。。  "))
+        .isEqualTo("\"Hi\"-'there' ? ! wait. ok.. , 。"); // NFKC 把全角逗号变成 ","
+  }
+
+  @Test
+  void dropsZeroWidthAndControlCharsBeforeCollapsing() {
+    assertThat(TextNormalizer.normalize("a?\u200B?b\r\nc\u0001\td \u200D e")).isEqualTo("a?b\nc\td e");
+    assertThat(TextNormalizer.normalize("\uFEFF\u200B")).isEmpty();
+    assertThat(TextNormalizer.normalize(null)).isEmpty();
+  }
+
+  @Test
+  void appliesNfkcOnlyWhenNeeded() {
+    assertThat(TextNormalizer.normalize("ＡＢＣ？？１２３")).isEqualTo("ABC?123");
+    String ascii = "plain ascii text";
+    assertThat(TextNormalizer.normalize(ascii)).isEqualTo(ascii);
+  }
+
+  @Test
+  void matchesTheRegexChainOnRandomInput() {
+    String alphabet = "ab 中\t\n\r\u0001\u007F\u200B\u200D\uFEFF“”‘’—–?!.,。，｡？！‥…． 　é";
+    Random random = new Random(42);
+    for (int i = 0; i < 50_000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int len = random.nextInt(24);
+      for (int k = 0; k < len; k++) {
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String input = sb.toString();
+      assertThat(TextNormalizer.normalize(input)).as("input=%s", input).isEqualTo(regexChain(input));
+    }
+  }
+
+  // 单趟实现之前 UnifiedCleanCorrectProcessor.normalizeText 的多次 replaceAll 版本，作为对照
+  private static String regexChain(String s) {
+    if (s == null || s.isEmpty()) return "";
+    s = Normalizer.normalize(s, Normalizer.Form.NFKC);
+    s = s.replace("\uFEFF", "").replace("\u200B", "").replace("\u200C", "")
+        .replace("\u200D", "").replace("\u200E", "").replace("\u200F", "");
+    s = s.replaceAll("[\\p{Cntrl}&&[^\n\t]]", "");
+    s = s.replaceAll("[“”]", "\"").replaceAll("[‘’]", "'")
+        .replace("—", "-").replace("–", "-");
+    s = s.replaceAll("\\?{2,}", "?")
+        .replaceAll("!{2,}", "!")
+        .replaceAll("。{2,}", "。")
+        .replaceAll("\\.{3,}", ".")
+        .replaceAll("，{2,}", "，")
+        .replaceAll(",{2,}", ",");
+    s = s.replace("\r\n", "\n").replace('\r', '\n');
+    return s.replaceAll("[ \\t]{2,}", " ").trim();
+  }
+}